@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_pagos.service.DetectorDuplicados;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(DuplicadosProperties.class)
+public class DuplicadosConfig {
+
+    /**
+     * Detector de pagos duplicados según pagos.duplicados.modo
+     */
+    @Bean
+    public DetectorDuplicados detectorDuplicados(DuplicadosProperties properties) {
+        if (properties.getModo() == DetectorDuplicados.Modo.DESHABILITADO) {
+            return DetectorDuplicados.deshabilitado();
+        }
+        log.info("Detección de pagos duplicados en modo {} con ventana de {}", properties.getModo(), properties.getVentana());
+        return new DetectorDuplicados(properties.getModo(), properties.getVentana(), properties.getHuellasPorTramo());
+    }
+}
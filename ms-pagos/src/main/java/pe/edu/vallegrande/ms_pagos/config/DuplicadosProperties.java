@@ -0,0 +1,21 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import pe.edu.vallegrande.ms_pagos.service.DetectorDuplicados;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la detección de pagos duplicados en POST /pagos (prefijo pagos.duplicados)
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.duplicados")
+public class DuplicadosProperties {
+
+    private DetectorDuplicados.Modo modo = DetectorDuplicados.Modo.DESHABILITADO;
+    /** Tiempo durante el que una request igual a otra se considera duplicada */
+    private Duration ventana = Duration.ofSeconds(30);
+    /** Requests previstas por cada octavo de la ventana; fija la memoria del filtro */
+    private int huellasPorTramo = 50_000;
+}
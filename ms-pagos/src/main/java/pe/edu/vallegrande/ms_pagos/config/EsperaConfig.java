@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_pagos.service.EsperasEstado;
+
+@Configuration
+@EnableConfigurationProperties(EsperaProperties.class)
+public class EsperaConfig {
+
+    /**
+     * Registro de esperas de estado; como PagoObservador las resuelve con los eventos de PagoService
+     */
+    @Bean
+    public EsperasEstado esperasEstado(EsperaProperties properties) {
+        return new EsperasEstado(properties.getMaxEsperas());
+    }
+}
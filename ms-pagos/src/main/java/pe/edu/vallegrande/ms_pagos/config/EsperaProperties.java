@@ -0,0 +1,21 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de las esperas de estado en GET /pagos/{pagoId}/await (prefijo pagos.espera)
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.espera")
+public class EsperaProperties {
+
+    /** Esperas abiertas a la vez; las siguientes responden 503 */
+    private int maxEsperas = 10_000;
+    /** Timeout cuando la petición no indica uno */
+    private Duration timeoutPorDefecto = Duration.ofSeconds(30);
+    /** Timeout máximo que puede pedir una petición */
+    private Duration timeoutMaximo = Duration.ofSeconds(60);
+}
@@ -0,0 +1,20 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_pagos.service.SuscripcionesEstado;
+
+@Configuration
+@EnableConfigurationProperties(EventosProperties.class)
+public class EventosConfig {
+
+    /**
+     * Suscripciones a los cambios de estado; como PagoObservador recibe los eventos de PagoService
+     */
+    @Bean(destroyMethod = "close")
+    public SuscripcionesEstado suscripcionesEstado(EventosProperties properties) {
+        return new SuscripcionesEstado(properties.getHilos(), properties.getCapacidadCola(),
+                properties.getMaxSuscripciones(), properties.getPlazoEnvio());
+    }
+}
@@ -0,0 +1,25 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de las suscripciones a cambios de estado en GET /pagos/eventos (prefijo pagos.eventos)
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.eventos")
+public class EventosProperties {
+
+    /** Hilos que entregan los eventos a los suscriptores */
+    private int hilos = 2;
+    /** Eventos pendientes por suscriptor antes de darlo de baja por lento */
+    private int capacidadCola = 256;
+    /** Suscripciones abiertas a la vez; las siguientes responden 503 */
+    private int maxSuscripciones = 5_000;
+    /** Duración máxima de una suscripción; el cliente vuelve a suscribirse al vencer */
+    private Duration timeout = Duration.ofMinutes(30);
+    /** Tiempo máximo de escritura de un evento; un suscriptor que lo supera se da de baja */
+    private Duration plazoEnvio = Duration.ofSeconds(5);
+}
@@ -0,0 +1,39 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_pagos.service.GeneradorId;
+import pe.edu.vallegrande.ms_pagos.service.GeneradorIdOrdenado;
+import pe.edu.vallegrande.ms_pagos.service.GeneradorIdUuid;
+
+import java.util.Objects;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(IdProperties.class)
+public class GeneradorIdConfig {
+
+    /**
+     * Generador de IDs según pagos.id.generador
+     */
+    @Bean
+    public GeneradorId generadorId(IdProperties properties) {
+        if (properties.getGenerador() == IdProperties.TipoGenerador.UUID) {
+            return new GeneradorIdUuid();
+        }
+        int nodo = properties.getNodo() >= 0 ? properties.getNodo() : nodoDerivado();
+        log.info("Generador de IDs ordenado con nodo {}", nodo);
+        return new GeneradorIdOrdenado(nodo);
+    }
+
+    /**
+     * Nodo derivado del nombre del host (el del pod en Kubernetes) y el PID. Dos instancias
+     * pueden coincidir; los 42 bits aleatorios de cada ID siguen evitando colisiones.
+     */
+    private static int nodoDerivado() {
+        int hash = Objects.hash(System.getenv("HOSTNAME"), ProcessHandle.current().pid());
+        return Math.floorMod(hash, GeneradorIdOrdenado.NODO_MAXIMO + 1);
+    }
+}
@@ -0,0 +1,24 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración de la generación de IDs de pago (prefijo pagos.id)
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.id")
+public class IdProperties {
+
+    public enum TipoGenerador {
+        /** UUID versión 4 aleatorio */
+        UUID,
+        /** ID de 128 bits ordenado por tiempo y con nodo, formato UUID versión 7 */
+        ORDENADO
+    }
+
+    private TipoGenerador generador = TipoGenerador.ORDENADO;
+
+    // Nodo de esta instancia (0-1023); si es negativo se deriva del HOSTNAME y el PID
+    private int nodo = -1;
+}
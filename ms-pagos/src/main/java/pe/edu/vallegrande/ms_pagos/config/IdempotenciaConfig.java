@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_pagos.service.CacheIdempotencia;
+
+@Configuration
+@EnableConfigurationProperties(IdempotenciaProperties.class)
+public class IdempotenciaConfig {
+
+    /**
+     * Caché de resultados por cabecera Idempotency-Key para POST /pagos
+     */
+    @Bean
+    public CacheIdempotencia cacheIdempotencia(IdempotenciaProperties properties) {
+        return new CacheIdempotencia(properties.getTtl(), properties.getMaxClaves());
+    }
+}
@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la caché de claves de idempotencia de POST /pagos (prefijo pagos.idempotencia)
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.idempotencia")
+public class IdempotenciaProperties {
+
+    /** Tiempo durante el que un reintento con la misma clave recibe el resultado original */
+    private Duration ttl = Duration.ofHours(24);
+    /** Claves retenidas como máximo; al superarlo se olvidan primero las más antiguas */
+    private int maxClaves = 200_000;
+}
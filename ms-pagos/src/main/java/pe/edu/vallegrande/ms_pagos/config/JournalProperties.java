@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import pe.edu.vallegrande.ms_pagos.repository.PagoJournal;
+
+/**
+ * Configuración del modo durable del repositorio (prefijo pagos.journal)
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.journal")
+public class JournalProperties {
+
+    private boolean habilitado = false;
+    private String ruta = "data/pagos.journal";
+    private PagoJournal.PoliticaFsync politicaFsync = PagoJournal.PoliticaFsync.GRUPAL;
+    private long intervaloGrupoMs = 5;
+    private int hilosRecuperacion = Runtime.getRuntime().availableProcessors();
+}
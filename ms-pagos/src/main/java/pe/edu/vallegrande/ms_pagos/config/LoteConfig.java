@@ -0,0 +1,20 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_pagos.service.EjecutorLotes;
+
+@Configuration
+@EnableConfigurationProperties(LoteProperties.class)
+public class LoteConfig {
+
+    /**
+     * Pool acotado para procesar en paralelo los pagos de POST /pagos/batch
+     */
+    @Bean(destroyMethod = "close")
+    public EjecutorLotes ejecutorLotes(LoteProperties properties) {
+        int hilos = properties.getHilos() > 0 ? properties.getHilos() : Runtime.getRuntime().availableProcessors();
+        return new EjecutorLotes(hilos, properties.getCapacidadCola());
+    }
+}
@@ -0,0 +1,17 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración del procesamiento de lotes de pagos (prefijo pagos.lote)
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.lote")
+public class LoteProperties {
+
+    /** Hilos del pool; si es 0 o negativo, uno por procesador */
+    private int hilos = 0;
+    /** Tramos que pueden esperar en cola antes de que los procese el propio llamador */
+    private int capacidadCola = 64;
+}
@@ -0,0 +1,38 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_pagos.repository.PagoJournal;
+import pe.edu.vallegrande.ms_pagos.repository.PagoSnapshots;
+
+import java.nio.file.Paths;
+
+@Configuration
+@EnableConfigurationProperties({JournalProperties.class, SnapshotProperties.class})
+public class PersistenciaConfig {
+
+    /**
+     * Journal de escritura anticipada, solo cuando pagos.journal.habilitado=true
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "pagos.journal", name = "habilitado", havingValue = "true")
+    public PagoJournal pagoJournal(JournalProperties properties) {
+        return new PagoJournal(
+                Paths.get(properties.getRuta()),
+                properties.getPoliticaFsync(),
+                properties.getIntervaloGrupoMs(),
+                properties.getHilosRecuperacion()
+        );
+    }
+
+    /**
+     * Snapshots periódicos para reiniciar sin reproducir todo el journal, solo cuando pagos.snapshot.habilitado=true
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "pagos.snapshot", name = "habilitado", havingValue = "true")
+    public PagoSnapshots pagoSnapshots(SnapshotProperties properties) {
+        return new PagoSnapshots(Paths.get(properties.getRuta()), properties.getIntervaloSegundos());
+    }
+}
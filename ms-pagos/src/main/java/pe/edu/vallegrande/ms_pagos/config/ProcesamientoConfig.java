@@ -0,0 +1,24 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pe.edu.vallegrande.ms_pagos.service.ProcesadorPagos;
+
+@Configuration
+@EnableConfigurationProperties(ProcesamientoProperties.class)
+public class ProcesamientoConfig {
+
+    /**
+     * Pool acotado que procesa los pagos creados en modo asíncrono; sus métricas van al
+     * MeterRegistry de Actuator
+     */
+    @Bean(destroyMethod = "close")
+    public ProcesadorPagos procesadorPagos(ProcesamientoProperties properties, ObjectProvider<MeterRegistry> registro) {
+        int hilos = properties.getHilos() > 0 ? properties.getHilos() : Runtime.getRuntime().availableProcessors();
+        return new ProcesadorPagos(hilos, properties.getCapacidadCola(), registro.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
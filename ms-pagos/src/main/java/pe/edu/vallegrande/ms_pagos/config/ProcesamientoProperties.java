@@ -0,0 +1,18 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración del procesamiento asíncrono de POST /pagos con Prefer: respond-async
+ * (prefijo pagos.procesamiento)
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.procesamiento")
+public class ProcesamientoProperties {
+
+    /** Pagos que se procesan a la vez; si es 0 o negativo, uno por procesador */
+    private int hilos = 0;
+    /** Pagos que pueden esperar en cola; con la cola llena la creación responde 503 */
+    private int capacidadCola = 1_000;
+}
@@ -0,0 +1,16 @@
+package pe.edu.vallegrande.ms_pagos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración de los snapshots del repositorio (prefijo pagos.snapshot). Requiere el journal.
+ */
+@Data
+@ConfigurationProperties(prefix = "pagos.snapshot")
+public class SnapshotProperties {
+
+    private boolean habilitado = false;
+    private String ruta = "data/pagos.snapshot";
+    private long intervaloSegundos = 300;
+}
@@ -0,0 +1,165 @@
+package pe.edu.vallegrande.ms_pagos.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pe.edu.vallegrande.ms_pagos.config.EsperaProperties;
+import pe.edu.vallegrande.ms_pagos.config.EventosProperties;
+import pe.edu.vallegrande.ms_pagos.dto.response.ApiResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.EventoEstadoResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.service.EsperasEstado;
+import pe.edu.vallegrande.ms_pagos.service.PagoService;
+import pe.edu.vallegrande.ms_pagos.service.SuscripcionesEstado;
+
+import java.io.IOException;
+import java.time.Duration;
+
+@Slf4j
+@RestController
+@RequestMapping("/pagos")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class EventosPagoController {
+    
+    private final SuscripcionesEstado suscripciones;
+    private final EventosProperties properties;
+    private final EsperasEstado esperas;
+    private final EsperaProperties esperaProperties;
+    private final PagoService pagoService;
+    
+    static final int REINTENTO_SEGUNDOS = 5;
+    
+    /**
+     * Suscribirse a los cambios de estado de los pagos (Server-Sent Events)
+     * GET /api/pagos/eventos?clienteId={clienteId}&orderId={orderId}
+     *
+     * Cada cambio llega como evento "estado". Un cliente que no lee al ritmo de los cambios
+     * recibe un evento "desbordado" y la conexión se cierra; debe resincronizar con
+     * GET /pagos/cambios antes de volver a suscribirse. Sin capacidad responde 503 sin cuerpo:
+     * un cliente SSE solo acepta text/event-stream y no podría recibir el ApiResponse de error.
+     */
+    @GetMapping(value = "/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> suscribirEventos(
+            @RequestParam(required = false) String clienteId,
+            @RequestParam(required = false) String orderId) {
+        log.info("Suscripción a eventos de estado (cliente {}, orden {})", clienteId, orderId);
+        
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        SuscripcionesEstado.Suscripcion suscripcion;
+        try {
+            suscripcion = suscripciones.suscribir(vacioComoNulo(clienteId), vacioComoNulo(orderId), new DestinoSse(emitter));
+        } catch (PagoCapacidadException e) {
+            log.warn("Suscripción a eventos rechazada: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(REINTENTO_SEGUNDOS))
+                    .build();
+        }
+        emitter.onCompletion(suscripcion::cancelar);
+        emitter.onTimeout(suscripcion::cancelar);
+        emitter.onError(error -> suscripcion.cancelar());
+        return ResponseEntity.ok(emitter);
+    }
+    
+    /**
+     * Esperar a que un pago llegue a un estado (long polling)
+     * GET /api/pagos/{pagoId}/await?estado={estado}&timeout={timeout}
+     *
+     * Responde en cuanto el pago está en el estado pedido o ya no puede llegar a él (sin
+     * estado, en cuanto deja PENDING), o al vencer el timeout (p. ej. 30s) con el pago como
+     * esté. Mientras espera no ocupa un hilo del servidor.
+     */
+    @GetMapping("/{pagoId}/await")
+    public DeferredResult<ResponseEntity<ApiResponse<PagoResponse>>> esperarEstado(
+            @PathVariable String pagoId,
+            @RequestParam(required = false) Pago.EstadoPago estado,
+            @RequestParam(required = false) String timeout) {
+        Duration limite = duracionEspera(timeout);
+        log.info("Solicitud para esperar el pago {} en estado {} durante {}", pagoId, estado, limite);
+        
+        EsperasEstado.Espera espera = esperas.esperar(pagoId, estado);
+        DeferredResult<ResponseEntity<ApiResponse<PagoResponse>>> resultado = new DeferredResult<>(limite.toMillis());
+        PagoResponse actual;
+        try {
+            // Se lee después de registrar la espera para no perder un cambio intermedio
+            actual = pagoService.obtenerPagoPorId(pagoId);
+        } catch (RuntimeException e) {
+            espera.cancelar();
+            throw e;
+        }
+        if (EsperasEstado.resuelve(actual.getEstado(), estado)) {
+            espera.cancelar();
+            resultado.setResult(respuestaEspera(actual, false));
+            return resultado;
+        }
+        espera.resultado().thenRun(() -> responderEspera(resultado, pagoId, false));
+        resultado.onTimeout(() -> {
+            espera.cancelar();
+            responderEspera(resultado, pagoId, true);
+        });
+        resultado.onCompletion(espera::cancelar);
+        return resultado;
+    }
+    
+    private Duration duracionEspera(String timeout) {
+        if (timeout == null || timeout.isBlank()) {
+            return esperaProperties.getTimeoutPorDefecto();
+        }
+        Duration duracion;
+        try {
+            duracion = DurationStyle.detectAndParse(timeout);
+        } catch (IllegalArgumentException e) {
+            throw new PagoValidationException("timeout", timeout, "El timeout no es una duración válida (p. ej. 30s)");
+        }
+        if (duracion.isNegative() || duracion.isZero() || duracion.compareTo(esperaProperties.getTimeoutMaximo()) > 0) {
+            throw new PagoValidationException("timeout", timeout,
+                    "El timeout debe ser positivo y no mayor a " + esperaProperties.getTimeoutMaximo().toSeconds() + "s");
+        }
+        return duracion;
+    }
+    
+    private void responderEspera(DeferredResult<ResponseEntity<ApiResponse<PagoResponse>>> resultado,
+                                 String pagoId, boolean vencida) {
+        try {
+            resultado.setResult(respuestaEspera(pagoService.obtenerPagoPorId(pagoId), vencida));
+        } catch (RuntimeException e) {
+            resultado.setErrorResult(e);
+        }
+    }
+    
+    private static ResponseEntity<ApiResponse<PagoResponse>> respuestaEspera(PagoResponse pago, boolean vencida) {
+        String mensaje = vencida
+                ? "Tiempo de espera agotado; el pago sigue en estado " + pago.getEstado()
+                : "Pago en estado " + pago.getEstado();
+        return ResponseEntity.ok(ApiResponse.success(mensaje, pago));
+    }
+    
+    private static String vacioComoNulo(String valor) {
+        return valor != null && !valor.isBlank() ? valor : null;
+    }
+    
+    private record DestinoSse(SseEmitter emitter) implements SuscripcionesEstado.Destino {
+        
+        @Override
+        public void enviar(EventoEstadoResponse evento) throws IOException {
+            emitter.send(SseEmitter.event().name("estado").data(evento, MediaType.APPLICATION_JSON));
+        }
+        
+        @Override
+        public void desbordado() throws IOException {
+            emitter.send(SseEmitter.event().name("desbordado")
+                    .data("Eventos descartados por lectura lenta; resincronizar con GET /pagos/cambios"));
+            emitter.complete();
+        }
+    }
+}
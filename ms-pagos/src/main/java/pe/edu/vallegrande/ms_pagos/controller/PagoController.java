@@ -1,19 +1,37 @@
 package pe.edu.vallegrande.ms_pagos.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import pe.edu.vallegrande.ms_pagos.dto.request.CambioEstadoLoteRequest;
+import pe.edu.vallegrande.ms_pagos.dto.request.ConsultaPagosRequest;
 import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
 import pe.edu.vallegrande.ms_pagos.dto.request.RefundRequest;
 import pe.edu.vallegrande.ms_pagos.dto.response.ApiResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.CambiosResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ConsultaPagosResponse;
 import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.PaginaResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResumenClienteResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.SaldoOrdenResponse;
 import pe.edu.vallegrande.ms_pagos.dto.response.EstadisticasResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.LotePagosResponse;
 import pe.edu.vallegrande.ms_pagos.model.Pago;
 import pe.edu.vallegrande.ms_pagos.service.PagoService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
@@ -24,21 +42,80 @@ import java.util.List;
 public class PagoController {
     
     private final PagoService pagoService;
+    private final ObjectMapper objectMapper;
+    
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    
+    // Preferencia de RFC 7240 para pedir la creación asíncrona
+    static final String RESPOND_ASYNC = "respond-async";
     
     /**
      * Crear un nuevo pago
      * POST /api/pagos
+     *
+     * Con la cabecera Idempotency-Key, los reintentos con la misma clave devuelven el pago
+     * creado la primera vez en lugar de crear otro. Con Prefer: respond-async el pago se
+     * guarda en PENDING y se responde 202 sin esperar al procesamiento; Location apunta al
+     * pago para consultar su estado.
      */
     @PostMapping
-    public ResponseEntity<ApiResponse<PagoResponse>> crearPago(@RequestBody PagoRequest request) {
+    public ResponseEntity<ApiResponse<PagoResponse>> crearPago(
+            @RequestBody PagoRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
+            @RequestHeader(value = "Prefer", required = false) String preferencia) {
         log.info("Solicitud para crear pago para orden: {}", request.getOrderId());
         
-        PagoResponse pago = pagoService.crearPago(request);
+        if (prefiereAsincrono(preferencia)) {
+            PagoResponse pago = pagoService.crearPagoAsincrono(request, claveIdempotencia);
+            URI ubicacion = ServletUriComponentsBuilder.fromCurrentRequestUri()
+                    .path("/{pagoId}").buildAndExpand(pago.getId()).toUri();
+            return ResponseEntity.accepted()
+                    .location(ubicacion)
+                    .header("Preference-Applied", RESPOND_ASYNC)
+                    .body(ApiResponse.success("Pago aceptado para procesamiento", pago));
+        }
+        
+        PagoResponse pago = pagoService.crearPago(request, claveIdempotencia);
         ApiResponse<PagoResponse> response = ApiResponse.success("Pago creado exitosamente", pago);
         
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
     
+    /**
+     * Crear varios pagos en una sola solicitud
+     * POST /api/pagos/batch
+     *
+     * Responde 201 si se crearon todos y 207 si algún pago tuvo errores; el detalle va en
+     * cada resultado, en el orden de la solicitud.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse<LotePagosResponse>> crearPagos(@RequestBody List<PagoRequest> requests) {
+        log.info("Solicitud para crear lote de {} pagos", requests.size());
+        
+        LotePagosResponse lote = pagoService.crearPagos(requests);
+        ApiResponse<LotePagosResponse> response = ApiResponse.success(
+            "Lote procesado: " + lote.getExitosos() + " pagos creados, " + lote.getFallidos() + " con errores", lote);
+        
+        HttpStatus estado = lote.getFallidos() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(estado).body(response);
+    }
+    
+    /**
+     * Consultar varios pagos a la vez por ID y/o por orden
+     * POST /api/pagos/consulta
+     */
+    @PostMapping("/consulta")
+    public ResponseEntity<ApiResponse<ConsultaPagosResponse>> consultarPagos(@RequestBody ConsultaPagosRequest request) {
+        log.info("Solicitud para consultar varios pagos");
+        
+        ConsultaPagosResponse consulta = pagoService.consultarPagos(request);
+        ApiResponse<ConsultaPagosResponse> response = ApiResponse.success(
+            "Se encontraron " + consulta.getPorId().size() + " pagos y " + consulta.getPorOrden().size() + " órdenes",
+            consulta);
+        
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Obtener un pago por ID
      * GET /api/pagos/{pagoId}
@@ -68,6 +145,84 @@ public class PagoController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Obtener una página de pagos en orden de creación
+     * GET /api/pagos?limit={limit}&cursor={cursor}
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<ApiResponse<PaginaResponse<PagoResponse>>> obtenerPaginaDePagos(
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor) {
+        log.info("Solicitud para obtener página de {} pagos", limit);
+        
+        PaginaResponse<PagoResponse> pagina = pagoService.obtenerPaginaDePagos(cursor, limit);
+        ApiResponse<PaginaResponse<PagoResponse>> response = ApiResponse.success(
+            "Se encontraron " + pagina.getElementos().size() + " pagos", pagina);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Obtener una página de los pagos creados en un rango de fechas [desde, hasta)
+     * GET /api/pagos/rango?desde={desde}&hasta={hasta}&estado={estado}&moneda={moneda}&limit={limit}&cursor={cursor}
+     */
+    @GetMapping("/rango")
+    public ResponseEntity<ApiResponse<PaginaResponse<PagoResponse>>> obtenerPaginaPorFechas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) Pago.EstadoPago estado,
+            @RequestParam(required = false) String moneda,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String cursor) {
+        log.info("Solicitud para obtener página de {} pagos entre {} y {}", limit, desde, hasta);
+        
+        PaginaResponse<PagoResponse> pagina = pagoService.obtenerPaginaPorFechas(desde, hasta, estado, moneda, cursor, limit);
+        ApiResponse<PaginaResponse<PagoResponse>> response = ApiResponse.success(
+            "Se encontraron " + pagina.getElementos().size() + " pagos entre " + desde + " y " + hasta, pagina);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Obtener los cambios de pagos posteriores a una secuencia, para réplicas
+     * GET /api/pagos/cambios?desde={secuencia}&limit={limit}
+     */
+    @GetMapping("/cambios")
+    public ResponseEntity<ApiResponse<CambiosResponse>> obtenerCambios(
+            @RequestParam(defaultValue = "0") long desde,
+            @RequestParam(defaultValue = "100") int limit) {
+        log.info("Solicitud para obtener {} cambios desde la secuencia {}", limit, desde);
+        
+        CambiosResponse cambios = pagoService.obtenerCambios(desde, limit);
+        ApiResponse<CambiosResponse> response = ApiResponse.success(
+            "Se encontraron " + cambios.getCambios().size() + " cambios desde la secuencia " + desde, cambios);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Exportar todos los pagos como NDJSON (un pago por línea)
+     * GET /api/pagos/export
+     *
+     * Se escribe directamente sobre la respuesta mientras se recorren los pagos por páginas;
+     * la escritura bloqueante frena el recorrido si el cliente lee lento, sin retener
+     * versiones en el repositorio.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportarPagos() {
+        log.info("Solicitud para exportar todos los pagos");
+        
+        StreamingResponseBody cuerpo = salida -> {
+            try (JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+                generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generador.setRootValueSeparator(null);
+                pagoService.exportarPagos(pago -> escribirLinea(generador, pago));
+            }
+        };
+        
+        return ResponseEntity.ok().contentType(NDJSON).body(cuerpo);
+    }
+    
     /**
      * Obtener pagos por orden
      * GET /api/pagos/orden/{orderId}
@@ -83,6 +238,39 @@ public class PagoController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Obtener una página de pagos de una orden
+     * GET /api/pagos/orden/{orderId}?limit={limit}&cursor={cursor}
+     */
+    @GetMapping(value = "/orden/{orderId}", params = "limit")
+    public ResponseEntity<ApiResponse<PaginaResponse<PagoResponse>>> obtenerPaginaPorOrden(
+            @PathVariable String orderId,
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor) {
+        log.info("Solicitud para obtener página de {} pagos de la orden: {}", limit, orderId);
+        
+        PaginaResponse<PagoResponse> pagina = pagoService.obtenerPaginaPorOrden(orderId, cursor, limit);
+        ApiResponse<PaginaResponse<PagoResponse>> response = ApiResponse.success(
+            "Se encontraron " + pagina.getElementos().size() + " pagos para la orden " + orderId, pagina);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Obtener el saldo de refunds de una orden
+     * GET /api/pagos/orden/{orderId}/saldo
+     */
+    @GetMapping("/orden/{orderId}/saldo")
+    public ResponseEntity<ApiResponse<SaldoOrdenResponse>> obtenerSaldoOrden(@PathVariable String orderId) {
+        log.info("Solicitud para obtener el saldo de la orden: {}", orderId);
+        
+        SaldoOrdenResponse saldo = pagoService.obtenerSaldoOrden(orderId);
+        ApiResponse<SaldoOrdenResponse> response = ApiResponse.success(
+            "Saldo reembolsable de la orden " + orderId + ": " + saldo.getReembolsable(), saldo);
+        
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Obtener pagos por cliente
      * GET /api/pagos/cliente/{clienteId}
@@ -98,6 +286,39 @@ public class PagoController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Obtener una página de pagos de un cliente
+     * GET /api/pagos/cliente/{clienteId}?limit={limit}&cursor={cursor}
+     */
+    @GetMapping(value = "/cliente/{clienteId}", params = "limit")
+    public ResponseEntity<ApiResponse<PaginaResponse<PagoResponse>>> obtenerPaginaPorCliente(
+            @PathVariable String clienteId,
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor) {
+        log.info("Solicitud para obtener página de {} pagos del cliente: {}", limit, clienteId);
+        
+        PaginaResponse<PagoResponse> pagina = pagoService.obtenerPaginaPorCliente(clienteId, cursor, limit);
+        ApiResponse<PaginaResponse<PagoResponse>> response = ApiResponse.success(
+            "Se encontraron " + pagina.getElementos().size() + " pagos para el cliente " + clienteId, pagina);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Obtener el resumen de pagos de un cliente
+     * GET /api/pagos/cliente/{clienteId}/resumen
+     */
+    @GetMapping("/cliente/{clienteId}/resumen")
+    public ResponseEntity<ApiResponse<ResumenClienteResponse>> obtenerResumenCliente(@PathVariable String clienteId) {
+        log.info("Solicitud para obtener el resumen del cliente: {}", clienteId);
+        
+        ResumenClienteResponse resumen = pagoService.obtenerResumenCliente(clienteId);
+        ApiResponse<ResumenClienteResponse> response = ApiResponse.success(
+            "Resumen de " + resumen.getTotalPagos() + " pagos del cliente " + clienteId, resumen);
+        
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Actualizar estado de un pago
      * PATCH /api/pagos/{pagoId}/estado
@@ -115,6 +336,27 @@ public class PagoController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Actualizar el estado de varios pagos a la vez
+     * PATCH /api/pagos/estado
+     *
+     * Responde 200 si se actualizaron todos y 207 si algún pago tuvo errores; el detalle va en
+     * cada resultado, en el orden de la solicitud.
+     */
+    @PatchMapping("/estado")
+    public ResponseEntity<ApiResponse<LotePagosResponse>> actualizarEstadoPagos(@RequestBody CambioEstadoLoteRequest request) {
+        log.info("Solicitud para actualizar estado de {} pagos a {}",
+                request.getIds() != null ? request.getIds().size() : 0, request.getEstado());
+        
+        LotePagosResponse lote = pagoService.actualizarEstadoPagos(request);
+        ApiResponse<LotePagosResponse> response = ApiResponse.success(
+            "Lote procesado: " + lote.getExitosos() + " pagos actualizados a " + request.getEstado() + ", "
+                + lote.getFallidos() + " con errores", lote);
+        
+        HttpStatus estado = lote.getFallidos() == 0 ? HttpStatus.OK : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(estado).body(response);
+    }
+    
     /**
      * Procesar refund de un pago
      * POST /api/pagos/{pagoId}/refund
@@ -142,10 +384,8 @@ public class PagoController {
                 request.getOrderId(), request.getAmount(), request.getMaxRefundable());
         
         PagoResponse pago = pagoService.restrictRefund(request);
-        ApiResponse<PagoResponse> response = ApiResponse.success(
-            String.format("Refund restringido procesado exitosamente. Monto: %.2f, Límite: %.2f", 
-                request.getAmount(), request.getMaxRefundable()), 
-            pago);
+        // El mensaje del pago lleva el límite calculado en el servidor
+        ApiResponse<PagoResponse> response = ApiResponse.success(pago.getMensajeRespuesta(), pago);
         
         return ResponseEntity.ok(response);
     }
@@ -167,37 +407,33 @@ public class PagoController {
     public ResponseEntity<ApiResponse<EstadisticasResponse>> obtenerEstadisticas() {
         log.info("Solicitud para obtener estadísticas de pagos");
         
-        List<PagoResponse> todosPagos = pagoService.obtenerTodosLosPagos();
-        
-        // Calcular estadísticas básicas
-        long totalPagosCount = todosPagos.size();
-        long pagosCompletadosCount = todosPagos.stream()
-                .filter(p -> p.getEstado() == Pago.EstadoPago.COMPLETED)
-                .count();
-        long pagosPendientesCount = todosPagos.stream()
-                .filter(p -> p.getEstado() == Pago.EstadoPago.PENDING)
-                .count();
-        long pagosFallidosCount = todosPagos.stream()
-                .filter(p -> p.getEstado() == Pago.EstadoPago.FAILED)
-                .count();
-        
-        BigDecimal montoTotal = todosPagos.stream()
-                .filter(p -> p.getEstado() == Pago.EstadoPago.COMPLETED)
-                .map(PagoResponse::getMonto)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        double tasaExito = totalPagosCount > 0 ? (double) pagosCompletadosCount / totalPagosCount * 100 : 0;
-        
-        EstadisticasResponse stats = new EstadisticasResponse(
-                totalPagosCount,
-                pagosCompletadosCount,
-                pagosPendientesCount,
-                pagosFallidosCount,
-                montoTotal,
-                tasaExito
-        );
+        EstadisticasResponse stats = pagoService.obtenerEstadisticas();
         
         ApiResponse<EstadisticasResponse> response = ApiResponse.success("Estadísticas obtenidas exitosamente", stats);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+    
+    private static void escribirLinea(JsonGenerator generador, PagoResponse pago) {
+        try {
+            generador.writeObject(pago);
+            generador.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Si la cabecera Prefer incluye respond-async, entre otras preferencias separadas por coma
+     */
+    private static boolean prefiereAsincrono(String preferencia) {
+        if (preferencia == null) {
+            return false;
+        }
+        for (String valor : preferencia.split(",")) {
+            if (valor.trim().equalsIgnoreCase(RESPOND_ASYNC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,20 @@
+package pe.edu.vallegrande.ms_pagos.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.util.List;
+
+/**
+ * Cambio de varios pagos a un mismo estado en una sola solicitud
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CambioEstadoLoteRequest {
+
+    private List<String> ids;
+    private Pago.EstadoPago estado;
+}
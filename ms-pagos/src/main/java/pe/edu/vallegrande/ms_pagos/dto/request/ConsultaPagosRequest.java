@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Consulta de varios pagos a la vez, por ID de pago y/o por ID de orden
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsultaPagosRequest {
+
+    private List<String> ids;
+    private List<String> orderIds;
+}
@@ -34,9 +34,9 @@ public class RefundRequest {
     private BigDecimal amount;
     
     /**
-     * Monto máximo permitido para reembolso
+     * Monto máximo permitido para reembolso. Opcional: el servidor calcula el saldo
+     * reembolsable de la orden y, si viene, usa el menor de los dos
      */
-    @NotNull(message = "El maxRefundable no puede ser null")
     @DecimalMin(value = "0.01", message = "El maxRefundable debe ser mayor a 0")
     private BigDecimal maxRefundable;
     
@@ -52,17 +52,17 @@ public class RefundRequest {
         this.orderId = orderId;
         this.amount = amount;
         this.maxRefundable = maxRefundable;
-        this.valid = amount.compareTo(maxRefundable) <= 0;
+        this.valid = maxRefundable == null || amount.compareTo(maxRefundable) <= 0;
     }
     
     /**
      * Valida si el monto solicitado está dentro del límite
      */
     public boolean isValidRefund() {
-        if (amount == null || maxRefundable == null) {
+        if (amount == null) {
             return false;
         }
-        return amount.compareTo(maxRefundable) <= 0;
+        return maxRefundable == null || amount.compareTo(maxRefundable) <= 0;
     }
     
     /**
@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Último cambio de un pago: su estado vigente, o solo el ID si fue eliminado
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CambioPagoResponse {
+
+    private long secuencia;
+    private String pagoId;
+    private boolean eliminado;
+    private PagoResponse pago;
+}
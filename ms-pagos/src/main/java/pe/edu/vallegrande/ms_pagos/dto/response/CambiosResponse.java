@@ -0,0 +1,21 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Cambios de pagos en orden de secuencia. Para continuar se envía {@code siguienteSecuencia}
+ * en el parámetro desde; sin {@code hayMas}, la réplica quedó al día hasta esa secuencia.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CambiosResponse {
+
+    private List<CambioPagoResponse> cambios;
+    private long siguienteSecuencia;
+    private boolean hayMas;
+}
@@ -0,0 +1,23 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de una consulta múltiple. Los mapas están indexados por la clave pedida, en el
+ * orden de la consulta; las claves sin resultado se listan aparte.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsultaPagosResponse {
+
+    private Map<String, PagoResponse> porId;
+    private Map<String, List<PagoResponse>> porOrden;
+    private List<String> idsNoEncontrados;
+    private List<String> ordenesNoEncontradas;
+}
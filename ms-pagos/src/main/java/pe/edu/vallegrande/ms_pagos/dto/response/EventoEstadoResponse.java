@@ -0,0 +1,29 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cambio de estado de un pago enviado a los suscriptores de GET /pagos/eventos
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoEstadoResponse {
+
+    private String pagoId;
+    private String orderId;
+    private String clienteId;
+    private Pago.EstadoPago estadoAnterior;
+    private Pago.EstadoPago estado;
+    private LocalDateTime fechaActualizacion;
+
+    public static EventoEstadoResponse de(Pago pago, Pago.EstadoPago estadoAnterior) {
+        return new EventoEstadoResponse(pago.getId(), pago.getOrderId(), pago.getClienteId(), estadoAnterior,
+                pago.getEstado(), pago.getFechaActualizacion());
+    }
+}
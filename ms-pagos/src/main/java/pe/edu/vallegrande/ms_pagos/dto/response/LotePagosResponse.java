@@ -0,0 +1,22 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resultado de una operación en lote sobre pagos (creación o cambio de estado), con un
+ * resultado por elemento en el orden de la solicitud
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LotePagosResponse {
+
+    private int total;
+    private int exitosos;
+    private int fallidos;
+    private List<ResultadoLoteResponse> resultados;
+}
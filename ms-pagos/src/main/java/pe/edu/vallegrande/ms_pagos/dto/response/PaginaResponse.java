@@ -0,0 +1,21 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de resultados ordenados por fecha de creación e ID. Para pedir la siguiente se
+ * envía {@code siguienteCursor} en el parámetro cursor; es null en la última página.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaResponse<T> {
+
+    private List<T> elementos;
+    private String siguienteCursor;
+    private boolean hayMas;
+}
@@ -27,4 +27,5 @@ public class PagoResponse {
     private String paymentGateway;
     private String codigoRespuesta;
     private String mensajeRespuesta;
+    private BigDecimal montoReembolsado;
 }
\ No newline at end of file
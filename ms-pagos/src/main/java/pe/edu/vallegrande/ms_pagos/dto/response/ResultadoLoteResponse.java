@@ -0,0 +1,29 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de un elemento de un lote, en la misma posición que su request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoLoteResponse {
+
+    private int indice;
+    private boolean exitoso;
+    private PagoResponse pago;
+    private String errorCode;
+    private String campo;
+    private String mensaje;
+
+    public static ResultadoLoteResponse exito(int indice, PagoResponse pago) {
+        return new ResultadoLoteResponse(indice, true, pago, null, null, null);
+    }
+
+    public static ResultadoLoteResponse error(int indice, String errorCode, String campo, String mensaje) {
+        return new ResultadoLoteResponse(indice, false, null, errorCode, campo, mensaje);
+    }
+}
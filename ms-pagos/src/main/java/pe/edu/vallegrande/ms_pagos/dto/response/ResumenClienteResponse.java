@@ -0,0 +1,24 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Totales de los pagos de un cliente, sin su historial
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenClienteResponse {
+
+    private String clienteId;
+    private long totalPagos;
+    private long pagosFallidos;
+    private Map<String, BigDecimal> montoCompletadoPorMoneda;
+    private LocalDateTime ultimoPago;
+}
@@ -0,0 +1,24 @@
+package pe.edu.vallegrande.ms_pagos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Saldo de refunds de una orden, calculado en el servidor
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaldoOrdenResponse {
+
+    private String orderId;
+    private int pagos;
+    private BigDecimal capturado;
+    private BigDecimal reembolsado;
+    private BigDecimal reembolsable;
+    // Mayor saldo de un solo pago: el máximo que admite un refund, que se aplica sobre un pago
+    private BigDecimal mayorReembolsablePorPago;
+}
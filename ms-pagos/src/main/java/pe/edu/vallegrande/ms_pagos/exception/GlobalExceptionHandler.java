@@ -39,6 +39,45 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
     
+    @ExceptionHandler(PagoConcurrencyException.class)
+    public ResponseEntity<ApiResponse<Object>> handlePagoConcurrency(PagoConcurrencyException ex) {
+        log.warn("Conflicto de concurrencia en pago: {}", ex.getMessage());
+        
+        ApiResponse<Object> response = new ApiResponse<>();
+        response.setSuccess(false);
+        response.setMessage(ex.getMessage());
+        response.setErrorCode("CONCURRENT_MODIFICATION");
+        response.setTimestamp(LocalDateTime.now());
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+    
+    @ExceptionHandler(PagoDuplicadoException.class)
+    public ResponseEntity<ApiResponse<Object>> handlePagoDuplicado(PagoDuplicadoException ex) {
+        log.warn("Pago duplicado rechazado: {}", ex.getMessage());
+        
+        ApiResponse<Object> response = new ApiResponse<>();
+        response.setSuccess(false);
+        response.setMessage(ex.getMessage());
+        response.setErrorCode("PAGO_DUPLICADO");
+        response.setTimestamp(LocalDateTime.now());
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+    
+    @ExceptionHandler(PagoCapacidadException.class)
+    public ResponseEntity<ApiResponse<Object>> handlePagoCapacidad(PagoCapacidadException ex) {
+        log.warn("Capacidad agotada: {}", ex.getMessage());
+        
+        ApiResponse<Object> response = new ApiResponse<>();
+        response.setSuccess(false);
+        response.setMessage(ex.getMessage());
+        response.setErrorCode("CAPACIDAD_AGOTADA");
+        response.setTimestamp(LocalDateTime.now());
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+    
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse<Object>> handleGenericException(Exception ex) {
         log.error("Error interno del servidor: {}", ex.getMessage(), ex);
@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.exception;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Se alcanzó un límite de capacidad de la instancia. La operación se puede reintentar más tarde.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class PagoCapacidadException extends RuntimeException {
+
+    private final int limite;
+
+    public PagoCapacidadException(String recurso, int limite) {
+        super("Se alcanzó el límite de " + limite + " " + recurso + ". Intente nuevamente más tarde");
+        this.limite = limite;
+    }
+}
@@ -0,0 +1,24 @@
+package pe.edu.vallegrande.ms_pagos.exception;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * El pago cambió entre la lectura y la escritura. La operación se puede reintentar.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class PagoConcurrencyException extends RuntimeException {
+    
+    private final String pagoId;
+    private final long versionEsperada;
+    private final long versionActual;
+    
+    public PagoConcurrencyException(String pagoId, long versionEsperada, long versionActual) {
+        super("El pago " + pagoId + " fue modificado por otra operación (versión esperada "
+                + versionEsperada + ", actual " + versionActual + "). Intente nuevamente");
+        this.pagoId = pagoId;
+        this.versionEsperada = versionEsperada;
+        this.versionActual = versionActual;
+    }
+}
@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.exception;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * La request repite a un pago creado hace poco (mismo cliente, orden, monto y método de pago)
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class PagoDuplicadoException extends RuntimeException {
+    
+    private final String pagoOriginalId;
+    
+    public PagoDuplicadoException(String pagoOriginalId) {
+        super("La solicitud duplica al pago " + pagoOriginalId + " creado recientemente");
+        this.pagoOriginalId = pagoOriginalId;
+    }
+}
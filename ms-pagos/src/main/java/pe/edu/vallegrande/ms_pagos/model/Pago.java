@@ -1,6 +1,7 @@
 package pe.edu.vallegrande.ms_pagos.model;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -8,6 +9,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
+@Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Pago {
@@ -28,6 +30,10 @@ public class Pago {
     private String paymentGateway;        // Pasarela de pago utilizada
     private String codigoRespuesta;       // Código de respuesta del procesador
     private String mensajeRespuesta;      // Mensaje de respuesta del procesador
+    private BigDecimal montoReembolsado;  // Suma de los refunds parciales; null si no tiene
+    
+    // Control de concurrencia optimista: el repositorio la incrementa en cada escritura
+    private long version;
     
     public enum EstadoPago {
         PENDING,
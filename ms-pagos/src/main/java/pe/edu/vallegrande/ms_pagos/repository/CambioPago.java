@@ -0,0 +1,14 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+/**
+ * Último cambio de un pago en la secuencia de escrituras del repositorio. {@code pago} es el
+ * estado vigente, o null si el cambio fue su eliminación.
+ */
+public record CambioPago(long secuencia, String id, Pago pago) {
+
+    public boolean eliminado() {
+        return pago == null;
+    }
+}
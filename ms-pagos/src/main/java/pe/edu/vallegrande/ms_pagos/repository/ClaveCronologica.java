@@ -0,0 +1,66 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Posición de un pago en el orden por fecha de creación e ID, que es el orden de la
+ * paginación. La fecha va en nanosegundos desde epoch (UTC); un pago sin fecha ordena primero
+ * y las fechas fuera del rango de un long quedan en los extremos.
+ *
+ * Se expone a los clientes como cursor opaco con {@link #codificar()}.
+ */
+public record ClaveCronologica(long fechaCreacion, String id) implements Comparable<ClaveCronologica> {
+
+    private static final long NANOS_POR_SEGUNDO = 1_000_000_000L;
+
+    public static ClaveCronologica de(Pago pago) {
+        return new ClaveCronologica(nanos(pago.getFechaCreacion()), pago.getId());
+    }
+
+    /**
+     * Cursor en base64 URL, sin relleno
+     */
+    public String codificar() {
+        byte[] texto = (fechaCreacion + ":" + id).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto);
+    }
+
+    /**
+     * @throws IllegalArgumentException si el cursor no fue generado por {@link #codificar()}
+     */
+    public static ClaveCronologica decodificar(String cursor) {
+        String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separador = texto.indexOf(':');
+        if (separador <= 0) {
+            throw new IllegalArgumentException("Cursor sin separador");
+        }
+        return new ClaveCronologica(Long.parseLong(texto.substring(0, separador)), texto.substring(separador + 1));
+    }
+
+    @Override
+    public int compareTo(ClaveCronologica otra) {
+        int porFecha = Long.compare(fechaCreacion, otra.fechaCreacion);
+        return porFecha != 0 ? porFecha : id.compareTo(otra.id);
+    }
+
+    /**
+     * Nanosegundos desde epoch; Long.MIN_VALUE sin fecha
+     */
+    static long nanos(LocalDateTime fecha) {
+        if (fecha == null) {
+            return Long.MIN_VALUE;
+        }
+        long segundos = fecha.toEpochSecond(ZoneOffset.UTC);
+        try {
+            return Math.addExact(Math.multiplyExact(segundos, NANOS_POR_SEGUNDO), fecha.getNano());
+        } catch (ArithmeticException e) {
+            // Fuera de 1677-2262; Long.MIN_VALUE queda reservado para los pagos sin fecha
+            return segundos < 0 ? Long.MIN_VALUE + 1 : Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Diccionario de textos de baja cardinalidad (moneda, método de pago, pasarela, códigos y
+ * mensajes del procesador). Cada texto distinto se guarda una sola vez y los pagos solo llevan
+ * su código de 16 bits. Es acotado y nunca libera códigos: cuando se llena, o el texto es
+ * largo, se devuelve {@link #LITERAL} y el llamador guarda el texto tal cual.
+ */
+final class DiccionarioTextos {
+
+    static final char NULO = 0;
+    static final char LITERAL = Character.MAX_VALUE;
+
+    private static final int CAPACIDAD = LITERAL - 1;
+    private static final int LONGITUD_MAXIMA = 128;
+
+    private final Map<String, Character> codigos = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> textos = new AtomicReferenceArray<>(CAPACIDAD + 1);
+    private final AtomicInteger siguiente = new AtomicInteger(1);
+
+    /**
+     * Código del texto, registrándolo si es nuevo
+     */
+    char codificar(String texto) {
+        if (texto == null) {
+            return NULO;
+        }
+        Character codigo = codigos.get(texto);
+        if (codigo != null) {
+            return codigo;
+        }
+        if (texto.length() > LONGITUD_MAXIMA || siguiente.get() > CAPACIDAD) {
+            return LITERAL;
+        }
+        codigo = codigos.computeIfAbsent(texto, nuevo -> {
+            int asignado = siguiente.getAndIncrement();
+            if (asignado > CAPACIDAD) {
+                return null;
+            }
+            // El texto se publica antes que el código, así que nadie decodifica un código sin texto
+            textos.set(asignado, nuevo);
+            return (char) asignado;
+        });
+        return codigo != null ? codigo : LITERAL;
+    }
+
+    /**
+     * Como {@link #codificar(String)}, pero un mensaje con cifras (montos, límites) es una
+     * plantilla con un valor distinto por pago: se devuelve LITERAL sin registrarlo, para que
+     * no agote los códigos del resto de los textos
+     */
+    char codificarMensaje(String texto) {
+        if (texto != null && tieneCifras(texto)) {
+            return LITERAL;
+        }
+        return codificar(texto);
+    }
+
+    private static boolean tieneCifras(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (Character.isDigit(texto.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Texto de un código devuelto por {@link #codificar(String)}, distinto de LITERAL
+     */
+    String decodificar(char codigo) {
+        return codigo == NULO ? null : textos.get(codigo);
+    }
+
+    int tamano() {
+        return Math.min(siguiente.get(), CAPACIDAD + 1) - 1;
+    }
+}
@@ -0,0 +1,24 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import java.util.function.BiFunction;
+
+/**
+ * Índice primario ID -> valor del repositorio. Las implementaciones son seguras para hilos y
+ * ejecutan {@link #compute} de forma atómica por ID, como ConcurrentHashMap.compute. Se elige
+ * con {@link MotorIndice}. La iteración es débilmente consistente.
+ */
+public interface IndicePrimario<V> extends Iterable<V> {
+
+    V get(String id);
+
+    boolean contiene(String id);
+
+    /**
+     * Aplica la función al valor actual (o null) y guarda el resultado; null elimina el ID
+     *
+     * @return el nuevo valor
+     */
+    V compute(String id, BiFunction<String, ? super V, ? extends V> funcion);
+
+    int tamano();
+}
@@ -0,0 +1,342 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+
+/**
+ * Índice primario para IDs UUID en texto canónico (minúsculas, como UUID.toString). Cada ID
+ * se interpreta como dos long y se guarda en una tabla de direccionamiento abierto con sondeo
+ * lineal: las claves van en un long[] y los valores en un Object[] paralelo, sin nodos ni
+ * Strings por entrada.
+ *
+ * La tabla está dividida en segmentos, cada uno con su StampedLock. Las escrituras toman el
+ * lock exclusivo del segmento; las lecturas son optimistas y solo toman el lock compartido si
+ * hubo una escritura concurrente, así que get/contiene no asignan memoria. Las bajas usan
+ * desplazamiento hacia atrás en lugar de marcas de borrado. Los IDs que no son UUID canónicos
+ * van a un ConcurrentHashMap aparte.
+ */
+final class IndicePrimarioBinario<V> implements IndicePrimario<V> {
+
+    private static final int BITS_SEGMENTOS = 6;
+    private static final int CAPACIDAD_INICIAL = 16;
+    private static final byte[] DIGITOS_HEX = tablaDigitosHex();
+
+    private final Segmento[] segmentos = new Segmento[1 << BITS_SEGMENTOS];
+    private final Map<String, V> otros = new ConcurrentHashMap<>();
+
+    IndicePrimarioBinario() {
+        for (int i = 0; i < segmentos.length; i++) {
+            segmentos[i] = new Segmento();
+        }
+    }
+
+    @Override
+    public V get(String id) {
+        if (!esUuidCanonico(id)) {
+            return otros.get(id);
+        }
+        long alto = altos(id);
+        long bajo = bajos(id);
+        long hash = mezclar(alto, bajo);
+        return valor(segmento(hash).leer(alto, bajo, hash));
+    }
+
+    @Override
+    public boolean contiene(String id) {
+        return get(id) != null;
+    }
+
+    @Override
+    public V compute(String id, BiFunction<String, ? super V, ? extends V> funcion) {
+        if (!esUuidCanonico(id)) {
+            return otros.compute(id, funcion);
+        }
+        long alto = altos(id);
+        long bajo = bajos(id);
+        long hash = mezclar(alto, bajo);
+        return segmento(hash).compute(id, alto, bajo, hash, funcion);
+    }
+
+    @Override
+    public int tamano() {
+        int total = otros.size();
+        for (Segmento segmento : segmentos) {
+            total += segmento.tamano;
+        }
+        return total;
+    }
+
+    /**
+     * Recorre segmento por segmento; cada uno se copia bajo su lock compartido
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<>() {
+            private int siguienteSegmento;
+            private Iterator<V> actual = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!actual.hasNext() && siguienteSegmento <= segmentos.length) {
+                    actual = siguienteSegmento < segmentos.length
+                            ? IndicePrimarioBinario.this.<V>copiar(segmentos[siguienteSegmento]).iterator()
+                            : otros.values().iterator();
+                    siguienteSegmento++;
+                }
+                return actual.hasNext();
+            }
+
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return actual.next();
+            }
+        };
+    }
+
+    private Segmento segmento(long hash) {
+        return segmentos[(int) (hash >>> (Long.SIZE - BITS_SEGMENTOS))];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V valor(Object valor) {
+        return (V) valor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> copiar(Segmento segmento) {
+        return (List<T>) segmento.copiarValores();
+    }
+
+    /**
+     * Una tabla del segmento. Claves y valores se reemplazan juntos al crecer, así una
+     * lectura optimista nunca ve arreglos de tamaños distintos.
+     */
+    private static final class Tabla {
+        final long[] claves;
+        final Object[] valores;
+
+        Tabla(int capacidad) {
+            claves = new long[capacidad * 2];
+            valores = new Object[capacidad];
+        }
+    }
+
+    private static final class Segmento {
+        private final StampedLock lock = new StampedLock();
+        private Tabla tabla = new Tabla(CAPACIDAD_INICIAL);
+        private volatile int tamano;
+
+        Object leer(long alto, long bajo, long hash) {
+            long sello = lock.tryOptimisticRead();
+            Object valor = buscar(tabla, alto, bajo, hash);
+            if (!lock.validate(sello)) {
+                sello = lock.readLock();
+                try {
+                    valor = buscar(tabla, alto, bajo, hash);
+                } finally {
+                    lock.unlockRead(sello);
+                }
+            }
+            return valor;
+        }
+
+        <V> V compute(String id, long alto, long bajo, long hash, BiFunction<String, ? super V, ? extends V> funcion) {
+            long sello = lock.writeLock();
+            try {
+                Tabla actual = tabla;
+                int posicion = posicion(actual, alto, bajo, hash);
+                V anterior = valor(actual.valores[posicion]);
+                V nuevo = funcion.apply(id, anterior);
+                if (nuevo == null) {
+                    if (anterior != null) {
+                        eliminar(actual, posicion);
+                        tamano--;
+                    }
+                    return null;
+                }
+                if (anterior == null) {
+                    if ((tamano + 1) * 4L > actual.valores.length * 3L) {
+                        // Factor de carga máximo 0.75
+                        actual = crecer(actual);
+                        posicion = posicion(actual, alto, bajo, hash);
+                    }
+                    actual.claves[posicion * 2] = alto;
+                    actual.claves[posicion * 2 + 1] = bajo;
+                    tamano++;
+                }
+                actual.valores[posicion] = nuevo;
+                return nuevo;
+            } finally {
+                lock.unlockWrite(sello);
+            }
+        }
+
+        List<Object> copiarValores() {
+            long sello = lock.readLock();
+            try {
+                List<Object> copia = new ArrayList<>(tamano);
+                for (Object valor : tabla.valores) {
+                    if (valor != null) {
+                        copia.add(valor);
+                    }
+                }
+                return copia;
+            } finally {
+                lock.unlockRead(sello);
+            }
+        }
+
+        /**
+         * Valor de la clave, o null. Tolera leer una tabla en modificación: el resultado se
+         * descarta si el sello no valida, y el sondeo está acotado por la capacidad.
+         */
+        private static Object buscar(Tabla tabla, long alto, long bajo, long hash) {
+            Object[] valores = tabla.valores;
+            long[] claves = tabla.claves;
+            int mascara = valores.length - 1;
+            int i = (int) hash & mascara;
+            for (int sondeos = 0; sondeos < valores.length; sondeos++) {
+                Object valor = valores[i];
+                if (valor == null) {
+                    return null;
+                }
+                if (claves[i * 2] == alto && claves[i * 2 + 1] == bajo) {
+                    return valor;
+                }
+                i = (i + 1) & mascara;
+            }
+            return null;
+        }
+
+        /**
+         * Posición de la clave o del hueco libre donde iría. Se invoca con el lock exclusivo.
+         */
+        private static int posicion(Tabla tabla, long alto, long bajo, long hash) {
+            int mascara = tabla.valores.length - 1;
+            int i = (int) hash & mascara;
+            while (tabla.valores[i] != null
+                    && (tabla.claves[i * 2] != alto || tabla.claves[i * 2 + 1] != bajo)) {
+                i = (i + 1) & mascara;
+            }
+            return i;
+        }
+
+        /**
+         * Libera la posición y adelanta las entradas siguientes del mismo grupo que quedarían
+         * inalcanzables desde su posición ideal
+         */
+        private static void eliminar(Tabla tabla, int libre) {
+            int mascara = tabla.valores.length - 1;
+            tabla.valores[libre] = null;
+            int i = libre;
+            while (true) {
+                i = (i + 1) & mascara;
+                if (tabla.valores[i] == null) {
+                    return;
+                }
+                int ideal = (int) mezclar(tabla.claves[i * 2], tabla.claves[i * 2 + 1]) & mascara;
+                // Se mueve si su posición ideal no está en el tramo cíclico (libre, i]
+                boolean alcanzable = libre <= i ? (ideal > libre && ideal <= i) : (ideal > libre || ideal <= i);
+                if (!alcanzable) {
+                    tabla.claves[libre * 2] = tabla.claves[i * 2];
+                    tabla.claves[libre * 2 + 1] = tabla.claves[i * 2 + 1];
+                    tabla.valores[libre] = tabla.valores[i];
+                    tabla.valores[i] = null;
+                    libre = i;
+                }
+            }
+        }
+
+        private Tabla crecer(Tabla anterior) {
+            Tabla nueva = new Tabla(anterior.valores.length * 2);
+            for (int i = 0; i < anterior.valores.length; i++) {
+                if (anterior.valores[i] != null) {
+                    long alto = anterior.claves[i * 2];
+                    long bajo = anterior.claves[i * 2 + 1];
+                    int posicion = posicion(nueva, alto, bajo, mezclar(alto, bajo));
+                    nueva.claves[posicion * 2] = alto;
+                    nueva.claves[posicion * 2 + 1] = bajo;
+                    nueva.valores[posicion] = anterior.valores[i];
+                }
+            }
+            tabla = nueva;
+            return nueva;
+        }
+    }
+
+    /**
+     * Mezcla de bits de los dos long (finalizador de MurmurHash3); los bits altos eligen el
+     * segmento y los bajos la posición
+     */
+    static long mezclar(long alto, long bajo) {
+        long h = alto * 0x9E3779B97F4A7C15L ^ bajo;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * true si el texto es un UUID de 36 caracteres con guiones y dígitos hexadecimales en
+     * minúsculas. Solo esa forma es biunívoca con los dos long.
+     */
+    static boolean esUuidCanonico(String id) {
+        if (id == null || id.length() != 36
+                || id.charAt(8) != '-' || id.charAt(13) != '-' || id.charAt(18) != '-' || id.charAt(23) != '-') {
+            return false;
+        }
+        // Un carácter no válido vale -1 y deja el acumulado en negativo
+        int digitos = digito(id.charAt(0));
+        for (int i = 1; i < 36; i++) {
+            if (i != 8 && i != 13 && i != 18 && i != 23) {
+                digitos |= digito(id.charAt(i));
+            }
+        }
+        return digitos >= 0;
+    }
+
+    private static long altos(String id) {
+        return (hex(id, 0, 8) << 32) | (hex(id, 9, 13) << 16) | hex(id, 14, 18);
+    }
+
+    private static long bajos(String id) {
+        return (hex(id, 19, 23) << 48) | hex(id, 24, 36);
+    }
+
+    private static long hex(String id, int desde, int hasta) {
+        long valor = 0;
+        for (int i = desde; i < hasta; i++) {
+            valor = (valor << 4) | digito(id.charAt(i));
+        }
+        return valor;
+    }
+
+    private static int digito(char c) {
+        return c < DIGITOS_HEX.length ? DIGITOS_HEX[c] : -1;
+    }
+
+    private static byte[] tablaDigitosHex() {
+        byte[] tabla = new byte[128];
+        Arrays.fill(tabla, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            tabla['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            tabla['a' + i] = (byte) (10 + i);
+        }
+        return tabla;
+    }
+}
@@ -0,0 +1,39 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Índice primario sobre un ConcurrentHashMap
+ */
+final class IndicePrimarioHash<V> implements IndicePrimario<V> {
+
+    private final Map<String, V> valores = new ConcurrentHashMap<>();
+
+    @Override
+    public V get(String id) {
+        return valores.get(id);
+    }
+
+    @Override
+    public boolean contiene(String id) {
+        return valores.containsKey(id);
+    }
+
+    @Override
+    public V compute(String id, BiFunction<String, ? super V, ? extends V> funcion) {
+        return valores.compute(id, funcion);
+    }
+
+    @Override
+    public int tamano() {
+        return valores.size();
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return valores.values().iterator();
+    }
+}
@@ -0,0 +1,98 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Vista de solo lectura del repositorio de pagos en un punto en el tiempo (una secuencia de
+ * escritura). Se recorre sobre el índice vivo, sin copiarlo: para cada pago se toma la versión
+ * vigente en esa secuencia, así que las escrituras concurrentes no alteran lo que se ve.
+ *
+ * Mientras está abierta retiene las versiones anteriores que necesita; debe cerrarse, por
+ * ejemplo con try-with-resources.
+ */
+public final class InstantaneaPagos implements Iterable<Pago>, AutoCloseable {
+
+    // Provisional mientras se abre: la confirmada al registrarse, menor o igual a la definitiva
+    private volatile long secuencia;
+    private final Iterable<PagoCompacto> vigentes;
+    private final DiccionarioTextos diccionario;
+    private final VersionesPagos versiones;
+
+    private volatile boolean cerrada;
+
+    InstantaneaPagos(long secuencia, Iterable<PagoCompacto> vigentes, DiccionarioTextos diccionario,
+                     VersionesPagos versiones) {
+        this.secuencia = secuencia;
+        this.vigentes = vigentes;
+        this.diccionario = diccionario;
+        this.versiones = versiones;
+    }
+
+    /**
+     * Secuencia de la última escritura incluida
+     */
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    void fijarSecuencia(long secuencia) {
+        this.secuencia = secuencia;
+    }
+
+    /**
+     * Recorre los pagos de la instantánea; cada uno se materializa como un Pago nuevo al pedirlo
+     */
+    @Override
+    public Iterator<Pago> iterator() {
+        return recorrer(pago -> pago.aPago(diccionario));
+    }
+
+    /**
+     * Recorre los pagos de la instantánea con la secuencia de su último cambio, para el snapshot
+     */
+    Iterable<CambioPago> cambios() {
+        return () -> recorrer(pago -> new CambioPago(pago.getSecuencia(), pago.getId(), pago.aPago(diccionario)));
+    }
+
+    private <T> Iterator<T> recorrer(Function<PagoCompacto, T> materializar) {
+        if (cerrada) {
+            throw new IllegalStateException("La instantánea de pagos ya fue cerrada");
+        }
+        Iterator<PagoCompacto> cabezas = vigentes.iterator();
+        long hasta = secuencia;
+        return new Iterator<>() {
+            private PagoCompacto siguiente;
+
+            @Override
+            public boolean hasNext() {
+                while (siguiente == null && cabezas.hasNext()) {
+                    siguiente = VersionesPagos.visible(cabezas.next(), hasta);
+                }
+                return siguiente != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (cerrada) {
+                    throw new IllegalStateException("La instantánea de pagos ya fue cerrada");
+                }
+                PagoCompacto pago = siguiente;
+                siguiente = null;
+                return materializar.apply(pago);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        cerrada = true;
+        versiones.cerrar(this);
+    }
+}
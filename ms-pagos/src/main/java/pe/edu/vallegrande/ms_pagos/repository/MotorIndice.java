@@ -0,0 +1,17 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+/**
+ * Implementaciones disponibles del índice primario (propiedad pagos.indice.motor)
+ */
+public enum MotorIndice {
+
+    /** ConcurrentHashMap con claves String */
+    HASH,
+
+    /** Tabla de direccionamiento abierto con los UUID como dos long; otros IDs van a un ConcurrentHashMap */
+    BINARIO;
+
+    public <V> IndicePrimario<V> crear() {
+        return this == BINARIO ? new IndicePrimarioBinario<>() : new IndicePrimarioHash<>();
+    }
+}
@@ -0,0 +1,144 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Codificación binaria compacta de un Pago, usada por el journal y los snapshots.
+ * Los campos se escriben siempre en el mismo orden; los nulos se marcan con longitud -1.
+ */
+final class PagoCodec {
+
+    private static final Pago.EstadoPago[] ESTADOS = Pago.EstadoPago.values();
+
+    private PagoCodec() {
+    }
+
+    /**
+     * Escribe el pago en el buffer. Lanza BufferOverflowException si no hay espacio suficiente.
+     */
+    static void escribir(ByteBuffer buffer, Pago pago) {
+        escribirTexto(buffer, pago.getId());
+        escribirTexto(buffer, pago.getOrderId());
+        escribirMonto(buffer, pago.getMonto());
+        buffer.put(pago.getEstado() != null ? (byte) pago.getEstado().ordinal() : -1);
+        escribirFecha(buffer, pago.getFechaCreacion());
+        escribirFecha(buffer, pago.getFechaActualizacion());
+        escribirTexto(buffer, pago.getMetodoPago());
+        escribirTexto(buffer, pago.getMoneda());
+        escribirTexto(buffer, pago.getDescripcion());
+        escribirTexto(buffer, pago.getClienteId());
+        escribirTexto(buffer, pago.getTransactionId());
+        escribirTexto(buffer, pago.getPaymentGateway());
+        escribirTexto(buffer, pago.getCodigoRespuesta());
+        escribirTexto(buffer, pago.getMensajeRespuesta());
+        buffer.putLong(pago.getVersion());
+        escribirMonto(buffer, pago.getMontoReembolsado());
+    }
+
+    /**
+     * Lee un pago escrito con {@link #escribir(ByteBuffer, Pago)}. El buffer debe terminar
+     * donde termina el registro.
+     */
+    static Pago leer(ByteBuffer buffer) {
+        Pago pago = new Pago();
+        pago.setId(leerTexto(buffer));
+        pago.setOrderId(leerTexto(buffer));
+        pago.setMonto(leerMonto(buffer));
+        byte estado = buffer.get();
+        pago.setEstado(estado >= 0 ? ESTADOS[estado] : null);
+        pago.setFechaCreacion(leerFecha(buffer));
+        pago.setFechaActualizacion(leerFecha(buffer));
+        pago.setMetodoPago(leerTexto(buffer));
+        pago.setMoneda(leerTexto(buffer));
+        pago.setDescripcion(leerTexto(buffer));
+        pago.setClienteId(leerTexto(buffer));
+        pago.setTransactionId(leerTexto(buffer));
+        pago.setPaymentGateway(leerTexto(buffer));
+        pago.setCodigoRespuesta(leerTexto(buffer));
+        pago.setMensajeRespuesta(leerTexto(buffer));
+        // Los registros anteriores al versionado terminan aquí y quedan con versión 0
+        if (buffer.remaining() >= Long.BYTES) {
+            pago.setVersion(buffer.getLong());
+        }
+        // Y los anteriores a los refunds parciales, sin monto reembolsado
+        if (buffer.hasRemaining()) {
+            pago.setMontoReembolsado(leerMonto(buffer));
+        }
+        return pago;
+    }
+
+    static void escribirTexto(ByteBuffer buffer, String texto) {
+        if (texto == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String leerTexto(ByteBuffer buffer) {
+        int longitud = buffer.getInt();
+        if (longitud < 0) {
+            return null;
+        }
+        if (longitud > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (!buffer.hasArray()) {
+            byte[] bytes = new byte[longitud];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String texto = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), longitud, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + longitud);
+        return texto;
+    }
+
+    private static void escribirMonto(ByteBuffer buffer, BigDecimal monto) {
+        if (monto == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] sinEscala = monto.unscaledValue().toByteArray();
+        buffer.putInt(sinEscala.length);
+        buffer.put(sinEscala);
+        buffer.putInt(monto.scale());
+    }
+
+    private static BigDecimal leerMonto(ByteBuffer buffer) {
+        int longitud = buffer.getInt();
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] sinEscala = new byte[longitud];
+        buffer.get(sinEscala);
+        return new BigDecimal(new BigInteger(sinEscala), buffer.getInt());
+    }
+
+    private static void escribirFecha(ByteBuffer buffer, LocalDateTime fecha) {
+        if (fecha == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        buffer.put((byte) 1);
+        buffer.putLong(fecha.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(fecha.getNano());
+    }
+
+    private static LocalDateTime leerFecha(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        long segundos = buffer.getLong();
+        return LocalDateTime.ofEpochSecond(segundos, buffer.getInt(), ZoneOffset.UTC);
+    }
+}
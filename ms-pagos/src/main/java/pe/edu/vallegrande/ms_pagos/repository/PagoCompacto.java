@@ -0,0 +1,284 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Representación inmutable y compacta de un Pago dentro del repositorio.
+ *
+ * El monto se guarda como valor sin escala (unidades menores) más su escala, las fechas como
+ * nanosegundos desde epoch (UTC) y los textos de baja cardinalidad como códigos de un
+ * {@link DiccionarioTextos}. Lo que no cabe en esa forma (montos de más de 63 bits, fechas fuera
+ * del rango de epoch en nanos, textos que el diccionario no admite) va a {@link Excedentes},
+ * que en el caso normal es null. El monto reembolsado también va ahí: solo lo tienen los pagos
+ * con refunds, y sus mensajes, que llevan el monto, tampoco pasan por el diccionario. Las consultas materializan un Pago nuevo con {@link #aPago}.
+ *
+ * Cada valor lleva la secuencia global de la escritura que lo publicó y, mientras alguna
+ * {@link InstantaneaPagos} abierta pueda necesitarla, la versión anterior del mismo pago. Una
+ * baja con instantáneas abiertas se publica como lápida: una versión sin datos marcada eliminada.
+ */
+final class PagoCompacto {
+
+    private static final int SIN_MONTO = Integer.MIN_VALUE;
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+    private static final long NANOS_POR_SEGUNDO = 1_000_000_000L;
+    private static final Pago.EstadoPago[] ESTADOS = Pago.EstadoPago.values();
+
+    private final String id;
+    private final String orderId;
+    private final String clienteId;
+    private final String descripcion;
+    private final String transactionId;
+    private final Excedentes excedentes;
+    private final long montoSinEscala;
+    private final long fechaCreacion;
+    private final long fechaActualizacion;
+    private final long version;
+    private final long secuencia;
+    private final int escala;
+    private final char metodoPago;
+    private final char moneda;
+    private final char paymentGateway;
+    private final char codigoRespuesta;
+    private final char mensajeRespuesta;
+    private final byte estado;
+    private final boolean eliminado;
+
+    // Único campo mutable: solo pasa a null cuando ninguna instantánea necesita las versiones previas
+    private volatile PagoCompacto anterior;
+
+    private PagoCompacto(Pago pago, DiccionarioTextos diccionario, long secuencia) {
+        Excedentes extra = new Excedentes();
+        id = pago.getId();
+        orderId = pago.getOrderId();
+        clienteId = pago.getClienteId();
+        descripcion = pago.getDescripcion();
+        transactionId = pago.getTransactionId();
+        version = pago.getVersion();
+        this.secuencia = secuencia;
+        eliminado = false;
+        estado = pago.getEstado() != null ? (byte) pago.getEstado().ordinal() : -1;
+
+        BigDecimal monto = pago.getMonto();
+        if (monto != null && monto.unscaledValue().bitLength() < Long.SIZE && monto.scale() != SIN_MONTO) {
+            montoSinEscala = monto.unscaledValue().longValue();
+            escala = monto.scale();
+        } else {
+            montoSinEscala = 0;
+            escala = SIN_MONTO;
+            extra.monto = monto;
+        }
+
+        extra.montoReembolsado = pago.getMontoReembolsado();
+
+        fechaCreacion = aNanos(pago.getFechaCreacion());
+        if (fechaCreacion == SIN_FECHA) {
+            extra.fechaCreacion = pago.getFechaCreacion();
+        }
+        fechaActualizacion = aNanos(pago.getFechaActualizacion());
+        if (fechaActualizacion == SIN_FECHA) {
+            extra.fechaActualizacion = pago.getFechaActualizacion();
+        }
+
+        metodoPago = diccionario.codificar(pago.getMetodoPago());
+        moneda = diccionario.codificar(pago.getMoneda());
+        paymentGateway = diccionario.codificar(pago.getPaymentGateway());
+        codigoRespuesta = diccionario.codificar(pago.getCodigoRespuesta());
+        mensajeRespuesta = diccionario.codificarMensaje(pago.getMensajeRespuesta());
+        if (metodoPago == DiccionarioTextos.LITERAL || moneda == DiccionarioTextos.LITERAL
+                || paymentGateway == DiccionarioTextos.LITERAL || codigoRespuesta == DiccionarioTextos.LITERAL
+                || mensajeRespuesta == DiccionarioTextos.LITERAL) {
+            extra.textos = new String[]{
+                    literal(metodoPago, pago.getMetodoPago()),
+                    literal(moneda, pago.getMoneda()),
+                    literal(paymentGateway, pago.getPaymentGateway()),
+                    literal(codigoRespuesta, pago.getCodigoRespuesta()),
+                    literal(mensajeRespuesta, pago.getMensajeRespuesta())
+            };
+        }
+
+        excedentes = extra.vacio() ? null : extra;
+    }
+
+    private PagoCompacto(String id, long secuencia) {
+        this.id = id;
+        this.secuencia = secuencia;
+        orderId = null;
+        clienteId = null;
+        descripcion = null;
+        transactionId = null;
+        excedentes = null;
+        montoSinEscala = 0;
+        fechaCreacion = SIN_FECHA;
+        fechaActualizacion = SIN_FECHA;
+        version = 0;
+        escala = SIN_MONTO;
+        metodoPago = DiccionarioTextos.NULO;
+        moneda = DiccionarioTextos.NULO;
+        paymentGateway = DiccionarioTextos.NULO;
+        codigoRespuesta = DiccionarioTextos.NULO;
+        mensajeRespuesta = DiccionarioTextos.NULO;
+        estado = -1;
+        eliminado = true;
+    }
+
+    /**
+     * Versión que marca la baja del pago en la secuencia dada
+     */
+    static PagoCompacto lapida(String id, long secuencia) {
+        return new PagoCompacto(id, secuencia);
+    }
+
+    static PagoCompacto de(Pago pago, DiccionarioTextos diccionario) {
+        return new PagoCompacto(pago, diccionario, 0);
+    }
+
+    static PagoCompacto de(Pago pago, DiccionarioTextos diccionario, long secuencia) {
+        return new PagoCompacto(pago, diccionario, secuencia);
+    }
+
+    /**
+     * Materializa un Pago nuevo con los mismos valores con los que se guardó
+     */
+    Pago aPago(DiccionarioTextos diccionario) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setOrderId(orderId);
+        // Los valores nulos también se marcan con SIN_MONTO/SIN_FECHA, sin excedentes
+        Excedentes extra = excedentes != null ? excedentes : Excedentes.NINGUNO;
+        pago.setMonto(escala != SIN_MONTO ? BigDecimal.valueOf(montoSinEscala, escala) : extra.monto);
+        pago.setEstado(getEstado());
+        pago.setFechaCreacion(fechaCreacion != SIN_FECHA ? deNanos(fechaCreacion) : extra.fechaCreacion);
+        pago.setFechaActualizacion(fechaActualizacion != SIN_FECHA ? deNanos(fechaActualizacion) : extra.fechaActualizacion);
+        pago.setMetodoPago(texto(metodoPago, 0, diccionario));
+        pago.setMoneda(texto(moneda, 1, diccionario));
+        pago.setDescripcion(descripcion);
+        pago.setClienteId(clienteId);
+        pago.setTransactionId(transactionId);
+        pago.setPaymentGateway(texto(paymentGateway, 2, diccionario));
+        pago.setCodigoRespuesta(texto(codigoRespuesta, 3, diccionario));
+        pago.setMensajeRespuesta(texto(mensajeRespuesta, 4, diccionario));
+        pago.setMontoReembolsado(extra.montoReembolsado);
+        pago.setVersion(version);
+        return pago;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getOrderId() {
+        return orderId;
+    }
+
+    String getClienteId() {
+        return clienteId;
+    }
+
+    /**
+     * Lo que el pago aporta al saldo de su orden, sin materializarlo. Un pago REFUNDED cuenta
+     * como reembolsado por completo aunque no tenga monto reembolsado.
+     */
+    SaldoOrden getAporte() {
+        Pago.EstadoPago actual = getEstado();
+        BigDecimal monto = escala != SIN_MONTO ? BigDecimal.valueOf(montoSinEscala, escala)
+                : excedentes != null ? excedentes.monto : null;
+        if (monto == null || (actual != Pago.EstadoPago.COMPLETED && actual != Pago.EstadoPago.REFUNDED)) {
+            return SaldoOrden.de(id, BigDecimal.ZERO, BigDecimal.ZERO, null);
+        }
+        if (actual == Pago.EstadoPago.REFUNDED) {
+            return SaldoOrden.de(id, monto, monto, null);
+        }
+        BigDecimal reembolsado = excedentes != null && excedentes.montoReembolsado != null
+                ? excedentes.montoReembolsado : BigDecimal.ZERO;
+        return SaldoOrden.de(id, monto, reembolsado, monto.subtract(reembolsado));
+    }
+
+    /**
+     * Fecha de creación como la ordena {@link ClaveCronologica}
+     */
+    long getFechaOrden() {
+        if (fechaCreacion != SIN_FECHA) {
+            return fechaCreacion;
+        }
+        return ClaveCronologica.nanos(excedentes != null ? excedentes.fechaCreacion : null);
+    }
+
+    ClaveCronologica getClaveCronologica() {
+        return new ClaveCronologica(getFechaOrden(), id);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    Pago.EstadoPago getEstado() {
+        return estado >= 0 ? ESTADOS[estado] : null;
+    }
+
+    String getMoneda(DiccionarioTextos diccionario) {
+        return texto(moneda, 1, diccionario);
+    }
+
+    boolean isEliminado() {
+        return eliminado;
+    }
+
+    long getSecuencia() {
+        return secuencia;
+    }
+
+    PagoCompacto getAnterior() {
+        return anterior;
+    }
+
+    void setAnterior(PagoCompacto anterior) {
+        this.anterior = anterior;
+    }
+
+    private String texto(char codigo, int posicion, DiccionarioTextos diccionario) {
+        return codigo == DiccionarioTextos.LITERAL ? excedentes.textos[posicion] : diccionario.decodificar(codigo);
+    }
+
+    private static String literal(char codigo, String texto) {
+        return codigo == DiccionarioTextos.LITERAL ? texto : null;
+    }
+
+    private static long aNanos(LocalDateTime fecha) {
+        if (fecha == null) {
+            return SIN_FECHA;
+        }
+        try {
+            return Math.addExact(Math.multiplyExact(fecha.toEpochSecond(ZoneOffset.UTC), NANOS_POR_SEGUNDO), fecha.getNano());
+        } catch (ArithmeticException e) {
+            // Fuera de 1677-2262: se conserva el LocalDateTime en los excedentes
+            return SIN_FECHA;
+        }
+    }
+
+    private static LocalDateTime deNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_POR_SEGUNDO),
+                (int) Math.floorMod(nanos, NANOS_POR_SEGUNDO), ZoneOffset.UTC);
+    }
+
+    /**
+     * Valores que no entran en la forma compacta; solo existe para los pagos que los necesitan
+     */
+    private static final class Excedentes {
+        private static final Excedentes NINGUNO = new Excedentes();
+
+        private BigDecimal monto;
+        private LocalDateTime fechaCreacion;
+        private LocalDateTime fechaActualizacion;
+        private String[] textos;
+        private BigDecimal montoReembolsado;
+
+        private boolean vacio() {
+            return monto == null && fechaCreacion == null && fechaActualizacion == null && textos == null
+                    && montoReembolsado == null;
+        }
+    }
+}
@@ -0,0 +1,508 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal de escritura anticipada (append-only) del repositorio de pagos.
+ *
+ * Cada registro tiene la forma [longitud:int][crc32:int][tipo:byte][secuencia:long][payload],
+ * donde el CRC cubre tipo, secuencia y payload. Un guardado lleva el pago completo y una
+ * eliminación solo el ID, así que reproducir el journal en orden reconstruye el estado; la
+ * secuencia es la del cambio en el repositorio, para que el registro de cambios continúe igual
+ * tras un reinicio. Los registros sin secuencia (tipos 1 y 2, formato previo) se siguen
+ * leyendo y reciben una secuencia nueva al reproducirse. Al recuperar, un registro
+ * incompleto o con CRC inválido al final del archivo (escritura cortada por una caída) se
+ * descarta y el archivo se trunca en el último registro válido.
+ *
+ * El journal se escribe en segmentos numerados (ruta.1, ruta.2, ...). Un checkpoint rota a un
+ * segmento nuevo y, una vez escrito el snapshot, descarta los anteriores. Un archivo en la ruta
+ * base sin número (formato previo a los segmentos) se trata como el segmento 0.
+ */
+@Slf4j
+public class PagoJournal implements AutoCloseable {
+
+    static final byte GUARDADO = 3;
+    static final byte ELIMINACION = 4;
+    // Formato previo, sin secuencia
+    static final byte GUARDADO_SIN_SECUENCIA = 1;
+    static final byte ELIMINACION_SIN_SECUENCIA = 2;
+
+    private static final int CABECERA = Integer.BYTES * 2;
+    private static final int TAMANO_LOTE_RECUPERACION = 1024;
+    private static final int LECTURA_RECUPERACION = 8 * 1024 * 1024;
+
+    /**
+     * Cuándo se fuerza a disco lo escrito en el journal
+     */
+    public enum PoliticaFsync {
+        /** fsync en cada escritura, antes de confirmar el save */
+        SIEMPRE,
+        /** fsync agrupado cada N ms en segundo plano; se pueden perder hasta N ms ante una caída del SO */
+        GRUPAL,
+        /** sin fsync explícito, el sistema operativo decide cuándo escribir */
+        SISTEMA
+    }
+
+    /**
+     * Destino de los registros reproducidos. Los registros de un mismo ID llegan siempre en
+     * orden y desde el mismo hilo; IDs distintos pueden llegar en paralelo. La secuencia es 0
+     * en los registros del formato previo, que no la guardaban.
+     */
+    public interface DestinoRecuperacion {
+        void guardar(Pago pago, long secuencia);
+
+        void eliminar(String id, long secuencia);
+    }
+
+    private final Path ruta;
+    private final PoliticaFsync politica;
+    private final long intervaloGrupoMs;
+    private final int hilosRecuperacion;
+
+    private final ReentrantLock lockEscritura = new ReentrantLock();
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
+    private final ThreadLocal<CRC32> crcs = ThreadLocal.withInitial(CRC32::new);
+
+    private volatile FileChannel canal;
+    private long segmentoActual;
+    private volatile boolean pendienteFsync;
+    private ScheduledExecutorService fsyncGrupal;
+
+    public PagoJournal(Path ruta, PoliticaFsync politica, long intervaloGrupoMs, int hilosRecuperacion) {
+        this.ruta = ruta;
+        this.politica = politica;
+        this.intervaloGrupoMs = intervaloGrupoMs;
+        this.hilosRecuperacion = Math.max(1, hilosRecuperacion);
+    }
+
+    /**
+     * Reproduce todo el journal existente sobre el destino y deja un segmento nuevo abierto
+     * para escribir. Debe llamarse una vez, antes de cualquier escritura.
+     *
+     * @return número de registros reproducidos
+     */
+    public long iniciar(DestinoRecuperacion destino) {
+        return iniciar(destino, 0);
+    }
+
+    /**
+     * Igual que {@link #iniciar(DestinoRecuperacion)} pero solo reproduce los segmentos a partir
+     * de {@code desdeSegmento}; los anteriores ya están cubiertos por un snapshot.
+     */
+    public long iniciar(DestinoRecuperacion destino, long desdeSegmento) {
+        try {
+            if (ruta.getParent() != null) {
+                Files.createDirectories(ruta.getParent());
+            }
+            long registros = 0;
+            long ultimo = desdeSegmento - 1;
+            for (long segmento : segmentosExistentes()) {
+                ultimo = Math.max(ultimo, segmento);
+                if (segmento < desdeSegmento) {
+                    continue;
+                }
+                long inicio = System.nanoTime();
+                long reproducidos = reproducir(rutaSegmento(segmento), destino);
+                registros += reproducidos;
+                log.info("Journal {} reproducido: {} registros en {} ms", rutaSegmento(segmento), reproducidos,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+            }
+            // Siempre se escribe en un segmento nuevo, nunca a continuación de una cola truncada
+            segmentoActual = Math.max(ultimo + 1, 1);
+            canal = abrirSegmento(segmentoActual);
+            if (politica == PoliticaFsync.GRUPAL) {
+                fsyncGrupal = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread hilo = new Thread(r, "pago-journal-fsync");
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+                fsyncGrupal.scheduleWithFixedDelay(this::fsyncPendiente, intervaloGrupoMs, intervaloGrupoMs, TimeUnit.MILLISECONDS);
+            }
+            return registros;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el journal " + ruta, e);
+        }
+    }
+
+    /**
+     * Cierra el segmento actual y continúa en uno nuevo. Todo lo registrado después de esta
+     * llamada queda en el segmento devuelto o en posteriores.
+     */
+    public long rotar() {
+        lockEscritura.lock();
+        try {
+            FileChannel anterior = canal;
+            if (anterior == null) {
+                throw new IllegalStateException("El journal no fue iniciado");
+            }
+            anterior.force(false);
+            canal = abrirSegmento(segmentoActual + 1);
+            segmentoActual++;
+            anterior.close();
+            return segmentoActual;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo rotar el journal " + ruta, e);
+        } finally {
+            lockEscritura.unlock();
+        }
+    }
+
+    /**
+     * Elimina los segmentos anteriores a {@code segmento}, ya cubiertos por un snapshot
+     */
+    public void descartarSegmentosAnteriores(long segmento) {
+        try {
+            for (long existente : segmentosExistentes()) {
+                if (existente < segmento) {
+                    Files.deleteIfExists(rutaSegmento(existente));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("No se pudieron descartar segmentos del journal {}: {}", ruta, e.getMessage());
+        }
+    }
+
+    private FileChannel abrirSegmento(long segmento) throws IOException {
+        return FileChannel.open(rutaSegmento(segmento), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path rutaSegmento(long segmento) {
+        return segmento == 0 ? ruta : ruta.resolveSibling(ruta.getFileName() + "." + segmento);
+    }
+
+    /**
+     * Números de segmento presentes en disco, en orden ascendente
+     */
+    private List<Long> segmentosExistentes() throws IOException {
+        List<Long> segmentos = new ArrayList<>();
+        if (Files.exists(ruta)) {
+            segmentos.add(0L);
+        }
+        Path directorio = ruta.toAbsolutePath().getParent();
+        String prefijo = ruta.getFileName() + ".";
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            archivos.map(archivo -> archivo.getFileName().toString())
+                    .filter(nombre -> nombre.startsWith(prefijo))
+                    .map(nombre -> nombre.substring(prefijo.length()))
+                    .filter(sufijo -> !sufijo.isEmpty() && sufijo.chars().allMatch(Character::isDigit))
+                    .forEach(sufijo -> segmentos.add(Long.parseLong(sufijo)));
+        }
+        Collections.sort(segmentos);
+        return segmentos;
+    }
+
+    /**
+     * Registra el guardado de un pago con la secuencia de su cambio
+     */
+    public void registrarGuardado(Pago pago, long secuencia) {
+        escribir(codificarGuardado(pago, secuencia));
+    }
+
+    /**
+     * Registra el guardado de varios pagos, cada uno con su secuencia, con una sola escritura
+     * (y un solo fsync con la política SIEMPRE). Los registros quedan contiguos y en el orden
+     * de la lista.
+     */
+    public void registrarGuardados(List<Pago> pagos, long[] secuencias) {
+        ByteBuffer lote = ByteBuffer.allocate(Math.max(1024, pagos.size() * 256));
+        for (int i = 0; i < pagos.size(); i++) {
+            ByteBuffer registro = codificarGuardado(pagos.get(i), secuencias[i]);
+            completarCabecera(registro);
+            if (lote.remaining() < registro.remaining()) {
+                ByteBuffer mayor = ByteBuffer.allocate(Math.max(lote.capacity() * 2, lote.position() + registro.remaining()));
+                lote.flip();
+                mayor.put(lote);
+                lote = mayor;
+            }
+            lote.put(registro);
+        }
+        lote.flip();
+        anexar(lote);
+    }
+
+    private ByteBuffer codificarGuardado(Pago pago, long secuencia) {
+        ByteBuffer buffer = buffers.get();
+        while (true) {
+            try {
+                buffer.clear();
+                buffer.position(CABECERA);
+                buffer.put(GUARDADO);
+                buffer.putLong(secuencia);
+                PagoCodec.escribir(buffer, pago);
+                return buffer;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffers.set(buffer);
+            }
+        }
+    }
+
+    /**
+     * Registra la eliminación de un pago con la secuencia de su baja
+     */
+    public void registrarEliminacion(String id, long secuencia) {
+        ByteBuffer buffer = buffers.get();
+        while (true) {
+            try {
+                buffer.clear();
+                buffer.position(CABECERA);
+                buffer.put(ELIMINACION);
+                buffer.putLong(secuencia);
+                PagoCodec.escribirTexto(buffer, id);
+                break;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffers.set(buffer);
+            }
+        }
+        escribir(buffer);
+    }
+
+    /**
+     * Completa la cabecera del registro ya codificado y lo agrega al archivo
+     */
+    private void escribir(ByteBuffer buffer) {
+        completarCabecera(buffer);
+        anexar(buffer);
+    }
+
+    /**
+     * Escribe longitud y CRC del registro codificado desde la posición 0 y lo deja listo para leer
+     */
+    private void completarCabecera(ByteBuffer buffer) {
+        int longitud = buffer.position() - CABECERA;
+        CRC32 crc = crcs.get();
+        crc.reset();
+        crc.update(buffer.array(), CABECERA, longitud);
+        buffer.putInt(0, longitud);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        buffer.flip();
+    }
+
+    /**
+     * Agrega al archivo uno o más registros completos
+     */
+    private void anexar(ByteBuffer buffer) {
+        lockEscritura.lock();
+        try {
+            // Se lee con el lock tomado para no escribir en un segmento que rotar() ya cerró
+            FileChannel destino = canal;
+            if (destino == null) {
+                throw new IllegalStateException("El journal no fue iniciado");
+            }
+            while (buffer.hasRemaining()) {
+                destino.write(buffer);
+            }
+            if (politica == PoliticaFsync.SIEMPRE) {
+                destino.force(false);
+            } else {
+                pendienteFsync = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el journal " + ruta, e);
+        } finally {
+            lockEscritura.unlock();
+        }
+    }
+
+    private void fsyncPendiente() {
+        if (!pendienteFsync) {
+            return;
+        }
+        FileChannel actual = canal;
+        if (actual == null) {
+            return;
+        }
+        pendienteFsync = false;
+        try {
+            actual.force(false);
+        } catch (IOException e) {
+            pendienteFsync = true;
+            log.error("Error en el fsync agrupado del journal {}: {}", ruta, e.getMessage());
+        }
+    }
+
+    /**
+     * Lee el archivo en secuencia validando cada registro y reparte los registros entre
+     * hilos según el hash del ID, de modo que cada ID se aplica en orden.
+     */
+    private long reproducir(Path archivo, DestinoRecuperacion destino) throws IOException {
+        List<BlockingQueue<List<byte[]>>> colas = new ArrayList<>(hilosRecuperacion);
+        List<List<byte[]>> lotes = new ArrayList<>(hilosRecuperacion);
+        ExecutorService workers = Executors.newFixedThreadPool(hilosRecuperacion);
+        List<Future<?>> tareas = new ArrayList<>(hilosRecuperacion);
+        for (int i = 0; i < hilosRecuperacion; i++) {
+            BlockingQueue<List<byte[]>> cola = new ArrayBlockingQueue<>(64);
+            colas.add(cola);
+            lotes.add(new ArrayList<>(TAMANO_LOTE_RECUPERACION));
+            tareas.add(workers.submit(() -> aplicarLotes(cola, destino)));
+        }
+
+        long registros = 0;
+        long ultimoValido = 0;
+        try (FileChannel lectura = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer bloque = ByteBuffer.allocate(LECTURA_RECUPERACION);
+            CRC32 crc = new CRC32();
+            boolean corrupto = false;
+            while (!corrupto && lectura.read(bloque) > 0) {
+                bloque.flip();
+                while (bloque.remaining() >= CABECERA) {
+                    int longitud = bloque.getInt(bloque.position());
+                    if (longitud <= 0 || longitud > LECTURA_RECUPERACION - CABECERA) {
+                        corrupto = true;
+                        break;
+                    }
+                    if (bloque.remaining() < CABECERA + longitud) {
+                        break;
+                    }
+                    int crcEsperado = bloque.getInt(bloque.position() + Integer.BYTES);
+                    byte[] registro = new byte[longitud];
+                    bloque.position(bloque.position() + CABECERA);
+                    bloque.get(registro);
+                    crc.reset();
+                    crc.update(registro);
+                    if ((int) crc.getValue() != crcEsperado) {
+                        corrupto = true;
+                        break;
+                    }
+                    int particion = particion(registro);
+                    List<byte[]> lote = lotes.get(particion);
+                    lote.add(registro);
+                    if (lote.size() == TAMANO_LOTE_RECUPERACION) {
+                        publicar(colas.get(particion), lote, tareas);
+                        lotes.set(particion, new ArrayList<>(TAMANO_LOTE_RECUPERACION));
+                    }
+                    registros++;
+                    ultimoValido += CABECERA + longitud;
+                }
+                bloque.compact();
+            }
+            for (int i = 0; i < hilosRecuperacion; i++) {
+                if (!lotes.get(i).isEmpty()) {
+                    publicar(colas.get(i), lotes.get(i), tareas);
+                }
+                // Lote vacío: fin de la reproducción para ese worker
+                publicar(colas.get(i), List.of(), tareas);
+            }
+            esperar(tareas);
+            if (lectura.size() > ultimoValido) {
+                log.warn("Journal {}: se descartan {} bytes finales incompletos o corruptos",
+                        archivo, lectura.size() - ultimoValido);
+                lectura.truncate(ultimoValido);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return registros;
+    }
+
+    private static void aplicarLotes(BlockingQueue<List<byte[]>> cola, DestinoRecuperacion destino) {
+        try {
+            while (true) {
+                List<byte[]> lote = cola.take();
+                if (lote.isEmpty()) {
+                    return;
+                }
+                for (byte[] registro : lote) {
+                    ByteBuffer buffer = ByteBuffer.wrap(registro);
+                    byte tipo = buffer.get();
+                    long secuencia = conSecuencia(tipo) ? buffer.getLong() : 0;
+                    if (tipo == GUARDADO || tipo == GUARDADO_SIN_SECUENCIA) {
+                        destino.guardar(PagoCodec.leer(buffer), secuencia);
+                    } else if (tipo == ELIMINACION || tipo == ELIMINACION_SIN_SECUENCIA) {
+                        destino.eliminar(PagoCodec.leerTexto(buffer), secuencia);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Partición según los bytes del ID, que en todos los tipos de registro va primero en el
+     * payload, después de la secuencia si la hay
+     */
+    private int particion(byte[] registro) {
+        int inicio = conSecuencia(registro[0]) ? 1 + Long.BYTES : 1;
+        int longitudId = ByteBuffer.wrap(registro, inicio, Integer.BYTES).getInt();
+        int hash = 1;
+        for (int i = 0; i < longitudId; i++) {
+            hash = 31 * hash + registro[inicio + Integer.BYTES + i];
+        }
+        return Math.floorMod(hash, hilosRecuperacion);
+    }
+
+    private static boolean conSecuencia(byte tipo) {
+        return tipo == GUARDADO || tipo == ELIMINACION;
+    }
+
+    private static void publicar(BlockingQueue<List<byte[]>> cola, List<byte[]> lote, List<Future<?>> tareas) {
+        // Si un worker falla deja de consumir: se propaga su error en lugar de bloquear para siempre
+        try {
+            while (!cola.offer(lote, 100, TimeUnit.MILLISECONDS)) {
+                for (Future<?> tarea : tareas) {
+                    if (tarea.isDone()) {
+                        esperar(List.of(tarea));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Recuperación del journal interrumpida", e);
+        }
+    }
+
+    private static void esperar(List<Future<?>> tareas) {
+        for (Future<?> tarea : tareas) {
+            try {
+                tarea.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Recuperación del journal interrumpida", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error al reproducir el journal", e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (fsyncGrupal != null) {
+            fsyncGrupal.shutdown();
+        }
+        FileChannel actual = canal;
+        if (actual == null) {
+            return;
+        }
+        lockEscritura.lock();
+        try {
+            if (politica != PoliticaFsync.SISTEMA) {
+                actual.force(false);
+            }
+            actual.close();
+        } catch (IOException e) {
+            log.error("Error al cerrar el journal {}: {}", ruta, e.getMessage());
+        } finally {
+            canal = null;
+            lockEscritura.unlock();
+        }
+    }
+}
@@ -1,101 +1,777 @@
 package pe.edu.vallegrande.ms_pagos.repository;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import pe.edu.vallegrande.ms_pagos.exception.PagoConcurrencyException;
+import pe.edu.vallegrande.ms_pagos.exception.PagoNotFoundException;
 import pe.edu.vallegrande.ms_pagos.model.Pago;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 @Repository
 public class PagoRepository {
-    
-    private final Map<String, Pago> pagos = new ConcurrentHashMap<>();
-    
+
+    // Los pagos se guardan en forma compacta e inmutable; cada consulta materializa un Pago nuevo.
+    // Cada cambio reemplaza el valor completo dentro del compute del ID, así que las lecturas no
+    // toman locks y ven la versión anterior o la nueva, nunca una a medias.
+    // El índice primario es un ConcurrentHashMap o la tabla binaria según pagos.indice.motor.
+    private final IndicePrimario<PagoCompacto> pagos;
+    private final DiccionarioTextos diccionario = new DiccionarioTextos();
+
+    // Secuencia de escrituras y versiones retenidas para las instantáneas abiertas. Con
+    // instantáneas abiertas el índice puede contener lápidas, que las consultas tratan como ausentes.
+    private final VersionesPagos versiones = new VersionesPagos(this::quitarLapida);
+
+    // Índices secundarios: clave -> pagos ordenados por fecha de creación e ID. Se mantienen
+    // dentro del compute del mapa principal, por lo que las escrituras sobre un mismo ID quedan
+    // serializadas. Las claves previas se toman del valor compacto anterior, que no cambia
+    // después de guardarse.
+    private final Map<String, NavigableSet<ClaveCronologica>> idsPorOrden = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<ClaveCronologica>> idsPorCliente = new ConcurrentHashMap<>();
+
+    // Saldo de refunds por orden (capturado y reembolsado), ajustado junto con los índices para
+    // que las decisiones de refund no recorran los pagos de la orden
+    private final Map<String, SaldoOrden> saldosPorOrden = new ConcurrentHashMap<>();
+
+    // Todos los pagos en orden de creación, para paginar por cursor en O(log n + límite)
+    private final NavigableSet<ClaveCronologica> cronologico = new ConcurrentSkipListSet<>();
+
+    // Último cambio de cada pago por secuencia de escritura, incluidas las bajas, para que las
+    // réplicas pidan solo lo modificado desde su última secuencia. Las bajas guardan su
+    // secuencia aparte porque el pago ya no está en el índice primario.
+    private final NavigableMap<Long, String> cambios = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> bajas = new ConcurrentHashMap<>();
+
+    // Índice de pertenencia por estado: un set concurrente por cada EstadoPago
+    private final Map<Pago.EstadoPago, Set<String>> idsPorEstado = crearIndiceEstados();
+
+    // Journal de escritura anticipada; null cuando el modo durable está deshabilitado
+    private final PagoJournal journal;
+
+    // Snapshots periódicos; null cuando están deshabilitados
+    private final PagoSnapshots snapshots;
+
+    public PagoRepository() {
+        this(Optional.empty());
+    }
+
+    public PagoRepository(MotorIndice motor) {
+        this(Optional.empty(), Optional.empty(), motor);
+    }
+
+    public PagoRepository(Optional<PagoJournal> journal) {
+        this(journal, Optional.empty());
+    }
+
+    public PagoRepository(Optional<PagoJournal> journal, Optional<PagoSnapshots> snapshots) {
+        this(journal, snapshots, MotorIndice.HASH);
+    }
+
+    @Autowired
+    public PagoRepository(Optional<PagoJournal> journal, Optional<PagoSnapshots> snapshots,
+                          @Value("${pagos.indice.motor:HASH}") MotorIndice motor) {
+        this.pagos = motor.crear();
+        this.journal = journal.orElse(null);
+        this.snapshots = snapshots.orElse(null);
+        if (this.snapshots != null && this.journal == null) {
+            throw new IllegalStateException("Los snapshots de pagos requieren el journal habilitado");
+        }
+    }
+
     /**
-     * Guarda un pago en el repositorio en memoria
+     * En modo durable reconstruye el mapa cargando el último snapshot y reproduciendo solo los
+     * segmentos del journal posteriores, antes de aceptar escrituras. Cada pago y cada baja
+     * recuperan la secuencia de su último cambio, así que el registro de cambios continúa
+     * donde estaba.
+     */
+    @PostConstruct
+    void recuperar() {
+        if (journal == null) {
+            return;
+        }
+        long desdeSegmento = 0;
+        if (snapshots != null) {
+            long inicio = System.nanoTime();
+            Optional<PagoSnapshots.Cargado> cargado = snapshots.cargar(cambio -> {
+                if (cambio.eliminado()) {
+                    restaurarBaja(cambio.id(), cambio.secuencia());
+                } else {
+                    guardarEnMemoria(cambio.pago(), cambio.secuencia());
+                }
+            });
+            if (cargado.isPresent()) {
+                desdeSegmento = cargado.get().segmentoJournal();
+                // La secuencia puede ser mayor que la de cualquier pago o baja guardados
+                if (cargado.get().secuencia() > 0) {
+                    versiones.restaurar(cargado.get().secuencia());
+                }
+            }
+            log.info("Snapshot de pagos cargado: {} pagos en {} ms", pagos.tamano(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        }
+        long registros = journal.iniciar(new PagoJournal.DestinoRecuperacion() {
+            @Override
+            public void guardar(Pago pago, long secuencia) {
+                guardarEnMemoria(pago, secuencia);
+            }
+
+            @Override
+            public void eliminar(String id, long secuencia) {
+                eliminarEnMemoria(id, () -> versiones.restaurar(secuencia), false);
+            }
+        }, desdeSegmento);
+        versiones.confirmarRestauradas();
+        log.info("Repositorio de pagos recuperado: {} registros de journal, {} pagos", registros, pagos.tamano());
+        if (snapshots != null) {
+            snapshots.programar(this::checkpoint);
+        }
+    }
+
+    /**
+     * Escribe un snapshot del estado al rotar el journal y descarta los segmentos que cubre.
+     * Las escrituras solo esperan al journal mientras rota, y las lecturas no se detienen.
+     *
+     * @return bytes del snapshot escrito
+     */
+    public synchronized long checkpoint() {
+        if (snapshots == null) {
+            throw new IllegalStateException("Los snapshots de pagos no están habilitados");
+        }
+        // Cada escritura toma su secuencia antes de registrarse en el journal, así que las que
+        // quedaron en el segmento viejo entran en la instantánea, que se abre después de rotar.
+        // Las del segmento nuevo que también entren se reproducen otra vez sin efecto.
+        long segmento = journal.rotar();
+        InstantaneaPagos instantanea = versiones.abrir(pagos, diccionario);
+        long inicio = System.nanoTime();
+        long bytes;
+        try (instantanea) {
+            // Las bajas posteriores a la instantánea están en el journal que se reproduce encima
+            long hasta = instantanea.getSecuencia();
+            Iterable<CambioPago> contenido = () -> Stream.concat(
+                    StreamSupport.stream(instantanea.cambios().spliterator(), false),
+                    bajas.entrySet().stream()
+                            .filter(baja -> baja.getValue() <= hasta)
+                            .map(baja -> new CambioPago(baja.getValue(), baja.getKey(), null)))
+                    .iterator();
+            bytes = snapshots.escribir(contenido, hasta, segmento);
+        }
+        journal.descartarSegmentosAnteriores(segmento);
+        log.info("Checkpoint de pagos: {} bytes en {} ms, journal desde el segmento {}", bytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), segmento);
+        return bytes;
+    }
+
+    /**
+     * Abre una vista consistente de todos los pagos en la última escritura iniciada, cuando
+     * termina de publicarse. No detiene a los escritores: abrirla solo espera a las escrituras
+     * en curso, y recorrerla no copia el repositorio; las escrituras posteriores no se ven.
+     * Debe cerrarse para liberar las versiones anteriores que retiene.
+     */
+    public InstantaneaPagos abrirInstantanea() {
+        return versiones.abrir(pagos, diccionario);
+    }
+
+    /**
+     * Guarda un pago en el repositorio en memoria sin comprobar su versión, que pasa a ser la
+     * siguiente a la guardada (1 si es nuevo)
      */
     public Pago save(Pago pago) {
         log.debug("Guardando pago con ID: {}", pago.getId());
-        pagos.put(pago.getId(), pago);
+        publicar(escritura -> pagos.compute(pago.getId(), (id, cabeza) -> {
+            PagoCompacto anterior = vigente(cabeza);
+            pago.setVersion(anterior != null ? anterior.getVersion() + 1 : 1);
+            return escribir(id, cabeza, pago, escritura);
+        }));
         return pago;
     }
-    
+
+    /**
+     * Inserta como grupo pagos nuevos, con IDs recién generados: un solo registro de journal
+     * para todos y una sola publicación. Cada pago queda con versión 1. Los pagos se hacen
+     * visibles uno a uno, en el orden de la lista.
+     *
+     * Los IDs repetidos en la lista o ya guardados se rechazan antes de escribir nada, pero la
+     * comprobación no es atómica con la inserción: como en {@link #save(Pago)}, una escritura
+     * concurrente sobre los mismos IDs queda reemplazada. Por eso los IDs no deben ser
+     * conocidos por nadie más hasta que termina.
+     *
+     * @throws IllegalArgumentException si algún ID se repite o ya existe; es un error del
+     *         generador de IDs, no del cliente
+     */
+    public List<Pago> insertarTodos(List<Pago> nuevos) {
+        log.debug("Insertando grupo de {} pagos", nuevos.size());
+        Set<String> ids = new HashSet<>(nuevos.size() * 2);
+        for (Pago pago : nuevos) {
+            if (!ids.add(pago.getId())) {
+                throw new IllegalArgumentException("El pago " + pago.getId() + " está repetido en el grupo");
+            }
+            if (vigente(pagos.get(pago.getId())) != null) {
+                throw new IllegalArgumentException("El pago " + pago.getId() + " ya existe");
+            }
+        }
+        nuevos.forEach(pago -> pago.setVersion(1));
+        publicar(escritura -> {
+            // Nadie más conoce todavía estos IDs, así que tomar sus secuencias y registrarlos
+            // antes de insertarlos mantiene el orden por ID de secuencias y journal
+            long[] secuencias = new long[nuevos.size()];
+            for (int i = 0; i < secuencias.length; i++) {
+                secuencias[i] = escritura.siguiente();
+            }
+            if (journal != null) {
+                journal.registrarGuardados(nuevos, secuencias);
+            }
+            for (int i = 0; i < secuencias.length; i++) {
+                long secuencia = secuencias[i];
+                Pago pago = nuevos.get(i);
+                pagos.compute(pago.getId(), (id, cabeza) -> actualizarIndices(id, cabeza, pago, secuencia));
+            }
+            return null;
+        });
+        return nuevos;
+    }
+
+    /**
+     * Aplica el cambio sobre una copia del pago y la guarda de forma atómica, solo si la
+     * versión guardada sigue siendo la esperada. El cambio se ejecuta dentro del compute del
+     * ID, así que no se intercala con otras escrituras del mismo pago; si lanza una
+     * excepción el pago queda como estaba.
+     *
+     * @return el pago guardado, con la versión siguiente a la esperada
+     * @throws PagoNotFoundException si el pago no existe
+     * @throws PagoConcurrencyException si otra escritura cambió la versión; se puede reintentar
+     */
+    public Pago actualizar(String id, long versionEsperada, UnaryOperator<Pago> cambio) {
+        log.debug("Actualizando pago con ID: {} desde la versión {}", id, versionEsperada);
+        Pago[] actualizado = new Pago[1];
+        publicar(escritura -> pagos.compute(id, (clave, cabeza) -> {
+            PagoCompacto actual = vigente(cabeza);
+            if (actual == null) {
+                throw new PagoNotFoundException(clave);
+            }
+            if (actual.getVersion() != versionEsperada) {
+                throw new PagoConcurrencyException(clave, versionEsperada, actual.getVersion());
+            }
+            Pago pago = cambio.apply(materializar(actual));
+            if (!clave.equals(pago.getId())) {
+                throw new IllegalArgumentException("El cambio no puede modificar el ID del pago " + clave);
+            }
+            pago.setVersion(versionEsperada + 1);
+            actualizado[0] = pago;
+            return escribir(clave, cabeza, pago, escritura);
+        }));
+        return actualizado[0];
+    }
+
     /**
      * Busca un pago por su ID
      */
     public Optional<Pago> findById(String id) {
         log.debug("Buscando pago con ID: {}", id);
-        return Optional.ofNullable(pagos.get(id));
+        return Optional.ofNullable(vigente(pagos.get(id))).map(this::materializar);
     }
-    
+
     /**
      * Busca pagos por ID de orden
      */
     public List<Pago> findByOrderId(String orderId) {
         log.debug("Buscando pagos para la orden: {}", orderId);
-        return pagos.values().stream()
-                .filter(pago -> orderId.equals(pago.getOrderId()))
-                .collect(Collectors.toList());
+        return resolver(idsPorOrden.get(orderId));
+    }
+
+    /**
+     * Saldo de refunds de la orden en O(1); vacío si la orden no tiene pagos
+     */
+    public Optional<SaldoOrden> saldoOrden(String orderId) {
+        return Optional.ofNullable(saldosPorOrden.get(orderId));
     }
-    
+
     /**
      * Busca pagos por ID de cliente
      */
     public List<Pago> findByClienteId(String clienteId) {
         log.debug("Buscando pagos para el cliente: {}", clienteId);
-        return pagos.values().stream()
-                .filter(pago -> clienteId.equals(pago.getClienteId()))
-                .collect(Collectors.toList());
+        return resolver(idsPorCliente.get(clienteId));
+    }
+
+    /**
+     * Busca varios pagos por ID en una pasada. El mapa conserva el orden de los IDs pedidos y
+     * no incluye los que no existen.
+     */
+    public Map<String, Pago> findAllById(Collection<String> ids) {
+        log.debug("Buscando {} pagos por ID", ids.size());
+        Map<String, Pago> encontrados = new LinkedHashMap<>(ids.size() * 2);
+        for (String id : ids) {
+            PagoCompacto pago = vigente(pagos.get(id));
+            if (pago != null) {
+                encontrados.putIfAbsent(id, materializar(pago));
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Busca los pagos de varias órdenes en una pasada. El mapa conserva el orden de las órdenes
+     * pedidas y no incluye las que no tienen pagos.
+     */
+    public Map<String, List<Pago>> findByOrderIds(Collection<String> orderIds) {
+        log.debug("Buscando pagos para {} órdenes", orderIds.size());
+        Map<String, List<Pago>> encontrados = new LinkedHashMap<>(orderIds.size() * 2);
+        for (String orderId : orderIds) {
+            if (!encontrados.containsKey(orderId)) {
+                List<Pago> deLaOrden = resolver(idsPorOrden.get(orderId));
+                if (!deLaOrden.isEmpty()) {
+                    encontrados.put(orderId, deLaOrden);
+                }
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Página de todos los pagos en orden de creación, a partir de la posición siguiente a
+     * {@code despuesDe} (desde el inicio si es null)
+     */
+    public List<Pago> findPagina(ClaveCronologica despuesDe, int limite) {
+        log.debug("Buscando página de {} pagos después de {}", limite, despuesDe);
+        return paginar(cronologico, despuesDe, limite);
+    }
+
+    /**
+     * Página de los pagos de una orden en orden de creación
+     */
+    public List<Pago> findPaginaPorOrden(String orderId, ClaveCronologica despuesDe, int limite) {
+        log.debug("Buscando página de {} pagos de la orden {} después de {}", limite, orderId, despuesDe);
+        return paginar(idsPorOrden.get(orderId), despuesDe, limite);
+    }
+
+    /**
+     * Página de los pagos de un cliente en orden de creación
+     */
+    public List<Pago> findPaginaPorCliente(String clienteId, ClaveCronologica despuesDe, int limite) {
+        log.debug("Buscando página de {} pagos del cliente {} después de {}", limite, clienteId, despuesDe);
+        return paginar(idsPorCliente.get(clienteId), despuesDe, limite);
+    }
+
+    /**
+     * Página de los pagos creados en [{@code desde}, {@code hasta}) en orden de creación,
+     * opcionalmente solo los de un estado o una moneda (null para no filtrar). Recorre el
+     * tramo del índice cronológico: O(log n + k) para k pagos del rango; con filtro, k cuenta
+     * también los pagos del rango que no lo cumplen.
+     */
+    public List<Pago> findPaginaPorFechas(LocalDateTime desde, LocalDateTime hasta, Pago.EstadoPago estado,
+                                          String moneda, ClaveCronologica despuesDe, int limite) {
+        log.debug("Buscando página de {} pagos entre {} y {} después de {}", limite, desde, hasta, despuesDe);
+        ClaveCronologica inicio = new ClaveCronologica(ClaveCronologica.nanos(desde), "");
+        ClaveCronologica fin = new ClaveCronologica(ClaveCronologica.nanos(hasta), "");
+        boolean incluirInicio = true;
+        if (despuesDe != null && despuesDe.compareTo(inicio) >= 0) {
+            inicio = despuesDe;
+            incluirInicio = false;
+        }
+        if (inicio.compareTo(fin) >= 0) {
+            return new ArrayList<>();
+        }
+        return paginar(cronologico.subSet(inicio, incluirInicio, fin, false), null, limite,
+                pago -> (estado == null || pago.getEstado() == estado)
+                        && (moneda == null || moneda.equals(pago.getMoneda(diccionario))));
+    }
+
+    /**
+     * Secuencia hasta la que todas las escrituras están publicadas; no espera a las que están
+     * en curso
+     */
+    public long secuenciaConfirmada() {
+        return versiones.confirmada();
+    }
+
+    /**
+     * Últimos cambios con secuencia en ({@code desde}, {@code hasta}], un cambio por pago, en
+     * orden de secuencia: O(log n + k). {@code hasta} debe venir de {@link #secuenciaConfirmada()};
+     * las entradas que una escritura posterior reemplazó se omiten, porque esa escritura
+     * aparece con su propia secuencia.
+     */
+    public List<CambioPago> findCambios(long desde, long hasta, int limite) {
+        log.debug("Buscando {} cambios entre las secuencias {} y {}", limite, desde, hasta);
+        List<CambioPago> resultado = new ArrayList<>(Math.min(limite, 64));
+        if (desde >= hasta) {
+            return resultado;
+        }
+        for (Map.Entry<Long, String> cambio : cambios.subMap(desde, false, hasta, true).entrySet()) {
+            if (resultado.size() >= limite) {
+                break;
+            }
+            long secuencia = cambio.getKey();
+            String id = cambio.getValue();
+            PagoCompacto pago = vigente(pagos.get(id));
+            if (pago != null && pago.getSecuencia() == secuencia) {
+                resultado.add(new CambioPago(secuencia, id, materializar(pago)));
+            } else if (pago == null && Objects.equals(bajas.get(id), secuencia)) {
+                resultado.add(new CambioPago(secuencia, id, null));
+            }
+        }
+        return resultado;
     }
-    
+
     /**
      * Busca pagos por estado
      */
     public List<Pago> findByEstado(Pago.EstadoPago estado) {
         log.debug("Buscando pagos con estado: {}", estado);
-        return pagos.values().stream()
-                .filter(pago -> estado.equals(pago.getEstado()))
-                .collect(Collectors.toList());
+        Set<String> ids = idsPorEstado.get(estado);
+        List<Pago> resultado = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            PagoCompacto pago = vigente(pagos.get(id));
+            if (pago != null) {
+                resultado.add(materializar(pago));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cuenta los pagos que se encuentran en un estado
+     */
+    public long countByEstado(Pago.EstadoPago estado) {
+        return idsPorEstado.get(estado).size();
     }
-    
+
     /**
-     * Obtiene todos los pagos
+     * Obtiene todos los pagos tal como estaban en un mismo punto en el tiempo
      */
     public List<Pago> findAll() {
-        log.debug("Obteniendo todos los pagos. Total: {}", pagos.size());
-        return new ArrayList<>(pagos.values());
+        log.debug("Obteniendo todos los pagos. Total: {}", count());
+        List<Pago> resultado = new ArrayList<>((int) count());
+        try (InstantaneaPagos instantanea = abrirInstantanea()) {
+            instantanea.forEach(resultado::add);
+        }
+        return resultado;
     }
-    
+
     /**
      * Elimina un pago por su ID
      */
     public boolean deleteById(String id) {
         log.debug("Eliminando pago con ID: {}", id);
-        return pagos.remove(id) != null;
+        return publicar(escritura -> eliminarEnMemoria(id, escritura::siguiente, true));
     }
-    
+
     /**
      * Verifica si existe un pago con el ID dado
      */
     public boolean existsById(String id) {
-        return pagos.containsKey(id);
+        return vigente(pagos.get(id)) != null;
     }
-    
+
     /**
      * Cuenta el total de pagos
      */
     public long count() {
-        return pagos.size();
+        return pagos.tamano() - versiones.lapidas();
     }
-    
+
     /**
      * Limpia todos los pagos (útil para testing)
      */
     public void deleteAll() {
         log.debug("Eliminando todos los pagos");
-        pagos.clear();
+        // Se elimina ID por ID para que los índices sigan consistentes con escrituras concurrentes
+        for (PagoCompacto pago : pagos) {
+            if (!pago.isEliminado()) {
+                deleteById(pago.getId());
+            }
+        }
+    }
+
+    /**
+     * Versiones anteriores y lápidas que siguen retenidas por instantáneas
+     */
+    int versionesRetenidas() {
+        return versiones.pendientes();
+    }
+
+    /**
+     * Resuelve un bucket del índice a sus pagos, en orden de creación: O(k) para k resultados
+     */
+    private List<Pago> resolver(NavigableSet<ClaveCronologica> claves) {
+        return paginar(claves, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Recorre las claves desde la siguiente a {@code despuesDe} hasta juntar {@code limite}
+     * pagos: O(log n + límite). Los pagos eliminados durante el recorrido se omiten.
+     */
+    private List<Pago> paginar(NavigableSet<ClaveCronologica> claves, ClaveCronologica despuesDe, int limite) {
+        return paginar(claves, despuesDe, limite, pago -> true);
+    }
+
+    private List<Pago> paginar(NavigableSet<ClaveCronologica> claves, ClaveCronologica despuesDe, int limite,
+                               Predicate<PagoCompacto> filtro) {
+        if (claves == null) {
+            return new ArrayList<>();
+        }
+        Set<ClaveCronologica> desde = despuesDe != null ? claves.tailSet(despuesDe, false) : claves;
+        List<Pago> resultado = new ArrayList<>(Math.min(limite, 64));
+        for (ClaveCronologica clave : desde) {
+            if (resultado.size() >= limite) {
+                break;
+            }
+            PagoCompacto pago = vigente(pagos.get(clave.id()));
+            if (pago != null && filtro.test(pago)) {
+                resultado.add(materializar(pago));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Ejecuta una escritura y confirma las secuencias que tomó, aunque falle. Sin instantáneas
+     * abiertas, al terminar libera las versiones que hayan quedado retenidas.
+     */
+    private <T> T publicar(Function<VersionesPagos.Escritura, T> cambio) {
+        VersionesPagos.Escritura escritura = versiones.escritura();
+        T resultado;
+        try {
+            resultado = cambio.apply(escritura);
+        } finally {
+            versiones.confirmar(escritura);
+        }
+        if (!versiones.hayAbiertas()) {
+            versiones.liberar();
+        }
+        return resultado;
+    }
+
+    private boolean eliminarEnMemoria(String id, LongSupplier secuencias, boolean registrar) {
+        boolean[] eliminado = {false};
+        pagos.compute(id, (clave, cabeza) -> {
+            PagoCompacto actual = vigente(cabeza);
+            if (actual == null) {
+                return cabeza;
+            }
+            long secuencia = secuencias.getAsLong();
+            if (registrar && journal != null) {
+                journal.registrarEliminacion(clave, secuencia);
+            }
+            reindexar(clave, actual, null);
+            bajas.put(clave, secuencia);
+            registrarCambio(clave, secuencia, actual.getSecuencia());
+            eliminado[0] = true;
+            if (!versiones.hayAbiertas()) {
+                return null;
+            }
+            // Las instantáneas abiertas todavía deben ver el pago
+            PagoCompacto lapida = PagoCompacto.lapida(clave, secuencia);
+            versiones.encadenar(cabeza, lapida);
+            return lapida;
+        });
+        return eliminado[0];
+    }
+
+    /**
+     * Quita del índice una lápida que ya no necesita ninguna instantánea, si sigue siendo la
+     * versión actual de su pago
+     */
+    private boolean quitarLapida(PagoCompacto lapida) {
+        boolean[] quitada = {false};
+        pagos.compute(lapida.getId(), (id, cabeza) -> {
+            if (cabeza != lapida) {
+                return cabeza;
+            }
+            quitada[0] = true;
+            return null;
+        });
+        return quitada[0];
+    }
+
+    /**
+     * La versión actual si representa un pago existente; null si no hay o es una lápida
+     */
+    private static PagoCompacto vigente(PagoCompacto cabeza) {
+        return cabeza != null && !cabeza.isEliminado() ? cabeza : null;
+    }
+
+    /**
+     * Toma la secuencia, registra el pago en el journal y lo reubica en los índices. Se invoca
+     * dentro del compute del ID; si el journal falla, nada cambia y la secuencia queda sin uso.
+     */
+    private PagoCompacto escribir(String id, PagoCompacto cabeza, Pago pago, VersionesPagos.Escritura escritura) {
+        long secuencia = escritura.siguiente();
+        if (journal != null) {
+            journal.registrarGuardado(pago, secuencia);
+        }
+        return actualizarIndices(id, cabeza, pago, secuencia);
+    }
+
+    /**
+     * Guarda un pago recuperado con la secuencia de su cambio (0 si no la tenía)
+     */
+    private void guardarEnMemoria(Pago pago, long secuencia) {
+        pagos.compute(pago.getId(), (id, cabeza) -> actualizarIndices(id, cabeza, pago, versiones.restaurar(secuencia)));
+    }
+
+    /**
+     * Restaura la baja de un pago leída del snapshot, que ya no está en el índice
+     */
+    private void restaurarBaja(String id, long secuencia) {
+        long restaurada = versiones.restaurar(secuencia);
+        bajas.put(id, restaurada);
+        cambios.put(restaurada, id);
+    }
+
+    private Pago materializar(PagoCompacto pago) {
+        return pago.aPago(diccionario);
+    }
+
+    /**
+     * Compacta el pago como versión nueva y lo reubica en los índices. Se invoca dentro del
+     * compute del ID.
+     */
+    private PagoCompacto actualizarIndices(String id, PagoCompacto cabeza, Pago pago, long secuencia) {
+        PagoCompacto nuevo = PagoCompacto.de(pago, diccionario, secuencia);
+        versiones.encadenar(cabeza, nuevo);
+        PagoCompacto previo = vigente(cabeza);
+        reindexar(id, previo, nuevo);
+        Long secuenciaPrevia = previo != null ? Long.valueOf(previo.getSecuencia()) : bajas.remove(id);
+        registrarCambio(id, nuevo.getSecuencia(), secuenciaPrevia);
+        return nuevo;
+    }
+
+    /**
+     * Deja en el registro de cambios solo la última secuencia del pago. Se invoca dentro del
+     * compute del ID; se agrega antes de quitar, como en los índices.
+     */
+    private void registrarCambio(String id, long secuencia, Long secuenciaPrevia) {
+        cambios.put(secuencia, id);
+        // Al recuperar, un registro del journal ya incluido en el snapshot se reproduce otra vez
+        if (secuenciaPrevia != null && secuenciaPrevia != secuencia) {
+            cambios.remove(secuenciaPrevia);
+        }
+    }
+
+    /**
+     * Mueve el pago solo en los índices cuya clave cambió. Se agrega antes de quitar para que
+     * una consulta concurrente nunca deje de ver un pago que sigue existiendo. Un null en
+     * previo o nuevo representa la ausencia del pago.
+     */
+    private void reindexar(String id, PagoCompacto previo, PagoCompacto nuevo) {
+        // La clave cronológica solo cambia al crear, eliminar o corregir la fecha de creación
+        boolean mismaFecha = previo != null && nuevo != null && previo.getFechaOrden() == nuevo.getFechaOrden();
+        ClaveCronologica clavePrevia = previo == null ? null : previo.getClaveCronologica();
+        ClaveCronologica claveNueva = nuevo == null ? null : mismaFecha ? clavePrevia : nuevo.getClaveCronologica();
+        if (!mismaFecha) {
+            if (claveNueva != null) {
+                cronologico.add(claveNueva);
+            }
+            if (clavePrevia != null) {
+                cronologico.remove(clavePrevia);
+            }
+        }
+        String ordenPrevia = previo != null ? previo.getOrderId() : null;
+        String ordenNueva = nuevo != null ? nuevo.getOrderId() : null;
+        if (!mismaFecha || !Objects.equals(ordenPrevia, ordenNueva)) {
+            agregar(idsPorOrden, ordenNueva, claveNueva);
+            quitar(idsPorOrden, ordenPrevia, clavePrevia);
+        }
+        actualizarSaldo(ordenPrevia, previo, ordenNueva, nuevo);
+        String clientePrevio = previo != null ? previo.getClienteId() : null;
+        String clienteNuevo = nuevo != null ? nuevo.getClienteId() : null;
+        if (!mismaFecha || !Objects.equals(clientePrevio, clienteNuevo)) {
+            agregar(idsPorCliente, clienteNuevo, claveNueva);
+            quitar(idsPorCliente, clientePrevio, clavePrevia);
+        }
+        Pago.EstadoPago estadoPrevio = previo != null ? previo.getEstado() : null;
+        Pago.EstadoPago estadoNuevo = nuevo != null ? nuevo.getEstado() : null;
+        if (estadoPrevio != estadoNuevo) {
+            if (estadoNuevo != null) {
+                idsPorEstado.get(estadoNuevo).add(id);
+            }
+            if (estadoPrevio != null) {
+                idsPorEstado.get(estadoPrevio).remove(id);
+            }
+        }
+    }
+
+    /**
+     * Reemplaza el aporte del pago en el saldo de su orden. Cada orden se ajusta dentro de un
+     * compute, así que los pagos de una misma orden escritos a la vez no pisan sus aportes.
+     */
+    private void actualizarSaldo(String ordenPrevia, PagoCompacto previo, String ordenNueva, PagoCompacto nuevo) {
+        SaldoOrden aportePrevio = ordenPrevia != null ? previo.getAporte() : null;
+        SaldoOrden aporteNuevo = ordenNueva != null ? nuevo.getAporte() : null;
+        if (ordenPrevia != null && ordenPrevia.equals(ordenNueva)) {
+            if (!aportePrevio.equals(aporteNuevo)) {
+                ajustarSaldo(ordenNueva, aporteNuevo, aportePrevio);
+            }
+            return;
+        }
+        if (aporteNuevo != null) {
+            ajustarSaldo(ordenNueva, aporteNuevo, null);
+        }
+        if (aportePrevio != null) {
+            ajustarSaldo(ordenPrevia, null, aportePrevio);
+        }
+    }
+
+    private void ajustarSaldo(String orden, SaldoOrden sumar, SaldoOrden restar) {
+        // El saldo de una orden sin pagos se elimina, como los buckets vacíos de los índices
+        saldosPorOrden.compute(orden, (k, saldo) -> {
+            SaldoOrden resultado = saldo != null ? saldo : SaldoOrden.VACIO;
+            // Se resta primero: el aporte previo y el nuevo de un pago comparten su ID
+            if (restar != null) {
+                resultado = resultado.menos(restar);
+            }
+            if (sumar != null) {
+                resultado = resultado.mas(sumar);
+            }
+            return resultado.pagos() > 0 ? resultado : null;
+        });
+    }
+
+    private static Map<Pago.EstadoPago, Set<String>> crearIndiceEstados() {
+        Map<Pago.EstadoPago, Set<String>> indice = new EnumMap<>(Pago.EstadoPago.class);
+        for (Pago.EstadoPago estado : Pago.EstadoPago.values()) {
+            indice.put(estado, ConcurrentHashMap.newKeySet());
+        }
+        // El EnumMap no se modifica tras la construcción; solo cambian los sets concurrentes
+        return Collections.unmodifiableMap(indice);
+    }
+
+    private static void agregar(Map<String, NavigableSet<ClaveCronologica>> indice, String clave,
+                                ClaveCronologica pago) {
+        if (clave == null) {
+            return;
+        }
+        indice.compute(clave, (k, claves) -> {
+            NavigableSet<ClaveCronologica> bucket = claves != null ? claves : new ConcurrentSkipListSet<>();
+            bucket.add(pago);
+            return bucket;
+        });
+    }
+
+    private static void quitar(Map<String, NavigableSet<ClaveCronologica>> indice, String clave,
+                               ClaveCronologica pago) {
+        if (clave == null) {
+            return;
+        }
+        // Los buckets vacíos se eliminan para no acumular claves de órdenes/clientes ya borrados
+        indice.computeIfPresent(clave, (k, claves) -> {
+            claves.remove(pago);
+            return claves.isEmpty() ? null : claves;
+        });
     }
-}
\ No newline at end of file
+}
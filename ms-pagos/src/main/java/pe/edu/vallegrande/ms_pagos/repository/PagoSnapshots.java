@@ -0,0 +1,251 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Snapshots binarios del repositorio de pagos para acortar el reinicio en modo durable.
+ *
+ * El archivo tiene una cabecera [magia:int][versión:int][segmentoJournal:long][secuencia:long]
+ * [registros:long] seguida de registros [longitud:int][tipo:byte][secuencia:long][payload]: un
+ * pago codificado con PagoCodec, o el ID de una baja. Cada registro lleva la secuencia del
+ * último cambio del pago y la cabecera la de la instantánea, para que el registro de cambios
+ * continúe igual tras un reinicio. Los snapshots de la versión 1, solo con pagos y sin
+ * secuencias, se siguen leyendo. Se escribe en un archivo temporal que se renombra de forma
+ * atómica al terminar, así que en disco solo hay snapshots completos. La carga lee el archivo
+ * mapeado en memoria por ventanas.
+ *
+ * El snapshot no detiene las escrituras: el repositorio lo escribe desde una instantánea
+ * abierta después de rotar el journal, así que incluye todo lo registrado antes del segmento
+ * que indica y quizá parte de ese segmento. Como cada registro del journal lleva la imagen
+ * completa del pago, reproducir encima los segmentos desde ese en adelante deja el estado
+ * correcto.
+ */
+@Slf4j
+public class PagoSnapshots implements AutoCloseable {
+
+    private static final int MAGIA = 0x50414753;
+    private static final int VERSION = 2;
+    private static final int VERSION_SIN_SECUENCIAS = 1;
+    private static final int CABECERA = Integer.BYTES * 2 + Long.BYTES * 3;
+    private static final int CABECERA_SIN_SECUENCIAS = Integer.BYTES * 2 + Long.BYTES * 2;
+    private static final byte PAGO = 1;
+    private static final byte BAJA = 2;
+    private static final int BUFFER_ESCRITURA = 4 * 1024 * 1024;
+    private static final long VENTANA_MAPEO = 1L << 30;
+
+    private final Path ruta;
+    private final long intervaloSegundos;
+    private final long ventanaMapeo;
+
+    private ScheduledExecutorService programador;
+
+    /**
+     * Snapshot cargado: segmento del journal desde el que se debe reproducir y secuencia de la
+     * instantánea (0 en la versión 1)
+     */
+    public record Cargado(long segmentoJournal, long secuencia) {
+    }
+
+    public PagoSnapshots(Path ruta, long intervaloSegundos) {
+        this(ruta, intervaloSegundos, VENTANA_MAPEO);
+    }
+
+    PagoSnapshots(Path ruta, long intervaloSegundos, long ventanaMapeo) {
+        this.ruta = ruta;
+        this.intervaloSegundos = intervaloSegundos;
+        this.ventanaMapeo = ventanaMapeo;
+    }
+
+    /**
+     * Escribe un snapshot con los últimos cambios dados (pagos y bajas) en la secuencia de la
+     * instantánea, asociado al primer segmento del journal que habrá que reproducir sobre él
+     * al recuperar.
+     *
+     * @return bytes escritos
+     */
+    public long escribir(Iterable<CambioPago> cambios, long secuencia, long segmentoJournal) {
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        try {
+            if (ruta.getParent() != null) {
+                Files.createDirectories(ruta.getParent());
+            }
+            long total = 0;
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_ESCRITURA);
+                buffer.position(CABECERA);
+                for (CambioPago cambio : cambios) {
+                    buffer = agregar(canal, buffer, cambio);
+                    total++;
+                }
+                vaciar(canal, buffer);
+                // La cabecera se completa al final, cuando ya se conoce el total
+                ByteBuffer cabecera = ByteBuffer.allocate(CABECERA)
+                        .putInt(MAGIA).putInt(VERSION).putLong(segmentoJournal).putLong(secuencia).putLong(total);
+                canal.write(cabecera.flip(), 0);
+                canal.force(true);
+            }
+            Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return Files.size(ruta);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el snapshot " + ruta, e);
+        }
+    }
+
+    /**
+     * Entrega al destino los pagos y bajas del último snapshot completo, si existe. Los de la
+     * versión 1 llegan con secuencia 0.
+     *
+     * @return segmento y secuencia del snapshot, o vacío si no hay snapshot
+     */
+    public Optional<Cargado> cargar(Consumer<CambioPago> destino) {
+        if (!Files.exists(ruta)) {
+            return Optional.empty();
+        }
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < CABECERA_SIN_SECUENCIAS) {
+                throw new IllegalStateException("Snapshot " + ruta + " incompleto");
+            }
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            canal.read(cabecera, 0);
+            cabecera.flip();
+            int version = cabecera.getInt(Integer.BYTES);
+            if (cabecera.getInt() != MAGIA || (version != VERSION && version != VERSION_SIN_SECUENCIAS)) {
+                throw new IllegalStateException("Snapshot " + ruta + " con formato desconocido");
+            }
+            boolean conSecuencias = version == VERSION;
+            if (conSecuencias && tamano < CABECERA) {
+                throw new IllegalStateException("Snapshot " + ruta + " incompleto");
+            }
+            cabecera.position(Integer.BYTES * 2);
+            long segmentoJournal = cabecera.getLong();
+            long secuencia = conSecuencias ? cabecera.getLong() : 0;
+            long esperados = cabecera.getLong();
+
+            long leidos = 0;
+            long posicion = conSecuencias ? CABECERA : CABECERA_SIN_SECUENCIAS;
+            while (posicion < tamano) {
+                MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion,
+                        Math.min(ventanaMapeo, tamano - posicion));
+                int consumidos = 0;
+                while (ventana.remaining() >= Integer.BYTES) {
+                    int longitud = ventana.getInt(ventana.position());
+                    if (ventana.remaining() - Integer.BYTES < longitud) {
+                        break;
+                    }
+                    ventana.position(ventana.position() + Integer.BYTES);
+                    ByteBuffer registro = ventana.slice().limit(longitud);
+                    destino.accept(leer(registro, conSecuencias));
+                    ventana.position(ventana.position() + longitud);
+                    consumidos = ventana.position();
+                    leidos++;
+                }
+                if (consumidos == 0) {
+                    throw new IllegalStateException("Snapshot " + ruta + " con un registro mayor que la ventana de mapeo");
+                }
+                // Se vuelve a mapear desde el inicio del primer registro que no entró completo
+                posicion += consumidos;
+            }
+            if (leidos != esperados) {
+                throw new IllegalStateException("Snapshot " + ruta + ": se esperaban " + esperados + " registros y se leyeron " + leidos);
+            }
+            return Optional.of(new Cargado(segmentoJournal, secuencia));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el snapshot " + ruta, e);
+        }
+    }
+
+    /**
+     * Ejecuta el checkpoint dado cada intervaloSegundos en un hilo propio. Sin efecto si el intervalo es 0.
+     */
+    public synchronized void programar(Runnable checkpoint) {
+        if (intervaloSegundos <= 0 || programador != null) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pago-snapshot");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint.run();
+            } catch (RuntimeException e) {
+                log.error("Error en el checkpoint del snapshot {}: {}", ruta, e.getMessage());
+            }
+        }, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+        }
+    }
+
+    private static CambioPago leer(ByteBuffer registro, boolean conSecuencias) {
+        byte tipo = conSecuencias ? registro.get() : PAGO;
+        long secuencia = conSecuencias ? registro.getLong() : 0;
+        if (tipo == BAJA) {
+            return new CambioPago(secuencia, PagoCodec.leerTexto(registro), null);
+        }
+        Pago pago = PagoCodec.leer(registro);
+        return new CambioPago(secuencia, pago.getId(), pago);
+    }
+
+    /**
+     * Agrega un registro al buffer, vaciándolo al canal si no hay espacio. Si un pago no entra en
+     * un buffer vacío se reemplaza por uno del doble de tamaño.
+     */
+    private static ByteBuffer agregar(FileChannel canal, ByteBuffer buffer, CambioPago cambio) throws IOException {
+        while (true) {
+            int inicio = buffer.position();
+            try {
+                buffer.position(inicio + Integer.BYTES);
+                buffer.put(cambio.eliminado() ? BAJA : PAGO);
+                buffer.putLong(cambio.secuencia());
+                if (cambio.eliminado()) {
+                    PagoCodec.escribirTexto(buffer, cambio.id());
+                } else {
+                    PagoCodec.escribir(buffer, cambio.pago());
+                }
+                buffer.putInt(inicio, buffer.position() - inicio - Integer.BYTES);
+                return buffer;
+            } catch (BufferOverflowException | IllegalArgumentException e) {
+                buffer.position(inicio);
+                if (inicio == 0) {
+                    buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                } else {
+                    vaciar(canal, buffer);
+                }
+            }
+        }
+    }
+
+    private static void vaciar(FileChannel canal, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+}
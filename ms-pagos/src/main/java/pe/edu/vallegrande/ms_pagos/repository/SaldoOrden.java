@@ -0,0 +1,74 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Saldo de refunds de una orden: cuántos pagos tiene, cuánto se capturó (pagos COMPLETED o
+ * REFUNDED), cuánto se reembolsó y el saldo de cada pago COMPLETED que aún tiene algo por
+ * reembolsar. El repositorio lo mantiene por orden en cada escritura, así que consultarlo no
+ * recorre los pagos.
+ */
+public record SaldoOrden(int pagos, BigDecimal capturado, BigDecimal reembolsado,
+                         Map<String, BigDecimal> reembolsablePorPago) {
+
+    static final SaldoOrden VACIO = new SaldoOrden(0, BigDecimal.ZERO, BigDecimal.ZERO, Map.of());
+
+    /**
+     * Aporte de un solo pago; {@code reembolsable} es null si el pago no admite refunds
+     */
+    static SaldoOrden de(String id, BigDecimal capturado, BigDecimal reembolsado, BigDecimal reembolsable) {
+        Map<String, BigDecimal> porPago = reembolsable != null && reembolsable.signum() > 0
+                ? Map.of(id, reembolsable) : Map.of();
+        return new SaldoOrden(1, capturado, reembolsado, porPago);
+    }
+
+    /**
+     * Lo que todavía se puede reembolsar en la orden
+     */
+    public BigDecimal reembolsable() {
+        return capturado.subtract(reembolsado);
+    }
+
+    /**
+     * Mayor saldo reembolsable de un solo pago, o cero si ninguno tiene saldo. Un refund se
+     * aplica sobre un pago, así que es lo máximo que la orden acepta en un refund.
+     */
+    public BigDecimal mayorReembolsable() {
+        return pagoMayorReembolsable().map(reembolsablePorPago::get).orElse(BigDecimal.ZERO);
+    }
+
+    /**
+     * ID del pago con mayor saldo reembolsable; recorre solo los saldos de la orden
+     */
+    public Optional<String> pagoMayorReembolsable() {
+        return reembolsablePorPago.entrySet().stream()
+                .max(Map.Entry.<String, BigDecimal>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey);
+    }
+
+    SaldoOrden mas(SaldoOrden otro) {
+        Map<String, BigDecimal> porPago = reembolsablePorPago;
+        if (!otro.reembolsablePorPago.isEmpty()) {
+            porPago = new HashMap<>(reembolsablePorPago);
+            porPago.putAll(otro.reembolsablePorPago);
+            porPago = Collections.unmodifiableMap(porPago);
+        }
+        return new SaldoOrden(pagos + otro.pagos, capturado.add(otro.capturado), reembolsado.add(otro.reembolsado),
+                porPago);
+    }
+
+    SaldoOrden menos(SaldoOrden otro) {
+        Map<String, BigDecimal> porPago = reembolsablePorPago;
+        if (!otro.reembolsablePorPago.isEmpty()) {
+            porPago = new HashMap<>(reembolsablePorPago);
+            porPago.keySet().removeAll(otro.reembolsablePorPago.keySet());
+            porPago = Collections.unmodifiableMap(porPago);
+        }
+        return new SaldoOrden(pagos - otro.pagos, capturado.subtract(otro.capturado),
+                reembolsado.subtract(otro.reembolsado), porPago);
+    }
+}
@@ -0,0 +1,261 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Control de versiones (MVCC) del repositorio de pagos.
+ *
+ * Cada escritura toma una secuencia creciente y publica una versión nueva que apunta a la
+ * anterior solo si hay instantáneas abiertas. Una instantánea en la secuencia S ve, por pago,
+ * la versión más reciente con secuencia menor o igual a S. Una baja con instantáneas abiertas
+ * deja en el índice una lápida (versión eliminada) en lugar de quitar el pago.
+ *
+ * Las versiones previas se podan al escribir el mismo pago y al cerrar cada instantánea: se
+ * corta la cadena por debajo de la versión que ve la instantánea más antigua, y las lápidas
+ * que ninguna instantánea necesita se quitan del índice.
+ *
+ * Cada escritura toma sus secuencias con una {@link Escritura} y las confirma al terminar de
+ * publicar, aunque falle. La secuencia confirmada avanza en orden: hasta ella todas las
+ * escrituras están publicadas. Una instantánea se registra antes de fijar su secuencia y
+ * espera a que se confirme, sin detener a los escritores.
+ */
+final class VersionesPagos {
+
+    // Pausa entre comprobaciones de la secuencia confirmada al abrir una instantánea
+    private static final int ESPERAS_ACTIVAS = 64;
+    private static final long PAUSA_NANOS = 20_000;
+
+    private final AtomicLong secuencia = new AtomicLong();
+    private final AtomicLong confirmada = new AtomicLong();
+    // Secuencias publicadas por encima de la confirmada, a la espera de las anteriores
+    private final Set<Long> terminadas = ConcurrentHashMap.newKeySet();
+    private final Set<InstantaneaPagos> abiertas = ConcurrentHashMap.newKeySet();
+
+    // Versiones con cadena o lápidas publicadas con instantáneas abiertas; se revisan al cerrarlas
+    private final Queue<PagoCompacto> porPodar = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger lapidas = new AtomicInteger();
+
+    // Quita la lápida del índice si sigue siendo la versión actual de su pago
+    private final Predicate<PagoCompacto> quitarLapida;
+
+    VersionesPagos(Predicate<PagoCompacto> quitarLapida) {
+        this.quitarLapida = quitarLapida;
+    }
+
+    /**
+     * Inicia una escritura; debe confirmarse con {@link #confirmar} al publicar, falle o no
+     */
+    Escritura escritura() {
+        return new Escritura();
+    }
+
+    /**
+     * Marca como publicadas las secuencias de la escritura y avanza la confirmada mientras la
+     * siguiente ya esté publicada
+     */
+    void confirmar(Escritura escritura) {
+        for (int i = 0; i < escritura.tomadas; i++) {
+            terminadas.add(escritura.secuencias[i]);
+        }
+        while (true) {
+            long actual = confirmada.get();
+            if (!terminadas.contains(actual + 1)) {
+                return;
+            }
+            if (confirmada.compareAndSet(actual, actual + 1)) {
+                terminadas.remove(actual + 1);
+            }
+        }
+    }
+
+    /**
+     * Secuencia de un cambio reproducido al recuperar: la guardada, o una nueva si es 0
+     * (registro sin secuencia). No se confirma una a una; ver {@link #confirmarRestauradas()}.
+     */
+    long restaurar(long guardada) {
+        if (guardada == 0) {
+            return secuencia.incrementAndGet();
+        }
+        secuencia.accumulateAndGet(guardada, Math::max);
+        return guardada;
+    }
+
+    /**
+     * Da por publicadas todas las secuencias restauradas; se invoca al terminar la
+     * recuperación, antes de aceptar escrituras
+     */
+    void confirmarRestauradas() {
+        confirmada.set(secuencia.get());
+    }
+
+    /**
+     * Secuencia hasta la que todas las escrituras están publicadas
+     */
+    long confirmada() {
+        return confirmada.get();
+    }
+
+    boolean hayAbiertas() {
+        return !abiertas.isEmpty();
+    }
+
+    /**
+     * Lápidas que siguen en el índice; no cuentan como pagos
+     */
+    int lapidas() {
+        return lapidas.get();
+    }
+
+    /**
+     * Enlaza la versión nueva con la anterior del mismo pago si alguna instantánea puede
+     * necesitarla. Se invoca dentro del compute del ID, antes de publicar la versión nueva.
+     */
+    void encadenar(PagoCompacto anterior, PagoCompacto nueva) {
+        if (anterior != null && anterior.isEliminado()) {
+            lapidas.decrementAndGet();
+        }
+        if (nueva.isEliminado()) {
+            lapidas.incrementAndGet();
+        }
+        if (anterior != null && !abiertas.isEmpty()) {
+            nueva.setAnterior(anterior);
+            podar(anterior, secuenciaMinima());
+        }
+        // La lápida se encola aunque la última instantánea se haya cerrado, para que alguien la quite
+        if (nueva.getAnterior() != null || nueva.isEliminado()) {
+            porPodar.add(nueva);
+        }
+    }
+
+    /**
+     * Abre una instantánea en la última secuencia tomada, una vez confirmada. Se registra
+     * antes de leerla, así que toda escritura con secuencia mayor ya la ve abierta y encadena;
+     * mientras espera retiene lo que necesita la confirmada, que es menor o igual.
+     */
+    InstantaneaPagos abrir(Iterable<PagoCompacto> vigentes, DiccionarioTextos diccionario) {
+        InstantaneaPagos instantanea = new InstantaneaPagos(confirmada.get(), vigentes, diccionario, this);
+        abiertas.add(instantanea);
+        long hasta = secuencia.get();
+        for (int intentos = 0; confirmada.get() < hasta; intentos++) {
+            if (intentos < ESPERAS_ACTIVAS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PAUSA_NANOS);
+            }
+        }
+        instantanea.fijarSecuencia(hasta);
+        return instantanea;
+    }
+
+    /**
+     * Quita la instantánea y libera las versiones que ya no necesita ninguna otra
+     */
+    void cerrar(InstantaneaPagos instantanea) {
+        if (abiertas.remove(instantanea)) {
+            liberar();
+        }
+    }
+
+    /**
+     * Poda las versiones pendientes según las instantáneas que siguen abiertas. No debe
+     * invocarse dentro de un compute del índice.
+     */
+    void liberar() {
+        if (porPodar.isEmpty()) {
+            return;
+        }
+        // Una instantánea que se abra durante la poda no está en la mínima, pero ve al menos la
+        // secuencia tomada antes de calcularla: no se poda ni se quita nada posterior a esa
+        long tope = secuencia.get();
+        long minima = Math.min(tope, secuenciaMinima());
+        // Se revisa cada pendiente una vez; los que siguen con cadena vuelven a la cola
+        for (int pendientes = porPodar.size(); pendientes > 0; pendientes--) {
+            PagoCompacto version = porPodar.poll();
+            if (version == null) {
+                break;
+            }
+            podar(version, minima);
+            if (version.isEliminado() && version.getSecuencia() <= minima) {
+                // Todas las instantáneas abiertas ya ven la baja
+                if (quitarLapida.test(version)) {
+                    lapidas.decrementAndGet();
+                }
+            } else if (version.getAnterior() != null || version.isEliminado()) {
+                porPodar.add(version);
+            }
+        }
+    }
+
+    /**
+     * Versión de la cadena visible en la secuencia dada, o null si el pago no existía o estaba eliminado
+     */
+    static PagoCompacto visible(PagoCompacto cabeza, long secuencia) {
+        PagoCompacto version = cabeza;
+        while (version != null && version.getSecuencia() > secuencia) {
+            version = version.getAnterior();
+        }
+        return version != null && !version.isEliminado() ? version : null;
+    }
+
+    int pendientes() {
+        return porPodar.size();
+    }
+
+    /**
+     * Corta la cadena por debajo de la primera versión con secuencia menor o igual a la mínima:
+     * las anteriores a esa no las ve ninguna instantánea abierta
+     */
+    private static void podar(PagoCompacto cabeza, long minima) {
+        for (PagoCompacto version = cabeza; version != null; version = version.getAnterior()) {
+            if (version.getSecuencia() <= minima) {
+                version.setAnterior(null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Secuencias tomadas por una escritura, en orden. No es segura entre hilos: la usa solo el
+     * hilo que escribe.
+     */
+    final class Escritura {
+
+        private long[] secuencias = new long[1];
+        private int tomadas;
+
+        private Escritura() {
+        }
+
+        /**
+         * Toma la siguiente secuencia. Se invoca dentro del compute del ID, para que las
+         * secuencias de un mismo pago sigan el orden de sus escrituras.
+         */
+        long siguiente() {
+            long siguiente = secuencia.incrementAndGet();
+            if (tomadas == secuencias.length) {
+                secuencias = Arrays.copyOf(secuencias, tomadas * 2);
+            }
+            secuencias[tomadas++] = siguiente;
+            return siguiente;
+        }
+    }
+
+    /**
+     * Secuencia de la instantánea abierta más antigua, o Long.MAX_VALUE si no hay ninguna
+     */
+    private long secuenciaMinima() {
+        long minima = Long.MAX_VALUE;
+        for (InstantaneaPagos instantanea : abiertas) {
+            minima = Math.min(minima, instantanea.getSecuencia());
+        }
+        return minima;
+    }
+}
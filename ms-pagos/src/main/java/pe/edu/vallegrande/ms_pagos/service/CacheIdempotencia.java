@@ -0,0 +1,133 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
+import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Resultados de creación de pagos por clave de idempotencia, con vencimiento y tamaño
+ * acotados. La primera request con una clave crea el pago; las repetidas reciben el mismo
+ * resultado, y si llegan mientras la primera sigue en curso esperan a que termine.
+ *
+ * Como todas las claves viven lo mismo, la cola de inserción está ordenada por vencimiento:
+ * se purga desde la cabeza, sin recorrer el mapa, cuando vence o cuando se supera el máximo.
+ * Con más claves que el máximo dentro del TTL, las más antiguas se olvidan antes de vencer.
+ */
+public class CacheIdempotencia {
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final Queue<Entrada> porVencimiento = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger enCola = new AtomicInteger();
+    private final long ttlNanos;
+    private final int maxClaves;
+    private final LongSupplier reloj;
+
+    public CacheIdempotencia(Duration ttl, int maxClaves) {
+        this(ttl, maxClaves, System::nanoTime);
+    }
+
+    CacheIdempotencia(Duration ttl, int maxClaves, LongSupplier reloj) {
+        if (ttl.isNegative() || ttl.isZero() || maxClaves < 1) {
+            throw new IllegalArgumentException("El TTL y el máximo de claves deben ser positivos");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.maxClaves = maxClaves;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Devuelve el resultado guardado para la clave o, si no hay, lo calcula con {@code crear}
+     * una sola vez aunque lleguen requests concurrentes con la misma clave. Si la creación
+     * falla, la clave se libera para que un reintento vuelva a procesarla; las requests que
+     * esperaban reciben la misma excepción.
+     *
+     * @throws PagoValidationException si la clave ya se usó con una request distinta
+     */
+    public PagoResponse obtenerOCrear(String clave, PagoRequest request, Supplier<PagoResponse> crear) {
+        long ahora = reloj.getAsLong();
+        Entrada nueva = new Entrada(clave, request, ahora + ttlNanos);
+        Entrada actual = entradas.putIfAbsent(clave, nueva);
+        while (actual != null && actual.vencida(ahora)) {
+            actual = entradas.replace(clave, actual, nueva) ? null : entradas.putIfAbsent(clave, nueva);
+        }
+        if (actual != null) {
+            return esperar(actual, request);
+        }
+
+        registrar(nueva, ahora);
+        try {
+            PagoResponse resultado = crear.get();
+            nueva.resultado.complete(resultado);
+            return resultado;
+        } catch (RuntimeException e) {
+            entradas.remove(clave, nueva);
+            nueva.resultado.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Claves vigentes o en curso
+     */
+    public int tamano() {
+        return entradas.size();
+    }
+
+    private PagoResponse esperar(Entrada entrada, PagoRequest request) {
+        if (!entrada.request.equals(request)) {
+            throw new PagoValidationException("Idempotency-Key", entrada.clave,
+                    "La clave de idempotencia ya se usó con una solicitud distinta");
+        }
+        try {
+            return entrada.resultado.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException causa ? causa : e;
+        }
+    }
+
+    /**
+     * Encola la entrada y purga desde la cabeza las vencidas y las que exceden el máximo
+     */
+    private void registrar(Entrada entrada, long ahora) {
+        porVencimiento.add(entrada);
+        int tamano = enCola.incrementAndGet();
+        Entrada cabeza;
+        while ((cabeza = porVencimiento.peek()) != null && (tamano > maxClaves || cabeza.vencida(ahora))) {
+            // Si otro hilo purgó la misma cabeza, poll toma la siguiente: a lo sumo se adelanta su salida
+            Entrada purgada = porVencimiento.poll();
+            if (purgada == null) {
+                break;
+            }
+            tamano = enCola.decrementAndGet();
+            entradas.remove(purgada.clave, purgada);
+        }
+    }
+
+    private static final class Entrada {
+        final String clave;
+        final PagoRequest request;
+        final long expiraEn;
+        final CompletableFuture<PagoResponse> resultado = new CompletableFuture<>();
+
+        Entrada(String clave, PagoRequest request, long expiraEn) {
+            this.clave = clave;
+            this.request = request;
+            this.expiraEn = expiraEn;
+        }
+
+        boolean vencida(long ahora) {
+            return ahora - expiraEn >= 0;
+        }
+    }
+}
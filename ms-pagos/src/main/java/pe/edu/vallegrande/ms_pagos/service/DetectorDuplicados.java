@@ -0,0 +1,215 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Huellas de las requests de creación recientes (cliente, orden, monto y método de pago) en
+ * una ventana deslizante, para detectar el doble envío de un mismo pago.
+ *
+ * La ventana se reparte en tramos de tiempo, cada uno con un filtro de Bloom sobre un
+ * AtomicLongArray: registrar y consultar no toman locks y la memoria es fija sin importar
+ * cuántas requests lleguen. Un tramo vencido se reemplaza por uno vacío al reutilizar su
+ * posición. El filtro puede dar falsos positivos (más si un tramo recibe más huellas de las
+ * previstas), así que quien llama confirma el duplicado contra los pagos guardados.
+ *
+ * Mientras se crea un pago su huella queda reservada, como las claves en curso de
+ * CacheIdempotencia: un doble envío que llega antes de que el original esté guardado espera
+ * su resultado en vez de crear otro pago.
+ */
+public class DetectorDuplicados {
+
+    public enum Modo {
+        /** No se buscan duplicados */
+        DESHABILITADO,
+        /** El duplicado se rechaza con PagoDuplicadoException */
+        RECHAZAR,
+        /** El duplicado recibe el pago original, como si fuera un reintento idempotente */
+        DEVOLVER_ORIGINAL
+    }
+
+    // Tramos que cubren la ventana; hay uno más para el que está en curso
+    static final int TRAMOS = 8;
+
+    // Funciones de hash del filtro; con ~9.6 bits por huella dan ~1% de falsos positivos
+    private static final int FUNCIONES_HASH = 7;
+
+    private final Modo modo;
+    private final Duration ventana;
+    private final long anchoTramoNanos;
+    private final long bitsPorTramo;
+    private final AtomicReferenceArray<Tramo> tramos = new AtomicReferenceArray<>(TRAMOS + 1);
+    private final LongSupplier relojNanos;
+    private final Map<Long, CompletableFuture<Pago>> enCurso = new ConcurrentHashMap<>();
+
+    public DetectorDuplicados(Modo modo, Duration ventana, int huellasPorTramo) {
+        this(modo, ventana, huellasPorTramo, System::nanoTime);
+    }
+
+    DetectorDuplicados(Modo modo, Duration ventana, int huellasPorTramo, LongSupplier relojNanos) {
+        if (ventana.isNegative() || ventana.isZero() || huellasPorTramo < 1) {
+            throw new IllegalArgumentException("La ventana y las huellas por tramo deben ser positivas");
+        }
+        this.modo = modo;
+        this.ventana = ventana;
+        this.anchoTramoNanos = Math.max(1, ventana.toNanos() / TRAMOS);
+        long bits = (long) Math.ceil(huellasPorTramo * -Math.log(0.01) / (Math.log(2) * Math.log(2)));
+        this.bitsPorTramo = Math.max(Long.SIZE, (bits + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        this.relojNanos = relojNanos;
+    }
+
+    /**
+     * Detector que no registra nada, para cuando la detección está apagada
+     */
+    public static DetectorDuplicados deshabilitado() {
+        return new DetectorDuplicados(Modo.DESHABILITADO, Duration.ofSeconds(1), 1);
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    public Duration getVentana() {
+        return ventana;
+    }
+
+    /**
+     * Registra la huella en el tramo actual e indica si pudo haberse visto dentro de la
+     * ventana. {@code false} es definitivo; {@code true} puede ser un falso positivo.
+     */
+    public boolean registrar(long huella) {
+        long epoca = Math.floorDiv(relojNanos.getAsLong(), anchoTramoNanos);
+        boolean vista = tramoActual(epoca).agregar(huella);
+        for (int i = 1; i <= TRAMOS && !vista; i++) {
+            Tramo anterior = tramos.get(posicion(epoca - i));
+            vista = anterior != null && anterior.epoca == epoca - i && anterior.contiene(huella);
+        }
+        return vista;
+    }
+
+    /**
+     * Reserva la huella para quien va a crear el pago. Devuelve null si quedó reservada con
+     * {@code reserva}, o la creación en curso de otra request con la misma huella, que se
+     * completa con el pago creado o con null si no se creó.
+     */
+    public CompletableFuture<Pago> reservar(long huella, CompletableFuture<Pago> reserva) {
+        return enCurso.putIfAbsent(huella, reserva);
+    }
+
+    /**
+     * Libera la huella y entrega a las requests que esperaban el pago creado (null si no se
+     * creó). Se libera antes de completar, para que las que reintentan puedan reservarla.
+     */
+    public void liberar(long huella, CompletableFuture<Pago> reserva, Pago creado) {
+        enCurso.remove(huella, reserva);
+        reserva.complete(creado);
+    }
+
+    /**
+     * Huellas reservadas por creaciones en curso
+     */
+    int enCurso() {
+        return enCurso.size();
+    }
+
+    /**
+     * Huella de 64 bits de los datos que identifican un pago repetido. El monto se normaliza
+     * para que 100 y 100.00 coincidan.
+     */
+    public static long huella(String clienteId, String orderId, BigDecimal monto, String metodoPago) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mezclar(hash, clienteId);
+        hash = mezclar(hash, orderId);
+        hash = mezclar(hash, monto != null ? monto.stripTrailingZeros().toPlainString() : null);
+        hash = mezclar(hash, metodoPago);
+        // Finalizador de SplitMix64: reparte los bits para derivar los índices del filtro
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private Tramo tramoActual(long epoca) {
+        int posicion = posicion(epoca);
+        for (;;) {
+            Tramo tramo = tramos.get(posicion);
+            if (tramo != null && tramo.epoca >= epoca) {
+                return tramo;
+            }
+            Tramo nuevo = new Tramo(epoca, bitsPorTramo);
+            if (tramos.compareAndSet(posicion, tramo, nuevo)) {
+                return nuevo;
+            }
+        }
+    }
+
+    private static int posicion(long epoca) {
+        return (int) Math.floorMod(epoca, (long) TRAMOS + 1);
+    }
+
+    // FNV-1a por carácter, sin copiar el texto, con un separador para que "ab"+"c" no coincida con "a"+"bc"
+    private static long mezclar(long hash, String valor) {
+        if (valor != null) {
+            for (int i = 0; i < valor.length(); i++) {
+                hash = (hash ^ valor.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        return (hash ^ 0xff) * 0x100000001b3L;
+    }
+
+    /**
+     * Filtro de Bloom de un tramo de tiempo
+     */
+    private static final class Tramo {
+        final long epoca;
+        final long bits;
+        final AtomicLongArray palabras;
+
+        Tramo(long epoca, long bits) {
+            this.epoca = epoca;
+            this.bits = bits;
+            this.palabras = new AtomicLongArray((int) (bits / Long.SIZE));
+        }
+
+        /**
+         * Marca la huella; devuelve true si todos sus bits ya estaban marcados
+         */
+        boolean agregar(long huella) {
+            boolean presente = true;
+            for (int i = 0; i < FUNCIONES_HASH; i++) {
+                long bit = indice(huella, i);
+                int palabra = (int) (bit >>> 6);
+                long mascara = 1L << bit;
+                if ((palabras.get(palabra) & mascara) == 0) {
+                    presente = false;
+                    palabras.getAndAccumulate(palabra, mascara, (actual, m) -> actual | m);
+                }
+            }
+            return presente;
+        }
+
+        boolean contiene(long huella) {
+            for (int i = 0; i < FUNCIONES_HASH; i++) {
+                long bit = indice(huella, i);
+                if ((palabras.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Doble hashing: h1 + i * h2 con las dos mitades de la huella
+        private long indice(long huella, int i) {
+            long h1 = huella & 0xffffffffL;
+            long h2 = (huella >>> 32) | 1;
+            return Math.floorMod(h1 + i * h2, bits);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Procesa en paralelo los elementos de un lote sobre un pool de hilos y una cola acotados.
+ * El lote se reparte en tramos contiguos; el hilo llamador procesa el primero y también los
+ * que el pool rechace por estar saturado, así que una ráfaga nunca encola trabajo sin límite.
+ */
+@Slf4j
+public class EjecutorLotes implements AutoCloseable {
+
+    private final ThreadPoolExecutor pool;
+    private final int hilos;
+
+    public EjecutorLotes(int hilos, int capacidadCola) {
+        if (hilos < 1 || capacidadCola < 1) {
+            throw new IllegalArgumentException("Hilos y capacidad de cola deben ser positivos");
+        }
+        AtomicInteger contador = new AtomicInteger();
+        this.hilos = hilos;
+        this.pool = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola), tarea -> {
+                    Thread hilo = new Thread(tarea, "lote-pagos-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Aplica la acción a cada elemento y espera a que terminen todos. Con menos de
+     * {@code minimoPorTramo} elementos por hilo se usan menos tramos, para que el reparto no
+     * cueste más que el trabajo. La acción debe ser segura entre hilos.
+     */
+    public <T> void procesar(List<T> elementos, int minimoPorTramo, Consumer<? super T> accion) {
+        int tramos = Math.min(hilos + 1, Math.max(1, elementos.size() / Math.max(1, minimoPorTramo)));
+        if (tramos == 1) {
+            elementos.forEach(accion);
+            return;
+        }
+        int porTramo = (elementos.size() + tramos - 1) / tramos;
+        List<Future<?>> enCurso = new ArrayList<>(tramos - 1);
+        for (int desde = porTramo; desde < elementos.size(); desde += porTramo) {
+            List<T> tramo = elementos.subList(desde, Math.min(desde + porTramo, elementos.size()));
+            try {
+                enCurso.add(pool.submit(() -> tramo.forEach(accion)));
+            } catch (RejectedExecutionException e) {
+                log.debug("Pool de lotes saturado, el llamador procesa {} elementos", tramo.size());
+                tramo.forEach(accion);
+            }
+        }
+        elementos.subList(0, porTramo).forEach(accion);
+        esperar(enCurso);
+    }
+
+    private static void esperar(List<Future<?>> tareas) {
+        for (Future<?> tarea : tareas) {
+            try {
+                tarea.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrumpido esperando el procesamiento del lote", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException causa) {
+                    throw causa;
+                }
+                throw new IllegalStateException("Error procesando el lote", e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,132 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Peticiones a la espera de que un pago llegue a un estado (GET /pagos/{pagoId}/await).
+ *
+ * Cada espera es un CompletableFuture registrado bajo su pago, así que no ocupa ningún hilo.
+ * El cambio de estado que la resuelve la completa desde el hilo que escribió el pago; la
+ * resolución, el timeout y la cancelación la quitan del registro, y un pago sin esperas no
+ * deja entrada.
+ */
+public class EsperasEstado implements PagoObservador {
+
+    private final Map<String, Set<Espera>> porPago = new ConcurrentHashMap<>();
+    private final AtomicInteger activas = new AtomicInteger();
+    private final int maxEsperas;
+
+    public EsperasEstado(int maxEsperas) {
+        if (maxEsperas < 1) {
+            throw new IllegalArgumentException("El máximo de esperas debe ser positivo");
+        }
+        this.maxEsperas = maxEsperas;
+    }
+
+    /**
+     * Registra una espera hasta que el pago esté en {@code objetivo} o ya no pueda llegar a él;
+     * con objetivo null, hasta que deje PENDING. Quien la registra debe leer el pago después,
+     * para no perder un cambio anterior al registro, y cancelarla si deja de esperar.
+     *
+     * @throws PagoCapacidadException si ya hay el máximo de esperas activas
+     */
+    public Espera esperar(String pagoId, Pago.EstadoPago objetivo) {
+        if (activas.incrementAndGet() > maxEsperas) {
+            activas.decrementAndGet();
+            throw new PagoCapacidadException("esperas de estado", maxEsperas);
+        }
+        Espera espera = new Espera(pagoId, objetivo);
+        porPago.compute(pagoId, (id, esperas) -> {
+            Set<Espera> destino = esperas != null ? esperas : ConcurrentHashMap.newKeySet();
+            destino.add(espera);
+            return destino;
+        });
+        return espera;
+    }
+
+    public int esperasActivas() {
+        return activas.get();
+    }
+
+    /**
+     * Si un pago en {@code estado} resuelve la espera de {@code objetivo}: lo alcanzó o, según
+     * las transiciones de PagoService, ya no puede alcanzarlo
+     */
+    public static boolean resuelve(Pago.EstadoPago estado, Pago.EstadoPago objetivo) {
+        if (objetivo == null) {
+            return estado != Pago.EstadoPago.PENDING;
+        }
+        return estado == objetivo || !alcanzable(estado, objetivo);
+    }
+
+    @Override
+    public void estadoCambiado(Pago pago, Pago.EstadoPago estadoAnterior) {
+        Set<Espera> esperas = porPago.get(pago.getId());
+        if (esperas == null) {
+            return;
+        }
+        for (Espera espera : esperas) {
+            if (resuelve(pago.getEstado(), espera.objetivo) && espera.retirar()) {
+                espera.resultado.complete(pago.getEstado());
+            }
+        }
+    }
+
+    private static boolean alcanzable(Pago.EstadoPago desde, Pago.EstadoPago objetivo) {
+        return switch (desde) {
+            case PENDING -> objetivo != Pago.EstadoPago.PENDING;
+            case COMPLETED -> objetivo == Pago.EstadoPago.REFUNDED;
+            default -> false;
+        };
+    }
+
+    /**
+     * Espera registrada; su resultado se completa con el estado que la resolvió
+     */
+    public final class Espera {
+
+        private final String pagoId;
+        private final Pago.EstadoPago objetivo;
+        private final CompletableFuture<Pago.EstadoPago> resultado = new CompletableFuture<>();
+        private final AtomicBoolean registrada = new AtomicBoolean(true);
+
+        private Espera(String pagoId, Pago.EstadoPago objetivo) {
+            this.pagoId = pagoId;
+            this.objetivo = objetivo;
+        }
+
+        public CompletableFuture<Pago.EstadoPago> resultado() {
+            return resultado;
+        }
+
+        /**
+         * Quita la espera del registro sin completarla. Es idempotente.
+         */
+        public void cancelar() {
+            retirar();
+        }
+
+        /**
+         * true solo para quien la quita primero
+         */
+        private boolean retirar() {
+            if (!registrada.compareAndSet(true, false)) {
+                return false;
+            }
+            porPago.computeIfPresent(pagoId, (id, esperas) -> {
+                esperas.remove(this);
+                return esperas.isEmpty() ? null : esperas;
+            });
+            activas.decrementAndGet();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_pagos.dto.response.EstadisticasResponse;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estadísticas de pagos mantenidas de forma incremental a partir de los eventos de
+ * PagoService. Los contadores son LongAdder (striped), así que las escrituras
+ * concurrentes no compiten por una misma celda y la lectura no toca el repositorio.
+ *
+ * El monto total es el neto de los pagos completados: un refund parcial deja el pago
+ * COMPLETED pero descuenta lo reembolsado.
+ */
+@Component
+public class EstadisticasPagos implements PagoObservador {
+
+    private final LongAdder[] pagosPorEstado = new LongAdder[Pago.EstadoPago.values().length];
+
+    // Suma de montos completados como valores sin escala agrupados por escala:
+    // 1500.50 suma 150050 al acumulador de escala 2. Así se suma sin crear BigDecimal.
+    private final Map<Integer, LongAdder> montoCompletadoPorEscala = new ConcurrentHashMap<>();
+
+    // Montos cuyo valor sin escala no cabe en un long (no ocurre con el límite actual de 500,000)
+    private final AtomicReference<BigDecimal> montoCompletadoExcedente = new AtomicReference<>(BigDecimal.ZERO);
+
+    public EstadisticasPagos() {
+        for (int i = 0; i < pagosPorEstado.length; i++) {
+            pagosPorEstado[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void pagoCreado(Pago pago) {
+        if (pago.getEstado() == null) {
+            return;
+        }
+        pagosPorEstado[pago.getEstado().ordinal()].increment();
+        if (pago.getEstado() == Pago.EstadoPago.COMPLETED) {
+            acumularMonto(montoNeto(pago), false);
+        }
+    }
+
+    @Override
+    public void estadoCambiado(Pago pago, Pago.EstadoPago estadoAnterior) {
+        if (estadoAnterior == pago.getEstado()) {
+            return;
+        }
+        moverContadores(estadoAnterior, pago.getEstado());
+        if (estadoAnterior == Pago.EstadoPago.COMPLETED) {
+            acumularMonto(montoNeto(pago), true);
+        } else if (pago.getEstado() == Pago.EstadoPago.COMPLETED) {
+            acumularMonto(montoNeto(pago), false);
+        }
+    }
+
+    /**
+     * Descuenta el refund del monto completado; si el pago quedó reembolsado por completo,
+     * lo descontado es todo lo que aportaba y solo falta moverlo de estado
+     */
+    @Override
+    public void refundAplicado(Pago pago, Pago.EstadoPago estadoAnterior, BigDecimal monto) {
+        if (estadoAnterior != pago.getEstado()) {
+            moverContadores(estadoAnterior, pago.getEstado());
+        }
+        if (estadoAnterior == Pago.EstadoPago.COMPLETED) {
+            acumularMonto(monto, true);
+        }
+    }
+
+    /**
+     * Agrega los cambios del lote en contadores locales y toca cada LongAdder una sola vez,
+     * en lugar de dos incrementos y una suma de monto por pago
+     */
+    @Override
+    public void estadosCambiados(List<Pago> pagos, List<Pago.EstadoPago> estadosAnteriores) {
+        long[] deltaPorEstado = new long[pagosPorEstado.length];
+        Map<Integer, Long> deltaMontoPorEscala = new HashMap<>();
+        BigDecimal deltaExcedente = BigDecimal.ZERO;
+        for (int i = 0; i < pagos.size(); i++) {
+            Pago pago = pagos.get(i);
+            Pago.EstadoPago estadoAnterior = estadosAnteriores.get(i);
+            if (estadoAnterior == pago.getEstado()) {
+                continue;
+            }
+            if (estadoAnterior != null) {
+                deltaPorEstado[estadoAnterior.ordinal()]--;
+            }
+            if (pago.getEstado() != null) {
+                deltaPorEstado[pago.getEstado().ordinal()]++;
+            }
+            boolean restar = estadoAnterior == Pago.EstadoPago.COMPLETED;
+            BigDecimal monto = montoNeto(pago);
+            if (monto == null || (!restar && pago.getEstado() != Pago.EstadoPago.COMPLETED)) {
+                continue;
+            }
+            if (cabeEnLong(monto)) {
+                long sinEscala = monto.unscaledValue().longValue();
+                deltaMontoPorEscala.merge(monto.scale(), restar ? -sinEscala : sinEscala, Long::sum);
+            } else {
+                deltaExcedente = deltaExcedente.add(restar ? monto.negate() : monto);
+            }
+        }
+
+        for (int i = 0; i < deltaPorEstado.length; i++) {
+            if (deltaPorEstado[i] != 0) {
+                pagosPorEstado[i].add(deltaPorEstado[i]);
+            }
+        }
+        deltaMontoPorEscala.forEach((escala, delta) ->
+                montoCompletadoPorEscala.computeIfAbsent(escala, e -> new LongAdder()).add(delta));
+        if (deltaExcedente.signum() != 0) {
+            montoCompletadoExcedente.accumulateAndGet(deltaExcedente, BigDecimal::add);
+        }
+    }
+
+    @Override
+    public void pagosRecuperados(Collection<Pago> pagos) {
+        for (LongAdder contador : pagosPorEstado) {
+            contador.reset();
+        }
+        montoCompletadoPorEscala.clear();
+        montoCompletadoExcedente.set(BigDecimal.ZERO);
+        pagos.forEach(this::pagoCreado);
+    }
+
+    /**
+     * Devuelve las estadísticas actuales en tiempo constante
+     */
+    public EstadisticasResponse obtener() {
+        long total = 0;
+        for (LongAdder contador : pagosPorEstado) {
+            total += contador.sum();
+        }
+        long completados = pagosPorEstado[Pago.EstadoPago.COMPLETED.ordinal()].sum();
+        long pendientes = pagosPorEstado[Pago.EstadoPago.PENDING.ordinal()].sum();
+        long fallidos = pagosPorEstado[Pago.EstadoPago.FAILED.ordinal()].sum();
+
+        BigDecimal montoTotal = montoCompletadoExcedente.get();
+        for (Map.Entry<Integer, LongAdder> entrada : montoCompletadoPorEscala.entrySet()) {
+            montoTotal = montoTotal.add(BigDecimal.valueOf(entrada.getValue().sum(), entrada.getKey()));
+        }
+
+        return construir(total, completados, pendientes, fallidos, montoTotal);
+    }
+
+    /**
+     * Recalcula las estadísticas recorriendo todos los pagos. Es O(n) y sirve como
+     * referencia para verificar la consistencia de los contadores incrementales.
+     */
+    public static EstadisticasResponse recalcular(Collection<Pago> pagos) {
+        long completados = 0;
+        long pendientes = 0;
+        long fallidos = 0;
+        BigDecimal montoTotal = BigDecimal.ZERO;
+        for (Pago pago : pagos) {
+            if (pago.getEstado() == Pago.EstadoPago.COMPLETED) {
+                completados++;
+                montoTotal = montoTotal.add(montoNeto(pago));
+            } else if (pago.getEstado() == Pago.EstadoPago.PENDING) {
+                pendientes++;
+            } else if (pago.getEstado() == Pago.EstadoPago.FAILED) {
+                fallidos++;
+            }
+        }
+        return construir(pagos.size(), completados, pendientes, fallidos, montoTotal);
+    }
+
+    /**
+     * Indica si los contadores incrementales coinciden con un recálculo completo
+     */
+    public boolean esConsistenteCon(Collection<Pago> pagos) {
+        EstadisticasResponse incremental = obtener();
+        EstadisticasResponse completo = recalcular(pagos);
+        return incremental.getTotalPagos() == completo.getTotalPagos()
+                && incremental.getPagosCompletados() == completo.getPagosCompletados()
+                && incremental.getPagosPendientes() == completo.getPagosPendientes()
+                && incremental.getPagosFallidos() == completo.getPagosFallidos()
+                && incremental.getMontoTotalCompletado().compareTo(completo.getMontoTotalCompletado()) == 0;
+    }
+
+    /**
+     * Lo que un pago completado aporta a los montos: lo capturado menos lo ya reembolsado
+     */
+    static BigDecimal montoNeto(Pago pago) {
+        if (pago.getMonto() == null || pago.getMontoReembolsado() == null) {
+            return pago.getMonto();
+        }
+        return pago.getMonto().subtract(pago.getMontoReembolsado());
+    }
+
+    private void moverContadores(Pago.EstadoPago estadoAnterior, Pago.EstadoPago estadoNuevo) {
+        if (estadoAnterior != null) {
+            pagosPorEstado[estadoAnterior.ordinal()].decrement();
+        }
+        if (estadoNuevo != null) {
+            pagosPorEstado[estadoNuevo.ordinal()].increment();
+        }
+    }
+
+    private void acumularMonto(BigDecimal monto, boolean restar) {
+        if (monto == null) {
+            return;
+        }
+        if (cabeEnLong(monto)) {
+            long sinEscala = monto.unscaledValue().longValue();
+            montoCompletadoPorEscala.computeIfAbsent(monto.scale(), escala -> new LongAdder())
+                    .add(restar ? -sinEscala : sinEscala);
+        } else {
+            BigDecimal delta = restar ? monto.negate() : monto;
+            montoCompletadoExcedente.accumulateAndGet(delta, BigDecimal::add);
+        }
+    }
+
+    private static boolean cabeEnLong(BigDecimal monto) {
+        return monto.unscaledValue().bitLength() < Long.SIZE - 1;
+    }
+
+    private static EstadisticasResponse construir(long total, long completados, long pendientes,
+                                                  long fallidos, BigDecimal montoTotal) {
+        double tasaExito = total > 0 ? (double) completados / total * 100 : 0;
+        return new EstadisticasResponse(total, completados, pendientes, fallidos, montoTotal, tasaExito);
+    }
+}
@@ -0,0 +1,24 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Estrategia de generación de IDs de pago y de transacción
+ */
+public interface GeneradorId {
+
+    /**
+     * Nuevo ID de pago, único en todo el sistema
+     */
+    String nuevoId();
+
+    /**
+     * Nuevo ID de transacción con el formato TXN_ seguido de 8 dígitos hexadecimales en
+     * mayúsculas. Solo identifica la respuesta simulada del procesador, así que no necesita
+     * un generador seguro: ThreadLocalRandom no tiene contención entre hilos.
+     */
+    default String nuevoTransactionId() {
+        String hex = Integer.toHexString(ThreadLocalRandom.current().nextInt()).toUpperCase();
+        return "TXN_" + "0".repeat(8 - hex.length()) + hex;
+    }
+}
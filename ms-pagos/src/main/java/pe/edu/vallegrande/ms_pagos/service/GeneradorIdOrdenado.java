@@ -0,0 +1,93 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IDs de 128 bits ordenados por tiempo, con el formato de un UUID versión 7:
+ *
+ * <pre>
+ * bits altos: [milisegundos epoch:48][versión=7:4][secuencia alta:12]
+ * bits bajos: [variante=2:2][secuencia baja:10][nodo:10][aleatorio:42]
+ * </pre>
+ *
+ * La secuencia de 22 bits se reinicia en cada milisegundo y avanza con un CAS sobre un único
+ * AtomicLong, sin locks. Si se agota dentro de un milisegundo, o el reloj retrocede, el
+ * generador sigue sobre el último milisegundo emitido, así que los IDs de un nodo son
+ * estrictamente crecientes. Como texto (hexadecimal en minúsculas y ancho fijo) también
+ * ordenan por fecha de creación, lo que permite escaneos por rango con {@link #idMinimo} e
+ * {@link #idMaximo}. El nodo evita colisiones entre instancias que generan en el mismo
+ * milisegundo.
+ */
+public class GeneradorIdOrdenado implements GeneradorId {
+
+    public static final int BITS_NODO = 10;
+    public static final int NODO_MAXIMO = (1 << BITS_NODO) - 1;
+
+    private static final int BITS_SECUENCIA = 22;
+    private static final long MASCARA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+    private static final int BITS_ALEATORIOS = 42;
+    private static final long MASCARA_ALEATORIA = (1L << BITS_ALEATORIOS) - 1;
+    private static final long VERSION = 7L << 12;
+    private static final long VARIANTE = 2L << 62;
+
+    // [milisegundos:42][secuencia:22]; crece de forma monótona y se compara sin signo (alcanza hasta 2109)
+    private final AtomicLong ultimo = new AtomicLong();
+    private final long nodo;
+
+    public GeneradorIdOrdenado(int nodo) {
+        if (nodo < 0 || nodo > NODO_MAXIMO) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y " + NODO_MAXIMO);
+        }
+        this.nodo = nodo;
+    }
+
+    @Override
+    public String nuevoId() {
+        long ahora = System.currentTimeMillis() << BITS_SECUENCIA;
+        long previo;
+        long siguiente;
+        do {
+            previo = ultimo.get();
+            siguiente = Long.compareUnsigned(ahora, previo) > 0 ? ahora : previo + 1;
+        } while (!ultimo.compareAndSet(previo, siguiente));
+        return componer(siguiente >>> BITS_SECUENCIA, siguiente & MASCARA_SECUENCIA, nodo,
+                ThreadLocalRandom.current().nextLong() & MASCARA_ALEATORIA).toString();
+    }
+
+    /**
+     * Menor ID posible creado en el instante dado (incluido), para escaneos por rango
+     */
+    public static String idMinimo(Instant instante) {
+        return componer(instante.toEpochMilli(), 0, 0, 0).toString();
+    }
+
+    /**
+     * Mayor ID posible creado en el instante dado (incluido), para escaneos por rango
+     */
+    public static String idMaximo(Instant instante) {
+        return componer(instante.toEpochMilli(), MASCARA_SECUENCIA, NODO_MAXIMO, MASCARA_ALEATORIA).toString();
+    }
+
+    /**
+     * Milisegundo de creación codificado en un ID de este generador
+     */
+    public static Instant instante(String id) {
+        return Instant.ofEpochMilli(UUID.fromString(id).getMostSignificantBits() >>> 16);
+    }
+
+    /**
+     * Nodo que generó un ID de este generador
+     */
+    public static int nodo(String id) {
+        return (int) (UUID.fromString(id).getLeastSignificantBits() >>> BITS_ALEATORIOS) & NODO_MAXIMO;
+    }
+
+    private static UUID componer(long milisegundos, long secuencia, long nodo, long aleatorio) {
+        long altos = (milisegundos << 16) | VERSION | (secuencia >>> 10);
+        long bajos = VARIANTE | ((secuencia & 0x3FF) << (BITS_NODO + BITS_ALEATORIOS)) | (nodo << BITS_ALEATORIOS) | aleatorio;
+        return new UUID(altos, bajos);
+    }
+}
@@ -0,0 +1,14 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import java.util.UUID;
+
+/**
+ * IDs UUID versión 4 aleatorios (comportamiento original). Cada ID pasa por SecureRandom.
+ */
+public class GeneradorIdUuid implements GeneradorId {
+
+    @Override
+    public String nuevoId() {
+        return UUID.randomUUID().toString();
+    }
+}
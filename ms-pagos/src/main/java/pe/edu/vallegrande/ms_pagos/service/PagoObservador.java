@@ -0,0 +1,53 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Recibe los eventos de ciclo de vida que publica PagoService una vez que el cambio
+ * quedó guardado en el repositorio. Las implementaciones se invocan en el hilo de la
+ * petición, por lo que deben ser rápidas y no bloquear.
+ */
+public interface PagoObservador {
+
+    /**
+     * Un pago nuevo fue guardado (ya con el estado resultante del procesamiento)
+     */
+    default void pagoCreado(Pago pago) {
+    }
+
+    /**
+     * Un pago pasó de {@code estadoAnterior} al estado que tiene ahora
+     */
+    default void estadoCambiado(Pago pago, Pago.EstadoPago estadoAnterior) {
+    }
+
+    /**
+     * Se aplicó un refund de {@code monto} a un pago que estaba en {@code estadoAnterior}. El
+     * pago ya lo incluye en montoReembolsado y sigue COMPLETED salvo que quedara reembolsado
+     * por completo. Por defecto equivale a estadoCambiado.
+     */
+    default void refundAplicado(Pago pago, Pago.EstadoPago estadoAnterior, BigDecimal monto) {
+        estadoCambiado(pago, estadoAnterior);
+    }
+
+    /**
+     * Varios pagos cambiaron de estado en una misma operación; {@code estadosAnteriores}
+     * va en el mismo orden que {@code pagos}. Por defecto equivale a un estadoCambiado por pago.
+     */
+    default void estadosCambiados(List<Pago> pagos, List<Pago.EstadoPago> estadosAnteriores) {
+        for (int i = 0; i < pagos.size(); i++) {
+            estadoCambiado(pagos.get(i), estadosAnteriores.get(i));
+        }
+    }
+
+    /**
+     * El repositorio arrancó con pagos recuperados de disco; el observador debe
+     * reconstruir su estado a partir de ellos. Se invoca una vez, antes de recibir tráfico.
+     */
+    default void pagosRecuperados(Collection<Pago> pagos) {
+    }
+}
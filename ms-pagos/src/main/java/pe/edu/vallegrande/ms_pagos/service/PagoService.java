@@ -1,20 +1,50 @@
 package pe.edu.vallegrande.ms_pagos.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import pe.edu.vallegrande.ms_pagos.dto.request.CambioEstadoLoteRequest;
+import pe.edu.vallegrande.ms_pagos.dto.request.ConsultaPagosRequest;
 import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
 import pe.edu.vallegrande.ms_pagos.dto.request.RefundRequest;
+import pe.edu.vallegrande.ms_pagos.dto.response.CambioPagoResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.CambiosResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ConsultaPagosResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.EstadisticasResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.LotePagosResponse;
 import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.PaginaResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResultadoLoteResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResumenClienteResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.SaldoOrdenResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+import pe.edu.vallegrande.ms_pagos.exception.PagoConcurrencyException;
+import pe.edu.vallegrande.ms_pagos.exception.PagoDuplicadoException;
 import pe.edu.vallegrande.ms_pagos.exception.PagoNotFoundException;
 import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
 import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.CambioPago;
+import pe.edu.vallegrande.ms_pagos.repository.ClaveCronologica;
+import pe.edu.vallegrande.ms_pagos.repository.InstantaneaPagos;
 import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.repository.SaldoOrden;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -23,6 +53,67 @@ import java.util.stream.Collectors;
 public class PagoService {
     
     private final PagoRepository pagoRepository;
+    private final EstadisticasPagos estadisticasPagos;
+    private final List<PagoObservador> observadores;
+    private final GeneradorId generadorId;
+    private final EjecutorLotes ejecutorLotes;
+    private final CacheIdempotencia cacheIdempotencia;
+    private final DetectorDuplicados detectorDuplicados;
+    private final ResumenesClientes resumenesClientes;
+    private final ProcesadorPagos procesadorPagos;
+    
+    // Intentos ante conflictos de versión antes de devolver el error al cliente
+    private static final int MAX_INTENTOS_CONFLICTO = 3;
+    
+    // Tamaño máximo de página en las consultas paginadas por cursor
+    static final int MAX_LIMITE_PAGINA = 500;
+    
+    // Pagos por request en la creación en lote
+    static final int MAX_PAGOS_POR_LOTE = 1000;
+    
+    // Pagos por request en el cambio de estado en lote
+    static final int MAX_CAMBIOS_POR_LOTE = 5000;
+    
+    // Claves (IDs de pago más IDs de orden) por consulta múltiple
+    static final int MAX_CLAVES_CONSULTA = 1000;
+    
+    // Longitud máxima de la cabecera Idempotency-Key
+    static final int MAX_LONGITUD_CLAVE_IDEMPOTENCIA = 255;
+    
+    // Mensaje de los pagos asíncronos que aún no se procesan; con él se recuperan al reiniciar
+    static final String MENSAJE_EN_COLA = "Pago en cola de procesamiento";
+    
+    // Pagos mínimos por tramo al procesar un lote en paralelo; con menos, el reparto cuesta más que el trabajo
+    private static final int MINIMO_POR_TRAMO = 64;
+    
+    /**
+     * Si el repositorio arrancó con pagos recuperados del journal, los observadores
+     * reconstruyen su estado antes de recibir eventos y los pagos asíncronos que seguían en
+     * cola vuelven a encolarse
+     */
+    @PostConstruct
+    void inicializarObservadores() {
+        if (pagoRepository.count() > 0) {
+            List<Pago> pagos = pagoRepository.findAll();
+            observadores.forEach(observador -> observador.pagosRecuperados(pagos));
+            log.info("Observadores inicializados con {} pagos recuperados", pagos.size());
+            reencolarPendientes();
+        }
+    }
+    
+    /**
+     * Vuelve a encolar los pagos asíncronos que seguían en cola cuando se detuvo el servicio
+     */
+    private void reencolarPendientes() {
+        List<Runnable> tareas = pagoRepository.findByEstado(Pago.EstadoPago.PENDING).stream()
+                .filter(pago -> MENSAJE_EN_COLA.equals(pago.getMensajeRespuesta()))
+                .map(pago -> (Runnable) () -> procesarPendiente(pago.getId()))
+                .toList();
+        if (!tareas.isEmpty()) {
+            procesadorPagos.recuperar(tareas);
+            log.info("{} pagos asíncronos pendientes vueltos a encolar", tareas.size());
+        }
+    }
     
     /**
      * Crea un nuevo pago
@@ -33,28 +124,117 @@ public class PagoService {
         // Validaciones
         validatePagoRequest(request);
         
-        // Crear el pago
-        Pago pago = new Pago();
-        pago.setId(UUID.randomUUID().toString());
-        pago.setOrderId(request.getOrderId());
-        pago.setMonto(request.getMonto());
-        pago.setEstado(Pago.EstadoPago.PENDING);
-        pago.setFechaCreacion(LocalDateTime.now());
-        pago.setFechaActualizacion(LocalDateTime.now());
-        pago.setMetodoPago(request.getMetodoPago());
-        pago.setMoneda(request.getMoneda());
-        pago.setDescripcion(request.getDescripcion());
-        pago.setClienteId(request.getClienteId());
-        pago.setPaymentGateway(request.getPaymentGateway() != null ? request.getPaymentGateway() : "DEFAULT");
+        return crearSinDuplicar(request, () -> {
+            // Crear el pago
+            Pago pago = nuevoPago(request, LocalDateTime.now());
+            
+            // Simular procesamiento del pago
+            procesarPago(pago);
+            
+            // Guardar el pago
+            Pago pagoGuardado = guardarNuevo(pago);
+            
+            log.info("Pago creado exitosamente con ID: {}", pagoGuardado.getId());
+            return pagoGuardado;
+        });
+    }
+    
+    /**
+     * Crea un pago de forma idempotente: con la misma clave y la misma request se devuelve el
+     * pago creado la primera vez, y una repetida que llega mientras la primera sigue en curso
+     * espera su resultado. Sin clave equivale a crearPago(request).
+     */
+    public PagoResponse crearPago(PagoRequest request, String claveIdempotencia) {
+        if (claveIdempotencia == null) {
+            return crearPago(request);
+        }
+        validarClaveIdempotencia(claveIdempotencia);
+        return cacheIdempotencia.obtenerOCrear(claveIdempotencia, request, () -> crearPago(request));
+    }
+    
+    /**
+     * Crea un pago en PENDING y lo procesa después en ProcesadorPagos, sin ocupar el hilo de
+     * la petición. El resultado se consulta con GET /pagos/{pagoId}, /await o /eventos. Si el
+     * servicio se detiene antes de procesarlo, el pago se vuelve a encolar al reiniciar.
+     *
+     * @throws PagoCapacidadException si la cola de procesamiento está llena; el pago no se guarda
+     */
+    public PagoResponse crearPagoAsincrono(PagoRequest request) {
+        log.info("Creando pago asíncrono para orden: {}", request.getOrderId());
         
-        // Simular procesamiento del pago
-        procesarPago(pago);
+        validatePagoRequest(request);
         
-        // Guardar el pago
-        Pago pagoGuardado = pagoRepository.save(pago);
+        return crearSinDuplicar(request, () -> {
+            Pago pago = nuevoPago(request, LocalDateTime.now());
+            pago.setMensajeRespuesta(MENSAJE_EN_COLA);
+            Pago[] pagoGuardado = new Pago[1];
+            procesadorPagos.ejecutar(() -> pagoGuardado[0] = guardarNuevo(pago),
+                    () -> procesarPendiente(pago.getId()));
+            
+            log.info("Pago {} encolado para procesamiento", pagoGuardado[0].getId());
+            return pagoGuardado[0];
+        });
+    }
+    
+    /**
+     * Versión idempotente de crearPagoAsincrono; los reintentos con la misma clave devuelven el
+     * pago tal como se aceptó la primera vez
+     */
+    public PagoResponse crearPagoAsincrono(PagoRequest request, String claveIdempotencia) {
+        if (claveIdempotencia == null) {
+            return crearPagoAsincrono(request);
+        }
+        validarClaveIdempotencia(claveIdempotencia);
+        return cacheIdempotencia.obtenerOCrear(claveIdempotencia, request, () -> crearPagoAsincrono(request));
+    }
+    
+    /**
+     * Crea varios pagos en una sola operación. Cada request se valida por separado: las
+     * inválidas se informan en su posición sin impedir que se creen las demás. Las válidas se
+     * procesan en paralelo y se insertan en el repositorio como grupo.
+     */
+    public LotePagosResponse crearPagos(List<PagoRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new PagoValidationException("pagos", null, "El lote debe contener al menos un pago");
+        }
+        if (requests.size() > MAX_PAGOS_POR_LOTE) {
+            throw new PagoValidationException("pagos", String.valueOf(requests.size()),
+                    "El lote no puede superar " + MAX_PAGOS_POR_LOTE + " pagos");
+        }
+        log.info("Creando lote de {} pagos", requests.size());
+        
+        // Validar en una pasada; los errores quedan en la posición de su request
+        ResultadoLoteResponse[] resultados = new ResultadoLoteResponse[requests.size()];
+        List<Pago> pagos = new ArrayList<>(requests.size());
+        List<Integer> posiciones = new ArrayList<>(requests.size());
+        LocalDateTime ahora = LocalDateTime.now();
+        for (int i = 0; i < requests.size(); i++) {
+            PagoRequest request = requests.get(i);
+            try {
+                if (request == null) {
+                    throw new PagoValidationException("El pago es obligatorio");
+                }
+                validatePagoRequest(request);
+            } catch (PagoValidationException e) {
+                resultados[i] = ResultadoLoteResponse.error(i, "VALIDATION_ERROR", e.getField(), e.getMessage());
+                continue;
+            }
+            pagos.add(nuevoPago(request, ahora));
+            posiciones.add(i);
+        }
         
-        log.info("Pago creado exitosamente con ID: {}", pagoGuardado.getId());
-        return convertToResponse(pagoGuardado);
+        ejecutorLotes.procesar(pagos, MINIMO_POR_TRAMO, this::procesarPago);
+        pagoRepository.insertarTodos(pagos);
+        
+        for (int j = 0; j < pagos.size(); j++) {
+            Pago pago = pagos.get(j);
+            observadores.forEach(observador -> observador.pagoCreado(pago));
+            resultados[posiciones.get(j)] = ResultadoLoteResponse.exito(posiciones.get(j), convertToResponse(pago));
+        }
+        
+        log.info("Lote creado: {} pagos creados, {} con error", pagos.size(), requests.size() - pagos.size());
+        return new LotePagosResponse(requests.size(), pagos.size(), requests.size() - pagos.size(),
+                Arrays.asList(resultados));
     }
     
     /**
@@ -69,6 +249,34 @@ public class PagoService {
         return convertToResponse(pago);
     }
     
+    /**
+     * Obtiene varios pagos por ID y/o por orden en una sola pasada sobre el repositorio. Las
+     * claves repetidas o vacías se ignoran; las que no tienen resultado se informan aparte.
+     */
+    public ConsultaPagosResponse consultarPagos(ConsultaPagosRequest request) {
+        List<String> ids = distintas(request.getIds());
+        List<String> orderIds = distintas(request.getOrderIds());
+        if (ids.isEmpty() && orderIds.isEmpty()) {
+            throw new PagoValidationException("ids", null, "Se debe indicar al menos un ID de pago o de orden");
+        }
+        if (ids.size() + orderIds.size() > MAX_CLAVES_CONSULTA) {
+            throw new PagoValidationException("ids", String.valueOf(ids.size() + orderIds.size()),
+                    "La consulta no puede superar " + MAX_CLAVES_CONSULTA + " claves");
+        }
+        log.info("Consultando {} pagos y {} órdenes", ids.size(), orderIds.size());
+        
+        Map<String, PagoResponse> porId = new LinkedHashMap<>(ids.size() * 2);
+        pagoRepository.findAllById(ids).forEach((id, pago) -> porId.put(id, convertToResponse(pago)));
+        Map<String, List<PagoResponse>> porOrden = new LinkedHashMap<>(orderIds.size() * 2);
+        pagoRepository.findByOrderIds(orderIds).forEach((orderId, pagos) -> porOrden.put(orderId,
+                pagos.stream().map(this::convertToResponse).collect(Collectors.toList())));
+        
+        List<String> idsNoEncontrados = ids.stream().filter(id -> !porId.containsKey(id)).collect(Collectors.toList());
+        List<String> ordenesNoEncontradas = orderIds.stream().filter(orderId -> !porOrden.containsKey(orderId))
+                .collect(Collectors.toList());
+        return new ConsultaPagosResponse(porId, porOrden, idsNoEncontrados, ordenesNoEncontradas);
+    }
+    
     /**
      * Obtiene todos los pagos de una orden
      */
@@ -94,15 +302,136 @@ public class PagoService {
     }
     
     /**
-     * Obtiene todos los pagos
+     * Resumen de los pagos del cliente (totales, fallidos, monto completado por moneda y
+     * último pago) en tiempo constante, sin leer su historial
+     */
+    public ResumenClienteResponse obtenerResumenCliente(String clienteId) {
+        log.info("Obteniendo resumen del cliente: {}", clienteId);
+        return resumenesClientes.obtener(clienteId)
+                .orElseThrow(() -> new PagoNotFoundException("No se encontraron pagos para el cliente: " + clienteId));
+    }
+    
+    /**
+     * Obtiene todos los pagos tal como estaban en un mismo punto en el tiempo
      */
     public List<PagoResponse> obtenerTodosLosPagos() {
         log.info("Obteniendo todos los pagos");
         
-        List<Pago> pagos = pagoRepository.findAll();
-        return pagos.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        // Se recorre la instantánea directamente, sin una lista intermedia de Pago
+        List<PagoResponse> pagos = new ArrayList<>((int) pagoRepository.count());
+        try (InstantaneaPagos instantanea = pagoRepository.abrirInstantanea()) {
+            for (Pago pago : instantanea) {
+                pagos.add(convertToResponse(pago));
+            }
+        }
+        return pagos;
+    }
+    
+    /**
+     * Entrega uno a uno todos los pagos en orden de creación, leyéndolos por páginas de
+     * {@value #MAX_LIMITE_PAGINA} con el cursor cronológico. Cada página se copia antes de
+     * entregarla, así que un destino que bloquea (por ejemplo, un cliente lento) no retiene
+     * instantáneas ni versiones en el repositorio. No es un corte en un instante: cada pago
+     * sale una vez, con el estado que tenía al leer su página.
+     *
+     * @return cantidad de pagos entregados
+     */
+    public long exportarPagos(Consumer<PagoResponse> destino) {
+        log.info("Exportando todos los pagos");
+        
+        long total = 0;
+        ClaveCronologica despuesDe = null;
+        List<Pago> pagina;
+        do {
+            pagina = pagoRepository.findPagina(despuesDe, MAX_LIMITE_PAGINA);
+            for (Pago pago : pagina) {
+                destino.accept(convertToResponse(pago));
+                total++;
+            }
+            if (!pagina.isEmpty()) {
+                despuesDe = ClaveCronologica.de(pagina.get(pagina.size() - 1));
+            }
+        } while (pagina.size() == MAX_LIMITE_PAGINA);
+        log.info("Exportación terminada: {} pagos", total);
+        return total;
+    }
+    
+    /**
+     * Obtiene una página de todos los pagos en orden de creación
+     */
+    public PaginaResponse<PagoResponse> obtenerPaginaDePagos(String cursor, int limite) {
+        log.info("Obteniendo página de {} pagos", limite);
+        return paginar(cursor, limite, (despuesDe, n) -> pagoRepository.findPagina(despuesDe, n));
+    }
+    
+    /**
+     * Obtiene una página de los pagos de una orden en orden de creación
+     */
+    public PaginaResponse<PagoResponse> obtenerPaginaPorOrden(String orderId, String cursor, int limite) {
+        log.info("Obteniendo página de {} pagos para orden: {}", limite, orderId);
+        return paginar(cursor, limite, (despuesDe, n) -> pagoRepository.findPaginaPorOrden(orderId, despuesDe, n));
+    }
+    
+    /**
+     * Obtiene una página de los pagos de un cliente en orden de creación
+     */
+    public PaginaResponse<PagoResponse> obtenerPaginaPorCliente(String clienteId, String cursor, int limite) {
+        log.info("Obteniendo página de {} pagos para cliente: {}", limite, clienteId);
+        return paginar(cursor, limite, (despuesDe, n) -> pagoRepository.findPaginaPorCliente(clienteId, despuesDe, n));
+    }
+    
+    /**
+     * Obtiene una página de los pagos creados en [desde, hasta), opcionalmente filtrados por
+     * estado y moneda, en orden de creación
+     */
+    public PaginaResponse<PagoResponse> obtenerPaginaPorFechas(LocalDateTime desde, LocalDateTime hasta,
+                                                               Pago.EstadoPago estado, String moneda,
+                                                               String cursor, int limite) {
+        log.info("Obteniendo página de {} pagos entre {} y {}", limite, desde, hasta);
+        if (desde == null || hasta == null) {
+            throw new PagoValidationException(desde == null ? "desde" : "hasta", null,
+                    "El rango de fechas requiere desde y hasta");
+        }
+        if (!desde.isBefore(hasta)) {
+            throw new PagoValidationException("hasta", hasta.toString(),
+                    "La fecha hasta debe ser posterior a la fecha desde");
+        }
+        String filtroMoneda = moneda != null && !moneda.isBlank() ? moneda : null;
+        return paginar(cursor, limite,
+                (despuesDe, n) -> pagoRepository.findPaginaPorFechas(desde, hasta, estado, filtroMoneda, despuesDe, n));
+    }
+    
+    /**
+     * Obtiene los cambios de pagos posteriores a una secuencia, incluidas las eliminaciones,
+     * con solo el último cambio de cada pago
+     */
+    public CambiosResponse obtenerCambios(long desde, int limite) {
+        log.info("Obteniendo {} cambios desde la secuencia {}", limite, desde);
+        validarLimite(limite);
+        long hasta = pagoRepository.secuenciaConfirmada();
+        if (desde < 0 || desde > hasta) {
+            // En modo durable la secuencia se recupera del journal y del snapshot; sin journal se
+            // reinicia con el proceso y la réplica debe sincronizar desde 0
+            throw new PagoValidationException("desde", String.valueOf(desde),
+                    "La secuencia debe estar entre 0 y " + hasta + "; sincronizar desde 0");
+        }
+        
+        List<CambioPago> cambios = pagoRepository.findCambios(desde, hasta, limite + 1);
+        boolean hayMas = cambios.size() > limite;
+        List<CambioPago> pagina = hayMas ? cambios.subList(0, limite) : cambios;
+        long siguiente = hayMas ? pagina.get(limite - 1).secuencia() : hasta;
+        return new CambiosResponse(pagina.stream()
+                .map(cambio -> new CambioPagoResponse(cambio.secuencia(), cambio.id(), cambio.eliminado(),
+                        cambio.eliminado() ? null : convertToResponse(cambio.pago())))
+                .collect(Collectors.toList()), siguiente, hayMas);
+    }
+    
+    /**
+     * Obtiene las estadísticas de pagos mantenidas incrementalmente, sin recorrer el repositorio
+     */
+    public EstadisticasResponse obtenerEstadisticas() {
+        log.info("Obteniendo estadísticas de pagos");
+        return estadisticasPagos.obtener();
     }
     
     /**
@@ -111,58 +440,159 @@ public class PagoService {
     public PagoResponse actualizarEstadoPago(String pagoId, Pago.EstadoPago nuevoEstado) {
         log.info("Actualizando estado del pago {} a {}", pagoId, nuevoEstado);
         
-        Pago pago = pagoRepository.findById(pagoId)
-                .orElseThrow(() -> new PagoNotFoundException(pagoId));
-        
-        // Validar transición de estado
-        validateEstadoTransition(pago.getEstado(), nuevoEstado);
-        
-        pago.setEstado(nuevoEstado);
-        pago.setFechaActualizacion(LocalDateTime.now());
-        
-        // Si es completado, simular respuesta exitosa
-        if (nuevoEstado == Pago.EstadoPago.COMPLETED) {
-            pago.setCodigoRespuesta("SUCCESS");
-            pago.setMensajeRespuesta("Pago procesado exitosamente");
-            pago.setTransactionId("TXN_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
-        }
-        
-        Pago pagoActualizado = pagoRepository.save(pago);
+        Pago pagoActualizado = actualizarConReintentos(() -> leerParaTransicion(pagoId, nuevoEstado),
+                pago -> aplicarEstado(pago, nuevoEstado, LocalDateTime.now()));
         
         log.info("Estado del pago {} actualizado exitosamente", pagoId);
         return convertToResponse(pagoActualizado);
     }
     
     /**
-     * Refund de un pago
+     * Cambia varios pagos a un mismo estado con las reglas de actualizarEstadoPago. Cada pago
+     * se actualiza por separado, con su control de versión, y en paralelo; los que no se pueden
+     * cambiar se informan en su posición sin impedir los demás. La fecha de actualización es
+     * la misma para todo el lote y los observadores reciben un solo evento con los cambiados.
      */
-    public PagoResponse refundPago(String pagoId, BigDecimal montoRefund) {
-        log.info("Procesando refund para pago {} por monto {}", pagoId, montoRefund);
-        
-        Pago pago = pagoRepository.findById(pagoId)
-                .orElseThrow(() -> new PagoNotFoundException(pagoId));
+    public LotePagosResponse actualizarEstadoPagos(CambioEstadoLoteRequest request) {
+        List<String> ids = request.getIds();
+        Pago.EstadoPago nuevoEstado = request.getEstado();
+        if (nuevoEstado == null) {
+            throw new PagoValidationException("estado", null, "El nuevo estado es obligatorio");
+        }
+        if (ids == null || ids.isEmpty()) {
+            throw new PagoValidationException("ids", null, "El lote debe contener al menos un pago");
+        }
+        if (ids.size() > MAX_CAMBIOS_POR_LOTE) {
+            throw new PagoValidationException("ids", String.valueOf(ids.size()),
+                    "El lote no puede superar " + MAX_CAMBIOS_POR_LOTE + " pagos");
+        }
+        log.info("Actualizando estado de {} pagos a {}", ids.size(), nuevoEstado);
         
-        // Validar que el pago esté completado
-        if (pago.getEstado() != Pago.EstadoPago.COMPLETED) {
-            throw new PagoValidationException("Solo se pueden hacer refunds a pagos completados");
+        // IDs vacíos o repetidos se rechazan antes de tocar el repositorio
+        ResultadoLoteResponse[] resultados = new ResultadoLoteResponse[ids.size()];
+        Transicion[] transiciones = new Transicion[ids.size()];
+        List<Integer> posiciones = new ArrayList<>(ids.size());
+        Set<String> vistos = new HashSet<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            String pagoId = ids.get(i);
+            if (pagoId == null || pagoId.isBlank()) {
+                resultados[i] = ResultadoLoteResponse.error(i, "VALIDATION_ERROR", "ids", "El ID del pago es obligatorio");
+            } else if (!vistos.add(pagoId)) {
+                resultados[i] = ResultadoLoteResponse.error(i, "VALIDATION_ERROR", "ids",
+                        "El pago " + pagoId + " está repetido en el lote");
+            } else {
+                posiciones.add(i);
+            }
         }
         
-        // Validar monto de refund
-        if (montoRefund.compareTo(pago.getMonto()) > 0) {
-            throw new PagoValidationException("El monto del refund no puede ser mayor al monto del pago");
+        LocalDateTime ahora = LocalDateTime.now();
+        ejecutorLotes.procesar(posiciones, MINIMO_POR_TRAMO, i -> {
+            String pagoId = ids.get(i);
+            try {
+                Transicion transicion = intentarConReintentos(() -> leerParaTransicion(pagoId, nuevoEstado),
+                        pago -> aplicarEstado(pago, nuevoEstado, ahora));
+                transiciones[i] = transicion;
+                resultados[i] = ResultadoLoteResponse.exito(i, convertToResponse(transicion.pago()));
+            } catch (PagoNotFoundException e) {
+                resultados[i] = ResultadoLoteResponse.error(i, "PAGO_NOT_FOUND", "ids", e.getMessage());
+            } catch (PagoValidationException e) {
+                resultados[i] = ResultadoLoteResponse.error(i, "VALIDATION_ERROR", "estado", e.getMessage());
+            } catch (PagoConcurrencyException e) {
+                resultados[i] = ResultadoLoteResponse.error(i, "CONCURRENT_MODIFICATION", null, e.getMessage());
+            }
+        });
+        
+        List<Pago> actualizados = new ArrayList<>(posiciones.size());
+        List<Pago.EstadoPago> estadosAnteriores = new ArrayList<>(posiciones.size());
+        for (Transicion transicion : transiciones) {
+            if (transicion != null) {
+                actualizados.add(transicion.pago());
+                estadosAnteriores.add(transicion.estadoAnterior());
+            }
+        }
+        if (!actualizados.isEmpty()) {
+            observadores.forEach(observador -> observador.estadosCambiados(actualizados, estadosAnteriores));
         }
         
-        pago.setEstado(Pago.EstadoPago.REFUNDED);
-        pago.setFechaActualizacion(LocalDateTime.now());
-        pago.setCodigoRespuesta("REFUNDED");
-        pago.setMensajeRespuesta("Refund procesado exitosamente por " + montoRefund);
+        log.info("Estado actualizado a {} en {} pagos, {} con error", nuevoEstado, actualizados.size(),
+                ids.size() - actualizados.size());
+        return new LotePagosResponse(ids.size(), actualizados.size(), ids.size() - actualizados.size(),
+                Arrays.asList(resultados));
+    }
+    
+    /**
+     * Refund de un pago, hasta su saldo reembolsable. Un refund parcial suma a montoReembolsado
+     * y el pago pasa a REFUNDED cuando queda reembolsado por completo, igual que en restrictRefund.
+     */
+    public PagoResponse refundPago(String pagoId, BigDecimal montoRefund) {
+        log.info("Procesando refund para pago {} por monto {}", pagoId, montoRefund);
         
-        Pago pagoActualizado = pagoRepository.save(pago);
+        Pago pagoActualizado = aplicarRefund(montoRefund, () -> {
+            Pago pago = pagoRepository.findById(pagoId)
+                    .orElseThrow(() -> new PagoNotFoundException(pagoId));
+            
+            // Validar que el pago esté completado
+            if (pago.getEstado() != Pago.EstadoPago.COMPLETED) {
+                throw new PagoValidationException("Solo se pueden hacer refunds a pagos completados");
+            }
+            
+            // Validar monto de refund contra lo que aún no se reembolsó
+            if (montoRefund.compareTo(saldoReembolsable(pago)) > 0) {
+                throw new PagoValidationException("montoRefund", montoRefund.toString(),
+                        String.format("El monto del refund no puede ser mayor al saldo reembolsable del pago (%.2f)",
+                                saldoReembolsable(pago)));
+            }
+            return pago;
+        }, pago -> {
+            BigDecimal reembolsado = pago.getMontoReembolsado() != null
+                    ? pago.getMontoReembolsado().add(montoRefund)
+                    : montoRefund;
+            pago.setMontoReembolsado(reembolsado);
+            if (reembolsado.compareTo(pago.getMonto()) >= 0) {
+                pago.setEstado(Pago.EstadoPago.REFUNDED);
+            }
+            pago.setFechaActualizacion(LocalDateTime.now());
+            pago.setCodigoRespuesta("REFUNDED");
+            pago.setMensajeRespuesta("Refund procesado exitosamente por " + montoRefund);
+        });
         
         log.info("Refund procesado exitosamente para pago {}", pagoId);
         return convertToResponse(pagoActualizado);
     }
     
+    /**
+     * Valida el tamaño de página pedido
+     */
+    private static void validarLimite(int limite) {
+        if (limite < 1 || limite > MAX_LIMITE_PAGINA) {
+            throw new PagoValidationException("limit", String.valueOf(limite),
+                    "El límite debe estar entre 1 y " + MAX_LIMITE_PAGINA);
+        }
+    }
+    
+    /**
+     * Valida cursor y límite y pide un elemento extra para saber si hay otra página
+     */
+    private PaginaResponse<PagoResponse> paginar(String cursor, int limite,
+                                                 BiFunction<ClaveCronologica, Integer, List<Pago>> consulta) {
+        validarLimite(limite);
+        ClaveCronologica despuesDe = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                despuesDe = ClaveCronologica.decodificar(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new PagoValidationException("cursor", cursor, "El cursor de paginación no es válido");
+            }
+        }
+        
+        List<Pago> pagos = consulta.apply(despuesDe, limite + 1);
+        boolean hayMas = pagos.size() > limite;
+        List<Pago> pagina = hayMas ? pagos.subList(0, limite) : pagos;
+        String siguienteCursor = hayMas ? ClaveCronologica.de(pagina.get(limite - 1)).codificar() : null;
+        return new PaginaResponse<>(pagina.stream().map(this::convertToResponse).collect(Collectors.toList()),
+                siguienteCursor, hayMas);
+    }
+    
     /**
      * Valida la request de pago
      */
@@ -197,6 +627,116 @@ public class PagoService {
         }
     }
     
+    /**
+     * Crea el pago con {@code crear} salvo que la request sea un doble envío: en modo
+     * RECHAZAR lanza PagoDuplicadoException y en DEVOLVER_ORIGINAL devuelve el pago original.
+     * La huella queda reservada hasta que el pago está guardado, así que un duplicado que
+     * llega mientras el original sigue en curso espera su resultado en vez de crear otro.
+     */
+    private PagoResponse crearSinDuplicar(PagoRequest request, Supplier<Pago> crear) {
+        if (detectorDuplicados.getModo() == DetectorDuplicados.Modo.DESHABILITADO) {
+            return convertToResponse(crear.get());
+        }
+        long huella = DetectorDuplicados.huella(request.getClienteId(), request.getOrderId(),
+                request.getMonto(), request.getMetodoPago());
+        CompletableFuture<Pago> reserva = new CompletableFuture<>();
+        CompletableFuture<Pago> enCurso;
+        while ((enCurso = detectorDuplicados.reservar(huella, reserva)) != null) {
+            // Si el original no se creó o era otra request con la misma huella, se vuelve a intentar
+            Pago original = enCurso.join();
+            if (original != null && esDobleEnvio(original, request)) {
+                return responderDuplicado(request, original);
+            }
+        }
+        Pago creado = null;
+        try {
+            Pago original = buscarDuplicado(request, huella);
+            if (original != null) {
+                creado = original;
+                return responderDuplicado(request, original);
+            }
+            creado = crear.get();
+            return convertToResponse(creado);
+        } finally {
+            detectorDuplicados.liberar(huella, reserva, creado);
+        }
+    }
+    
+    private PagoResponse responderDuplicado(PagoRequest request, Pago original) {
+        if (detectorDuplicados.getModo() == DetectorDuplicados.Modo.RECHAZAR) {
+            throw new PagoDuplicadoException(original.getId());
+        }
+        log.info("Request duplicada para orden {}, se devuelve el pago {}", request.getOrderId(), original.getId());
+        return convertToResponse(original);
+    }
+    
+    private static void validarClaveIdempotencia(String claveIdempotencia) {
+        if (claveIdempotencia.isBlank() || claveIdempotencia.length() > MAX_LONGITUD_CLAVE_IDEMPOTENCIA) {
+            throw new PagoValidationException("Idempotency-Key", claveIdempotencia,
+                    "La clave de idempotencia debe tener entre 1 y " + MAX_LONGITUD_CLAVE_IDEMPOTENCIA + " caracteres");
+        }
+    }
+    
+    private Pago guardarNuevo(Pago pago) {
+        Pago pagoGuardado = pagoRepository.save(pago);
+        observadores.forEach(observador -> observador.pagoCreado(pagoGuardado));
+        return pagoGuardado;
+    }
+    
+    /**
+     * Pago de la misma orden con igual cliente, monto y método creado dentro de la ventana.
+     * Solo se consulta el repositorio si el filtro de huellas indica que pudo haberse visto.
+     */
+    private Pago buscarDuplicado(PagoRequest request, long huella) {
+        if (!detectorDuplicados.registrar(huella)) {
+            return null;
+        }
+        for (Pago pago : pagoRepository.findByOrderId(request.getOrderId())) {
+            if (esDobleEnvio(pago, request)) {
+                return pago;
+            }
+        }
+        return null;
+    }
+    
+    private boolean esDobleEnvio(Pago pago, PagoRequest request) {
+        LocalDateTime desde = LocalDateTime.now().minus(detectorDuplicados.getVentana());
+        return Objects.equals(pago.getOrderId(), request.getOrderId())
+                && Objects.equals(pago.getClienteId(), request.getClienteId())
+                && Objects.equals(pago.getMetodoPago(), request.getMetodoPago())
+                && pago.getMonto().compareTo(request.getMonto()) == 0
+                && !pago.getFechaCreacion().isBefore(desde);
+    }
+    
+    private static List<String> distintas(List<String> claves) {
+        if (claves == null) {
+            return List.of();
+        }
+        Set<String> distintas = new LinkedHashSet<>(claves.size() * 2);
+        for (String clave : claves) {
+            if (clave != null && !clave.isBlank()) {
+                distintas.add(clave);
+            }
+        }
+        return new ArrayList<>(distintas);
+    }
+    
+    private Pago nuevoPago(PagoRequest request, LocalDateTime ahora) {
+        Pago pago = new Pago();
+        pago.setId(generadorId.nuevoId());
+        pago.setOrderId(request.getOrderId());
+        pago.setMonto(request.getMonto());
+        pago.setEstado(Pago.EstadoPago.PENDING);
+        pago.setFechaCreacion(ahora);
+        pago.setFechaActualizacion(ahora);
+        pago.setMetodoPago(request.getMetodoPago());
+        pago.setMoneda(request.getMoneda());
+        pago.setDescripcion(request.getDescripcion());
+        pago.setClienteId(request.getClienteId());
+        pago.setPaymentGateway(request.getPaymentGateway() != null ? request.getPaymentGateway() : "DEFAULT");
+        return pago;
+    }
+    
     /**
      * Simula el procesamiento del pago
      */
@@ -218,7 +758,54 @@ public class PagoService {
             pago.setEstado(Pago.EstadoPago.COMPLETED);
             pago.setCodigoRespuesta("SUCCESS");
             pago.setMensajeRespuesta("Pago procesado exitosamente");
-            pago.setTransactionId("TXN_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+            pago.setTransactionId(generadorId.nuevoTransactionId());
+        }
+    }
+    
+    /**
+     * Procesa en ProcesadorPagos un pago creado en modo asíncrono. Si mientras esperaba en cola
+     * dejó PENDING (por ejemplo, se canceló) o se eliminó, no se toca.
+     */
+    private void procesarPendiente(String pagoId) {
+        try {
+            actualizarConReintentos(() -> {
+                Pago pago = pagoRepository.findById(pagoId)
+                        .orElseThrow(() -> new PagoNotFoundException(pagoId));
+                if (pago.getEstado() != Pago.EstadoPago.PENDING) {
+                    throw new PagoValidationException("estado", pago.getEstado().name(), "El pago ya no está pendiente");
+                }
+                return pago;
+            }, pago -> {
+                procesarPago(pago);
+                pago.setFechaActualizacion(LocalDateTime.now());
+            });
+            log.info("Pago {} procesado en segundo plano", pagoId);
+        } catch (PagoNotFoundException | PagoValidationException e) {
+            log.info("Pago {} no se procesa: {}", pagoId, e.getMessage());
+        }
+    }
+    
+    /**
+     * Lee el pago y valida que pueda pasar a {@code nuevoEstado}
+     */
+    private Pago leerParaTransicion(String pagoId, Pago.EstadoPago nuevoEstado) {
+        Pago pago = pagoRepository.findById(pagoId)
+                .orElseThrow(() -> new PagoNotFoundException(pagoId));
+        
+        // Validar transición de estado
+        validateEstadoTransition(pago.getEstado(), nuevoEstado);
+        return pago;
+    }
+    
+    private void aplicarEstado(Pago pago, Pago.EstadoPago nuevoEstado, LocalDateTime ahora) {
+        pago.setEstado(nuevoEstado);
+        pago.setFechaActualizacion(ahora);
+        
+        // Si es completado, simular respuesta exitosa
+        if (nuevoEstado == Pago.EstadoPago.COMPLETED) {
+            pago.setCodigoRespuesta("SUCCESS");
+            pago.setMensajeRespuesta("Pago procesado exitosamente");
+            pago.setTransactionId(generadorId.nuevoTransactionId());
         }
     }
     
@@ -252,8 +839,17 @@ public class PagoService {
     }
     
     /**
-     * Procesa un refund restringido validando el límite máximo
-     * @param refundRequest Request con orderId, amount y maxRefundable
+     * Procesa un refund restringido contra el saldo reembolsable de la orden, que se calcula
+     * en el servidor a partir del saldo que mantiene el repositorio. El maxRefundable del
+     * request es opcional y, si viene, limita además el monto. Se admiten varios refunds
+     * parciales: el pago sigue COMPLETED hasta reembolsarse por completo y pasa a REFUNDED.
+     *
+     * Cada refund se aplica sobre un solo pago, el de mayor saldo reembolsable según el saldo
+     * de la orden, así que un monto que solo cubriría la suma de varios pagos se rechaza con
+     * ese mayor saldo. El pago se actualiza con el control de versión, revalidando su saldo
+     * en cada reintento, así que refunds concurrentes sobre la misma orden no pueden superar
+     * lo capturado.
+     * @param refundRequest Request con orderId, amount y maxRefundable opcional
      * @return PagoResponse del pago procesado
      */
     public PagoResponse restrictRefund(RefundRequest refundRequest) {
@@ -263,55 +859,73 @@ public class PagoService {
         // Validar el request
         validateRefundRequest(refundRequest);
         
-        // Validar que el monto no exceda el límite
-        if (refundRequest.getAmount().compareTo(refundRequest.getMaxRefundable()) > 0) {
+        // Validar que el monto no exceda el límite indicado por el cliente
+        BigDecimal amount = refundRequest.getAmount();
+        if (refundRequest.getMaxRefundable() != null && amount.compareTo(refundRequest.getMaxRefundable()) > 0) {
             throw new PagoValidationException(
                 "amount", 
-                refundRequest.getAmount().toString(),
+                amount.toString(),
                 String.format("El monto del refund (%.2f) excede el límite máximo permitido (%.2f)",
-                    refundRequest.getAmount(), refundRequest.getMaxRefundable())
+                    amount, refundRequest.getMaxRefundable())
             );
         }
         
-        // Buscar pagos de la orden
-        List<Pago> pagosOrden = pagoRepository.findByOrderId(refundRequest.getOrderId());
-        
-        if (pagosOrden.isEmpty()) {
-            throw new PagoNotFoundException("No se encontraron pagos para la orden: " + refundRequest.getOrderId());
-        }
-        
-        // Buscar el primer pago completado para procesar el refund
-        Pago pagoParaRefund = pagosOrden.stream()
-                .filter(p -> p.getEstado() == Pago.EstadoPago.COMPLETED)
-                .findFirst()
-                .orElseThrow(() -> new PagoValidationException(
+        BigDecimal[] limite = new BigDecimal[1];
+        Pago pagoActualizado = aplicarRefund(amount, () -> {
+            // El saldo de la orden decide y elige el pago sin recorrer sus pagos
+            SaldoOrden saldo = pagoRepository.saldoOrden(refundRequest.getOrderId())
+                    .orElseThrow(() -> new PagoNotFoundException(
+                        "No se encontraron pagos para la orden: " + refundRequest.getOrderId()));
+            
+            if (saldo.capturado().signum() == 0) {
+                throw new PagoValidationException(
                     "estado", 
                     "N/A", 
                     "No hay pagos completados disponibles para refund en la orden: " + refundRequest.getOrderId()
-                ));
-        
-        // Validar que el monto del refund no sea mayor al monto del pago original
-        if (refundRequest.getAmount().compareTo(pagoParaRefund.getMonto()) > 0) {
-            throw new PagoValidationException(
-                "amount",
-                refundRequest.getAmount().toString(),
-                String.format("El monto del refund (%.2f) no puede ser mayor al monto del pago original (%.2f)",
-                    refundRequest.getAmount(), pagoParaRefund.getMonto())
+                );
+            }
+            
+            if (amount.compareTo(saldo.reembolsable()) > 0) {
+                throw new PagoValidationException(
+                    "amount",
+                    amount.toString(),
+                    String.format("El monto del refund (%.2f) excede el saldo reembolsable de la orden (%.2f)",
+                        amount, saldo.reembolsable())
+                );
+            }
+            if (amount.compareTo(saldo.mayorReembolsable()) > 0) {
+                throw excedeSaldoDeUnPago(amount, saldo.mayorReembolsable());
+            }
+            limite[0] = refundRequest.getMaxRefundable() != null
+                    ? refundRequest.getMaxRefundable().min(saldo.reembolsable())
+                    : saldo.reembolsable();
+            
+            String pagoId = saldo.pagoMayorReembolsable().orElseThrow();
+            Pago pago = pagoRepository.findById(pagoId).orElseThrow(() -> new PagoNotFoundException(pagoId));
+            // Un refund concurrente pudo consumir el saldo entre las dos lecturas
+            if (pago.getEstado() != Pago.EstadoPago.COMPLETED || amount.compareTo(saldoReembolsable(pago)) > 0) {
+                throw excedeSaldoDeUnPago(amount, pago.getEstado() == Pago.EstadoPago.COMPLETED
+                        ? saldoReembolsable(pago) : BigDecimal.ZERO);
+            }
+            return pago;
+        }, pagoParaRefund -> {
+            // Procesar el refund; el pago leído no cambió, así que su saldo sigue alcanzando
+            BigDecimal reembolsado = pagoParaRefund.getMontoReembolsado() != null
+                    ? pagoParaRefund.getMontoReembolsado().add(amount)
+                    : amount;
+            pagoParaRefund.setMontoReembolsado(reembolsado);
+            if (reembolsado.compareTo(pagoParaRefund.getMonto()) >= 0) {
+                pagoParaRefund.setEstado(Pago.EstadoPago.REFUNDED);
+            }
+            pagoParaRefund.setFechaActualizacion(LocalDateTime.now());
+            pagoParaRefund.setCodigoRespuesta("RESTRICTED_REFUND_SUCCESS");
+            pagoParaRefund.setMensajeRespuesta(
+                String.format("Refund restringido procesado exitosamente. Monto: %.2f, Límite: %.2f, Restante: %.2f",
+                    amount, 
+                    limite[0],
+                    limite[0].subtract(amount))
             );
-        }
-        
-        // Procesar el refund
-        pagoParaRefund.setEstado(Pago.EstadoPago.REFUNDED);
-        pagoParaRefund.setFechaActualizacion(LocalDateTime.now());
-        pagoParaRefund.setCodigoRespuesta("RESTRICTED_REFUND_SUCCESS");
-        pagoParaRefund.setMensajeRespuesta(
-            String.format("Refund restringido procesado exitosamente. Monto: %.2f, Límite: %.2f, Restante: %.2f",
-                refundRequest.getAmount(), 
-                refundRequest.getMaxRefundable(),
-                refundRequest.getRemainingRefundable())
-        );
-        
-        Pago pagoActualizado = pagoRepository.save(pagoParaRefund);
+        });
         
         log.info("Refund restringido procesado exitosamente para pago {} de la orden {}", 
                 pagoActualizado.getId(), refundRequest.getOrderId());
@@ -319,6 +933,27 @@ public class PagoService {
         return convertToResponse(pagoActualizado);
     }
     
+    /**
+     * Saldo de refunds de una orden: capturado, reembolsado y lo que aún se puede reembolsar
+     */
+    public SaldoOrdenResponse obtenerSaldoOrden(String orderId) {
+        log.info("Consultando saldo de refunds de la orden: {}", orderId);
+        SaldoOrden saldo = pagoRepository.saldoOrden(orderId)
+                .orElseThrow(() -> new PagoNotFoundException("No se encontraron pagos para la orden: " + orderId));
+        return new SaldoOrdenResponse(orderId, saldo.pagos(), saldo.capturado(), saldo.reembolsado(),
+                saldo.reembolsable(), saldo.mayorReembolsable());
+    }
+    
+    private static PagoValidationException excedeSaldoDeUnPago(BigDecimal amount, BigDecimal mayorSaldo) {
+        return new PagoValidationException("amount", amount.toString(),
+                String.format("El monto del refund (%.2f) no puede ser mayor al saldo reembolsable de un pago de la orden (%.2f)",
+                        amount, mayorSaldo));
+    }
+    
+    private BigDecimal saldoReembolsable(Pago pago) {
+        return pago.getMontoReembolsado() != null ? pago.getMonto().subtract(pago.getMontoReembolsado()) : pago.getMonto();
+    }
+    
     /**
      * Valida el request de refund restringido
      */
@@ -331,19 +966,73 @@ public class PagoService {
             throw new PagoValidationException("amount", null, "El amount es obligatorio");
         }
         
-        if (request.getMaxRefundable() == null) {
-            throw new PagoValidationException("maxRefundable", null, "El maxRefundable es obligatorio");
-        }
-        
         if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new PagoValidationException("amount", request.getAmount().toString(), "El amount debe ser mayor a 0");
         }
         
-        if (request.getMaxRefundable().compareTo(BigDecimal.ZERO) <= 0) {
+        if (request.getMaxRefundable() != null && request.getMaxRefundable().compareTo(BigDecimal.ZERO) <= 0) {
             throw new PagoValidationException("maxRefundable", request.getMaxRefundable().toString(), "El maxRefundable debe ser mayor a 0");
         }
     }
 
+    /**
+     * Lee y valida el pago con {@code leer}, y aplica {@code cambio} de forma atómica solo si
+     * nadie lo modificó desde esa lectura. Ante un conflicto de versión vuelve a leer y validar,
+     * así que una operación concurrente que invalidó la precondición (por ejemplo, otro refund)
+     * termina en error de validación y no en una doble aplicación.
+     */
+    private Pago actualizarConReintentos(Supplier<Pago> leer, Consumer<Pago> cambio) {
+        Transicion transicion = intentarConReintentos(leer, cambio);
+        notificarCambioEstado(transicion.pago(), transicion.estadoAnterior());
+        return transicion.pago();
+    }
+
+    /**
+     * Igual que actualizarConReintentos, pero publica el cambio como refund de {@code monto}
+     * para que los observadores lo descuenten aunque el pago siga COMPLETED
+     */
+    private Pago aplicarRefund(BigDecimal monto, Supplier<Pago> leer, Consumer<Pago> cambio) {
+        Transicion transicion = intentarConReintentos(leer, cambio);
+        observadores.forEach(observador ->
+                observador.refundAplicado(transicion.pago(), transicion.estadoAnterior(), monto));
+        return transicion.pago();
+    }
+
+    /**
+     * Igual que actualizarConReintentos pero sin notificar, para que el lote publique un solo evento
+     */
+    private Transicion intentarConReintentos(Supplier<Pago> leer, Consumer<Pago> cambio) {
+        for (int intento = 1; ; intento++) {
+            Pago leido = leer.get();
+            Pago.EstadoPago estadoAnterior = leido.getEstado();
+            try {
+                Pago actualizado = pagoRepository.actualizar(leido.getId(), leido.getVersion(), pago -> {
+                    cambio.accept(pago);
+                    return pago;
+                });
+                return new Transicion(actualizado, estadoAnterior);
+            } catch (PagoConcurrencyException e) {
+                if (intento >= MAX_INTENTOS_CONFLICTO) {
+                    throw e;
+                }
+                log.warn("Conflicto de versión en el pago {} (intento {}), se reintenta", leido.getId(), intento);
+            }
+        }
+    }
+
+    /**
+     * Pago ya guardado junto con el estado que tenía antes del cambio
+     */
+    private record Transicion(Pago pago, Pago.EstadoPago estadoAnterior) {
+    }
+
+    /**
+     * Publica a los observadores un cambio de estado ya guardado
+     */
+    private void notificarCambioEstado(Pago pago, Pago.EstadoPago estadoAnterior) {
+        observadores.forEach(observador -> observador.estadoCambiado(pago, estadoAnterior));
+    }
+
     /**
      * Convierte un Pago a PagoResponse
      */
@@ -362,7 +1051,8 @@ public class PagoService {
                 pago.getTransactionId(),
                 pago.getPaymentGateway(),
                 pago.getCodigoRespuesta(),
-                pago.getMensajeRespuesta()
+                pago.getMensajeRespuesta(),
+                pago.getMontoReembolsado()
         );
     }
 }
\ No newline at end of file
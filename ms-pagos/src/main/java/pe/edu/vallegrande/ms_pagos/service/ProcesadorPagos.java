@@ -0,0 +1,172 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Procesa fuera de la petición los pagos creados en modo asíncrono (POST /pagos con
+ * Prefer: respond-async) sobre un pool de hilos y una cola acotados.
+ *
+ * La capacidad se reserva antes de guardar el pago: si la cola está llena la petición recibe
+ * 503 y no queda ningún pago PENDING sin procesar. Un pago ya guardado nunca se rechaza: si
+ * el pool se cerró entre medio, queda PENDING y se recupera con {@link #recuperar} al
+ * reiniciar, igual que los que seguían en cola al cerrar. Publica en Micrometer los pagos en cola
+ * (pagos.procesamiento.cola), los que se están procesando (pagos.procesamiento.en-curso), la
+ * espera en cola (pagos.procesamiento.espera) y la duración del procesamiento
+ * (pagos.procesamiento.duracion).
+ */
+@Slf4j
+public class ProcesadorPagos implements AutoCloseable {
+
+    // Tiempo que close() deja a los pagos ya admitidos para terminar
+    private static final long ESPERA_CIERRE_SEGUNDOS = 10;
+
+    private final ThreadPoolExecutor pool;
+    private final int capacidad;
+    private final AtomicInteger admitidos = new AtomicInteger();
+    private final AtomicInteger enCurso = new AtomicInteger();
+    // Pagos recuperados que esperan un lugar libre para entrar al pool
+    private final Queue<Runnable> recuperados = new ConcurrentLinkedQueue<>();
+    private final Timer espera;
+    private final Timer duracion;
+
+    public ProcesadorPagos(int hilos, int capacidadCola, MeterRegistry registro) {
+        if (hilos < 1 || capacidadCola < 1) {
+            throw new IllegalArgumentException("Hilos y capacidad de cola deben ser positivos");
+        }
+        AtomicInteger contador = new AtomicInteger();
+        this.capacidad = hilos + capacidadCola;
+        // Solo se envían tareas con capacidad reservada, así que la cola nunca se llena
+        this.pool = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidad), tarea -> {
+                    Thread hilo = new Thread(tarea, "procesamiento-pagos-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("pagos.procesamiento.cola", this, ProcesadorPagos::enCola)
+                .description("Pagos admitidos que esperan un hilo").register(registro);
+        Gauge.builder("pagos.procesamiento.en-curso", enCurso, AtomicInteger::get)
+                .description("Pagos que se están procesando").register(registro);
+        this.espera = Timer.builder("pagos.procesamiento.espera")
+                .description("Tiempo en cola hasta empezar a procesar").register(registro);
+        this.duracion = Timer.builder("pagos.procesamiento.duracion")
+                .description("Duración del procesamiento de un pago").register(registro);
+    }
+
+    /**
+     * Reserva un lugar, ejecuta {@code registro} en el hilo llamador y encola {@code tarea}.
+     * Si {@code registro} falla se libera el lugar y no se encola nada.
+     *
+     * @throws PagoCapacidadException si ya hay el máximo de pagos en cola y en curso
+     */
+    public void ejecutar(Runnable registro, Runnable tarea) {
+        if (!reservar()) {
+            throw new PagoCapacidadException("pagos en procesamiento", capacidad);
+        }
+        try {
+            registro.run();
+        } catch (RuntimeException e) {
+            admitidos.decrementAndGet();
+            throw e;
+        }
+        encolar(tarea);
+    }
+
+    /**
+     * Encola pagos que quedaron sin procesar (por ejemplo, al reiniciar). Los que no caben
+     * esperan aquí y entran a medida que se liberan lugares, sin rechazar a ninguno.
+     */
+    public void recuperar(Collection<Runnable> tareas) {
+        recuperados.addAll(tareas);
+        admitirRecuperados();
+    }
+
+    public int enCola() {
+        return pool.getQueue().size() + recuperados.size();
+    }
+
+    public int enCurso() {
+        return enCurso.get();
+    }
+
+    private boolean reservar() {
+        if (admitidos.incrementAndGet() > capacidad) {
+            admitidos.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Encola una tarea con lugar reservado. Si el pool ya se cerró, la tarea no se ejecuta y
+     * su pago queda PENDING hasta el próximo arranque.
+     */
+    private void encolar(Runnable tarea) {
+        long encolado = System.nanoTime();
+        try {
+            pool.execute(() -> procesar(tarea, encolado));
+        } catch (RejectedExecutionException e) {
+            // Solo ocurre con el pool cerrado
+            admitidos.decrementAndGet();
+            log.warn("Procesamiento cerrado; el pago queda PENDING y se recupera al reiniciar");
+        }
+    }
+
+    private void admitirRecuperados() {
+        while (!recuperados.isEmpty() && !pool.isShutdown() && reservar()) {
+            Runnable tarea = recuperados.poll();
+            if (tarea == null) {
+                // Otro hilo tomó el último; se libera el lugar y se vuelve a mirar la cola
+                admitidos.decrementAndGet();
+                continue;
+            }
+            encolar(tarea);
+        }
+    }
+
+    private void procesar(Runnable tarea, long encolado) {
+        long inicio = System.nanoTime();
+        espera.record(inicio - encolado, TimeUnit.NANOSECONDS);
+        enCurso.incrementAndGet();
+        try {
+            tarea.run();
+        } catch (RuntimeException e) {
+            log.error("Error procesando un pago en segundo plano", e);
+        } finally {
+            duracion.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            enCurso.decrementAndGet();
+            admitidos.decrementAndGet();
+            admitirRecuperados();
+        }
+    }
+
+    /**
+     * Deja de admitir pagos y espera a que terminen los ya admitidos. Los que no alcanzan a
+     * procesarse quedan PENDING y se recuperan al reiniciar.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(ESPERA_CIERRE_SEGUNDOS, TimeUnit.SECONDS)) {
+                log.warn("{} pagos quedaron PENDING sin procesar al cerrar; se recuperan al reiniciar",
+                        pool.shutdownNow().size() + recuperados.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.springframework.stereotype.Component;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResumenClienteResponse;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumen por cliente (pagos, fallidos, monto completado neto de refunds por moneda y fecha
+ * del último pago)
+ * mantenido de forma incremental a partir de los eventos de PagoService. Cada cliente tiene un
+ * valor inmutable que se reemplaza dentro de un compute, así que leerlo es un get del mapa sin
+ * importar cuántos pagos tenga. Los eventos se aplican como sumas y restas, por lo que dos
+ * cambios concurrentes del mismo cliente dan el mismo resultado en cualquier orden.
+ */
+@Component
+public class ResumenesClientes implements PagoObservador {
+
+    private final Map<String, Resumen> resumenes = new ConcurrentHashMap<>();
+
+    @Override
+    public void pagoCreado(Pago pago) {
+        if (pago.getClienteId() == null) {
+            return;
+        }
+        resumenes.compute(pago.getClienteId(), (id, resumen) -> (resumen != null ? resumen : Resumen.VACIO).conPago(pago));
+    }
+
+    @Override
+    public void estadoCambiado(Pago pago, Pago.EstadoPago estadoAnterior) {
+        if (pago.getClienteId() == null || estadoAnterior == pago.getEstado()) {
+            return;
+        }
+        resumenes.computeIfPresent(pago.getClienteId(), (id, resumen) -> resumen.conCambio(pago, estadoAnterior));
+    }
+
+    @Override
+    public void refundAplicado(Pago pago, Pago.EstadoPago estadoAnterior, BigDecimal monto) {
+        if (pago.getClienteId() == null) {
+            return;
+        }
+        resumenes.computeIfPresent(pago.getClienteId(), (id, resumen) -> resumen.conRefund(pago, estadoAnterior, monto));
+    }
+
+    @Override
+    public void pagosRecuperados(Collection<Pago> pagos) {
+        resumenes.clear();
+        pagos.forEach(this::pagoCreado);
+    }
+
+    /**
+     * Resumen del cliente en tiempo constante; vacío si no tiene pagos
+     */
+    public Optional<ResumenClienteResponse> obtener(String clienteId) {
+        return Optional.ofNullable(resumenes.get(clienteId)).map(resumen -> resumen.aResponse(clienteId));
+    }
+
+    /**
+     * Recalcula el resumen recorriendo los pagos del cliente. Es O(n) y sirve como referencia
+     * para verificar el resumen incremental.
+     */
+    public static ResumenClienteResponse recalcular(String clienteId, Collection<Pago> pagos) {
+        Resumen resumen = Resumen.VACIO;
+        for (Pago pago : pagos) {
+            resumen = resumen.conPago(pago);
+        }
+        return resumen.aResponse(clienteId);
+    }
+
+    private record Resumen(long pagos, long fallidos, LocalDateTime ultimoPago, Map<String, BigDecimal> completadoPorMoneda) {
+
+        static final Resumen VACIO = new Resumen(0, 0, null, Map.of());
+
+        Resumen conPago(Pago pago) {
+            LocalDateTime fecha = pago.getFechaCreacion();
+            LocalDateTime ultimo = ultimoPago == null || (fecha != null && fecha.isAfter(ultimoPago)) ? fecha : ultimoPago;
+            Map<String, BigDecimal> completado = pago.getEstado() == Pago.EstadoPago.COMPLETED
+                    ? sumar(pago.getMoneda(), EstadisticasPagos.montoNeto(pago)) : completadoPorMoneda;
+            return new Resumen(pagos + 1, fallidos + (pago.getEstado() == Pago.EstadoPago.FAILED ? 1 : 0),
+                    ultimo, completado);
+        }
+
+        Resumen conCambio(Pago pago, Pago.EstadoPago estadoAnterior) {
+            long deltaFallidos = (pago.getEstado() == Pago.EstadoPago.FAILED ? 1 : 0)
+                    - (estadoAnterior == Pago.EstadoPago.FAILED ? 1 : 0);
+            // Los estados son distintos, así que a lo sumo uno de los dos es COMPLETED
+            Map<String, BigDecimal> completado = completadoPorMoneda;
+            BigDecimal neto = EstadisticasPagos.montoNeto(pago);
+            if (estadoAnterior == Pago.EstadoPago.COMPLETED && neto != null) {
+                completado = sumar(pago.getMoneda(), neto.negate());
+            } else if (pago.getEstado() == Pago.EstadoPago.COMPLETED) {
+                completado = sumar(pago.getMoneda(), neto);
+            }
+            return new Resumen(pagos, fallidos + deltaFallidos, ultimoPago, completado);
+        }
+
+        /**
+         * Los refunds solo se aplican a pagos completados y no pasan por FAILED; el monto
+         * descontado es todo lo que el pago aportaba si quedó reembolsado por completo
+         */
+        Resumen conRefund(Pago pago, Pago.EstadoPago estadoAnterior, BigDecimal monto) {
+            if (estadoAnterior != Pago.EstadoPago.COMPLETED) {
+                return this;
+            }
+            return new Resumen(pagos, fallidos, ultimoPago, sumar(pago.getMoneda(), monto.negate()));
+        }
+
+        /**
+         * Copia del mapa de montos con {@code monto} sumado a la moneda; las monedas en cero se quitan
+         */
+        private Map<String, BigDecimal> sumar(String moneda, BigDecimal monto) {
+            if (moneda == null || monto == null) {
+                return completadoPorMoneda;
+            }
+            Map<String, BigDecimal> copia = new HashMap<>(completadoPorMoneda);
+            BigDecimal total = copia.merge(moneda, monto, BigDecimal::add);
+            if (total.signum() == 0) {
+                copia.remove(moneda);
+            }
+            return Collections.unmodifiableMap(copia);
+        }
+
+        ResumenClienteResponse aResponse(String clienteId) {
+            return new ResumenClienteResponse(clienteId, pagos, fallidos, new TreeMap<>(completadoPorMoneda), ultimoPago);
+        }
+    }
+}
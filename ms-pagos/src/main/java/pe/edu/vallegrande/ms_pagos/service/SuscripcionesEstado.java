@@ -0,0 +1,371 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import lombok.extern.slf4j.Slf4j;
+import pe.edu.vallegrande.ms_pagos.dto.response.EventoEstadoResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reparte los cambios de estado de los pagos a los suscriptores de GET /pagos/eventos.
+ *
+ * Cada suscripción tiene una cola acotada: el evento se encola con offer en el hilo de la
+ * petición y un pool pequeño lo entrega después, así que escribir un pago nunca espera a un
+ * cliente. Si la cola de una suscripción se llena, la suscripción se da de baja y recibe un
+ * aviso de desborde en lugar de frenar al resto. Las suscripciones se indexan por orden y por
+ * cliente, de modo que cada evento solo recorre las interesadas.
+ *
+ * Cada envío tiene un plazo de escritura. Un vigía revisa los envíos en curso y, si uno lo
+ * supera, da de baja la suscripción y agrega al pool un hilo en reemplazo del que quedó
+ * bloqueado, que se devuelve cuando el envío termina (al vencer el timeout de escritura del
+ * servidor). Así unos pocos clientes detenidos no ocupan todos los hilos de entrega ni
+ * desbordan las colas de los demás.
+ */
+@Slf4j
+public class SuscripcionesEstado implements PagoObservador, AutoCloseable {
+
+    /**
+     * Recibe los eventos de una suscripción. Se invoca desde el pool de entrega, nunca desde dos
+     * hilos a la vez para la misma suscripción; una excepción da de baja la suscripción.
+     */
+    public interface Destino {
+
+        void enviar(EventoEstadoResponse evento) throws IOException;
+
+        /**
+         * La cola se llenó y la suscripción terminó; los eventos pendientes se descartaron
+         */
+        void desbordado() throws IOException;
+    }
+
+    // Hilos de reemplazo que puede haber a la vez, para que muchos clientes detenidos no
+    // multipliquen los hilos; sobre el límite la suscripción igual se da de baja
+    static final int MAX_HILOS_REEMPLAZO = 64;
+
+    private static final Duration PLAZO_ENVIO_POR_DEFECTO = Duration.ofSeconds(5);
+
+    // Marcas del envío en curso de una suscripción; cualquier otro valor es su nanoTime de inicio
+    private static final long SIN_ENVIO = Long.MIN_VALUE;
+    private static final long ENVIO_VENCIDO = Long.MAX_VALUE;
+
+    private final ThreadPoolExecutor entregas;
+    private final ScheduledThreadPoolExecutor vigia;
+    private final long plazoEnvioNanos;
+    private final Set<Suscripcion> enviando = ConcurrentHashMap.newKeySet();
+    private int hilosReemplazo; // protegido por entregas
+    private final int capacidadCola;
+    private final int maxSuscripciones;
+    private final AtomicInteger activas = new AtomicInteger();
+
+    // Una suscripción está en un solo índice: por orden si la filtra, si no por cliente, si no en generales
+    private final Map<String, Set<Suscripcion>> porOrden = new ConcurrentHashMap<>();
+    private final Map<String, Set<Suscripcion>> porCliente = new ConcurrentHashMap<>();
+    private final Set<Suscripcion> generales = ConcurrentHashMap.newKeySet();
+
+    public SuscripcionesEstado(int hilos, int capacidadCola, int maxSuscripciones) {
+        this(hilos, capacidadCola, maxSuscripciones, PLAZO_ENVIO_POR_DEFECTO);
+    }
+
+    public SuscripcionesEstado(int hilos, int capacidadCola, int maxSuscripciones, Duration plazoEnvio) {
+        if (hilos < 1 || capacidadCola < 1 || maxSuscripciones < 1) {
+            throw new IllegalArgumentException("Hilos, capacidad de cola y máximo de suscripciones deben ser positivos");
+        }
+        if (plazoEnvio.isNegative() || plazoEnvio.isZero()) {
+            throw new IllegalArgumentException("El plazo de envío debe ser positivo");
+        }
+        AtomicInteger contador = new AtomicInteger();
+        this.capacidadCola = capacidadCola;
+        this.maxSuscripciones = maxSuscripciones;
+        // Cada suscripción tiene como mucho una entrega en cola, así que la cola nunca se llena
+        this.entregas = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxSuscripciones), tarea -> {
+                    Thread hilo = new Thread(tarea, "eventos-pagos-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.plazoEnvioNanos = plazoEnvio.toNanos();
+        this.vigia = new ScheduledThreadPoolExecutor(1, tarea -> {
+            Thread hilo = new Thread(tarea, "eventos-pagos-vigia");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(1, plazoEnvioNanos / 4);
+        vigia.scheduleWithFixedDelay(this::vigilar, periodo, periodo, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registra una suscripción a los cambios de estado, filtrada por cliente y/o orden (null
+     * para no filtrar)
+     *
+     * @throws PagoCapacidadException si ya hay el máximo de suscripciones activas
+     */
+    public Suscripcion suscribir(String clienteId, String orderId, Destino destino) {
+        if (activas.incrementAndGet() > maxSuscripciones) {
+            activas.decrementAndGet();
+            throw new PagoCapacidadException("suscripciones a eventos", maxSuscripciones);
+        }
+        Suscripcion suscripcion = new Suscripcion(clienteId, orderId, destino);
+        if (orderId != null) {
+            agregar(porOrden, orderId, suscripcion);
+        } else if (clienteId != null) {
+            agregar(porCliente, clienteId, suscripcion);
+        } else {
+            generales.add(suscripcion);
+        }
+        return suscripcion;
+    }
+
+    public int suscripcionesActivas() {
+        return activas.get();
+    }
+
+    @Override
+    public void estadoCambiado(Pago pago, Pago.EstadoPago estadoAnterior) {
+        if (estadoAnterior == pago.getEstado() || activas.get() == 0) {
+            return;
+        }
+        EventoEstadoResponse evento = EventoEstadoResponse.de(pago, estadoAnterior);
+        if (pago.getOrderId() != null) {
+            publicar(porOrden.get(pago.getOrderId()), evento);
+        }
+        if (pago.getClienteId() != null) {
+            publicar(porCliente.get(pago.getClienteId()), evento);
+        }
+        publicar(generales, evento);
+    }
+
+    @Override
+    public void close() {
+        vigia.shutdownNow();
+        entregas.shutdownNow();
+    }
+
+    private enum Estado { ACTIVA, CANCELADA, DESBORDADA, VENCIDA }
+
+    /**
+     * Escritura de un evento al destino
+     */
+    private interface Envio {
+        void ejecutar() throws IOException;
+    }
+
+    /**
+     * Da de baja las suscripciones cuyo envío en curso superó el plazo
+     */
+    private void vigilar() {
+        long ahora = System.nanoTime();
+        for (Suscripcion suscripcion : enviando) {
+            suscripcion.vencerSiExcede(ahora);
+        }
+    }
+
+    /**
+     * Agrega un hilo al pool en lugar del que quedó bloqueado; false si ya se llegó al límite
+     */
+    private boolean reemplazarHilo() {
+        synchronized (entregas) {
+            if (hilosReemplazo >= MAX_HILOS_REEMPLAZO) {
+                return false;
+            }
+            hilosReemplazo++;
+            // El máximo sube antes que el núcleo, que no puede superarlo
+            entregas.setMaximumPoolSize(entregas.getMaximumPoolSize() + 1);
+            entregas.setCorePoolSize(entregas.getCorePoolSize() + 1);
+            return true;
+        }
+    }
+
+    private void devolverHilo() {
+        synchronized (entregas) {
+            hilosReemplazo--;
+            entregas.setCorePoolSize(entregas.getCorePoolSize() - 1);
+            entregas.setMaximumPoolSize(entregas.getMaximumPoolSize() - 1);
+        }
+    }
+
+    private static void publicar(Set<Suscripcion> suscripciones, EventoEstadoResponse evento) {
+        if (suscripciones == null) {
+            return;
+        }
+        for (Suscripcion suscripcion : suscripciones) {
+            if (suscripcion.acepta(evento)) {
+                suscripcion.encolar(evento);
+            }
+        }
+    }
+
+    private static void agregar(Map<String, Set<Suscripcion>> indice, String clave, Suscripcion suscripcion) {
+        indice.compute(clave, (k, bucket) -> {
+            Set<Suscripcion> destino = bucket != null ? bucket : ConcurrentHashMap.newKeySet();
+            destino.add(suscripcion);
+            return destino;
+        });
+    }
+
+    private static void quitar(Map<String, Set<Suscripcion>> indice, String clave, Suscripcion suscripcion) {
+        indice.computeIfPresent(clave, (k, bucket) -> {
+            bucket.remove(suscripcion);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    /**
+     * Suscripción activa; termina al cancelarla, al fallar su destino o al desbordar su cola
+     */
+    public final class Suscripcion {
+
+        private final String clienteId;
+        private final String orderId;
+        private final Destino destino;
+        private final BlockingQueue<EventoEstadoResponse> cola = new ArrayBlockingQueue<>(capacidadCola);
+        private final AtomicReference<Estado> estado = new AtomicReference<>(Estado.ACTIVA);
+        // true mientras hay una entrega en el pool o en curso; garantiza un solo hilo por destino
+        private final AtomicBoolean programada = new AtomicBoolean();
+        // Inicio del envío en curso, SIN_ENVIO o ENVIO_VENCIDO si su hilo ya se reemplazó
+        private final AtomicLong envio = new AtomicLong(SIN_ENVIO);
+        // true si el hilo del envío vencido tiene reemplazo y debe devolverse al terminar
+        private volatile boolean reemplazado;
+
+        private Suscripcion(String clienteId, String orderId, Destino destino) {
+            this.clienteId = clienteId;
+            this.orderId = orderId;
+            this.destino = destino;
+        }
+
+        /**
+         * Da de baja la suscripción y descarta sus eventos pendientes. Es idempotente.
+         */
+        public void cancelar() {
+            if (retirar(Estado.CANCELADA)) {
+                cola.clear();
+            }
+        }
+
+        private boolean acepta(EventoEstadoResponse evento) {
+            return (clienteId == null || clienteId.equals(evento.getClienteId()))
+                    && (orderId == null || orderId.equals(evento.getOrderId()));
+        }
+
+        private void encolar(EventoEstadoResponse evento) {
+            if (cola.offer(evento)) {
+                programar();
+            } else if (retirar(Estado.DESBORDADA)) {
+                log.warn("Suscripción a eventos desbordada (cliente {}, orden {}); se da de baja", clienteId, orderId);
+                programar();
+            }
+        }
+
+        /**
+         * Quita la suscripción de los índices; true solo para quien la retira primero
+         */
+        private boolean retirar(Estado fin) {
+            if (!estado.compareAndSet(Estado.ACTIVA, fin)) {
+                return false;
+            }
+            if (orderId != null) {
+                quitar(porOrden, orderId, this);
+            } else if (clienteId != null) {
+                quitar(porCliente, clienteId, this);
+            } else {
+                generales.remove(this);
+            }
+            activas.decrementAndGet();
+            return true;
+        }
+
+        private void programar() {
+            if (programada.compareAndSet(false, true)) {
+                try {
+                    entregas.execute(this::entregar);
+                } catch (RejectedExecutionException e) {
+                    // Solo ocurre con el pool cerrado
+                    programada.set(false);
+                }
+            }
+        }
+
+        private void entregar() {
+            try {
+                while (true) {
+                    Estado actual = estado.get();
+                    if (actual != Estado.ACTIVA) {
+                        cola.clear();
+                        if (actual == Estado.DESBORDADA) {
+                            enviarConPlazo(destino::desbordado);
+                        }
+                        return;
+                    }
+                    EventoEstadoResponse evento = cola.poll();
+                    if (evento != null) {
+                        enviarConPlazo(() -> destino.enviar(evento));
+                        continue;
+                    }
+                    programada.set(false);
+                    // Un evento encolado entre el poll y el set no programó otra entrega
+                    if ((cola.isEmpty() && estado.get() == Estado.ACTIVA) || !programada.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Suscripción a eventos cerrada por el cliente: {}", e.getMessage());
+                cancelar();
+            }
+        }
+
+        private void enviarConPlazo(Envio envio) throws IOException {
+            this.envio.set(System.nanoTime());
+            enviando.add(this);
+            try {
+                envio.ejecutar();
+            } finally {
+                enviando.remove(this);
+                if (this.envio.getAndSet(SIN_ENVIO) == ENVIO_VENCIDO && reemplazado) {
+                    devolverHilo();
+                }
+            }
+        }
+
+        /**
+         * Si el envío en curso empezó hace más del plazo, da de baja la suscripción sin esperar
+         * al envío y reemplaza su hilo. Solo vence una vez por envío: el CAS compite con el fin
+         * del envío.
+         */
+        private void vencerSiExcede(long ahora) {
+            long inicio = envio.get();
+            if (inicio == SIN_ENVIO || inicio == ENVIO_VENCIDO || ahora - inicio < plazoEnvioNanos) {
+                return;
+            }
+            // Se decide el reemplazo antes del CAS para que el fin del envío vea el valor
+            reemplazado = reemplazarHilo();
+            if (!envio.compareAndSet(inicio, ENVIO_VENCIDO)) {
+                if (reemplazado) {
+                    reemplazado = false;
+                    devolverHilo();
+                }
+                return;
+            }
+            log.warn("Envío a suscripción de eventos sin terminar tras {} ms (cliente {}, orden {}); se da de baja",
+                    TimeUnit.NANOSECONDS.toMillis(plazoEnvioNanos), clienteId, orderId);
+            // Ya desbordada o cancelada, no se le envía nada más
+            if (!retirar(Estado.VENCIDA)) {
+                estado.set(Estado.VENCIDA);
+            }
+            cola.clear();
+        }
+    }
+}
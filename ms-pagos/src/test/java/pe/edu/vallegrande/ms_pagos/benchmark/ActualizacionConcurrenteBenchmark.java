@@ -0,0 +1,114 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.exception.PagoConcurrencyException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Actualizaciones concurrentes sobre pocos pagos muy disputados: cada operación suma 1 al monto.
+ * Compara leer-modificar-save sin control (lo que hacía el servicio), el mismo ciclo bajo un lock
+ * global, y PagoRepository.actualizar con reintento ante conflicto de versión. Reporta
+ * throughput y actualizaciones perdidas. Parámetros: -Dbenchmark.hilos, -Dbenchmark.pagos,
+ * -Dbenchmark.operaciones (por hilo).
+ */
+class ActualizacionConcurrenteBenchmark {
+
+    private static final Object LOCK_GLOBAL = new Object();
+
+    @Test
+    void throughputBajoContencion() throws Exception {
+        int hilos = Medicion.parametro("benchmark.hilos", 8);
+        int pagos = Medicion.parametro("benchmark.pagos", 4);
+        int operaciones = Medicion.parametro("benchmark.operaciones", 50_000);
+
+        for (Estrategia estrategia : Estrategia.values()) {
+            // Calentamiento con un repositorio descartable
+            medir(estrategia, hilos, pagos, operaciones / 5);
+            Resultado resultado = medir(estrategia, hilos, pagos, operaciones);
+            Medicion.reportar("%s: %d hilos sobre %d pagos, %.0f act/s, %d perdidas de %d, %d reintentos",
+                    estrategia, hilos, pagos, resultado.porSegundo, resultado.perdidas,
+                    (long) hilos * operaciones, resultado.reintentos);
+        }
+    }
+
+    private enum Estrategia {
+        SIN_CONTROL, LOCK_GLOBAL, VERSION_OPTIMISTA
+    }
+
+    private record Resultado(double porSegundo, long perdidas, long reintentos) {
+    }
+
+    private static Resultado medir(Estrategia estrategia, int hilos, int pagos, int operaciones) throws Exception {
+        PagoRepository repositorio = new PagoRepository();
+        for (int p = 0; p < pagos; p++) {
+            repositorio.save(Escenario.pago(p).id("pago-" + p).monto(BigDecimal.ZERO)
+                    .estado(Pago.EstadoPago.PENDING).build());
+        }
+
+        LongAdder reintentos = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(executor.submit(() -> {
+                salida.await();
+                for (int i = 0; i < operaciones; i++) {
+                    String id = "pago-" + ((i + hilo) % pagos);
+                    switch (estrategia) {
+                        case SIN_CONTROL -> sumarSinControl(repositorio, id);
+                        case LOCK_GLOBAL -> {
+                            synchronized (LOCK_GLOBAL) {
+                                sumarSinControl(repositorio, id);
+                            }
+                        }
+                        case VERSION_OPTIMISTA -> sumarConVersion(repositorio, id, reintentos);
+                    }
+                }
+                return null;
+            }));
+        }
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        executor.shutdown();
+
+        long total = (long) hilos * operaciones;
+        long aplicadas = repositorio.findAll().stream().mapToLong(pago -> pago.getMonto().longValue()).sum();
+        return new Resultado(total / segundos, total - aplicadas, reintentos.sum());
+    }
+
+    private static void sumarSinControl(PagoRepository repositorio, String id) {
+        Pago pago = repositorio.findById(id).orElseThrow();
+        pago.setMonto(pago.getMonto().add(BigDecimal.ONE));
+        repositorio.save(pago);
+    }
+
+    private static void sumarConVersion(PagoRepository repositorio, String id, LongAdder reintentos) {
+        while (true) {
+            Pago leido = repositorio.findById(id).orElseThrow();
+            try {
+                repositorio.actualizar(id, leido.getVersion(), pago -> {
+                    pago.setMonto(pago.getMonto().add(BigDecimal.ONE));
+                    return pago;
+                });
+                return;
+            } catch (PagoConcurrencyException e) {
+                reintentos.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import pe.edu.vallegrande.ms_pagos.dto.request.CambioEstadoLoteRequest;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.service.EjecutorLotes;
+import pe.edu.vallegrande.ms_pagos.service.EstadisticasPagos;
+import pe.edu.vallegrande.ms_pagos.service.PagoService;
+import pe.edu.vallegrande.ms_pagos.service.ResumenesClientes;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+/**
+ * Aprobación de N pagos pendientes con N llamadas a PATCH /pagos/{pagoId}/estado frente a una
+ * sola PATCH /pagos/estado, pasando por Spring MVC y Jackson (sin red). Cada ronda usa pagos
+ * pendientes nuevos, porque COMPLETED es un estado sin vuelta a PENDING.
+ * Parámetros: -Dbenchmark.lote, -Dbenchmark.rondas.
+ */
+class CambioEstadoLoteBenchmark {
+
+    @Test
+    void individualFrenteALote() throws Exception {
+        int tamanoLote = Medicion.parametro("benchmark.lote", 1000);
+        int rondas = Medicion.parametro("benchmark.rondas", 20);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        PagoRepository repositorio = new PagoRepository();
+        EstadisticasPagos estadisticas = new EstadisticasPagos();
+        PagoService servicio = Escenario.servicio(repositorio, estadisticas,
+                new EjecutorLotes(Runtime.getRuntime().availableProcessors(), 64), new ResumenesClientes());
+        MockMvc mockMvc = Escenario.mockMvc(servicio, objectMapper);
+
+        // Calentamiento más rondas, para cada variante
+        List<List<String>> individuales = new ArrayList<>();
+        List<String> lotes = new ArrayList<>();
+        for (int r = 0; r < rondas + 2; r++) {
+            individuales.add(crearPendientes(repositorio, "I" + r, tamanoLote));
+            lotes.add(objectMapper.writeValueAsString(new CambioEstadoLoteRequest(
+                    crearPendientes(repositorio, "L" + r, tamanoLote), Pago.EstadoPago.COMPLETED)));
+        }
+
+        estadisticas.pagosRecuperados(repositorio.findAll());
+
+        Iterator<List<String>> siguienteIndividual = individuales.iterator();
+        Iterator<String> siguienteLote = lotes.iterator();
+        double individual = Medicion.nanosPorOperacion(2, rondas, r -> {
+            for (String id : siguienteIndividual.next()) {
+                enviar(mockMvc, patch("/pagos/{pagoId}/estado", id).param("estado", "COMPLETED"));
+            }
+        });
+        double enLote = Medicion.nanosPorOperacion(2, rondas, r -> enviar(mockMvc,
+                patch("/pagos/estado").contentType(MediaType.APPLICATION_JSON).content(siguienteLote.next())));
+
+        if (!estadisticas.esConsistenteCon(repositorio.findAll())) {
+            throw new IllegalStateException("Estadísticas inconsistentes tras los cambios");
+        }
+        Medicion.reportar("%d pagos: PATCH individuales %.1f ms (%.0f pagos/s), PATCH en lote %.1f ms (%.0f pagos/s), x%.1f",
+                tamanoLote, individual / 1e6, tamanoLote / (individual / 1e9),
+                enLote / 1e6, tamanoLote / (enLote / 1e9), individual / enLote);
+    }
+
+    private static List<String> crearPendientes(PagoRepository repositorio, String prefijo, int cantidad) {
+        List<String> ids = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Pago pago = Escenario.pago(i)
+                    .id(prefijo + "-" + i)
+                    .orderId("ORD-" + prefijo + "-" + i)
+                    .clienteId("CLI-" + (i % 100))
+                    .monto(new BigDecimal("25000.00"))
+                    .estado(Pago.EstadoPago.PENDING)
+                    .metodoPago("Transferencia")
+                    .build();
+            ids.add(repositorio.save(pago).getId());
+        }
+        return ids;
+    }
+
+    private static void enviar(MockMvc mockMvc, RequestBuilder request) {
+        try {
+            int estado = mockMvc.perform(request).andReturn().getResponse().getStatus();
+            if (estado != 200) {
+                throw new IllegalStateException("Respuesta inesperada " + estado);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+
+/**
+ * Réplica que se pone al día tras {@code benchmark.cambios} escrituras: leer solo los cambios
+ * desde su última secuencia frente a releer todo con findAll. Parámetros: -Dbenchmark.pagos,
+ * -Dbenchmark.cambios.
+ */
+class CambiosBenchmark {
+
+    @Test
+    void cambiosDesdeSecuenciaFrenteALecturaCompleta() {
+        int total = Medicion.parametro("benchmark.pagos", 500_000);
+        int modificados = Medicion.parametro("benchmark.cambios", 100);
+        PagoRepository repositorio = new PagoRepository();
+        for (int i = 0; i < total; i++) {
+            repositorio.save(Escenario.pago(i).estado(Pago.EstadoPago.PENDING)
+                    .fechaCreacion(Escenario.INICIO.plusSeconds(i)).build());
+        }
+        long desde = repositorio.secuenciaConfirmada();
+        for (int i = 0; i < modificados; i++) {
+            int j = i * (total / modificados);
+            repositorio.save(Escenario.pago(j).fechaCreacion(Escenario.INICIO.plusSeconds(j)).build());
+        }
+
+        double cambios = Medicion.nanosPorOperacion(1_000, 10_000, i -> {
+            long hasta = repositorio.secuenciaConfirmada();
+            consumir(repositorio.findCambios(desde, hasta, modificados).size());
+        });
+        double completa = Medicion.nanosPorOperacion(2, 10, i -> consumir(repositorio.findAll().size()));
+
+        Medicion.reportar("%d pagos, %d modificados: cambios desde la secuencia %.1f µs, findAll %.1f ms, x%.0f",
+                total, modificados, cambios / 1e3, completa / 1e6, completa / cambios);
+    }
+
+    private static volatile long sumidero;
+
+    private static void consumir(long valor) {
+        sumidero += valor;
+    }
+}
@@ -0,0 +1,73 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import pe.edu.vallegrande.ms_pagos.dto.request.ConsultaPagosRequest;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.service.PagoService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Conciliación de N pagos con N llamadas a GET /pagos/{pagoId} frente a una sola
+ * POST /pagos/consulta, pasando por Spring MVC y Jackson (sin red). La respuesta simulada de
+ * MockMvc copia byte a byte, lo que encarece por igual ambos casos según el tamaño del JSON.
+ * Parámetros: -Dbenchmark.pagos (en el repositorio), -Dbenchmark.claves, -Dbenchmark.rondas.
+ */
+class ConsultaMultipleBenchmark {
+
+    @Test
+    void llamadasIndividualesFrenteAConsultaMultiple() throws Exception {
+        int total = Medicion.parametro("benchmark.pagos", 100_000);
+        int claves = Medicion.parametro("benchmark.claves", 500);
+        int rondas = Medicion.parametro("benchmark.rondas", 50);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        PagoRepository repositorio = new PagoRepository();
+        for (int i = 0; i < total; i++) {
+            repositorio.save(Escenario.pago(i).build());
+        }
+        PagoService servicio = Escenario.servicio(repositorio);
+        MockMvc mockMvc = Escenario.mockMvc(servicio, objectMapper);
+
+        List<String> ids = new ArrayList<>(claves);
+        for (int i = 0; i < claves; i++) {
+            ids.add(id((int) ((long) i * total / claves)));
+        }
+        String consulta = objectMapper.writeValueAsString(new ConsultaPagosRequest(ids, null));
+
+        double individual = Medicion.nanosPorOperacion(5, rondas, r -> {
+            for (String id : ids) {
+                enviar(mockMvc, get("/pagos/{pagoId}", id));
+            }
+        });
+        double multiple = Medicion.nanosPorOperacion(5, rondas,
+                r -> enviar(mockMvc, post("/pagos/consulta").contentType(MediaType.APPLICATION_JSON).content(consulta)));
+        ConsultaPagosRequest request = new ConsultaPagosRequest(ids, null);
+        double servicioSolo = Medicion.nanosPorOperacion(5, rondas, r -> servicio.consultarPagos(request));
+
+        Medicion.reportar("%d claves: %d GET individuales %.1f ms, una consulta múltiple %.2f ms (servicio %.2f ms), x%.0f",
+                claves, claves, individual / 1e6, multiple / 1e6, servicioSolo / 1e6, individual / multiple);
+    }
+
+    private static void enviar(MockMvc mockMvc, RequestBuilder request) {
+        try {
+            int estado = mockMvc.perform(request).andReturn().getResponse().getStatus();
+            if (estado != 200) {
+                throw new IllegalStateException("Respuesta inesperada " + estado);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String id(int i) {
+        return String.format("pago-%07d", i);
+    }
+}
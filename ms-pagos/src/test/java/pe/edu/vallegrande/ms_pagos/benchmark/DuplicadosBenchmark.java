@@ -0,0 +1,53 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.service.DetectorDuplicados;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Costo por request del filtro de huellas (cálculo de la huella y registro), heap de un tramo
+ * y falsos positivos a confirmar contra el repositorio, con un tramo cargado a su capacidad
+ * prevista. Parámetros: -Dbenchmark.huellas (por tramo).
+ */
+class DuplicadosBenchmark {
+
+    @Test
+    void costoPorRequestYMemoria() {
+        int huellas = Medicion.parametro("benchmark.huellas", 50_000);
+        String[] ordenes = new String[huellas];
+        for (int i = 0; i < huellas; i++) {
+            ordenes[i] = "ORD-" + i;
+        }
+        BigDecimal monto = new BigDecimal("150.00");
+
+        // Varios detectores con su tramo actual, para que el heap medido no sea solo ruido
+        long heapAntes = Medicion.heapUsado();
+        DetectorDuplicados[] detectores = new DetectorDuplicados[20];
+        for (int i = 0; i < detectores.length; i++) {
+            detectores[i] = nuevoDetector(huellas);
+            detectores[i].registrar(0);
+        }
+        long heapTramo = (Medicion.heapUsado() - heapAntes) / detectores.length;
+
+        // Cada ronda llena un detector nuevo, así todas las huellas medidas son nuevas
+        int[] positivos = new int[1];
+        double porRonda = Medicion.nanosPorOperacion(5, 10, r -> {
+            DetectorDuplicados detector = nuevoDetector(huellas);
+            for (int i = 0; i < huellas; i++) {
+                if (detector.registrar(DetectorDuplicados.huella("CLI-" + (i & 1023), ordenes[i], monto, "Tarjeta"))) {
+                    positivos[0]++;
+                }
+            }
+        });
+        double porRequest = porRonda / huellas;
+
+        Medicion.reportar("%d huellas por tramo: %.0f ns por request, %d KB por tramo (%d tramos), %.2f%% falsos positivos",
+                huellas, porRequest, heapTramo / 1024, 9, positivos[0] * 100.0 / (15.0 * huellas));
+    }
+
+    private static DetectorDuplicados nuevoDetector(int huellas) {
+        return new DetectorDuplicados(DetectorDuplicados.Modo.RECHAZAR, Duration.ofMinutes(10), huellas);
+    }
+}
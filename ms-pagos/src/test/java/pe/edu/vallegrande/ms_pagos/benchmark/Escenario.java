@@ -0,0 +1,102 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import pe.edu.vallegrande.ms_pagos.controller.PagoController;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.service.CacheIdempotencia;
+import pe.edu.vallegrande.ms_pagos.service.DetectorDuplicados;
+import pe.edu.vallegrande.ms_pagos.service.EjecutorLotes;
+import pe.edu.vallegrande.ms_pagos.service.EstadisticasPagos;
+import pe.edu.vallegrande.ms_pagos.service.GeneradorIdOrdenado;
+import pe.edu.vallegrande.ms_pagos.service.PagoService;
+import pe.edu.vallegrande.ms_pagos.service.ProcesadorPagos;
+import pe.edu.vallegrande.ms_pagos.service.ResumenesClientes;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Datos y cableado compartidos por los benchmarks: pagos armados con {@link #pago(int)} o
+ * {@link #pagoCompleto(int)}, sobre los que cada benchmark cambia solo lo que mide, y el
+ * servicio con sus colaboradores como en producción pero sin Spring.
+ */
+final class Escenario {
+
+    // Fecha base de los pagos con fechas reproducibles
+    static final LocalDateTime INICIO = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private Escenario() {
+    }
+
+    /**
+     * Pago i mínimo: pago-%07d de la orden ORD-i, cliente CLI-(i % 1000), monto i, COMPLETED,
+     * creado ahora con tarjeta en PEN
+     */
+    static Pago.PagoBuilder pago(int i) {
+        return Pago.builder()
+                .id(String.format("pago-%07d", i))
+                .orderId("ORD-" + i)
+                .clienteId("CLI-" + (i % 1000))
+                .monto(BigDecimal.valueOf(i))
+                .estado(Pago.EstadoPago.COMPLETED)
+                .fechaCreacion(LocalDateTime.now())
+                .metodoPago("Tarjeta")
+                .moneda("PEN");
+    }
+
+    /**
+     * Pago i con todos los campos que llena el gateway, del tamaño de un registro real: dos
+     * pagos por orden, veinte por cliente, estados, métodos y monedas alternados
+     */
+    static Pago.PagoBuilder pagoCompleto(int i) {
+        LocalDateTime fecha = INICIO.plusNanos(i * 1_000_003L);
+        return Pago.builder()
+                .id(String.format("pago-%07d", i))
+                .orderId("ORD-" + (i / 2))
+                .clienteId("CLI-" + (i / 20))
+                .monto(BigDecimal.valueOf(150_050 + i, 2))
+                .estado(Pago.EstadoPago.values()[i % 3])
+                .fechaCreacion(fecha)
+                .fechaActualizacion(fecha.plusSeconds(1))
+                .metodoPago(i % 2 == 0 ? "Tarjeta de Crédito" : "Yape")
+                .moneda(i % 4 == 0 ? "USD" : "PEN")
+                .paymentGateway("Visa")
+                .codigoRespuesta("SUCCESS")
+                .mensajeRespuesta("Pago procesado exitosamente")
+                .transactionId("TXN_" + Integer.toHexString(0x10000000 + i).toUpperCase());
+    }
+
+    /**
+     * Servicio sobre el repositorio con lotes secuenciales y sin detección de duplicados
+     */
+    static PagoService servicio(PagoRepository repositorio) {
+        return servicio(repositorio, new EstadisticasPagos(), new EjecutorLotes(1, 1), new ResumenesClientes());
+    }
+
+    /**
+     * Servicio sobre el repositorio; las estadísticas y los resúmenes reciben los eventos
+     * como observadores, igual que en producción
+     */
+    static PagoService servicio(PagoRepository repositorio, EstadisticasPagos estadisticas, EjecutorLotes ejecutorLotes,
+                                ResumenesClientes resumenes) {
+        return new PagoService(repositorio, estadisticas, List.of(estadisticas, resumenes), new GeneradorIdOrdenado(1),
+                ejecutorLotes, new CacheIdempotencia(Duration.ofHours(1), 1_000), DetectorDuplicados.deshabilitado(),
+                resumenes, new ProcesadorPagos(1, 1, new SimpleMeterRegistry()));
+    }
+
+    /**
+     * Controlador del servicio detrás del dispatcher de Spring MVC y Jackson, sin red
+     */
+    static MockMvc mockMvc(PagoService servicio, ObjectMapper objectMapper) {
+        return MockMvcBuilders.standaloneSetup(new PagoController(servicio, objectMapper))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.dto.response.EventoEstadoResponse;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.service.SuscripcionesEstado;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Costo en el hilo de la petición de publicar un cambio de estado con miles de suscripciones:
+ * filtradas por cliente (cada evento llega a una) y sin filtro (cada evento llega a todas).
+ * Los destinos no escriben a red, así que mide el reparto y no el envío.
+ * Parámetros: -Dbenchmark.suscripciones, -Dbenchmark.eventos.
+ */
+class EventosBenchmark {
+
+    @Test
+    void publicarConMilesDeSuscripciones() {
+        int total = Medicion.parametro("benchmark.suscripciones", 5_000);
+        int eventos = Medicion.parametro("benchmark.eventos", 200_000);
+
+        AtomicLong entregados = new AtomicLong();
+        double porCliente;
+        try (SuscripcionesEstado suscripciones = new SuscripcionesEstado(2, 256, total)) {
+            for (int i = 0; i < total; i++) {
+                suscripciones.suscribir("CLI-" + i, null, destino(entregados));
+            }
+            porCliente = Medicion.nanosPorOperacion(eventos / 10, eventos,
+                    i -> suscripciones.estadoCambiado(Escenario.pago(i).clienteId("CLI-" + (i % total)).build(),
+                            Pago.EstadoPago.PENDING));
+        }
+
+        AtomicLong difundidos = new AtomicLong();
+        double sinFiltro;
+        int pocos = Math.max(1, eventos / 1_000);
+        try (SuscripcionesEstado suscripciones = new SuscripcionesEstado(2, 256, total)) {
+            for (int i = 0; i < total; i++) {
+                suscripciones.suscribir(null, null, destino(difundidos));
+            }
+            sinFiltro = Medicion.nanosPorOperacion(pocos / 10, pocos,
+                    i -> suscripciones.estadoCambiado(Escenario.pago(i).clienteId("CLI-1").build(),
+                            Pago.EstadoPago.PENDING));
+        }
+
+        Medicion.reportar("%d suscripciones: evento filtrado por cliente %.2f µs, evento a todas %.1f µs (%.0f ns por suscripción)",
+                total, porCliente / 1e3, sinFiltro / 1e3, sinFiltro / total);
+    }
+
+    private static SuscripcionesEstado.Destino destino(AtomicLong contador) {
+        return new SuscripcionesEstado.Destino() {
+            @Override
+            public void enviar(EventoEstadoResponse evento) {
+                contador.incrementAndGet();
+            }
+
+            @Override
+            public void desbordado() {
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pe.edu.vallegrande.ms_pagos.controller.PagoController;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.service.PagoService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Exportación NDJSON de /pagos/export (recorrido, conversión y Jackson) sobre un destino que
+ * descarta los bytes, frente a la respuesta JSON de la lista completa, y heap que crece
+ * durante cada una. Parámetros: -Dbenchmark.pagos.
+ */
+class ExportacionBenchmark {
+
+    @Test
+    void exportacionNdjsonFrenteAListaCompleta() {
+        int total = Medicion.parametro("benchmark.pagos", 200_000);
+        PagoRepository repositorio = new PagoRepository();
+        for (int i = 0; i < total; i++) {
+            repositorio.save(Escenario.pago(i).fechaActualizacion(LocalDateTime.now())
+                    .transactionId("TXN_" + i).build());
+        }
+        PagoService servicio = Escenario.servicio(repositorio);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        PagoController controlador = new PagoController(servicio, objectMapper);
+
+        ContadorBytes descarte = new ContadorBytes(0);
+        double exportacion = Medicion.nanosPorOperacion(2, 5, i -> escribir(controlador.exportarPagos().getBody(), descarte));
+        double lista = Medicion.nanosPorOperacion(2, 5, i -> {
+            try {
+                objectMapper.writeValue(descarte, servicio.obtenerTodosLosPagos());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // Heap alcanzable a mitad de la exportación frente a tener la lista de respuestas armada
+        long heapBase = Medicion.heapUsado();
+        ContadorBytes muestreado = new ContadorBytes(1_000);
+        escribir(controlador.exportarPagos().getBody(), muestreado);
+        List<?> respuestas = servicio.obtenerTodosLosPagos();
+        long heapLista = Medicion.heapUsado() - heapBase;
+
+        Medicion.reportar("%d pagos: NDJSON %.0f ms (%.0f filas/s, %d B/fila), lista JSON %.0f ms (%.0f filas/s)",
+                total, exportacion / 1e6, total / (exportacion / 1e9), muestreado.bytes / total,
+                lista / 1e6, total / (lista / 1e9));
+        Medicion.reportar("heap extra durante la exportación %d KB; con la lista de %d respuestas %d KB",
+                Math.max(0, muestreado.picoHeap - heapBase) / 1024, respuestas.size(), heapLista / 1024);
+    }
+
+    private static void escribir(StreamingResponseBody cuerpo, ContadorBytes destino) {
+        try {
+            cuerpo.writeTo(destino);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Descarta lo escrito; con {@code muestrearCada > 0} registra el heap usado cada tantas escrituras
+     */
+    private static final class ContadorBytes extends OutputStream {
+        private final int muestrearCada;
+        long bytes;
+        long picoHeap;
+        private long escrituras;
+
+        ContadorBytes(int muestrearCada) {
+            this.muestrearCada = muestrearCada;
+        }
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            if (muestrearCada > 0 && ++escrituras % muestrearCada == 0) {
+                picoHeap = Math.max(picoHeap, Medicion.heapUsado());
+            }
+        }
+    }
+}
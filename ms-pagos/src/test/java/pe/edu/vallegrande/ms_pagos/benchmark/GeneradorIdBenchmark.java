@@ -0,0 +1,73 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.service.GeneradorId;
+import pe.edu.vallegrande.ms_pagos.service.GeneradorIdOrdenado;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput multihilo de generar el ID y el transactionId de un pago: dos UUID aleatorios
+ * (lo que hacía el servicio) frente al generador ordenado. Parámetros: -Dbenchmark.hilos,
+ * -Dbenchmark.operaciones (por hilo).
+ */
+class GeneradorIdBenchmark {
+
+    @Test
+    void throughputDeGeneracion() throws Exception {
+        int hilos = Medicion.parametro("benchmark.hilos", 8);
+        int operaciones = Medicion.parametro("benchmark.operaciones", 500_000);
+        GeneradorId ordenado = new GeneradorIdOrdenado(1);
+
+        Runnable uuid = () -> {
+            String id = UUID.randomUUID().toString();
+            String transaccion = "TXN_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+            consumir(id, transaccion);
+        };
+        Runnable generador = () -> consumir(ordenado.nuevoId(), ordenado.nuevoTransactionId());
+
+        // Calentamiento de ambos caminos antes de medir
+        medir(hilos, operaciones / 5, uuid);
+        medir(hilos, operaciones / 5, generador);
+        double porSegundoUuid = medir(hilos, operaciones, uuid);
+        double porSegundoOrdenado = medir(hilos, operaciones, generador);
+
+        Medicion.reportar("%d hilos: UUID.randomUUID x2 %.0f pagos/s, GeneradorIdOrdenado %.0f pagos/s (x%.1f)",
+                hilos, porSegundoUuid, porSegundoOrdenado, porSegundoOrdenado / porSegundoUuid);
+    }
+
+    private static double medir(int hilos, int operaciones, Runnable operacion) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(executor.submit(() -> {
+                salida.await();
+                for (int i = 0; i < operaciones; i++) {
+                    operacion.run();
+                }
+                return null;
+            }));
+        }
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        executor.shutdown();
+        return (double) hilos * operaciones / segundos;
+    }
+
+    private static volatile int sumidero;
+
+    private static void consumir(String id, String transaccion) {
+        sumidero += id.length() + transaccion.length();
+    }
+}
@@ -0,0 +1,46 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
+import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.service.CacheIdempotencia;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Costo de la caché de Idempotency-Key en el camino de creación: clave nueva (registro y
+ * purga con la caché llena) y reintento (acierto), más el heap por clave retenida sin contar
+ * request y respuesta, que ya existen en el flujo normal. Parámetros: -Dbenchmark.claves.
+ */
+class IdempotenciaBenchmark {
+
+    @Test
+    void costoPorCreacionYPorReintento() {
+        int maxClaves = Medicion.parametro("benchmark.claves", 200_000);
+        PagoRequest request = new PagoRequest();
+        request.setOrderId("ORD-1");
+        request.setMonto(new BigDecimal("150.00"));
+        PagoResponse respuesta = new PagoResponse();
+        String[] claves = new String[maxClaves * 3];
+        for (int i = 0; i < claves.length; i++) {
+            claves[i] = "cliente-42:" + i;
+        }
+
+        long heapAntes = Medicion.heapUsado();
+        CacheIdempotencia cache = new CacheIdempotencia(Duration.ofHours(24), maxClaves);
+        for (int i = 0; i < maxClaves; i++) {
+            cache.obtenerOCrear(claves[i], request, () -> respuesta);
+        }
+        long heap = Medicion.heapUsado() - heapAntes;
+
+        // Con la caché llena, cada clave nueva purga la más antigua
+        double nueva = Medicion.nanosPorOperacion(maxClaves / 2, maxClaves * 3 / 2,
+                i -> cache.obtenerOCrear(claves[maxClaves + i], request, () -> respuesta));
+        double reintento = Medicion.nanosPorOperacion(100_000, 1_000_000,
+                i -> cache.obtenerOCrear(claves[claves.length - 1 - i % 1000], request, () -> respuesta));
+
+        Medicion.reportar("%d claves: clave nueva %.0f ns, reintento %.0f ns, %d B por clave retenida (tamaño %d)",
+                maxClaves, nueva, reintento, heap / maxClaves, cache.tamano());
+    }
+}
@@ -0,0 +1,57 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.repository.IndicePrimario;
+import pe.edu.vallegrande.ms_pagos.repository.MotorIndice;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput de put/get y memoria por entrada de cada motor del índice primario. La memoria
+ * incluye la clave String que el ConcurrentHashMap debe retener; la tabla binaria solo guarda
+ * los dos long. Filas con -Dbenchmark.filas (por defecto 10M, requiere -DargLine=-Xmx3g).
+ */
+class IndicePrimarioBenchmark {
+
+    private static final Object VALOR = new Object();
+    private static final int MUESTRA = 1_000_000;
+
+    @Test
+    void compararMotores() {
+        int filas = Medicion.parametro("benchmark.filas", 10_000_000);
+        String[] muestra = new String[MUESTRA];
+        for (int i = 0; i < MUESTRA; i++) {
+            muestra[i] = id((long) i * (filas / MUESTRA));
+        }
+        double generacion = Medicion.nanosPorOperacion(0, filas, i -> consumir(id(i)));
+
+        for (MotorIndice motor : MotorIndice.values()) {
+            long base = Medicion.heapUsado();
+            IndicePrimario<Object> indice = motor.crear();
+            long inicio = System.nanoTime();
+            for (int i = 0; i < filas; i++) {
+                indice.compute(id(i), (clave, actual) -> VALOR);
+            }
+            double put = (double) (System.nanoTime() - inicio) / filas - generacion;
+            double bytes = (double) (Medicion.heapUsado() - base) / filas;
+            assertThat(indice.tamano()).isEqualTo(filas);
+
+            double get = Medicion.nanosPorOperacion(2_000_000, 10_000_000,
+                    i -> consumir(indice.get(muestra[i % MUESTRA])));
+            Medicion.reportar("%s con %d entradas: put %.0f ns/op (%.1f M/s), get %.0f ns/op (%.1f M/s), %.0f B/entrada",
+                    motor, filas, put, 1e3 / put, get, 1e3 / get, bytes);
+        }
+    }
+
+    private static String id(long i) {
+        return new UUID(i * 0x9E3779B97F4A7C15L, ~i * 0xC2B2AE3D27D4EB4FL).toString();
+    }
+
+    private static volatile int sumidero;
+
+    private static void consumir(Object valor) {
+        sumidero += valor != null ? 1 : 0;
+    }
+}
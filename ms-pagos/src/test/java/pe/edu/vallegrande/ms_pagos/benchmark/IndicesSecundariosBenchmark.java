@@ -0,0 +1,65 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara findByOrderId/findByClienteId con índices secundarios frente al recorrido
+ * completo del mapa que se hacía antes. Filas configurables con -Dbenchmark.filas.
+ */
+class IndicesSecundariosBenchmark {
+
+    private static final int PAGOS_POR_ORDEN = 2;
+    private static final int PAGOS_POR_CLIENTE = 20;
+
+    @Test
+    void compararBusquedasPorOrdenYCliente() {
+        int filas = Medicion.parametro("benchmark.filas", 1_000_000);
+        PagoRepository repositorio = new PagoRepository();
+        LocalDateTime ahora = LocalDateTime.now();
+        for (int i = 0; i < filas; i++) {
+            repositorio.save(Escenario.pago(i)
+                    .orderId("ORD-" + (i / PAGOS_POR_ORDEN))
+                    .clienteId("CLI-" + (i / PAGOS_POR_CLIENTE))
+                    .monto(BigDecimal.TEN)
+                    .fechaCreacion(ahora)
+                    .build());
+        }
+        List<Pago> todos = repositorio.findAll();
+        int ordenes = filas / PAGOS_POR_ORDEN;
+        int clientes = filas / PAGOS_POR_CLIENTE;
+
+        double escaneoOrden = Medicion.nanosPorOperacion(3, 20, i -> {
+            String orderId = "ORD-" + (i * 7919 % ordenes);
+            List<Pago> r = todos.stream().filter(p -> orderId.equals(p.getOrderId())).collect(Collectors.toList());
+            assertThat(r).hasSize(PAGOS_POR_ORDEN);
+        });
+        double indiceOrden = Medicion.nanosPorOperacion(50_000, 200_000, i -> {
+            List<Pago> r = repositorio.findByOrderId("ORD-" + (i * 7919 % ordenes));
+            assertThat(r).hasSize(PAGOS_POR_ORDEN);
+        });
+        double escaneoCliente = Medicion.nanosPorOperacion(3, 20, i -> {
+            String clienteId = "CLI-" + (i * 7919 % clientes);
+            List<Pago> r = todos.stream().filter(p -> clienteId.equals(p.getClienteId())).collect(Collectors.toList());
+            assertThat(r).hasSize(PAGOS_POR_CLIENTE);
+        });
+        double indiceCliente = Medicion.nanosPorOperacion(50_000, 200_000, i -> {
+            List<Pago> r = repositorio.findByClienteId("CLI-" + (i * 7919 % clientes));
+            assertThat(r).hasSize(PAGOS_POR_CLIENTE);
+        });
+
+        Medicion.reportar("filas=%d", filas);
+        Medicion.reportar("findByOrderId   escaneo=%.0f ns/op indice=%.0f ns/op speedup=%.0fx",
+                escaneoOrden, indiceOrden, escaneoOrden / indiceOrden);
+        Medicion.reportar("findByClienteId escaneo=%.0f ns/op indice=%.0f ns/op speedup=%.0fx",
+                escaneoCliente, indiceCliente, escaneoCliente / indiceCliente);
+    }
+}
@@ -0,0 +1,154 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.InstantaneaPagos;
+import pe.edu.vallegrande.ms_pagos.repository.PagoJournal;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.repository.RepositorioRecuperado;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Costo de las instantáneas MVCC del repositorio: apertura, recorrido completo frente a
+ * findAll, escrituras con y sin una instantánea abierta y heap retenido mientras está abierta,
+ * y latencia de apertura con escrituras concurrentes, en memoria y con journal con fsync.
+ * Parámetros: -Dbenchmark.pagos, -Dbenchmark.operaciones, -Dbenchmark.hilos (escritores),
+ * -Dbenchmark.milisegundos.
+ */
+class InstantaneaBenchmark {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void costoDeInstantaneas() {
+        int total = Medicion.parametro("benchmark.pagos", 200_000);
+        int operaciones = Medicion.parametro("benchmark.operaciones", 200_000);
+        PagoRepository repositorio = new PagoRepository();
+        for (int i = 0; i < total; i++) {
+            repositorio.save(Escenario.pago(i).build());
+        }
+
+        double apertura = Medicion.nanosPorOperacion(10_000, 100_000, i -> repositorio.abrirInstantanea().close());
+        double recorrido = Medicion.nanosPorOperacion(2, 10, i -> {
+            try (InstantaneaPagos instantanea = repositorio.abrirInstantanea()) {
+                long suma = 0;
+                for (Pago pago : instantanea) {
+                    suma += pago.getMonto().longValue();
+                }
+                consumir(suma);
+            }
+        });
+        double findAll = Medicion.nanosPorOperacion(2, 10, i -> {
+            List<Pago> pagos = repositorio.findAll();
+            consumir(pagos.size());
+        });
+        Medicion.reportar("%d pagos: abrir+cerrar %.0f ns, recorrer %.1f ms, findAll (lista) %.1f ms",
+                total, apertura, recorrido / 1e6, findAll / 1e6);
+
+        double sinInstantanea = Medicion.nanosPorOperacion(operaciones / 5, operaciones,
+                i -> repositorio.save(Escenario.pago(i % total).monto(BigDecimal.valueOf(i)).build()));
+        long heapAntes = Medicion.heapUsado();
+        double conInstantanea;
+        long retenido;
+        try (InstantaneaPagos instantanea = repositorio.abrirInstantanea()) {
+            conInstantanea = Medicion.nanosPorOperacion(0, operaciones,
+                    i -> repositorio.save(Escenario.pago(i % total).monto(BigDecimal.valueOf(i)).build()));
+            retenido = Medicion.heapUsado() - heapAntes;
+            consumir(instantanea.getSecuencia());
+        }
+        long liberado = Medicion.heapUsado() - heapAntes;
+        Medicion.reportar("save sin instantánea %.0f ns/op, con una abierta %.0f ns/op; retenido %d B/versión, tras cerrar %d B",
+                sinInstantanea, conInstantanea, retenido / operaciones, liberado);
+    }
+
+    @Test
+    void aperturaConEscriturasConcurrentes() throws Exception {
+        int total = Medicion.parametro("benchmark.pagos", 200_000);
+        int hilos = Medicion.parametro("benchmark.hilos", 4);
+        int milisegundos = Medicion.parametro("benchmark.milisegundos", 3_000);
+        medirAperturas("en memoria", new PagoRepository(), total, hilos, milisegundos);
+        PagoJournal journal = new PagoJournal(directorio.resolve("instantanea.journal"),
+                PagoJournal.PoliticaFsync.SIEMPRE, 5, 1);
+        // Con fsync en cada escritura basta con menos pagos
+        medirAperturas("journal SIEMPRE", RepositorioRecuperado.abrir(journal, null), total / 10, hilos, milisegundos);
+        journal.close();
+    }
+
+    /**
+     * Escritores continuos y un lector que abre y cierra una instantánea cada 100 us, como
+     * lecturas de GET /pagos, /export o /cambios; compara con las escrituras sin lector
+     */
+    private static void medirAperturas(String modo, PagoRepository repositorio, int total, int hilos,
+                                       int milisegundos) throws Exception {
+        for (int i = 0; i < total; i++) {
+            repositorio.save(Escenario.pago(i).build());
+        }
+        double sinLector = escribirDurante(repositorio, total, hilos, milisegundos, null);
+        List<Long> latencias = new ArrayList<>();
+        double conLector = escribirDurante(repositorio, total, hilos, milisegundos, () -> {
+            long apertura = System.nanoTime();
+            repositorio.abrirInstantanea().close();
+            latencias.add(System.nanoTime() - apertura);
+            LockSupport.parkNanos(100_000);
+        });
+        long[] ordenadas = latencias.stream().mapToLong(Long::longValue).sorted().toArray();
+        Medicion.reportar("%s, %d escritores: abrir+cerrar p50 %.1f us, p99 %.1f us, máx %.1f us (%d aperturas); "
+                        + "%.0f escrituras/s sin lector, %.0f con lector",
+                modo, hilos, ordenadas[ordenadas.length / 2] / 1e3, ordenadas[ordenadas.length * 99 / 100] / 1e3,
+                ordenadas[ordenadas.length - 1] / 1e3, ordenadas.length, sinLector, conLector);
+    }
+
+    /**
+     * Escrituras por segundo de {@code hilos} escritores durante el tiempo dado, ejecutando el
+     * lector (si hay) en el hilo actual
+     */
+    private static double escribirDurante(PagoRepository repositorio, int total, int hilos, int milisegundos,
+                                          Runnable lector) throws Exception {
+        AtomicBoolean detener = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<Long>> escritores = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            escritores.add(executor.submit(() -> {
+                long escrituras = 0;
+                for (int i = hilo; !detener.get(); i += hilos) {
+                    repositorio.save(Escenario.pago(i % total).monto(BigDecimal.valueOf(i)).build());
+                    escrituras++;
+                }
+                return escrituras;
+            }));
+        }
+        long fin = System.nanoTime() + milisegundos * 1_000_000L;
+        while (System.nanoTime() < fin) {
+            if (lector != null) {
+                lector.run();
+            } else {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+        detener.set(true);
+        long escrituras = 0;
+        for (Future<Long> escritor : escritores) {
+            escrituras += escritor.get();
+        }
+        executor.shutdown();
+        return escrituras / (milisegundos / 1e3);
+    }
+
+    private static volatile long sumidero;
+
+    private static void consumir(long valor) {
+        sumidero += valor;
+    }
+}
@@ -0,0 +1,99 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoJournal;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.repository.RepositorioRecuperado;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latencia del save con journal bajo commit agrupado y tiempo de recuperación.
+ * Parámetros: -Dbenchmark.filas (registros a recuperar), -Dbenchmark.hilos, -Dbenchmark.escrituras.
+ * Para 10M registros se necesita un heap grande, p. ej. -DargLine=-Xmx12g.
+ */
+class JournalBenchmark {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void latenciaDeEscrituraConCommitAgrupado() throws Exception {
+        int hilos = Medicion.parametro("benchmark.hilos", 8);
+        int escrituras = Medicion.parametro("benchmark.escrituras", 50_000);
+        PagoJournal journal = new PagoJournal(directorio.resolve("latencia.journal"),
+                PagoJournal.PoliticaFsync.GRUPAL, 5, 1);
+        PagoRepository repositorio = RepositorioRecuperado.abrir(journal, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<long[]>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(executor.submit(() -> {
+                long[] latencias = new long[escrituras];
+                for (int i = 0; i < escrituras; i++) {
+                    Pago pago = Escenario.pagoCompleto(i).id("pago-" + hilo + "-" + i).build();
+                    long inicio = System.nanoTime();
+                    repositorio.save(pago);
+                    latencias[i] = System.nanoTime() - inicio;
+                }
+                return latencias;
+            }));
+        }
+        long[] todas = new long[0];
+        for (Future<long[]> tarea : tareas) {
+            long[] parcial = tarea.get();
+            long[] union = Arrays.copyOf(todas, todas.length + parcial.length);
+            System.arraycopy(parcial, 0, union, todas.length, parcial.length);
+            todas = union;
+        }
+        executor.shutdown();
+        journal.close();
+
+        // Se descarta el primer 10% como calentamiento
+        long[] medidas = Arrays.copyOfRange(todas, todas.length / 10, todas.length);
+        Arrays.sort(medidas);
+        Medicion.reportar("save con journal GRUPAL(5ms), %d hilos x %d: p50=%.1f us p99=%.1f us p99.9=%.1f us",
+                hilos, escrituras,
+                medidas[medidas.length / 2] / 1_000.0,
+                medidas[(int) (medidas.length * 0.99)] / 1_000.0,
+                medidas[(int) (medidas.length * 0.999)] / 1_000.0);
+    }
+
+    @Test
+    void tiempoDeRecuperacion() throws IOException {
+        int filas = Medicion.parametro("benchmark.filas", 1_000_000);
+        Path ruta = directorio.resolve("recuperacion.journal");
+        PagoJournal journal = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SISTEMA, 5, 1);
+        PagoRepository repositorio = RepositorioRecuperado.abrir(journal, null);
+        for (int i = 0; i < filas; i++) {
+            repositorio.save(Escenario.pagoCompleto(i).build());
+        }
+        journal.close();
+        long bytes = Files.size(ruta.resolveSibling("recuperacion.journal.1"));
+        repositorio = null;
+
+        int hilos = Runtime.getRuntime().availableProcessors();
+        PagoJournal reabierto = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SISTEMA, 5, hilos);
+        long inicio = System.nanoTime();
+        PagoRepository recuperado = RepositorioRecuperado.abrir(reabierto, null);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        reabierto.close();
+
+        assertThat(recuperado.count()).isEqualTo(filas);
+        Medicion.reportar("recuperación de %d registros (%.0f MB) con %d hilos: %.2f s (%.0f registros/s)",
+                filas, bytes / 1e6, hilos, segundos, filas / segundos);
+    }
+}
@@ -0,0 +1,190 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.exception.PagoConcurrencyException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Carga 95% GET / 5% PATCH sobre un conjunto de pagos. Compara:
+ * - MUTABLE_COMPARTIDO: el Pago guardado se modifica en sitio y las lecturas lo devuelven tal cual
+ *   (como antes de la forma compacta); sin copias, pero con lecturas a medio escribir.
+ * - MUTABLE_CON_LOCK: lo mismo, pero leer y escribir toman el monitor del pago y la lectura copia.
+ * - INSTANTANEA_INMUTABLE: PagoRepository, que reemplaza el valor inmutable en cada cambio.
+ * Reporta operaciones/s, bytes asignados por operación y lecturas inconsistentes observadas.
+ * Parámetros: -Dbenchmark.hilos, -Dbenchmark.pagos, -Dbenchmark.operaciones (por hilo).
+ */
+class LecturaMayoritariaBenchmark {
+
+    private static final com.sun.management.ThreadMXBean HILOS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void throughputYAsignacion() throws Exception {
+        int hilos = Medicion.parametro("benchmark.hilos", 8);
+        int pagos = Medicion.parametro("benchmark.pagos", 10_000);
+        int operaciones = Medicion.parametro("benchmark.operaciones", 200_000);
+
+        for (Variante variante : Variante.values()) {
+            // Calentamiento con un almacén descartable
+            medir(variante, hilos, pagos, operaciones / 5);
+            Resultado resultado = medir(variante, hilos, pagos, operaciones);
+            Medicion.reportar("%s: %.0f ops/s, %.0f bytes/op, %d lecturas inconsistentes",
+                    variante, resultado.porSegundo, resultado.bytesPorOperacion, resultado.inconsistentes);
+        }
+    }
+
+    private enum Variante {
+        MUTABLE_COMPARTIDO, MUTABLE_CON_LOCK, INSTANTANEA_INMUTABLE
+    }
+
+    private record Resultado(double porSegundo, double bytesPorOperacion, long inconsistentes) {
+    }
+
+    /**
+     * Operaciones de lectura y escritura de una variante
+     */
+    private interface Almacen {
+        Pago leer(String id);
+
+        void modificar(String id, long valor);
+    }
+
+    private static Resultado medir(Variante variante, int hilos, int pagos, int operaciones) throws Exception {
+        Almacen almacen = crear(variante, pagos);
+        LongAdder inconsistentes = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(executor.submit(() -> {
+                salida.await();
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                long asignadosAntes = HILOS.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < operaciones; i++) {
+                    String id = "pago-" + aleatorio.nextInt(pagos);
+                    if (aleatorio.nextInt(100) < 5) {
+                        almacen.modificar(id, aleatorio.nextLong(1_000_000));
+                    } else {
+                        Pago pago = almacen.leer(id);
+                        // Código y mensaje se escriben juntos; si difieren la lectura vio un cambio a medias
+                        if (!pago.getCodigoRespuesta().equals(pago.getMensajeRespuesta())) {
+                            inconsistentes.increment();
+                        }
+                    }
+                }
+                bytes.add(HILOS.getCurrentThreadAllocatedBytes() - asignadosAntes);
+                return null;
+            }));
+        }
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        executor.shutdown();
+
+        long total = (long) hilos * operaciones;
+        return new Resultado(total / segundos, (double) bytes.sum() / total, inconsistentes.sum());
+    }
+
+    private static Almacen crear(Variante variante, int pagos) {
+        if (variante == Variante.INSTANTANEA_INMUTABLE) {
+            PagoRepository repositorio = new PagoRepository();
+            for (int i = 0; i < pagos; i++) {
+                repositorio.save(Escenario.pago(i).id("pago-" + i).codigoRespuesta("0").mensajeRespuesta("0").build());
+            }
+            return new Almacen() {
+                @Override
+                public Pago leer(String id) {
+                    return repositorio.findById(id).orElseThrow();
+                }
+
+                @Override
+                public void modificar(String id, long valor) {
+                    while (true) {
+                        Pago leido = repositorio.findById(id).orElseThrow();
+                        try {
+                            repositorio.actualizar(id, leido.getVersion(), pago -> {
+                                aplicar(pago, valor);
+                                return pago;
+                            });
+                            return;
+                        } catch (PagoConcurrencyException e) {
+                            // Se vuelve a leer
+                        }
+                    }
+                }
+            };
+        }
+
+        Map<String, Pago> mapa = new ConcurrentHashMap<>();
+        for (int i = 0; i < pagos; i++) {
+            mapa.put("pago-" + i, Escenario.pago(i).id("pago-" + i).codigoRespuesta("0").mensajeRespuesta("0").build());
+        }
+        if (variante == Variante.MUTABLE_COMPARTIDO) {
+            return new Almacen() {
+                @Override
+                public Pago leer(String id) {
+                    return mapa.get(id);
+                }
+
+                @Override
+                public void modificar(String id, long valor) {
+                    aplicar(mapa.get(id), valor);
+                }
+            };
+        }
+        return new Almacen() {
+            @Override
+            public Pago leer(String id) {
+                Pago pago = mapa.get(id);
+                synchronized (pago) {
+                    Pago copia = new Pago();
+                    copia.setId(pago.getId());
+                    copia.setOrderId(pago.getOrderId());
+                    copia.setMonto(pago.getMonto());
+                    copia.setEstado(pago.getEstado());
+                    copia.setFechaCreacion(pago.getFechaCreacion());
+                    copia.setFechaActualizacion(pago.getFechaActualizacion());
+                    copia.setMetodoPago(pago.getMetodoPago());
+                    copia.setMoneda(pago.getMoneda());
+                    copia.setClienteId(pago.getClienteId());
+                    copia.setCodigoRespuesta(pago.getCodigoRespuesta());
+                    copia.setMensajeRespuesta(pago.getMensajeRespuesta());
+                    return copia;
+                }
+            }
+
+            @Override
+            public void modificar(String id, long valor) {
+                Pago pago = mapa.get(id);
+                synchronized (pago) {
+                    aplicar(pago, valor);
+                }
+            }
+        };
+    }
+
+    private static void aplicar(Pago pago, long valor) {
+        String texto = Long.toString(valor);
+        pago.setCodigoRespuesta(texto);
+        pago.setFechaActualizacion(LocalDateTime.now());
+        pago.setMensajeRespuesta(texto);
+    }
+}
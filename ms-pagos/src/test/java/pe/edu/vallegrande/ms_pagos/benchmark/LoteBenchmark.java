@@ -0,0 +1,96 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
+import pe.edu.vallegrande.ms_pagos.repository.PagoJournal;
+import pe.edu.vallegrande.ms_pagos.repository.RepositorioRecuperado;
+import pe.edu.vallegrande.ms_pagos.service.EjecutorLotes;
+import pe.edu.vallegrande.ms_pagos.service.EstadisticasPagos;
+import pe.edu.vallegrande.ms_pagos.service.PagoService;
+import pe.edu.vallegrande.ms_pagos.service.ResumenesClientes;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Pagos por segundo creando una ráfaga con POST /pagos uno por uno frente a POST /pagos/batch,
+ * pasando por el dispatcher de Spring MVC y Jackson (sin red), en memoria y con journal con
+ * fsync por escritura. Parámetros: -Dbenchmark.lote, -Dbenchmark.rafagas.
+ */
+class LoteBenchmark {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void individualFrenteALote() throws Exception {
+        int tamanoLote = Medicion.parametro("benchmark.lote", 500);
+        int rafagas = Medicion.parametro("benchmark.rafagas", 20);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        List<PagoRequest> requests = new ArrayList<>(tamanoLote);
+        for (int i = 0; i < tamanoLote; i++) {
+            requests.add(crearRequest(i));
+        }
+        String lote = objectMapper.writeValueAsString(requests);
+        List<String> individuales = new ArrayList<>(tamanoLote);
+        for (PagoRequest request : requests) {
+            individuales.add(objectMapper.writeValueAsString(request));
+        }
+
+        for (PagoJournal.PoliticaFsync politica : new PagoJournal.PoliticaFsync[]{null, PagoJournal.PoliticaFsync.SIEMPRE}) {
+            PagoJournal journal = politica == null ? null
+                    : new PagoJournal(directorio.resolve("pagos-" + System.nanoTime() + ".journal"), politica, 5, 1);
+            PagoService servicio = Escenario.servicio(RepositorioRecuperado.abrir(journal, null), new EstadisticasPagos(),
+                    new EjecutorLotes(Runtime.getRuntime().availableProcessors(), 64), new ResumenesClientes());
+            MockMvc mockMvc = Escenario.mockMvc(servicio, objectMapper);
+            int rondas = politica == null ? rafagas : Math.max(1, rafagas / 10);
+
+            double individual = Medicion.nanosPorOperacion(1, rondas, i -> {
+                for (String cuerpo : individuales) {
+                    enviar(mockMvc, "/pagos", cuerpo);
+                }
+            });
+            double enLote = Medicion.nanosPorOperacion(1, rondas, i -> enviar(mockMvc, "/pagos/batch", lote));
+
+            Medicion.reportar("%s, ráfagas de %d: individual %.0f pagos/s (%.1f ms), lote %.0f pagos/s (%.1f ms), x%.1f",
+                    politica == null ? "en memoria" : "journal " + politica, tamanoLote,
+                    tamanoLote / (individual / 1e9), individual / 1e6,
+                    tamanoLote / (enLote / 1e9), enLote / 1e6, individual / enLote);
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    private static void enviar(MockMvc mockMvc, String ruta, String cuerpo) {
+        try {
+            int estado = mockMvc.perform(post(ruta).contentType(MediaType.APPLICATION_JSON).content(cuerpo))
+                    .andReturn().getResponse().getStatus();
+            if (estado != 201) {
+                throw new IllegalStateException("Respuesta inesperada " + estado + " en " + ruta);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static PagoRequest crearRequest(int i) {
+        PagoRequest request = new PagoRequest();
+        request.setOrderId("ORD-" + i);
+        request.setMonto(new BigDecimal("150.00"));
+        request.setMetodoPago("Tarjeta");
+        request.setMoneda("PEN");
+        request.setClienteId("CLI-" + (i % 100));
+        request.setDescripcion("Pago de la ráfaga");
+        request.setPaymentGateway("Visa");
+        return request;
+    }
+}
@@ -0,0 +1,65 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Utilidades mínimas para los benchmarks manuales del proyecto.
+ * Los benchmarks no forman parte de la suite por defecto (surefire solo incluye *Test),
+ * se ejecutan de forma explícita, por ejemplo:
+ * mvn test -Dtest=IndicesSecundariosBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ */
+final class Medicion {
+
+    static {
+        // Fuera de Spring el nivel por defecto es DEBUG y el log por operación dominaría las mediciones
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+    }
+
+    private Medicion() {
+    }
+
+    /**
+     * Lee un parámetro entero del benchmark desde las propiedades del sistema
+     */
+    static int parametro(String nombre, int porDefecto) {
+        return Integer.getInteger(nombre, porDefecto);
+    }
+
+    /**
+     * Ejecuta la operación {@code iteraciones} veces tras un calentamiento y devuelve ns/op
+     */
+    static double nanosPorOperacion(int calentamiento, int iteraciones, IntConsumer operacion) {
+        for (int i = 0; i < calentamiento; i++) {
+            operacion.accept(i);
+        }
+        long inicio = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) {
+            operacion.accept(i);
+        }
+        return (double) (System.nanoTime() - inicio) / iteraciones;
+    }
+
+    /**
+     * Memoria de heap usada tras forzar recolecciones
+     */
+    static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static void reportar(String formato, Object... argumentos) {
+        System.out.printf("[benchmark] " + formato + "%n", argumentos);
+    }
+}
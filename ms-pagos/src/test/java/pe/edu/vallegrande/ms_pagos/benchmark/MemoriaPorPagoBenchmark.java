@@ -0,0 +1,58 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes de heap por pago: un ConcurrentHashMap de Pago (lo que guardaba el repositorio) frente
+ * al PagoRepository completo, índices secundarios incluidos. Filas con -Dbenchmark.filas.
+ */
+class MemoriaPorPagoBenchmark {
+
+    @Test
+    void bytesPorPago() {
+        int filas = Medicion.parametro("benchmark.filas", 1_000_000);
+
+        long base = Medicion.heapUsado();
+        Map<String, Pago> mapa = new ConcurrentHashMap<>();
+        for (int i = 0; i < filas; i++) {
+            Pago pago = crearPago(i);
+            mapa.put(pago.getId(), pago);
+        }
+        double bytesMapa = (double) (Medicion.heapUsado() - base) / filas;
+        assertThat(mapa).hasSize(filas);
+        mapa = null;
+
+        base = Medicion.heapUsado();
+        PagoRepository repositorio = new PagoRepository();
+        for (int i = 0; i < filas; i++) {
+            repositorio.save(crearPago(i));
+        }
+        double bytesRepositorio = (double) (Medicion.heapUsado() - base) / filas;
+        assertThat(repositorio.count()).isEqualTo(filas);
+
+        Medicion.reportar("%d pagos: ConcurrentHashMap<String, Pago> %.0f B/pago, PagoRepository con índices %.0f B/pago",
+                filas, bytesMapa, bytesRepositorio);
+    }
+
+    /**
+     * Pago con textos recién creados, como llegan al deserializar cada request; sin las copias
+     * todos los pagos compartirían los literales del escenario
+     */
+    private static Pago crearPago(int i) {
+        Pago pago = Escenario.pagoCompleto(i).id(UUID.randomUUID().toString()).build();
+        pago.setMetodoPago(new String(pago.getMetodoPago()));
+        pago.setMoneda(new String(pago.getMoneda()));
+        pago.setPaymentGateway(new String(pago.getPaymentGateway()));
+        pago.setCodigoRespuesta(new String(pago.getCodigoRespuesta()));
+        pago.setMensajeRespuesta(new String(pago.getMensajeRespuesta()));
+        return pago;
+    }
+}
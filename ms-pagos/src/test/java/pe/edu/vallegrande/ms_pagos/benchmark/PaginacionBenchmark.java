@@ -0,0 +1,51 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.ClaveCronologica;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Costo de una página por cursor frente a listar todo, al inicio y al final del recorrido,
+ * y heap de los índices ordenados por pago. Parámetros: -Dbenchmark.pagos, -Dbenchmark.limite.
+ */
+class PaginacionBenchmark {
+
+    @Test
+    void paginaPorCursorFrenteAListaCompleta() {
+        int total = Medicion.parametro("benchmark.pagos", 200_000);
+        int limite = Medicion.parametro("benchmark.limite", 50);
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        long heapAntes = Medicion.heapUsado();
+        PagoRepository repositorio = new PagoRepository();
+        for (int i = 0; i < total; i++) {
+            repositorio.save(Escenario.pago(i).fechaCreacion(base.plusNanos(i * 1_000L)).build());
+        }
+        long heap = Medicion.heapUsado() - heapAntes;
+
+        ClaveCronologica alFinal = ClaveCronologica.de(Escenario.pago(total - limite - 1)
+                .fechaCreacion(base.plusNanos((total - limite - 1) * 1_000L)).build());
+        double inicio = Medicion.nanosPorOperacion(10_000, 100_000, i -> consumir(repositorio.findPagina(null, limite).size()));
+        double fin = Medicion.nanosPorOperacion(10_000, 100_000, i -> consumir(repositorio.findPagina(alFinal, limite).size()));
+        double porCliente = Medicion.nanosPorOperacion(10_000, 100_000,
+                i -> consumir(repositorio.findPaginaPorCliente("CLI-" + (i % 1000), null, limite).size()));
+        double completa = Medicion.nanosPorOperacion(2, 10, i -> {
+            List<Pago> pagos = repositorio.findAll();
+            consumir(pagos.size());
+        });
+
+        Medicion.reportar("%d pagos, páginas de %d: primera %.1f µs, última %.1f µs, por cliente %.1f µs; findAll %.1f ms",
+                total, limite, inicio / 1e3, fin / 1e3, porCliente / 1e3, completa / 1e6);
+        Medicion.reportar("heap del repositorio con índices ordenados: %d B/pago", heap / total);
+    }
+
+    private static volatile long sumidero;
+
+    private static void consumir(long valor) {
+        sumidero += valor;
+    }
+}
@@ -0,0 +1,75 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.ClaveCronologica;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ventanas de una hora sobre el índice cronológico frente a filtrar findAll por fecha. Los
+ * pagos se reparten de forma uniforme en {@code benchmark.dias}; la ventana se recorre
+ * completa en páginas de {@code benchmark.limite}. Parámetros: -Dbenchmark.pagos,
+ * -Dbenchmark.dias, -Dbenchmark.limite.
+ */
+class RangoFechasBenchmark {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final int LIMITE = Medicion.parametro("benchmark.limite", 1_000);
+
+    @Test
+    void ventanaDeUnaHoraFrenteARecorridoCompleto() {
+        int total = Medicion.parametro("benchmark.pagos", 500_000);
+        int dias = Medicion.parametro("benchmark.dias", 30);
+        long paso = Duration.ofDays(dias).toNanos() / total;
+        PagoRepository repositorio = new PagoRepository();
+        for (int i = 0; i < total; i++) {
+            repositorio.save(Escenario.pago(i)
+                    .id(String.format("pago-%08d", i))
+                    .estado(i % 10 == 0 ? Pago.EstadoPago.FAILED : Pago.EstadoPago.COMPLETED)
+                    .fechaCreacion(BASE.plusNanos(i * paso))
+                    .moneda(i % 3 == 0 ? "USD" : "PEN")
+                    .build());
+        }
+        int horas = dias * 24;
+
+        long[] encontrados = new long[1];
+        double indice = Medicion.nanosPorOperacion(200, 2_000, i -> {
+            LocalDateTime desde = BASE.plusHours(i % horas);
+            encontrados[0] = recorrer(repositorio, desde, null);
+        });
+        double conEstado = Medicion.nanosPorOperacion(200, 2_000,
+                i -> consumir(recorrer(repositorio, BASE.plusHours(i % horas), Pago.EstadoPago.FAILED)));
+        double completo = Medicion.nanosPorOperacion(1, 5, i -> {
+            LocalDateTime desde = BASE.plusHours(i % horas);
+            LocalDateTime hasta = desde.plusHours(1);
+            consumir(repositorio.findAll().stream()
+                    .filter(p -> !p.getFechaCreacion().isBefore(desde) && p.getFechaCreacion().isBefore(hasta))
+                    .count());
+        });
+
+        Medicion.reportar("%d pagos en %d días, ventana de 1 h (~%d pagos): índice %.1f µs, con estado %.1f µs, findAll %.1f ms, x%.0f",
+                total, dias, encontrados[0], indice / 1e3, conEstado / 1e3, completo / 1e6, completo / indice);
+    }
+
+    private static long recorrer(PagoRepository repositorio, LocalDateTime desde, Pago.EstadoPago estado) {
+        long pagos = 0;
+        ClaveCronologica cursor = null;
+        List<Pago> pagina;
+        do {
+            pagina = repositorio.findPaginaPorFechas(desde, desde.plusHours(1), estado, null, cursor, LIMITE);
+            pagos += pagina.size();
+            cursor = pagina.isEmpty() ? null : ClaveCronologica.de(pagina.get(pagina.size() - 1));
+        } while (pagina.size() == LIMITE);
+        return pagos;
+    }
+
+    private static volatile long sumidero;
+
+    private static void consumir(long valor) {
+        sumidero += valor;
+    }
+}
@@ -0,0 +1,63 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.service.EjecutorLotes;
+import pe.edu.vallegrande.ms_pagos.service.EstadisticasPagos;
+import pe.edu.vallegrande.ms_pagos.service.PagoService;
+import pe.edu.vallegrande.ms_pagos.service.ResumenesClientes;
+
+import java.math.BigDecimal;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Totales de un cliente leyendo su historial con GET /pagos/cliente/{clienteId} frente al
+ * resumen incremental de GET /pagos/cliente/{clienteId}/resumen, pasando por Spring MVC y
+ * Jackson (sin red). Parámetros: -Dbenchmark.pagos (del cliente), -Dbenchmark.rondas.
+ */
+class ResumenClienteBenchmark {
+
+    @Test
+    void historialCompletoFrenteAResumen() {
+        int total = Medicion.parametro("benchmark.pagos", 5_000);
+        int rondas = Medicion.parametro("benchmark.rondas", 50);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        PagoRepository repositorio = new PagoRepository();
+        for (int i = 0; i < total; i++) {
+            repositorio.save(Escenario.pago(i)
+                    .clienteId("CLI-1")
+                    .monto(BigDecimal.valueOf(i, 2))
+                    .estado(i % 10 == 0 ? Pago.EstadoPago.FAILED : Pago.EstadoPago.COMPLETED)
+                    .moneda(i % 3 == 0 ? "USD" : "PEN")
+                    .build());
+        }
+        ResumenesClientes resumenes = new ResumenesClientes();
+        resumenes.pagosRecuperados(repositorio.findAll());
+        PagoService servicio = Escenario.servicio(repositorio, new EstadisticasPagos(),
+                new EjecutorLotes(1, 1), resumenes);
+        MockMvc mockMvc = Escenario.mockMvc(servicio, objectMapper);
+
+        double historial = Medicion.nanosPorOperacion(5, rondas, r -> enviar(mockMvc, get("/pagos/cliente/{clienteId}", "CLI-1")));
+        double resumen = Medicion.nanosPorOperacion(50, rondas * 100,
+                r -> enviar(mockMvc, get("/pagos/cliente/{clienteId}/resumen", "CLI-1")));
+
+        Medicion.reportar("Cliente con %d pagos: historial %.2f ms, resumen %.1f µs, x%.0f",
+                total, historial / 1e6, resumen / 1e3, historial / resumen);
+    }
+
+    private static void enviar(MockMvc mockMvc, RequestBuilder request) {
+        try {
+            int estado = mockMvc.perform(request).andReturn().getResponse().getStatus();
+            if (estado != 200) {
+                throw new IllegalStateException("Respuesta inesperada " + estado);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
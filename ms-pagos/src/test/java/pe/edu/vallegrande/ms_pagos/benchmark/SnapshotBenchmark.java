@@ -0,0 +1,56 @@
+package pe.edu.vallegrande.ms_pagos.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pe.edu.vallegrande.ms_pagos.repository.PagoJournal;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.repository.PagoSnapshots;
+import pe.edu.vallegrande.ms_pagos.repository.RepositorioRecuperado;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput de escritura y carga de snapshots, y reinicio con snapshot frente a solo journal.
+ * Parámetro: -Dbenchmark.filas. Para 10M registros se necesita un heap grande, p. ej. -DargLine=-Xmx12g.
+ */
+class SnapshotBenchmark {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void escrituraYCargaDeSnapshot() {
+        int filas = Medicion.parametro("benchmark.filas", 1_000_000);
+        PagoJournal journal = nuevoJournal();
+        PagoSnapshots snapshots = new PagoSnapshots(directorio.resolve("pagos.snapshot"), 0);
+        PagoRepository repositorio = RepositorioRecuperado.abrir(journal, snapshots);
+        for (int i = 0; i < filas; i++) {
+            repositorio.save(Escenario.pagoCompleto(i).build());
+        }
+
+        long inicio = System.nanoTime();
+        long bytes = repositorio.checkpoint();
+        double segundosEscritura = (System.nanoTime() - inicio) / 1e9;
+        journal.close();
+        repositorio = null;
+
+        PagoJournal reabierto = nuevoJournal();
+        inicio = System.nanoTime();
+        PagoRepository recuperado = RepositorioRecuperado.abrir(reabierto,
+                new PagoSnapshots(directorio.resolve("pagos.snapshot"), 0));
+        double segundosCarga = (System.nanoTime() - inicio) / 1e9;
+        reabierto.close();
+
+        assertThat(recuperado.count()).isEqualTo(filas);
+        Medicion.reportar("snapshot de %d pagos (%.0f MB): escritura %.2f s (%.0f MB/s), reinicio %.2f s (%.0f MB/s)",
+                filas, bytes / 1e6, segundosEscritura, bytes / 1e6 / segundosEscritura,
+                segundosCarga, bytes / 1e6 / segundosCarga);
+    }
+
+    private PagoJournal nuevoJournal() {
+        return new PagoJournal(directorio.resolve("pagos.journal"), PagoJournal.PoliticaFsync.SISTEMA, 5,
+                Runtime.getRuntime().availableProcessors());
+    }
+}
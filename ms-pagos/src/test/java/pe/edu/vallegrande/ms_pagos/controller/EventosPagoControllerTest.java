@@ -0,0 +1,174 @@
+package pe.edu.vallegrande.ms_pagos.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import pe.edu.vallegrande.ms_pagos.config.EsperaProperties;
+import pe.edu.vallegrande.ms_pagos.config.EventosProperties;
+import pe.edu.vallegrande.ms_pagos.dto.response.EventoEstadoResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.exception.GlobalExceptionHandler;
+import pe.edu.vallegrande.ms_pagos.exception.PagoNotFoundException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.service.EsperasEstado;
+import pe.edu.vallegrande.ms_pagos.service.PagoService;
+import pe.edu.vallegrande.ms_pagos.service.SuscripcionesEstado;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class EventosPagoControllerTest {
+
+    private SuscripcionesEstado suscripciones;
+    private EsperasEstado esperas;
+    private PagoService pagoService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        suscripciones = new SuscripcionesEstado(1, 8, 1);
+        esperas = new EsperasEstado(10);
+        pagoService = mock(PagoService.class);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        EventosPagoController controller = new EventosPagoController(suscripciones, new EventosProperties(), esperas,
+                new EsperaProperties(), pagoService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setMessageConverters(new StringHttpMessageConverter(StandardCharsets.UTF_8),
+                        new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        suscripciones.close();
+    }
+
+    @Test
+    void suscribirEventos_DeberiaEnviarLosCambiosDeLaOrdenComoEventos() throws Exception {
+        // Given
+        MvcResult resultado = mockMvc.perform(get("/pagos/eventos").param("orderId", "ORD-1")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // When
+        suscripciones.estadoCambiado(pago("p-2", "ORD-2"), Pago.EstadoPago.PENDING);
+        suscripciones.estadoCambiado(pago("p-1", "ORD-1"), Pago.EstadoPago.PENDING);
+
+        // Then
+        MockHttpServletResponse response = resultado.getResponse();
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!response.getContentAsString().contains("p-1") && System.nanoTime() < limite) {
+            Thread.sleep(5);
+        }
+        String cuerpo = response.getContentAsString();
+        assertThat(response.getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+        assertThat(cuerpo).contains("event:estado").contains("\"pagoId\":\"p-1\"").contains("\"estado\":\"COMPLETED\"");
+        assertThat(cuerpo).doesNotContain("p-2");
+    }
+
+    @Test
+    void suscribirEventos_SinCapacidad_DeberiaRetornar503AunqueSoloAcepteEventos() throws Exception {
+        // Given
+        suscripciones.suscribir(null, null, new SuscripcionesEstado.Destino() {
+            @Override
+            public void enviar(EventoEstadoResponse evento) {
+            }
+
+            @Override
+            public void desbordado() {
+            }
+        });
+
+        // When & Then
+        mockMvc.perform(get("/pagos/eventos").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
+    @Test
+    void esperarEstado_ConPagoYaCompletado_DeberiaResponderSinEsperar() throws Exception {
+        // Given
+        when(pagoService.obtenerPagoPorId("p-1")).thenReturn(pagoResponse("p-1", Pago.EstadoPago.COMPLETED));
+
+        // When
+        MvcResult resultado = mockMvc.perform(get("/pagos/{pagoId}/await", "p-1").param("estado", "COMPLETED"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Pago en estado COMPLETED"))
+                .andExpect(jsonPath("$.data.estado").value("COMPLETED"));
+        assertThat(esperas.esperasActivas()).isZero();
+    }
+
+    @Test
+    void esperarEstado_ConPagoPendiente_DeberiaResponderAlCambiarDeEstado() throws Exception {
+        // Given
+        when(pagoService.obtenerPagoPorId("p-1")).thenReturn(pagoResponse("p-1", Pago.EstadoPago.PENDING));
+        MvcResult resultado = mockMvc.perform(get("/pagos/{pagoId}/await", "p-1").param("timeout", "10s"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(esperas.esperasActivas()).isEqualTo(1);
+
+        // When
+        when(pagoService.obtenerPagoPorId("p-1")).thenReturn(pagoResponse("p-1", Pago.EstadoPago.FAILED));
+        esperas.estadoCambiado(pago("p-1", "ORD-1"), Pago.EstadoPago.PENDING);
+
+        // Then
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.estado").value("FAILED"));
+        assertThat(esperas.esperasActivas()).isZero();
+    }
+
+    @Test
+    void esperarEstado_ConTimeoutInvalidoOPagoInexistente_DeberiaResponderErrorSinDejarEsperas() throws Exception {
+        // Given
+        when(pagoService.obtenerPagoPorId("p-9")).thenThrow(new PagoNotFoundException("p-9"));
+
+        // When & Then
+        mockMvc.perform(get("/pagos/{pagoId}/await", "p-1").param("timeout", "5m"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("VALIDATION_ERROR"));
+        mockMvc.perform(get("/pagos/{pagoId}/await", "p-1").param("timeout", "pronto"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/pagos/{pagoId}/await", "p-9"))
+                .andExpect(status().isNotFound());
+        assertThat(esperas.esperasActivas()).isZero();
+    }
+
+    private static PagoResponse pagoResponse(String id, Pago.EstadoPago estado) {
+        PagoResponse response = new PagoResponse();
+        response.setId(id);
+        response.setEstado(estado);
+        return response;
+    }
+
+    private static Pago pago(String id, String orderId) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setOrderId(orderId);
+        pago.setClienteId("CLI-1");
+        pago.setEstado(Pago.EstadoPago.COMPLETED);
+        return pago;
+    }
+}
@@ -8,8 +8,19 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import pe.edu.vallegrande.ms_pagos.dto.request.CambioEstadoLoteRequest;
 import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
+import pe.edu.vallegrande.ms_pagos.dto.response.CambioPagoResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.CambiosResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ConsultaPagosResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.EstadisticasResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.LotePagosResponse;
 import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.PaginaResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResultadoLoteResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResumenClienteResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
 import pe.edu.vallegrande.ms_pagos.exception.PagoNotFoundException;
 import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
 import pe.edu.vallegrande.ms_pagos.model.Pago;
@@ -20,10 +31,17 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -75,7 +93,7 @@ class PagoControllerTest {
     @Test
     void crearPago_ConDatosValidos_DeberiaRetornar201() throws Exception {
         // Given
-        when(pagoService.crearPago(any(PagoRequest.class))).thenReturn(pagoResponseMock);
+        when(pagoService.crearPago(any(PagoRequest.class), isNull())).thenReturn(pagoResponseMock);
 
         // When & Then
         mockMvc.perform(post("/pagos")
@@ -95,7 +113,7 @@ class PagoControllerTest {
     @Test
     void crearPago_ConDatosInvalidos_DeberiaRetornar400() throws Exception {
         // Given
-        when(pagoService.crearPago(any(PagoRequest.class)))
+        when(pagoService.crearPago(any(PagoRequest.class), isNull()))
                 .thenThrow(new PagoValidationException("El monto es obligatorio"));
 
         // When & Then
@@ -109,6 +127,113 @@ class PagoControllerTest {
                 .andExpect(jsonPath("$.message").value("El monto es obligatorio"));
     }
 
+    @Test
+    void crearPago_ConIdempotencyKey_DeberiaPasarLaClaveAlServicio() throws Exception {
+        // Given
+        when(pagoService.crearPago(any(PagoRequest.class), eq("clave-123"))).thenReturn(pagoResponseMock);
+
+        // When & Then
+        mockMvc.perform(post("/pagos")
+                .header("Idempotency-Key", "clave-123")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(pagoRequestValido)))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.id").value("pago-123"));
+    }
+
+    @Test
+    void crearPago_ConPreferRespondAsync_DeberiaRetornar202ConLocation() throws Exception {
+        // Given
+        pagoResponseMock.setEstado(Pago.EstadoPago.PENDING);
+        when(pagoService.crearPagoAsincrono(any(PagoRequest.class), isNull())).thenReturn(pagoResponseMock);
+
+        // When & Then
+        mockMvc.perform(post("/pagos")
+                .header("Prefer", "return=minimal, respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(pagoRequestValido)))
+                .andDo(print())
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "http://localhost/pagos/pago-123"))
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("$.data.estado").value("PENDING"));
+        verify(pagoService, never()).crearPago(any(PagoRequest.class), any());
+    }
+
+    @Test
+    void crearPago_AsincronoConColaLlena_DeberiaRetornar503() throws Exception {
+        // Given
+        when(pagoService.crearPagoAsincrono(any(PagoRequest.class), isNull()))
+                .thenThrow(new PagoCapacidadException("pagos en procesamiento", 10));
+
+        // When & Then
+        mockMvc.perform(post("/pagos")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(pagoRequestValido)))
+                .andDo(print())
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.errorCode").value("CAPACIDAD_AGOTADA"));
+    }
+
+    @Test
+    void crearPagos_TodosValidos_DeberiaRetornar201() throws Exception {
+        // Given
+        LotePagosResponse lote = new LotePagosResponse(2, 2, 0, List.of(
+                ResultadoLoteResponse.exito(0, pagoResponseMock), ResultadoLoteResponse.exito(1, pagoResponseMock)));
+        when(pagoService.crearPagos(any())).thenReturn(lote);
+
+        // When & Then
+        mockMvc.perform(post("/pagos/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(pagoRequestValido, pagoRequestValido))))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.message").value("Lote procesado: 2 pagos creados, 0 con errores"))
+                .andExpect(jsonPath("$.data.resultados", hasSize(2)))
+                .andExpect(jsonPath("$.data.resultados[1].pago.id").value("pago-123"));
+    }
+
+    @Test
+    void crearPagos_ConErroresParciales_DeberiaRetornar207() throws Exception {
+        // Given
+        LotePagosResponse lote = new LotePagosResponse(2, 1, 1, List.of(
+                ResultadoLoteResponse.exito(0, pagoResponseMock),
+                ResultadoLoteResponse.error(1, "VALIDATION_ERROR", "monto", "El monto es obligatorio")));
+        when(pagoService.crearPagos(any())).thenReturn(lote);
+
+        // When & Then
+        mockMvc.perform(post("/pagos/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(pagoRequestValido, new PagoRequest()))))
+                .andDo(print())
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.data.fallidos").value(1))
+                .andExpect(jsonPath("$.data.resultados[1].exitoso").value(false))
+                .andExpect(jsonPath("$.data.resultados[1].campo").value("monto"));
+    }
+
+    @Test
+    void consultarPagos_DeberiaRetornarMapasYFaltantes() throws Exception {
+        // Given
+        ConsultaPagosResponse consulta = new ConsultaPagosResponse(Map.of("pago-123", pagoResponseMock),
+                Map.of("ORD-001", List.of(pagoResponseMock)), List.of("pago-999"), List.of());
+        when(pagoService.consultarPagos(any())).thenReturn(consulta);
+
+        // When & Then
+        mockMvc.perform(post("/pagos/consulta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[\"pago-123\",\"pago-999\"],\"orderIds\":[\"ORD-001\"]}"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Se encontraron 1 pagos y 1 órdenes"))
+                .andExpect(jsonPath("$.data.porId['pago-123'].estado").value("COMPLETED"))
+                .andExpect(jsonPath("$.data.porOrden['ORD-001']", hasSize(1)))
+                .andExpect(jsonPath("$.data.idsNoEncontrados[0]").value("pago-999"));
+    }
+
     @Test
     void obtenerPago_ConIdExistente_DeberiaRetornar200() throws Exception {
         // Given
@@ -170,6 +295,103 @@ class PagoControllerTest {
                 .andExpect(jsonPath("$.data", hasSize(0)));
     }
 
+    @Test
+    void exportarPagos_DeberiaEscribirUnPagoPorLinea() throws Exception {
+        // Given
+        PagoResponse otro = new PagoResponse();
+        otro.setId("pago-456");
+        when(pagoService.exportarPagos(any())).thenAnswer(invocacion -> {
+            Consumer<PagoResponse> destino = invocacion.getArgument(0);
+            destino.accept(pagoResponseMock);
+            destino.accept(otro);
+            return 2L;
+        });
+
+        // When
+        MvcResult resultado = mockMvc.perform(get("/pagos/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        String cuerpo = mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lineas = cuerpo.split("\n");
+        assertThat(cuerpo).endsWith("\n");
+        assertThat(lineas).hasSize(2);
+        assertThat(objectMapper.readTree(lineas[0]).path("id").asText()).isEqualTo("pago-123");
+        assertThat(objectMapper.readTree(lineas[1]).path("id").asText()).isEqualTo("pago-456");
+    }
+
+    @Test
+    void obtenerPaginaDePagos_ConLimit_DeberiaRetornarPagina() throws Exception {
+        // Given
+        PaginaResponse<PagoResponse> pagina = new PaginaResponse<>(List.of(pagoResponseMock), "c2lndWllbnRl", true);
+        when(pagoService.obtenerPaginaDePagos("YW50ZXJpb3I", 1)).thenReturn(pagina);
+
+        // When & Then
+        mockMvc.perform(get("/pagos").param("limit", "1").param("cursor", "YW50ZXJpb3I"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Se encontraron 1 pagos"))
+                .andExpect(jsonPath("$.data.elementos", hasSize(1)))
+                .andExpect(jsonPath("$.data.siguienteCursor").value("c2lndWllbnRl"))
+                .andExpect(jsonPath("$.data.hayMas").value(true));
+    }
+
+    @Test
+    void obtenerPaginaPorFechas_ConFiltros_DeberiaRetornarPagina() throws Exception {
+        // Given
+        LocalDateTime desde = LocalDateTime.of(2025, 1, 1, 10, 0);
+        PaginaResponse<PagoResponse> pagina = new PaginaResponse<>(List.of(pagoResponseMock), null, false);
+        when(pagoService.obtenerPaginaPorFechas(desde, desde.plusHours(1), Pago.EstadoPago.COMPLETED, "PEN", null, 100))
+                .thenReturn(pagina);
+
+        // When & Then
+        mockMvc.perform(get("/pagos/rango")
+                        .param("desde", "2025-01-01T10:00:00")
+                        .param("hasta", "2025-01-01T11:00:00")
+                        .param("estado", "COMPLETED")
+                        .param("moneda", "PEN"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Se encontraron 1 pagos entre 2025-01-01T10:00 y 2025-01-01T11:00"))
+                .andExpect(jsonPath("$.data.elementos", hasSize(1)))
+                .andExpect(jsonPath("$.data.hayMas").value(false));
+    }
+
+    @Test
+    void obtenerCambios_DeberiaRetornarCambiosYSiguienteSecuencia() throws Exception {
+        // Given
+        CambiosResponse cambios = new CambiosResponse(List.of(
+                new CambioPagoResponse(7, "pago-123", false, pagoResponseMock),
+                new CambioPagoResponse(9, "pago-456", true, null)), 9, false);
+        when(pagoService.obtenerCambios(5, 100)).thenReturn(cambios);
+
+        // When & Then
+        mockMvc.perform(get("/pagos/cambios").param("desde", "5"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Se encontraron 2 cambios desde la secuencia 5"))
+                .andExpect(jsonPath("$.data.cambios[0].pago.id").value("pago-123"))
+                .andExpect(jsonPath("$.data.cambios[1].eliminado").value(true))
+                .andExpect(jsonPath("$.data.siguienteSecuencia").value(9));
+    }
+
+    @Test
+    void obtenerPaginaPorCliente_ConCursorInvalido_DeberiaRetornar400() throws Exception {
+        // Given
+        when(pagoService.obtenerPaginaPorCliente("CLI-123", "roto", 10))
+                .thenThrow(new PagoValidationException("cursor", "roto", "El cursor de paginación no es válido"));
+
+        // When & Then
+        mockMvc.perform(get("/pagos/cliente/{clienteId}", "CLI-123").param("limit", "10").param("cursor", "roto"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
     @Test
     void obtenerPagosPorOrden_DeberiaRetornar200() throws Exception {
         // Given
@@ -204,6 +426,22 @@ class PagoControllerTest {
                 .andExpect(jsonPath("$.data[0].clienteId").value(clienteId));
     }
 
+    @Test
+    void obtenerResumenCliente_DeberiaRetornar200() throws Exception {
+        // Given
+        ResumenClienteResponse resumen = new ResumenClienteResponse("CLI-123", 3, 1,
+                Map.of("PEN", new BigDecimal("1500.50")), LocalDateTime.of(2025, 3, 1, 9, 0));
+        when(pagoService.obtenerResumenCliente("CLI-123")).thenReturn(resumen);
+
+        // When & Then
+        mockMvc.perform(get("/pagos/cliente/{clienteId}/resumen", "CLI-123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Resumen de 3 pagos del cliente CLI-123"))
+                .andExpect(jsonPath("$.data.pagosFallidos").value(1))
+                .andExpect(jsonPath("$.data.montoCompletadoPorMoneda.PEN").value(1500.50))
+                .andExpect(jsonPath("$.data.ultimoPago").value("2025-03-01T09:00:00"));
+    }
+
     @Test
     void actualizarEstadoPago_ConEstadoValido_DeberiaRetornar200() throws Exception {
         // Given
@@ -241,6 +479,44 @@ class PagoControllerTest {
                 .andExpect(jsonPath("$.errorCode").value("VALIDATION_ERROR"));
     }
 
+    @Test
+    void actualizarEstadoPagos_TodosActualizados_DeberiaRetornar200() throws Exception {
+        // Given
+        LotePagosResponse lote = new LotePagosResponse(2, 2, 0, List.of(
+                ResultadoLoteResponse.exito(0, pagoResponseMock), ResultadoLoteResponse.exito(1, pagoResponseMock)));
+        when(pagoService.actualizarEstadoPagos(any())).thenReturn(lote);
+
+        // When & Then
+        mockMvc.perform(patch("/pagos/estado")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                        new CambioEstadoLoteRequest(List.of("pago-1", "pago-2"), Pago.EstadoPago.COMPLETED))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.message").value("Lote procesado: 2 pagos actualizados a COMPLETED, 0 con errores"))
+                .andExpect(jsonPath("$.data.exitosos").value(2));
+    }
+
+    @Test
+    void actualizarEstadoPagos_ConErroresParciales_DeberiaRetornar207() throws Exception {
+        // Given
+        LotePagosResponse lote = new LotePagosResponse(2, 1, 1, List.of(
+                ResultadoLoteResponse.exito(0, pagoResponseMock),
+                ResultadoLoteResponse.error(1, "PAGO_NOT_FOUND", "ids", "Pago no encontrado con ID: pago-9")));
+        when(pagoService.actualizarEstadoPagos(any())).thenReturn(lote);
+
+        // When & Then
+        mockMvc.perform(patch("/pagos/estado")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                        new CambioEstadoLoteRequest(List.of("pago-1", "pago-9"), Pago.EstadoPago.FAILED))))
+                .andDo(print())
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.data.fallidos").value(1))
+                .andExpect(jsonPath("$.data.resultados[1].errorCode").value("PAGO_NOT_FOUND"));
+    }
+
     @Test
     void refundPago_ConDatosValidos_DeberiaRetornar200() throws Exception {
         // Given
@@ -291,7 +567,8 @@ class PagoControllerTest {
     @Test
     void obtenerEstadisticas_DeberiaRetornar200() throws Exception {
         // Given
-        when(pagoService.obtenerTodosLosPagos()).thenReturn(Arrays.asList(pagoResponseMock));
+        EstadisticasResponse estadisticas = new EstadisticasResponse(1, 1, 0, 0, new BigDecimal("1500.50"), 100.0);
+        when(pagoService.obtenerEstadisticas()).thenReturn(estadisticas);
 
         // When & Then
         mockMvc.perform(get("/pagos/stats"))
@@ -63,7 +63,8 @@ class RestrictRefundControllerTest {
                 "TXN_12345678",
                 "Visa",
                 "RESTRICTED_REFUND_SUCCESS",
-                "Refund restringido procesado exitosamente. Monto: 150.00, Límite: 500.00, Restante: 350.00"
+                "Refund restringido procesado exitosamente. Monto: 150.00, Límite: 500.00, Restante: 350.00",
+                null
         );
     }
 
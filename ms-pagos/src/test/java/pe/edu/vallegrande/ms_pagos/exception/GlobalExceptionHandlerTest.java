@@ -9,11 +9,13 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import pe.edu.vallegrande.ms_pagos.controller.PagoController;
 import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
 import pe.edu.vallegrande.ms_pagos.service.PagoService;
 
 import java.math.BigDecimal;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -57,7 +59,7 @@ class GlobalExceptionHandlerTest {
         pagoRequest.setMoneda("PEN");
         pagoRequest.setClienteId("CLI-001");
 
-        when(pagoService.crearPago(any(PagoRequest.class)))
+        when(pagoService.crearPago(any(PagoRequest.class), isNull()))
                 .thenThrow(new PagoValidationException("El monto debe ser mayor a 0"));
 
         // When & Then
@@ -70,6 +72,50 @@ class GlobalExceptionHandlerTest {
                 .andExpect(jsonPath("$.errorCode").value("VALIDATION_ERROR"));
     }
 
+    @Test
+    void handlePagoConcurrency_DeberiaRetornar409() throws Exception {
+        // Given
+        when(pagoService.actualizarEstadoPago("pago-1", Pago.EstadoPago.COMPLETED))
+                .thenThrow(new PagoConcurrencyException("pago-1", 1, 2));
+
+        // When & Then
+        mockMvc.perform(patch("/pagos/{pagoId}/estado", "pago-1").param("estado", "COMPLETED"))
+                .andDo(print())
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.errorCode").value("CONCURRENT_MODIFICATION"));
+    }
+
+    @Test
+    void handlePagoDuplicado_DeberiaRetornar409() throws Exception {
+        // Given
+        when(pagoService.crearPago(any(PagoRequest.class), isNull()))
+                .thenThrow(new PagoDuplicadoException("pago-1"));
+
+        // When & Then
+        mockMvc.perform(post("/pagos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new PagoRequest())))
+                .andDo(print())
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.errorCode").value("PAGO_DUPLICADO"));
+    }
+
+    @Test
+    void handlePagoCapacidad_DeberiaRetornar503() throws Exception {
+        // Given
+        when(pagoService.obtenerPagoPorId("pago-1"))
+                .thenThrow(new PagoCapacidadException("suscripciones a eventos", 10));
+
+        // When & Then
+        mockMvc.perform(get("/pagos/{pagoId}", "pago-1"))
+                .andDo(print())
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.errorCode").value("CAPACIDAD_AGOTADA"));
+    }
+
     @Test
     void handleGenericException_DeberiaRetornar500() throws Exception {
         // Given
@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.exception;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PagoCapacidadExceptionTest {
+
+    @Test
+    void constructor_DeberiaGuardarElLimiteYMensaje() {
+        // When
+        PagoCapacidadException excepcion = new PagoCapacidadException("suscripciones a eventos", 5000);
+
+        // Then
+        assertThat(excepcion.getLimite()).isEqualTo(5000);
+        assertThat(excepcion.getMessage()).contains("5000 suscripciones a eventos");
+        assertThat(excepcion).isInstanceOf(RuntimeException.class);
+    }
+}
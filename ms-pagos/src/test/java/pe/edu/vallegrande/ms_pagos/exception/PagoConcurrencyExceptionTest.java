@@ -0,0 +1,21 @@
+package pe.edu.vallegrande.ms_pagos.exception;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PagoConcurrencyExceptionTest {
+
+    @Test
+    void constructor_DeberiaGuardarVersionesYMensaje() {
+        // When
+        PagoConcurrencyException excepcion = new PagoConcurrencyException("pago-1", 3, 4);
+
+        // Then
+        assertThat(excepcion.getPagoId()).isEqualTo("pago-1");
+        assertThat(excepcion.getVersionEsperada()).isEqualTo(3);
+        assertThat(excepcion.getVersionActual()).isEqualTo(4);
+        assertThat(excepcion.getMessage()).contains("pago-1", "esperada 3", "actual 4");
+        assertThat(excepcion).isInstanceOf(RuntimeException.class);
+    }
+}
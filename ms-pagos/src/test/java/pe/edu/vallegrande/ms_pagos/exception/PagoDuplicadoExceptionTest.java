@@ -0,0 +1,19 @@
+package pe.edu.vallegrande.ms_pagos.exception;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PagoDuplicadoExceptionTest {
+
+    @Test
+    void constructor_DeberiaGuardarElPagoOriginalYMensaje() {
+        // When
+        PagoDuplicadoException excepcion = new PagoDuplicadoException("pago-1");
+
+        // Then
+        assertThat(excepcion.getPagoOriginalId()).isEqualTo("pago-1");
+        assertThat(excepcion.getMessage()).contains("pago-1");
+        assertThat(excepcion).isInstanceOf(RuntimeException.class);
+    }
+}
@@ -97,8 +97,9 @@ class EscenariosPruebasRestrictRefundTest {
                 .andExpect(jsonPath("$.message").value(containsString("Refund restringido procesado exitosamente")))
                 .andExpect(jsonPath("$.message").value(containsString("100.00")))
                 .andExpect(jsonPath("$.message").value(containsString("500.00")))
-                .andExpect(jsonPath("$.data.estado").value("REFUNDED"))
+                .andExpect(jsonPath("$.data.estado").value("COMPLETED"))
                 .andExpect(jsonPath("$.data.orderId").value(ORDEN_PRINCIPAL))
+                .andExpect(jsonPath("$.data.montoReembolsado").value(100.00))
                 .andExpect(jsonPath("$.data.codigoRespuesta").value("RESTRICTED_REFUND_SUCCESS"))
                 .andExpect(jsonPath("$.data.mensajeRespuesta").value(containsString("400.00"))); // Restante
     }
@@ -122,7 +123,7 @@ class EscenariosPruebasRestrictRefundTest {
                 .andExpect(jsonPath("$.message").value(containsString("Refund restringido procesado exitosamente")))
                 .andExpect(jsonPath("$.message").value(containsString("200.00")))
                 .andExpect(jsonPath("$.message").value(containsString("500.00")))
-                .andExpect(jsonPath("$.data.estado").value("REFUNDED"))
+                .andExpect(jsonPath("$.data.estado").value("COMPLETED"))
                 .andExpect(jsonPath("$.data.orderId").value(ORDEN_PRINCIPAL))
                 .andExpect(jsonPath("$.data.mensajeRespuesta").value(containsString("300.00"))); // Restante
     }
@@ -146,7 +147,7 @@ class EscenariosPruebasRestrictRefundTest {
                 .andExpect(jsonPath("$.message").value(containsString("Refund restringido procesado exitosamente")))
                 .andExpect(jsonPath("$.message").value(containsString("300.00")))
                 .andExpect(jsonPath("$.message").value(containsString("500.00")))
-                .andExpect(jsonPath("$.data.estado").value("REFUNDED"))
+                .andExpect(jsonPath("$.data.estado").value("COMPLETED"))
                 .andExpect(jsonPath("$.data.orderId").value(ORDEN_PRINCIPAL))
                 .andExpect(jsonPath("$.data.mensajeRespuesta").value(containsString("200.00"))); // Restante
     }
@@ -176,7 +177,7 @@ class EscenariosPruebasRestrictRefundTest {
                     .content(objectMapper.writeValueAsString(refund)))
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$.success").value(true))
-                    .andExpect(jsonPath("$.data.estado").value("REFUNDED"));
+                    .andExpect(jsonPath("$.data.estado").value("COMPLETED"));
         }
     }
 
@@ -247,7 +248,7 @@ class EscenariosPruebasRestrictRefundTest {
                 .andExpect(jsonPath("$.success").value(true))
                 .andExpect(jsonPath("$.message").value(containsString("Refund restringido procesado exitosamente")))
                 .andExpect(jsonPath("$.message").value(containsString("500.00")))
-                .andExpect(jsonPath("$.data.estado").value("REFUNDED"))
+                .andExpect(jsonPath("$.data.estado").value("COMPLETED"))
                 .andExpect(jsonPath("$.data.orderId").value(ORDEN_LIMITE))
                 .andExpect(jsonPath("$.data.mensajeRespuesta").value(containsString("0.00"))); // Restante = 0
     }
@@ -268,7 +269,7 @@ class EscenariosPruebasRestrictRefundTest {
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true))
-                .andExpect(jsonPath("$.data.estado").value("REFUNDED"))
+                .andExpect(jsonPath("$.data.estado").value("COMPLETED"))
                 .andExpect(jsonPath("$.data.mensajeRespuesta").value(containsString("0.01"))); // Restante = 0.01
     }
 
@@ -339,6 +340,51 @@ class EscenariosPruebasRestrictRefundTest {
 
     @Test
     @Order(12)
+    void escenarioSaldo_RefundsParcialesHastaAgotarLaOrden_DeberiaUsarElSaldoDelServidor() throws Exception {
+        // Given - sin maxRefundable el límite es el saldo reembolsable de la orden (800.00)
+        RefundRequest parcial = new RefundRequest();
+        parcial.setOrderId(ORDEN_LIMITE);
+        parcial.setAmount(new BigDecimal("300.00"));
+
+        // When & Then - dos refunds parciales y el último que completa el pago
+        mockMvc.perform(post("/pagos/restrict-refund")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(parcial)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.estado").value("COMPLETED"))
+                .andExpect(jsonPath("$.data.mensajeRespuesta").value(containsString("Límite: 800.00, Restante: 500.00")));
+        mockMvc.perform(post("/pagos/restrict-refund")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(parcial)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.montoReembolsado").value(600.00));
+
+        RefundRequest excedido = new RefundRequest();
+        excedido.setOrderId(ORDEN_LIMITE);
+        excedido.setAmount(new BigDecimal("200.01"));
+        mockMvc.perform(post("/pagos/restrict-refund")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(excedido)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("excede el saldo reembolsable de la orden (200.00)")));
+
+        mockMvc.perform(get("/pagos/orden/" + ORDEN_LIMITE + "/saldo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.capturado").value(800.00))
+                .andExpect(jsonPath("$.data.reembolsado").value(600.00))
+                .andExpect(jsonPath("$.data.reembolsable").value(200.00))
+                .andExpect(jsonPath("$.data.mayorReembolsablePorPago").value(200.00));
+
+        parcial.setAmount(new BigDecimal("200.00"));
+        mockMvc.perform(post("/pagos/restrict-refund")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(parcial)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.estado").value("REFUNDED"));
+    }
+
+    @Test
+    @Order(13)
     void escenarioCompleto_ResumenEscenarios_ValidarComportamientoGeneral() throws Exception {
         // Test resumen que valida el comportamiento general del sistema
         // después de ejecutar todos los escenarios anteriores
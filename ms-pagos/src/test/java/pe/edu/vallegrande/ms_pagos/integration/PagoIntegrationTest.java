@@ -14,6 +14,7 @@ import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
 
 import java.math.BigDecimal;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -87,12 +88,19 @@ class PagoIntegrationTest {
                 .andExpect(jsonPath("$.data", hasSize(1)))
                 .andExpect(jsonPath("$.data[0].clienteId").value("CLI-INTEGRATION-001"));
 
-        // 5. Procesar un refund
+        // 5. Procesar un refund parcial y luego el resto
         mockMvc.perform(post("/pagos/{pagoId}/refund", pagoId)
                 .param("monto", "1000.00"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.estado").value("COMPLETED"))
+                .andExpect(jsonPath("$.data.montoReembolsado").value(1000.00));
+
+        mockMvc.perform(post("/pagos/{pagoId}/refund", pagoId)
+                .param("monto", "1500.75"))
+                .andDo(print())
+                .andExpect(status().isOk())
                 .andExpect(jsonPath("$.data.estado").value("REFUNDED"));
     }
 
@@ -290,4 +298,76 @@ class PagoIntegrationTest {
                 .andExpect(jsonPath("$.data", hasSize(0)))
                 .andExpect(jsonPath("$.message").value("Se encontraron 0 pagos"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void exportarPagos_DeberiaDevolverNdjsonConTodosLosPagos() throws Exception {
+        // Given
+        for (int i = 1; i <= 3; i++) {
+            PagoRequest pagoRequest = new PagoRequest();
+            pagoRequest.setOrderId("ORD-EXPORT-00" + i);
+            pagoRequest.setMonto(new BigDecimal("100.00"));
+            pagoRequest.setMetodoPago("Tarjeta");
+            pagoRequest.setMoneda("PEN");
+            pagoRequest.setClienteId("CLI-EXPORT");
+            mockMvc.perform(post("/pagos")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(pagoRequest)))
+                    .andExpect(status().isCreated());
+        }
+
+        // When
+        MvcResult exportacion = mockMvc.perform(get("/pagos/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String cuerpo = mockMvc.perform(asyncDispatch(exportacion))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Then
+        String[] lineas = cuerpo.split("\n");
+        assertThat(lineas).hasSize(3);
+        for (String linea : lineas) {
+            assertThat(objectMapper.readTree(linea).path("clienteId").asText())
+                    .isEqualTo("CLI-EXPORT");
+        }
+    }
+
+    @Test
+    void crearPago_ConIdempotencyKeyRepetida_NoDeberiaDuplicarElPago() throws Exception {
+        // Given
+        PagoRequest pagoRequest = new PagoRequest();
+        pagoRequest.setOrderId("ORD-IDEMPOTENTE-001");
+        pagoRequest.setMonto(new BigDecimal("320.00"));
+        pagoRequest.setMetodoPago("Tarjeta");
+        pagoRequest.setMoneda("PEN");
+        pagoRequest.setClienteId("CLI-IDEMPOTENTE");
+        String cuerpo = objectMapper.writeValueAsString(pagoRequest);
+
+        // When - el cliente reintenta tras un timeout con la misma clave
+        String[] ids = new String[2];
+        for (int i = 0; i < 2; i++) {
+            MvcResult resultado = mockMvc.perform(post("/pagos")
+                    .header("Idempotency-Key", "reintento-001")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(cuerpo))
+                    .andExpect(status().isCreated())
+                    .andReturn();
+            ids[i] = objectMapper.readTree(resultado.getResponse().getContentAsString()).path("data").path("id").asText();
+        }
+
+        // Then
+        assertThat(ids[1]).isEqualTo(ids[0]);
+        mockMvc.perform(get("/pagos/orden/{orderId}", "ORD-IDEMPOTENTE-001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)));
+
+        // Otra request con la misma clave se rechaza
+        pagoRequest.setMonto(new BigDecimal("999.00"));
+        mockMvc.perform(post("/pagos")
+                .header("Idempotency-Key", "reintento-001")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(pagoRequest)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("VALIDATION_ERROR"));
+    }
+}
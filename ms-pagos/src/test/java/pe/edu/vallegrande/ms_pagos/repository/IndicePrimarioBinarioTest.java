@@ -0,0 +1,156 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+class IndicePrimarioBinarioTest {
+
+    private final IndicePrimario<String> indice = MotorIndice.BINARIO.crear();
+
+    @Test
+    void compute_OperacionesAleatorias_DeberiaCoincidirConHashMap() {
+        // Given
+        Random random = new Random(42);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+        Map<String, String> modelo = new HashMap<>();
+
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            if (random.nextInt(3) == 0) {
+                indice.compute(id, (clave, actual) -> null);
+                modelo.remove(id);
+            } else {
+                String valor = "v" + i;
+                indice.compute(id, (clave, actual) -> valor);
+                modelo.put(id, valor);
+            }
+        }
+
+        // Then
+        assertThat(indice.tamano()).isEqualTo(modelo.size());
+        for (String id : ids) {
+            assertThat(indice.get(id)).isEqualTo(modelo.get(id));
+            assertThat(indice.contiene(id)).isEqualTo(modelo.containsKey(id));
+        }
+        assertThat(indice).containsExactlyInAnyOrderElementsOf(modelo.values());
+    }
+
+    @Test
+    void compute_ConIdsQueNoSonUuidCanonicos_DeberiaUsarElMapaAparte() {
+        // Given
+        String uuid = UUID.randomUUID().toString();
+
+        // When
+        indice.compute("pago-001", (clave, actual) -> "a");
+        indice.compute(uuid, (clave, actual) -> "b");
+        indice.compute(uuid.toUpperCase(), (clave, actual) -> "c");
+
+        // Then: la forma en mayúsculas es otro ID, no se confunde con el UUID en minúsculas
+        assertThat(indice.get("pago-001")).isEqualTo("a");
+        assertThat(indice.get(uuid)).isEqualTo("b");
+        assertThat(indice.get(uuid.toUpperCase())).isEqualTo("c");
+        assertThat(indice.tamano()).isEqualTo(3);
+    }
+
+    @Test
+    void compute_ConFuncionQueFalla_NoDeberiaModificarElIndice() {
+        // Given
+        String id = UUID.randomUUID().toString();
+        indice.compute(id, (clave, actual) -> "original");
+
+        // When & Then
+        assertThatThrownBy(() -> indice.compute(id, (clave, actual) -> {
+            throw new IllegalStateException("falla");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(indice.get(id)).isEqualTo("original");
+    }
+
+    @Test
+    void get_ConEscriturasConcurrentes_NuncaDeberiaPerderClavesEstables() throws Exception {
+        // Given: claves que no cambian mientras otras se insertan y borran, forzando crecimientos
+        List<String> estables = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            String id = UUID.randomUUID().toString();
+            estables.add(id);
+            indice.compute(id, (clave, actual) -> clave);
+        }
+        AtomicBoolean escribiendo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // When
+        List<Future<?>> escritores = new ArrayList<>();
+        for (int h = 0; h < 2; h++) {
+            escritores.add(executor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    String id = UUID.randomUUID().toString();
+                    indice.compute(id, (clave, actual) -> clave);
+                    if (i % 2 == 0) {
+                        indice.compute(id, (clave, actual) -> null);
+                    }
+                }
+                return null;
+            }));
+        }
+        Future<Long> lector = executor.submit(() -> {
+            long perdidas = 0;
+            while (escribiendo.get()) {
+                for (String id : estables) {
+                    if (!id.equals(indice.get(id))) {
+                        perdidas++;
+                    }
+                }
+            }
+            return perdidas;
+        });
+        for (Future<?> escritor : escritores) {
+            escritor.get();
+        }
+        escribiendo.set(false);
+
+        // Then
+        assertThat(lector.get()).isZero();
+        assertThat(indice.tamano()).isEqualTo(1_000 + 2 * 25_000);
+        executor.shutdown();
+    }
+
+    @Test
+    void repositorio_ConMotorBinario_DeberiaGuardarBuscarYEliminar() {
+        // Given
+        PagoRepository repositorio = new PagoRepository(MotorIndice.BINARIO);
+        String id = UUID.randomUUID().toString();
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setOrderId("ORD-1");
+        pago.setMonto(new BigDecimal("10.00"));
+        pago.setEstado(Pago.EstadoPago.COMPLETED);
+
+        // When
+        repositorio.save(pago);
+
+        // Then
+        assertThat(repositorio.findById(id)).contains(pago);
+        assertThat(repositorio.existsById(id)).isTrue();
+        assertThat(repositorio.findByOrderId("ORD-1")).containsExactly(pago);
+        assertThat(repositorio.deleteById(id)).isTrue();
+        assertThat(repositorio.existsById(id)).isFalse();
+        assertThat(repositorio.count()).isZero();
+    }
+}
@@ -0,0 +1,250 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+class InstantaneaPagosTest {
+
+    private PagoRepository pagoRepository;
+
+    @BeforeEach
+    void setUp() {
+        pagoRepository = new PagoRepository();
+    }
+
+    @Test
+    void instantanea_NoDeberiaVerEscriturasPosteriores() {
+        // Given
+        pagoRepository.save(crearPago("pago-1", 100));
+        pagoRepository.save(crearPago("pago-2", 200));
+
+        try (InstantaneaPagos instantanea = pagoRepository.abrirInstantanea()) {
+            // When
+            pagoRepository.save(crearPago("pago-1", 150));
+            pagoRepository.deleteById("pago-2");
+            pagoRepository.save(crearPago("pago-3", 300));
+
+            // Then - la instantánea sigue en el punto de apertura; las consultas ven lo actual
+            assertThat(montos(instantanea)).containsExactlyInAnyOrderEntriesOf(Map.of("pago-1", 100L, "pago-2", 200L));
+            assertThat(pagoRepository.findById("pago-1").get().getMonto()).isEqualByComparingTo("150");
+            assertThat(pagoRepository.findById("pago-2")).isEmpty();
+            assertThat(pagoRepository.existsById("pago-2")).isFalse();
+            assertThat(pagoRepository.count()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void cerrar_DeberiaLiberarVersionesYLapidas() {
+        // Given
+        pagoRepository.save(crearPago("pago-1", 100));
+        pagoRepository.save(crearPago("pago-2", 200));
+        InstantaneaPagos instantanea = pagoRepository.abrirInstantanea();
+        pagoRepository.save(crearPago("pago-1", 150));
+        pagoRepository.deleteById("pago-2");
+        assertThat(pagoRepository.versionesRetenidas()).isEqualTo(2);
+
+        // When
+        instantanea.close();
+
+        // Then
+        assertThat(pagoRepository.versionesRetenidas()).isZero();
+        assertThat(pagoRepository.count()).isEqualTo(1);
+        assertThat(pagoRepository.findAll()).extracting(Pago::getId).containsExactly("pago-1");
+        assertThatThrownBy(instantanea::iterator).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void lapida_ConPagoRecreado_DeberiaVerseSoloEnLaInstantaneaCorrespondiente() {
+        // Given
+        pagoRepository.save(crearPago("pago-1", 100));
+        try (InstantaneaPagos antes = pagoRepository.abrirInstantanea()) {
+            pagoRepository.deleteById("pago-1");
+            try (InstantaneaPagos sinPago = pagoRepository.abrirInstantanea()) {
+                // When
+                pagoRepository.save(crearPago("pago-1", 500));
+
+                // Then
+                assertThat(montos(antes)).containsExactlyEntriesOf(Map.of("pago-1", 100L));
+                assertThat(montos(sinPago)).isEmpty();
+                assertThat(pagoRepository.findById("pago-1").get().getVersion()).isEqualTo(1);
+                assertThat(pagoRepository.count()).isEqualTo(1);
+            }
+        }
+        assertThat(pagoRepository.versionesRetenidas()).isZero();
+    }
+
+    @Test
+    void instantaneas_Solapadas_DeberianRetenerLoQueNecesitaLaMasAntigua() {
+        // Given
+        pagoRepository.save(crearPago("pago-1", 1));
+        InstantaneaPagos primera = pagoRepository.abrirInstantanea();
+        pagoRepository.save(crearPago("pago-1", 2));
+        InstantaneaPagos segunda = pagoRepository.abrirInstantanea();
+        pagoRepository.save(crearPago("pago-1", 3));
+
+        // When
+        segunda.close();
+
+        // Then
+        assertThat(montos(primera)).containsEntry("pago-1", 1L);
+        primera.close();
+        assertThat(pagoRepository.versionesRetenidas()).isZero();
+        assertThat(pagoRepository.findById("pago-1").get().getMonto()).isEqualByComparingTo("3");
+    }
+
+    @ParameterizedTest(name = "Motor de índice: {0}")
+    @EnumSource(MotorIndice.class)
+    void instantanea_ConEscrituraConcurrente_DeberiaVerUnSoloPuntoEnElTiempo(MotorIndice motor) throws Exception {
+        // Given - el escritor recorre los pagos en orden sumando 1 a cada uno, ronda tras ronda.
+        // En cualquier punto en el tiempo los pagos ya actualizados en la ronda son un prefijo.
+        pagoRepository = new PagoRepository(motor);
+        int total = 200;
+        for (int i = 0; i < total; i++) {
+            pagoRepository.save(crearPago(id(i), 0));
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> escritor = executor.submit(() -> {
+            for (int ronda = 1; ronda <= 100; ronda++) {
+                for (int i = 0; i < total; i++) {
+                    pagoRepository.save(crearPago(id(i), ronda));
+                }
+            }
+        });
+
+        // When
+        List<String> inconsistentes = new ArrayList<>();
+        int lecturas = 0;
+        while (!escritor.isDone() || lecturas == 0) {
+            Map<String, Long> montos;
+            try (InstantaneaPagos instantanea = pagoRepository.abrirInstantanea()) {
+                montos = montos(instantanea);
+            }
+            lecturas++;
+            long primero = montos.get(id(0));
+            boolean enPrefijo = true;
+            for (int i = 0; i < total; i++) {
+                long monto = montos.get(id(i));
+                if (monto != primero && monto != primero - 1 || (!enPrefijo && monto == primero)) {
+                    inconsistentes.add("lectura " + lecturas + ": " + id(i) + "=" + monto + " con pago-000=" + primero);
+                    break;
+                }
+                enPrefijo = monto == primero;
+            }
+        }
+        escritor.get();
+        executor.shutdown();
+
+        // Then
+        assertThat(inconsistentes).isEmpty();
+        assertThat(pagoRepository.versionesRetenidas()).isZero();
+    }
+
+    @Test
+    void instantaneas_AbiertasMientrasSePoda_NoDeberianPerderVersionesNiBajas() throws Exception {
+        // Given - pagos que solo se actualizan y pagos que se eliminan una vez cada uno; otro
+        // hilo abre y cierra instantáneas para que la poda corra mientras se abren más
+        int estables = 50;
+        int eliminables = 2000;
+        for (int i = 0; i < estables; i++) {
+            pagoRepository.save(crearPago(id(i), 0));
+        }
+        for (int i = 0; i < eliminables; i++) {
+            pagoRepository.save(crearPago("baja-" + i, 0));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<?> escritor = executor.submit(() -> {
+            for (int i = 0; i < eliminables; i++) {
+                pagoRepository.save(crearPago(id(i % estables), i));
+                pagoRepository.deleteById("baja-" + i);
+            }
+        });
+        Future<?> actualizador = executor.submit(() -> {
+            for (int i = 0; !escritor.isDone(); i++) {
+                pagoRepository.save(crearPago(id(i % estables), i));
+            }
+        });
+        Future<?> podador = executor.submit(() -> {
+            while (!escritor.isDone()) {
+                pagoRepository.abrirInstantanea().close();
+            }
+        });
+
+        // When - cada lectura guarda su secuencia y las bajas que todavía ve
+        List<Long> secuencias = new ArrayList<>();
+        List<Map<String, Long>> lecturas = new ArrayList<>();
+        while (!escritor.isDone() || lecturas.isEmpty()) {
+            try (InstantaneaPagos instantanea = pagoRepository.abrirInstantanea()) {
+                secuencias.add(instantanea.getSecuencia());
+                lecturas.add(montos(instantanea));
+            }
+        }
+        escritor.get();
+        actualizador.get();
+        podador.get();
+        executor.shutdown();
+
+        // Then - un pago estable nunca desaparece y una baja se ve solo si es posterior
+        Map<String, Long> secuenciaBaja = new HashMap<>();
+        for (CambioPago cambio : pagoRepository.findCambios(0, pagoRepository.secuenciaConfirmada(), Integer.MAX_VALUE)) {
+            if (cambio.eliminado()) {
+                secuenciaBaja.put(cambio.id(), cambio.secuencia());
+            }
+        }
+        assertThat(secuenciaBaja).hasSize(eliminables);
+        List<String> inconsistentes = new ArrayList<>();
+        for (int lectura = 0; lectura < lecturas.size(); lectura++) {
+            long secuencia = secuencias.get(lectura);
+            Map<String, Long> montos = lecturas.get(lectura);
+            for (int i = 0; i < estables; i++) {
+                if (!montos.containsKey(id(i))) {
+                    inconsistentes.add("secuencia " + secuencia + ": falta " + id(i));
+                }
+            }
+            for (int i = 0; i < eliminables; i++) {
+                String baja = "baja-" + i;
+                if (montos.containsKey(baja) != secuenciaBaja.get(baja) > secuencia) {
+                    inconsistentes.add("secuencia " + secuencia + ": " + baja + " eliminado en " + secuenciaBaja.get(baja));
+                }
+            }
+        }
+        assertThat(inconsistentes).isEmpty();
+        assertThat(pagoRepository.versionesRetenidas()).isZero();
+        assertThat(pagoRepository.count()).isEqualTo(estables);
+    }
+
+    private static Map<String, Long> montos(InstantaneaPagos instantanea) {
+        Map<String, Long> montos = new HashMap<>();
+        for (Pago pago : instantanea) {
+            assertThat(montos.put(pago.getId(), pago.getMonto().longValue())).as("pago repetido %s", pago.getId()).isNull();
+        }
+        return montos;
+    }
+
+    private static String id(int i) {
+        return String.format("pago-%03d", i);
+    }
+
+    private static Pago crearPago(String id, long monto) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setOrderId("ORD-" + id);
+        pago.setClienteId("CLI-1");
+        pago.setMonto(BigDecimal.valueOf(monto));
+        pago.setEstado(Pago.EstadoPago.PENDING);
+        return pago;
+    }
+}
@@ -0,0 +1,134 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PagoCompactoTest {
+
+    private final DiccionarioTextos diccionario = new DiccionarioTextos();
+
+    @Test
+    void aPago_DeberiaReconstruirTodosLosCampos() {
+        // Given
+        Pago pago = crearPago();
+
+        // When
+        Pago reconstruido = PagoCompacto.de(pago, diccionario).aPago(diccionario);
+
+        // Then
+        assertThat(reconstruido).isEqualTo(pago).isNotSameAs(pago);
+        assertThat(reconstruido.getMonto().scale()).isEqualTo(2);
+    }
+
+    @Test
+    void aPago_ConCamposNulos_DeberiaConservarLosNulos() {
+        // Given
+        Pago pago = new Pago();
+        pago.setId("pago-vacio");
+
+        // When
+        Pago reconstruido = PagoCompacto.de(pago, diccionario).aPago(diccionario);
+
+        // Then
+        assertThat(reconstruido).isEqualTo(pago);
+    }
+
+    @Test
+    void aPago_ConValoresFueraDeLaFormaCompacta_DeberiaUsarExcedentes() {
+        // Given
+        Pago pago = crearPago();
+        pago.setMonto(new BigDecimal("123456789012345678901234567890.123"));
+        pago.setFechaCreacion(LocalDateTime.of(2500, 1, 1, 0, 0));
+        pago.setFechaActualizacion(LocalDateTime.of(1600, 6, 1, 12, 0, 0, 1));
+        pago.setMensajeRespuesta("m".repeat(500));
+        pago.setMontoReembolsado(new BigDecimal("250.00"));
+
+        // When
+        Pago reconstruido = PagoCompacto.de(pago, diccionario).aPago(diccionario);
+
+        // Then
+        assertThat(reconstruido).isEqualTo(pago);
+        assertThat(diccionario.tamano()).isEqualTo(4); // el mensaje largo no entra al diccionario
+    }
+
+    @Test
+    void codificar_TextosRepetidos_DeberiaGuardarUnaSolaVez() {
+        // Given
+        Pago primero = crearPago();
+        Pago segundo = crearPago();
+        segundo.setId("pago-2");
+
+        // When
+        PagoCompacto.de(primero, diccionario);
+        PagoCompacto.de(segundo, diccionario);
+
+        // Then
+        assertThat(diccionario.tamano()).isEqualTo(5);
+        assertThat(diccionario.codificar(new String("PEN"))).isEqualTo(diccionario.codificar("PEN"));
+        assertThat(diccionario.codificar(null)).isEqualTo(DiccionarioTextos.NULO);
+    }
+
+    @Test
+    void codificar_ConDiccionarioLleno_DeberiaDevolverLiteral() {
+        // Given
+        for (int i = 0; diccionario.tamano() < DiccionarioTextos.LITERAL - 1; i++) {
+            diccionario.codificar("texto-" + i);
+        }
+        Pago pago = crearPago();
+        pago.setMoneda("XYZ");
+
+        // When
+        Pago reconstruido = PagoCompacto.de(pago, diccionario).aPago(diccionario);
+
+        // Then
+        assertThat(diccionario.codificar("otro-texto")).isEqualTo(DiccionarioTextos.LITERAL);
+        assertThat(reconstruido).isEqualTo(pago);
+    }
+
+    @Test
+    void codificar_MensajesConMontos_NoDeberianOcuparElDiccionario() {
+        // Given
+        Pago base = crearPago();
+        PagoCompacto.de(base, diccionario);
+        int tamano = diccionario.tamano();
+
+        for (int i = 0; i < 1_000; i++) {
+            Pago pago = crearPago();
+            pago.setMontoReembolsado(new BigDecimal(i + ".50"));
+            pago.setMensajeRespuesta("Refund procesado exitosamente por " + i + ".50");
+
+            // When
+            Pago reconstruido = PagoCompacto.de(pago, diccionario).aPago(diccionario);
+
+            // Then
+            assertThat(reconstruido).isEqualTo(pago);
+        }
+        assertThat(diccionario.tamano()).isEqualTo(tamano);
+        assertThat(diccionario.codificarMensaje(base.getMensajeRespuesta()))
+                .isEqualTo(diccionario.codificar(base.getMensajeRespuesta()));
+    }
+
+    private static Pago crearPago() {
+        Pago pago = new Pago();
+        pago.setId("pago-1");
+        pago.setOrderId("ORD-1");
+        pago.setClienteId("CLI-1");
+        pago.setMonto(new BigDecimal("1500.50"));
+        pago.setEstado(Pago.EstadoPago.COMPLETED);
+        pago.setFechaCreacion(LocalDateTime.of(2025, 1, 15, 10, 30, 0, 123456789));
+        pago.setFechaActualizacion(LocalDateTime.of(2025, 1, 15, 10, 31));
+        pago.setMetodoPago("Tarjeta");
+        pago.setMoneda("PEN");
+        pago.setDescripcion("Compra en línea");
+        pago.setTransactionId("TXN_ABCD1234");
+        pago.setPaymentGateway("Visa");
+        pago.setCodigoRespuesta("SUCCESS");
+        pago.setMensajeRespuesta("Pago procesado exitosamente");
+        return pago;
+    }
+}
@@ -0,0 +1,245 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PagoJournalTest {
+
+    @TempDir
+    Path directorio;
+
+    @ParameterizedTest(name = "Política de fsync: {0}")
+    @EnumSource(PagoJournal.PoliticaFsync.class)
+    void recuperar_DeberiaReconstruirGuardadosYEliminaciones(PagoJournal.PoliticaFsync politica) {
+        // Given
+        Path ruta = directorio.resolve("pagos.journal");
+        PagoJournal journal = new PagoJournal(ruta, politica, 5, 4);
+        PagoRepository repositorio = abrir(journal);
+        for (int i = 0; i < 500; i++) {
+            repositorio.save(crearPago("pago-" + i, "ORD-" + (i % 10), Pago.EstadoPago.PENDING));
+        }
+        Pago modificado = crearPago("pago-7", "ORD-99", Pago.EstadoPago.COMPLETED);
+        modificado.setTransactionId("TXN_ABC");
+        modificado.setMontoReembolsado(new BigDecimal("200.00"));
+        repositorio.save(modificado);
+        repositorio.deleteById("pago-8");
+        journal.close();
+
+        // When
+        PagoJournal reabierto = new PagoJournal(ruta, politica, 5, 4);
+        PagoRepository recuperado = abrir(reabierto);
+
+        // Then
+        assertThat(recuperado.count()).isEqualTo(499);
+        assertThat(recuperado.findById("pago-8")).isEmpty();
+        assertThat(recuperado.findById("pago-7")).contains(modificado);
+        Pago esperado = crearPago("pago-3", "ORD-3", Pago.EstadoPago.PENDING);
+        esperado.setVersion(1);
+        assertThat(recuperado.findById("pago-3")).contains(esperado);
+        assertThat(recuperado.findByOrderId("ORD-99")).extracting(Pago::getId).containsExactly("pago-7");
+        assertThat(recuperado.countByEstado(Pago.EstadoPago.COMPLETED)).isEqualTo(1);
+        assertThat(recuperado.saldoOrden("ORD-99")).get().extracting(SaldoOrden::reembolsable)
+                .isEqualTo(new BigDecimal("1300.50"));
+        reabierto.close();
+    }
+
+    @Test
+    void recuperar_ConRegistroFinalCortado_DeberiaDescartarloYTruncar() throws IOException {
+        // Given
+        Path ruta = directorio.resolve("pagos.journal");
+        PagoJournal journal = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SIEMPRE, 5, 2);
+        PagoRepository repositorio = abrir(journal);
+        repositorio.save(crearPago("pago-1", "ORD-1", Pago.EstadoPago.COMPLETED));
+        repositorio.save(crearPago("pago-2", "ORD-2", Pago.EstadoPago.COMPLETED));
+        journal.close();
+        Path segmento = directorio.resolve("pagos.journal.1");
+        long tamanoValido = Files.size(segmento);
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.APPEND)) {
+            // Cabecera de un registro de 200 bytes del que solo llegaron 3
+            ByteBuffer cortado = ByteBuffer.allocate(11).putInt(200).putInt(12345).put(new byte[]{1, 2, 3});
+            canal.write(cortado.flip());
+        }
+
+        // When
+        PagoJournal reabierto = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SIEMPRE, 5, 2);
+        PagoRepository recuperado = abrir(reabierto);
+        recuperado.save(crearPago("pago-3", "ORD-3", Pago.EstadoPago.PENDING));
+        reabierto.close();
+
+        // Then
+        assertThat(recuperado.count()).isEqualTo(2 + 1);
+        assertThat(Files.size(segmento)).isEqualTo(tamanoValido);
+        assertThat(directorio.resolve("pagos.journal.2")).exists();
+        PagoJournal ultimo = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SIEMPRE, 5, 2);
+        assertThat(abrir(ultimo).findById("pago-3")).isPresent();
+        ultimo.close();
+    }
+
+    @Test
+    void registrar_SinIniciar_DeberiaLanzarExcepcion() {
+        // Given
+        PagoJournal journal = new PagoJournal(directorio.resolve("pagos.journal"), PagoJournal.PoliticaFsync.SISTEMA, 5, 1);
+
+        // When & Then
+        assertThatThrownBy(() -> journal.registrarEliminacion("pago-1", 1))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void save_ConDescripcionGrande_DeberiaCrecerElBuffer() {
+        // Given
+        Path ruta = directorio.resolve("pagos.journal");
+        PagoJournal journal = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SISTEMA, 5, 1);
+        PagoRepository repositorio = abrir(journal);
+        Pago pago = crearPago("pago-grande", "ORD-1", Pago.EstadoPago.PENDING);
+        pago.setDescripcion("x".repeat(10_000));
+
+        // When
+        repositorio.save(pago);
+        journal.close();
+
+        // Then
+        PagoJournal reabierto = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SISTEMA, 5, 1);
+        assertThat(abrir(reabierto).findById("pago-grande")).contains(pago);
+        reabierto.close();
+    }
+
+    @Test
+    void insertarTodos_DeberiaRecuperarseComoGrupoConUnaSolaEscritura() throws IOException {
+        // Given - descripciones grandes para que el lote supere el buffer inicial
+        Path ruta = directorio.resolve("pagos.journal");
+        PagoJournal journal = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SIEMPRE, 5, 2);
+        PagoRepository repositorio = abrir(journal);
+        List<Pago> lote = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Pago pago = crearPago("lote-" + i, "ORD-LOTE", Pago.EstadoPago.COMPLETED);
+            pago.setDescripcion("d".repeat(i * 40));
+            lote.add(pago);
+        }
+
+        // When
+        repositorio.insertarTodos(lote);
+        repositorio.save(crearPago("pago-suelto", "ORD-1", Pago.EstadoPago.PENDING));
+        journal.close();
+
+        // Then
+        PagoJournal reabierto = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SIEMPRE, 5, 2);
+        PagoRepository recuperado = abrir(reabierto);
+        assertThat(recuperado.count()).isEqualTo(51);
+        assertThat(recuperado.findById("lote-49")).contains(lote.get(49));
+        assertThat(recuperado.findById("lote-49").get().getVersion()).isEqualTo(1);
+        assertThat(recuperado.findByOrderId("ORD-LOTE")).hasSize(50);
+        reabierto.close();
+    }
+
+    @Test
+    void recuperar_DeberiaConservarLasSecuenciasDelRegistroDeCambios() {
+        // Given
+        Path ruta = directorio.resolve("pagos.journal");
+        PagoJournal journal = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SISTEMA, 5, 4);
+        PagoRepository repositorio = abrir(journal);
+        for (int i = 0; i < 20; i++) {
+            repositorio.save(crearPago("pago-" + i, "ORD-1", Pago.EstadoPago.PENDING));
+        }
+        repositorio.save(crearPago("pago-3", "ORD-1", Pago.EstadoPago.COMPLETED));
+        repositorio.deleteById("pago-4");
+        repositorio.insertarTodos(List.of(crearPago("lote-1", "ORD-2", Pago.EstadoPago.PENDING),
+                crearPago("lote-2", "ORD-2", Pago.EstadoPago.PENDING)));
+        long hasta = repositorio.secuenciaConfirmada();
+        List<CambioPago> antes = repositorio.findCambios(0, hasta, 100);
+        journal.close();
+
+        // When
+        PagoJournal reabierto = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SISTEMA, 5, 4);
+        PagoRepository recuperado = abrir(reabierto);
+        recuperado.save(crearPago("pago-nuevo", "ORD-3", Pago.EstadoPago.PENDING));
+
+        // Then - una réplica con cursor anterior al reinicio recibe los mismos cambios y los nuevos
+        assertThat(recuperado.findCambios(0, hasta, 100)).isEqualTo(antes);
+        assertThat(antes).filteredOn(CambioPago::eliminado).extracting(CambioPago::id).containsExactly("pago-4");
+        assertThat(recuperado.findCambios(hasta, recuperado.secuenciaConfirmada(), 100))
+                .singleElement().satisfies(cambio -> {
+                    assertThat(cambio.id()).isEqualTo("pago-nuevo");
+                    assertThat(cambio.secuencia()).isEqualTo(hasta + 1);
+                });
+        reabierto.close();
+    }
+
+    @Test
+    void recuperar_ConRegistrosSinSecuencia_DeberiaAsignarSecuenciasNuevas() throws IOException {
+        // Given - un segmento del formato previo, sin secuencias
+        Path ruta = directorio.resolve("pagos.journal");
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            canal.write(registroSinSecuencia(PagoJournal.GUARDADO_SIN_SECUENCIA,
+                    buffer -> PagoCodec.escribir(buffer, crearPago("pago-1", "ORD-1", Pago.EstadoPago.PENDING))));
+            canal.write(registroSinSecuencia(PagoJournal.GUARDADO_SIN_SECUENCIA,
+                    buffer -> PagoCodec.escribir(buffer, crearPago("pago-2", "ORD-1", Pago.EstadoPago.PENDING))));
+            canal.write(registroSinSecuencia(PagoJournal.ELIMINACION_SIN_SECUENCIA,
+                    buffer -> PagoCodec.escribirTexto(buffer, "pago-1")));
+        }
+
+        // When
+        PagoJournal journal = new PagoJournal(ruta, PagoJournal.PoliticaFsync.SISTEMA, 5, 1);
+        PagoRepository recuperado = abrir(journal);
+        recuperado.save(crearPago("pago-3", "ORD-1", Pago.EstadoPago.PENDING));
+
+        // Then
+        assertThat(recuperado.findAll()).extracting(Pago::getId).containsExactlyInAnyOrder("pago-2", "pago-3");
+        assertThat(recuperado.findCambios(0, recuperado.secuenciaConfirmada(), 10))
+                .extracting(CambioPago::secuencia, CambioPago::id)
+                .containsExactly(tuple(2L, "pago-2"), tuple(3L, "pago-1"), tuple(4L, "pago-3"));
+        journal.close();
+    }
+
+    private static ByteBuffer registroSinSecuencia(byte tipo, Consumer<ByteBuffer> payload) {
+        ByteBuffer contenido = ByteBuffer.allocate(1024).put(tipo);
+        payload.accept(contenido);
+        contenido.flip();
+        CRC32 crc = new CRC32();
+        crc.update(contenido.duplicate());
+        return ByteBuffer.allocate(Integer.BYTES * 2 + contenido.remaining())
+                .putInt(contenido.remaining()).putInt((int) crc.getValue()).put(contenido).flip();
+    }
+
+    private static PagoRepository abrir(PagoJournal journal) {
+        PagoRepository repositorio = new PagoRepository(Optional.of(journal));
+        repositorio.recuperar();
+        return repositorio;
+    }
+
+    private static Pago crearPago(String id, String orderId, Pago.EstadoPago estado) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setOrderId(orderId);
+        pago.setClienteId("CLI-1");
+        pago.setMonto(new BigDecimal("1500.50"));
+        pago.setEstado(estado);
+        pago.setFechaCreacion(LocalDateTime.of(2025, 1, 15, 10, 30, 0, 123456789));
+        pago.setFechaActualizacion(LocalDateTime.of(2025, 1, 15, 10, 30, 1));
+        pago.setMetodoPago("Tarjeta");
+        pago.setMoneda("PEN");
+        pago.setPaymentGateway("Visa");
+        pago.setCodigoRespuesta("SUCCESS");
+        pago.setMensajeRespuesta("Pago procesado exitosamente ñ");
+        return pago;
+    }
+}
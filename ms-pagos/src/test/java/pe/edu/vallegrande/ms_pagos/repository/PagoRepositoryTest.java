@@ -2,12 +2,24 @@ package pe.edu.vallegrande.ms_pagos.repository;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.exception.PagoConcurrencyException;
+import pe.edu.vallegrande.ms_pagos.exception.PagoNotFoundException;
 import pe.edu.vallegrande.ms_pagos.model.Pago;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -82,6 +94,23 @@ class PagoRepositoryTest {
         assertThat(pagoRepository.count()).isEqualTo(1); // No debe crear un nuevo registro
     }
 
+    @Test
+    void findById_DeberiaRetornarCopiaIndependienteDelRepositorio() {
+        // Given
+        pagoRepository.save(pagoTest1);
+
+        // When
+        Pago copia = pagoRepository.findById("pago-001").orElseThrow();
+        copia.setEstado(Pago.EstadoPago.REFUNDED);
+        pagoTest1.setMonto(BigDecimal.ONE);
+
+        // Then
+        Pago guardado = pagoRepository.findById("pago-001").orElseThrow();
+        assertThat(guardado.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        assertThat(guardado.getMonto()).isEqualByComparingTo("1500.50");
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.REFUNDED)).isZero();
+    }
+
     @Test
     void findById_ConIdExistente_DeberiaRetornarPago() {
         // Given
@@ -331,4 +360,686 @@ class PagoRepositoryTest {
         assertThat(lista1).isNotSameAs(lista2); // Diferentes instancias
         assertThat(lista1).isEqualTo(lista2);   // Mismo contenido
     }
-}
\ No newline at end of file
+
+    @Test
+    void save_ConOrdenYClienteModificados_DeberiaActualizarIndices() {
+        // Given
+        pagoRepository.save(pagoTest1);
+        pagoTest1.setOrderId("ORD-999");
+        pagoTest1.setClienteId("CLI-999");
+
+        // When
+        pagoRepository.save(pagoTest1);
+
+        // Then
+        assertThat(pagoRepository.findByOrderId("ORD-001")).isEmpty();
+        assertThat(pagoRepository.findByClienteId("CLI-001")).isEmpty();
+        assertThat(pagoRepository.findByOrderId("ORD-999")).extracting(Pago::getId).containsExactly("pago-001");
+        assertThat(pagoRepository.findByClienteId("CLI-999")).extracting(Pago::getId).containsExactly("pago-001");
+    }
+
+    @Test
+    void deleteById_DeberiaQuitarPagoDeLosIndices() {
+        // Given
+        pagoRepository.save(pagoTest1);
+        pagoRepository.save(pagoTest2);
+
+        // When
+        pagoRepository.deleteById("pago-001");
+
+        // Then
+        assertThat(pagoRepository.findByOrderId("ORD-001")).extracting(Pago::getId).containsExactly("pago-002");
+        assertThat(pagoRepository.findByClienteId("CLI-001")).isEmpty();
+    }
+
+    @Test
+    void deleteAll_DeberiaVaciarLosIndices() {
+        // Given
+        pagoRepository.save(pagoTest1);
+        pagoRepository.save(pagoTest2);
+        pagoRepository.save(pagoTest3);
+
+        // When
+        pagoRepository.deleteAll();
+        pagoRepository.save(pagoTest3);
+
+        // Then
+        assertThat(pagoRepository.findByOrderId("ORD-001")).isEmpty();
+        assertThat(pagoRepository.findByClienteId("CLI-001")).extracting(Pago::getId).containsExactly("pago-003");
+    }
+
+    @Test
+    void indices_ConEscriturasConcurrentes_DeberianQuedarConsistentes() throws Exception {
+        // Given - varios hilos mueven los mismos pagos entre órdenes
+        int hilos = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int semilla = h;
+            tareas.add(executor.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    Pago pago = new Pago();
+                    pago.setId("pago-" + (i % 50));
+                    pago.setOrderId("ORD-" + ((i + semilla) % 7));
+                    pago.setClienteId("CLI-" + ((i * semilla) % 5));
+                    pagoRepository.save(pago);
+                }
+            }));
+        }
+
+        // When
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        executor.shutdown();
+
+        // Then - cada pago aparece exactamente una vez, bajo la orden con la que quedó guardado
+        List<Pago> porOrden = new ArrayList<>();
+        for (int o = 0; o < 7; o++) {
+            porOrden.addAll(pagoRepository.findByOrderId("ORD-" + o));
+        }
+        assertThat(porOrden).hasSize(50);
+        assertThat(porOrden).allSatisfy(pago ->
+                assertThat(pagoRepository.findById(pago.getId()).get().getOrderId()).isEqualTo(pago.getOrderId()));
+    }
+
+    @Test
+    void countByEstado_DeberiaContarPagosPorEstado() {
+        // Given
+        pagoRepository.save(pagoTest1); // COMPLETED
+        pagoRepository.save(pagoTest2); // PENDING
+        pagoRepository.save(pagoTest3); // FAILED
+
+        // When & Then
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.COMPLETED)).isEqualTo(1);
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.PENDING)).isEqualTo(1);
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.FAILED)).isEqualTo(1);
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.REFUNDED)).isZero();
+    }
+
+    @Test
+    void save_ConCambioDeEstado_DeberiaMoverPagoEnIndiceDeEstados() {
+        // Given
+        pagoRepository.save(pagoTest2); // PENDING
+        pagoTest2.setEstado(Pago.EstadoPago.COMPLETED);
+
+        // When
+        pagoRepository.save(pagoTest2);
+
+        // Then
+        assertThat(pagoRepository.findByEstado(Pago.EstadoPago.PENDING)).isEmpty();
+        assertThat(pagoRepository.findByEstado(Pago.EstadoPago.COMPLETED)).extracting(Pago::getId)
+                .containsExactly("pago-002");
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.COMPLETED)).isEqualTo(1);
+        assertThat(pagoRepository.findByOrderId("ORD-001")).extracting(Pago::getId).containsExactly("pago-002");
+    }
+
+    @Test
+    void deleteById_DeberiaDescontarPagoDeSuEstado() {
+        // Given
+        pagoRepository.save(pagoTest1); // COMPLETED
+
+        // When
+        pagoRepository.deleteById("pago-001");
+
+        // Then
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.COMPLETED)).isZero();
+        assertThat(pagoRepository.findByEstado(Pago.EstadoPago.COMPLETED)).isEmpty();
+    }
+
+    @Test
+    void save_DeberiaIncrementarLaVersion() {
+        // When
+        pagoRepository.save(pagoTest1);
+        pagoRepository.save(pagoTest1);
+
+        // Then
+        assertThat(pagoRepository.findById("pago-001").get().getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void actualizar_ConVersionVigente_DeberiaAplicarCambioEIncrementarVersion() {
+        // Given
+        pagoRepository.save(pagoTest2); // PENDING, versión 1
+
+        // When
+        Pago actualizado = pagoRepository.actualizar("pago-002", 1, pago -> {
+            pago.setEstado(Pago.EstadoPago.COMPLETED);
+            return pago;
+        });
+
+        // Then
+        assertThat(actualizado.getVersion()).isEqualTo(2);
+        assertThat(pagoRepository.findById("pago-002").get().getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.PENDING)).isZero();
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.COMPLETED)).isEqualTo(1);
+    }
+
+    @Test
+    void actualizar_ConVersionDesactualizada_DeberiaLanzarExcepcionSinModificar() {
+        // Given
+        pagoRepository.save(pagoTest2);
+        pagoRepository.save(pagoTest2); // versión 2
+
+        // When & Then
+        assertThatThrownBy(() -> pagoRepository.actualizar("pago-002", 1, pago -> {
+            pago.setEstado(Pago.EstadoPago.COMPLETED);
+            return pago;
+        }))
+                .isInstanceOf(PagoConcurrencyException.class)
+                .hasMessageContaining("esperada 1, actual 2");
+        assertThat(pagoRepository.findById("pago-002").get().getEstado()).isEqualTo(Pago.EstadoPago.PENDING);
+        assertThat(pagoRepository.findById("pago-002").get().getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void actualizar_ConIdInexistente_DeberiaLanzarPagoNotFound() {
+        // When & Then
+        assertThatThrownBy(() -> pagoRepository.actualizar("no-existe", 1, pago -> pago))
+                .isInstanceOf(PagoNotFoundException.class);
+        assertThat(pagoRepository.existsById("no-existe")).isFalse();
+    }
+
+    @Test
+    void actualizar_ConCambioDeId_DeberiaLanzarExcepcion() {
+        // Given
+        pagoRepository.save(pagoTest1);
+
+        // When & Then
+        assertThatThrownBy(() -> pagoRepository.actualizar("pago-001", 1, pago -> {
+            pago.setId("otro-id");
+            return pago;
+        })).isInstanceOf(IllegalArgumentException.class);
+        assertThat(pagoRepository.findById("pago-001").get().getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void actualizar_ConHilosConcurrentesYReintentos_NoDeberiaPerderCambios() throws Exception {
+        // Given - cada hilo agrega un carácter a la descripción leyendo y reintentando ante conflicto
+        pagoTest1.setDescripcion("");
+        pagoRepository.save(pagoTest1);
+        int hilos = 4;
+        int cambiosPorHilo = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(executor.submit(() -> {
+                for (int i = 0; i < cambiosPorHilo; i++) {
+                    while (true) {
+                        Pago leido = pagoRepository.findById("pago-001").get();
+                        try {
+                            pagoRepository.actualizar("pago-001", leido.getVersion(), pago -> {
+                                pago.setDescripcion(pago.getDescripcion() + "x");
+                                return pago;
+                            });
+                            break;
+                        } catch (PagoConcurrencyException e) {
+                            // Otro hilo escribió primero: se vuelve a leer
+                        }
+                    }
+                }
+            }));
+        }
+
+        // When
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        executor.shutdown();
+
+        // Then
+        Pago resultado = pagoRepository.findById("pago-001").get();
+        assertThat(resultado.getDescripcion()).hasSize(hilos * cambiosPorHilo);
+        assertThat(resultado.getVersion()).isEqualTo(1L + hilos * cambiosPorHilo);
+    }
+
+    @Test
+    void findById_ConEscriturasConcurrentes_NuncaDeberiaVerUnPagoAMedias() throws Exception {
+        // Given - un escritor reutiliza y modifica su propio objeto entre guardados
+        pagoTest1.setCodigoRespuesta("0");
+        pagoTest1.setMensajeRespuesta("0");
+        pagoRepository.save(pagoTest1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<?> escritor = executor.submit(() -> {
+            for (int i = 1; i <= 20_000; i++) {
+                pagoTest1.setCodigoRespuesta(Integer.toString(i));
+                pagoTest1.setMensajeRespuesta(Integer.toString(i));
+                pagoRepository.save(pagoTest1);
+                // Cambio posterior al guardado: no debe llegar al repositorio
+                pagoTest1.setMensajeRespuesta("sin guardar");
+            }
+        });
+        List<Future<Integer>> lectores = new ArrayList<>();
+        for (int l = 0; l < 2; l++) {
+            lectores.add(executor.submit(() -> {
+                int inconsistentes = 0;
+                while (!escritor.isDone()) {
+                    Pago leido = pagoRepository.findById("pago-001").get();
+                    if (!leido.getCodigoRespuesta().equals(leido.getMensajeRespuesta())) {
+                        inconsistentes++;
+                    }
+                }
+                return inconsistentes;
+            }));
+        }
+
+        // When
+        escritor.get();
+        int inconsistentes = 0;
+        for (Future<Integer> lector : lectores) {
+            inconsistentes += lector.get();
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(inconsistentes).isZero();
+        assertThat(pagoRepository.findById("pago-001").get().getMensajeRespuesta()).isEqualTo("20000");
+    }
+
+    @Test
+    void findPagina_DeberiaRecorrerPorFechaDeCreacionConCursor() {
+        // Given - fechas desordenadas respecto del ID y dos pagos con la misma fecha
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 10, 0);
+        pagoRepository.save(conFecha(pagoTest1, base.plusMinutes(2)));
+        pagoRepository.save(conFecha(pagoTest2, base));
+        pagoRepository.save(conFecha(pagoTest3, base.plusMinutes(2)));
+
+        // When
+        List<Pago> primera = pagoRepository.findPagina(null, 2);
+        List<Pago> segunda = pagoRepository.findPagina(ClaveCronologica.de(primera.get(1)), 2);
+
+        // Then - a igual fecha desempata el ID
+        assertThat(primera).extracting(Pago::getId).containsExactly("pago-002", "pago-001");
+        assertThat(segunda).extracting(Pago::getId).containsExactly("pago-003");
+    }
+
+    @Test
+    void findPagina_ConCursorDePagoEliminado_DeberiaContinuarDesdeSuPosicion() {
+        // Given
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 10, 0);
+        pagoRepository.save(conFecha(pagoTest1, base));
+        pagoRepository.save(conFecha(pagoTest2, base.plusMinutes(1)));
+        pagoRepository.save(conFecha(pagoTest3, base.plusMinutes(2)));
+        ClaveCronologica cursor = ClaveCronologica.de(pagoRepository.findPagina(null, 1).get(0));
+
+        // When
+        pagoRepository.deleteById("pago-001");
+        pagoTest2.setEstado(Pago.EstadoPago.COMPLETED);
+        pagoRepository.save(pagoTest2);
+
+        // Then - la actualización no mueve al pago y la eliminación no rompe el cursor
+        assertThat(pagoRepository.findPagina(cursor, 10)).extracting(Pago::getId)
+                .containsExactly("pago-002", "pago-003");
+        assertThat(pagoRepository.findPagina(null, 10)).hasSize(2);
+    }
+
+    @Test
+    void findPaginaPorOrdenYCliente_DeberianPaginarSoloSuBucket() {
+        // Given
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 10, 0);
+        pagoRepository.save(conFecha(pagoTest1, base.plusMinutes(1)));
+        pagoRepository.save(conFecha(pagoTest2, base));
+        pagoRepository.save(conFecha(pagoTest3, base.plusMinutes(2)));
+
+        // When
+        List<Pago> porOrden = pagoRepository.findPaginaPorOrden("ORD-001", null, 1);
+        List<Pago> porOrdenSiguiente = pagoRepository.findPaginaPorOrden("ORD-001", ClaveCronologica.de(porOrden.get(0)), 5);
+        List<Pago> porCliente = pagoRepository.findPaginaPorCliente("CLI-001", null, 5);
+
+        // Then
+        assertThat(porOrden).extracting(Pago::getId).containsExactly("pago-002");
+        assertThat(porOrdenSiguiente).extracting(Pago::getId).containsExactly("pago-001");
+        assertThat(porCliente).extracting(Pago::getId).containsExactly("pago-001", "pago-003");
+        assertThat(pagoRepository.findPaginaPorOrden("ORD-999", null, 5)).isEmpty();
+    }
+
+    @Test
+    void findPaginaPorFechas_DeberiaIncluirDesdeYExcluirHasta() {
+        // Given
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 10, 0);
+        pagoRepository.save(conFecha(pagoTest1, base.minusNanos(1)));
+        pagoRepository.save(conFecha(pagoTest2, base));
+        pagoRepository.save(conFecha(pagoTest3, base.plusMinutes(30)));
+        Pago fueraDelRango = conFecha(new Pago(), base.plusHours(1));
+        fueraDelRango.setId("pago-004");
+        fueraDelRango.setEstado(Pago.EstadoPago.COMPLETED);
+        pagoRepository.save(fueraDelRango);
+
+        // When
+        List<Pago> primera = pagoRepository.findPaginaPorFechas(base, base.plusHours(1), null, null, null, 1);
+        List<Pago> segunda = pagoRepository.findPaginaPorFechas(base, base.plusHours(1), null, null,
+                ClaveCronologica.de(primera.get(0)), 10);
+
+        // Then
+        assertThat(primera).extracting(Pago::getId).containsExactly("pago-002");
+        assertThat(segunda).extracting(Pago::getId).containsExactly("pago-003");
+        assertThat(pagoRepository.findPaginaPorFechas(base, base.plusHours(1), null, null,
+                ClaveCronologica.de(fueraDelRango), 10)).isEmpty();
+    }
+
+    @Test
+    void findPaginaPorFechas_ConEstadoOMoneda_DeberiaFiltrarDentroDelRango() {
+        // Given
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 10, 0);
+        pagoRepository.save(conFecha(pagoTest1, base));
+        pagoRepository.save(conFecha(pagoTest2, base.plusMinutes(1)));
+        pagoRepository.save(conFecha(pagoTest3, base.plusMinutes(2)));
+        pagoTest2.setEstado(Pago.EstadoPago.COMPLETED);
+        pagoRepository.save(pagoTest2);
+
+        // When
+        List<Pago> completados = pagoRepository.findPaginaPorFechas(base, base.plusHours(1),
+                Pago.EstadoPago.COMPLETED, null, null, 10);
+        List<Pago> enSoles = pagoRepository.findPaginaPorFechas(base, base.plusHours(1), null, "PEN", null, 10);
+        List<Pago> completadosEnDolares = pagoRepository.findPaginaPorFechas(base, base.plusHours(1),
+                Pago.EstadoPago.COMPLETED, "USD", null, 10);
+
+        // Then
+        assertThat(completados).extracting(Pago::getId).containsExactly("pago-001", "pago-002");
+        assertThat(enSoles).extracting(Pago::getId).containsExactly("pago-001", "pago-003");
+        assertThat(completadosEnDolares).extracting(Pago::getId).containsExactly("pago-002");
+    }
+
+    @Test
+    void findCambios_DeberiaDevolverSoloElUltimoCambioDeCadaPagoConSusBajas() {
+        // Given
+        pagoRepository.save(pagoTest1);
+        pagoRepository.save(pagoTest2);
+        long desde = pagoRepository.secuenciaConfirmada();
+        pagoRepository.save(pagoTest3);
+        pagoTest1.setEstado(Pago.EstadoPago.REFUNDED);
+        pagoRepository.save(pagoTest1);
+        pagoRepository.deleteById("pago-002");
+        pagoTest3.setEstado(Pago.EstadoPago.COMPLETED);
+        pagoRepository.save(pagoTest3);
+        long hasta = pagoRepository.secuenciaConfirmada();
+
+        // When
+        List<CambioPago> cambios = pagoRepository.findCambios(desde, hasta, 10);
+
+        // Then - pago-003 aparece una vez, con su último estado
+        assertThat(cambios).extracting(CambioPago::id).containsExactly("pago-001", "pago-002", "pago-003");
+        assertThat(cambios).extracting(CambioPago::secuencia).isSorted();
+        assertThat(cambios.get(0).pago().getEstado()).isEqualTo(Pago.EstadoPago.REFUNDED);
+        assertThat(cambios.get(1).eliminado()).isTrue();
+        assertThat(cambios.get(2).pago().getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        assertThat(pagoRepository.findCambios(hasta, hasta, 10)).isEmpty();
+    }
+
+    @Test
+    void findCambios_ConPagoRecreadoTrasSuBaja_DeberiaReemplazarLaLapida() {
+        // Given - la baja con una instantánea abierta deja una lápida en el índice
+        pagoRepository.save(pagoTest1);
+        try (InstantaneaPagos instantanea = pagoRepository.abrirInstantanea()) {
+            pagoRepository.deleteById("pago-001");
+            assertThat(pagoRepository.findCambios(0, pagoRepository.secuenciaConfirmada(), 10))
+                    .singleElement().matches(CambioPago::eliminado);
+        }
+
+        // When
+        pagoRepository.save(pagoTest1);
+
+        // Then
+        List<CambioPago> cambios = pagoRepository.findCambios(0, pagoRepository.secuenciaConfirmada(), 10);
+        assertThat(cambios).singleElement().satisfies(cambio -> {
+            assertThat(cambio.eliminado()).isFalse();
+            assertThat(cambio.pago().getId()).isEqualTo("pago-001");
+        });
+    }
+
+    @Test
+    void findCambios_ConEscriturasConcurrentes_DeberiaDejarLaReplicaIgualAlRepositorio() throws Exception {
+        // Given - una réplica sincroniza mientras cuatro hilos crean, actualizan y eliminan
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < 4; h++) {
+            int hilo = h;
+            tareas.add(executor.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    Pago pago = new Pago();
+                    pago.setId("pago-" + hilo + "-" + (i % 300));
+                    pago.setEstado(Pago.EstadoPago.values()[i % Pago.EstadoPago.values().length]);
+                    pago.setFechaCreacion(LocalDateTime.of(2025, 1, 1, 10, 0));
+                    if (i % 7 == 0) {
+                        pagoRepository.deleteById(pago.getId());
+                    } else {
+                        pagoRepository.save(pago);
+                    }
+                }
+            }));
+        }
+        Map<String, Pago.EstadoPago> replica = new HashMap<>();
+        long desde = 0;
+
+        // When
+        while (!tareas.stream().allMatch(Future::isDone)) {
+            desde = sincronizar(replica, desde);
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        executor.shutdown();
+        sincronizar(replica, desde);
+
+        // Then
+        Map<String, Pago.EstadoPago> esperado = new HashMap<>();
+        pagoRepository.findAll().forEach(pago -> esperado.put(pago.getId(), pago.getEstado()));
+        assertThat(replica).isEqualTo(esperado);
+    }
+
+    @Test
+    void secuenciaConfirmada_ConEscrituraEnCurso_NoDeberiaAvanzarNiDetenerAOtrosEscritores() throws Exception {
+        // Given - el journal retiene el guardado de pago-001, que ya tomó su secuencia
+        CountDownLatch retenido = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        PagoJournal journal = new PagoJournal(Path.of("no-se-usa.journal"), PagoJournal.PoliticaFsync.SISTEMA, 5, 1) {
+            @Override
+            public void registrarGuardado(Pago pago, long secuencia) {
+                if (pago.getId().equals("pago-001")) {
+                    retenido.countDown();
+                    esperar(liberar);
+                }
+            }
+        };
+        pagoRepository = new PagoRepository(Optional.of(journal));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> lento = executor.submit(() -> pagoRepository.save(pagoTest1));
+        assertThat(retenido.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When - otro pago se guarda y una instantánea empieza a abrirse
+        pagoRepository.save(pagoTest2);
+        Future<InstantaneaPagos> apertura = executor.submit(pagoRepository::abrirInstantanea);
+
+        // Then - nada posterior a la escritura en curso se confirma hasta que termina
+        assertThat(pagoRepository.findById("pago-002")).isPresent();
+        assertThat(pagoRepository.secuenciaConfirmada()).isZero();
+        assertThatThrownBy(() -> apertura.get(100, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        liberar.countDown();
+        lento.get(5, TimeUnit.SECONDS);
+        try (InstantaneaPagos instantanea = apertura.get(5, TimeUnit.SECONDS)) {
+            assertThat(instantanea.getSecuencia()).isEqualTo(2);
+            assertThat(instantanea).extracting(Pago::getId).containsExactlyInAnyOrder("pago-001", "pago-002");
+        }
+        assertThat(pagoRepository.secuenciaConfirmada()).isEqualTo(2);
+        executor.shutdown();
+    }
+
+    @Test
+    void save_ConFechaDeCreacionCorregida_DeberiaReubicarElPago() {
+        // Given
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 10, 0);
+        pagoRepository.save(conFecha(pagoTest1, base));
+        pagoRepository.save(conFecha(pagoTest3, base.plusMinutes(1)));
+
+        // When
+        pagoRepository.save(conFecha(pagoTest1, base.plusMinutes(5)));
+
+        // Then
+        assertThat(pagoRepository.findPagina(null, 10)).extracting(Pago::getId)
+                .containsExactly("pago-003", "pago-001");
+        assertThat(pagoRepository.findPaginaPorCliente("CLI-001", null, 10)).extracting(Pago::getId)
+                .containsExactly("pago-003", "pago-001");
+    }
+
+    @Test
+    void findAllById_DeberiaDevolverSoloLosExistentesEnElOrdenPedido() {
+        // Given
+        pagoRepository.save(pagoTest1);
+        pagoRepository.save(pagoTest2);
+
+        // When
+        Map<String, Pago> encontrados = pagoRepository.findAllById(List.of("pago-002", "pago-999", "pago-001", "pago-002"));
+
+        // Then
+        assertThat(encontrados).containsOnlyKeys("pago-002", "pago-001");
+        assertThat(encontrados.keySet()).containsExactly("pago-002", "pago-001");
+        assertThat(encontrados.get("pago-001")).isEqualTo(pagoTest1);
+    }
+
+    @Test
+    void findByOrderIds_DeberiaAgruparPorOrdenYOmitirLasSinPagos() {
+        // Given
+        pagoRepository.save(pagoTest1);
+        pagoRepository.save(pagoTest2);
+        pagoRepository.save(pagoTest3);
+
+        // When
+        Map<String, List<Pago>> porOrden = pagoRepository.findByOrderIds(List.of("ORD-002", "ORD-999", "ORD-001"));
+
+        // Then
+        assertThat(porOrden.keySet()).containsExactly("ORD-002", "ORD-001");
+        assertThat(porOrden.get("ORD-001")).extracting(Pago::getId).containsExactlyInAnyOrder("pago-001", "pago-002");
+        assertThat(porOrden.get("ORD-002")).extracting(Pago::getId).containsExactly("pago-003");
+    }
+
+    @Test
+    void insertarTodos_DeberiaGuardarConVersionUnoEIndexar() {
+        // When
+        List<Pago> insertados = pagoRepository.insertarTodos(List.of(pagoTest1, pagoTest2, pagoTest3));
+
+        // Then
+        assertThat(insertados).extracting(Pago::getVersion).containsOnly(1L);
+        assertThat(pagoRepository.count()).isEqualTo(3);
+        assertThat(pagoRepository.findByOrderId("ORD-001")).hasSize(2);
+        assertThat(pagoRepository.countByEstado(Pago.EstadoPago.FAILED)).isEqualTo(1);
+        assertThat(pagoRepository.findById("pago-002")).contains(pagoTest2);
+    }
+
+    @Test
+    void insertarTodos_ConIdExistente_NoDeberiaInsertarNinguno() {
+        // Given
+        pagoRepository.save(pagoTest2);
+        Pago repetido = new Pago();
+        repetido.setId("pago-002");
+        repetido.setEstado(Pago.EstadoPago.PENDING);
+
+        // When & Then
+        assertThatThrownBy(() -> pagoRepository.insertarTodos(List.of(pagoTest1, repetido)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("pago-002");
+        assertThat(pagoRepository.count()).isEqualTo(1);
+        assertThat(pagoRepository.existsById("pago-001")).isFalse();
+    }
+
+    @Test
+    void insertarTodos_ConIdRepetidoEnElGrupo_NoDeberiaInsertarNinguno() {
+        // Given
+        Pago repetido = new Pago();
+        repetido.setId("pago-001");
+        repetido.setEstado(Pago.EstadoPago.PENDING);
+
+        // When & Then
+        assertThatThrownBy(() -> pagoRepository.insertarTodos(List.of(pagoTest1, pagoTest2, repetido)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("pago-001");
+        assertThat(pagoRepository.count()).isZero();
+        assertThat(pagoRepository.secuenciaConfirmada()).isZero();
+    }
+
+    @Test
+    void saldoOrden_DeberiaSeguirCompletadosRefundsYBajas() {
+        // Given - pagoTest1 (COMPLETED) y pagoTest2 (PENDING) son de ORD-001
+        pagoRepository.save(pagoTest1);
+        pagoRepository.save(pagoTest2);
+        SaldoOrden inicial = pagoRepository.saldoOrden("ORD-001").orElseThrow();
+
+        // When
+        Pago completado = pagoRepository.actualizar("pago-002", 1, pago -> {
+            pago.setEstado(Pago.EstadoPago.COMPLETED);
+            return pago;
+        });
+        pagoRepository.actualizar("pago-001", 1, pago -> {
+            pago.setMontoReembolsado(new BigDecimal("500.50"));
+            return pago;
+        });
+        SaldoOrden conRefund = pagoRepository.saldoOrden("ORD-001").orElseThrow();
+        pagoRepository.actualizar("pago-002", completado.getVersion(), pago -> {
+            pago.setEstado(Pago.EstadoPago.REFUNDED);
+            return pago;
+        });
+        SaldoOrden reembolsado = pagoRepository.saldoOrden("ORD-001").orElseThrow();
+        pagoRepository.deleteById("pago-001");
+        pagoRepository.deleteById("pago-002");
+
+        // Then
+        assertThat(inicial.pagos()).isEqualTo(2);
+        assertThat(inicial.capturado()).isEqualByComparingTo("1500.50");
+        assertThat(conRefund.capturado()).isEqualByComparingTo("3500.50");
+        assertThat(conRefund.reembolsable()).isEqualByComparingTo("3000.00");
+        assertThat(reembolsado.reembolsable()).isEqualByComparingTo("1000.00");
+        assertThat(pagoRepository.saldoOrden("ORD-001")).isEmpty();
+        // Cada pago completado aporta su propio saldo; el mayor es el máximo de un refund
+        assertThat(inicial.reembolsablePorPago()).containsOnlyKeys("pago-001");
+        assertThat(conRefund.pagoMayorReembolsable()).contains("pago-002");
+        assertThat(conRefund.mayorReembolsable()).isEqualByComparingTo("2000.00");
+        assertThat(conRefund.reembolsablePorPago().get("pago-001")).isEqualByComparingTo("1000.00");
+        assertThat(reembolsado.pagoMayorReembolsable()).contains("pago-001");
+        assertThat(reembolsado.mayorReembolsable()).isEqualByComparingTo("1000.00");
+    }
+
+    @Test
+    void saldoOrden_ConCambioDeOrden_DeberiaMoverElAporte() {
+        // Given
+        pagoRepository.save(pagoTest1);
+        Pago movido = pagoRepository.findById("pago-001").orElseThrow();
+        movido.setOrderId("ORD-002");
+
+        // When
+        pagoRepository.save(movido);
+
+        // Then
+        assertThat(pagoRepository.saldoOrden("ORD-001")).isEmpty();
+        assertThat(pagoRepository.saldoOrden("ORD-002")).get().extracting(SaldoOrden::capturado)
+                .isEqualTo(new BigDecimal("1500.50"));
+    }
+
+    private long sincronizar(Map<String, Pago.EstadoPago> replica, long desde) {
+        long hasta = pagoRepository.secuenciaConfirmada();
+        List<CambioPago> cambios;
+        do {
+            cambios = pagoRepository.findCambios(desde, hasta, 100);
+            for (CambioPago cambio : cambios) {
+                if (cambio.eliminado()) {
+                    replica.remove(cambio.id());
+                } else {
+                    replica.put(cambio.id(), cambio.pago().getEstado());
+                }
+                desde = cambio.secuencia();
+            }
+        } while (cambios.size() == 100);
+        return hasta;
+    }
+
+    private static Pago conFecha(Pago pago, LocalDateTime fechaCreacion) {
+        pago.setFechaCreacion(fechaCreacion);
+        return pago;
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
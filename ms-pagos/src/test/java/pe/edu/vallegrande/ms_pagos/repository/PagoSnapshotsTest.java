@@ -0,0 +1,216 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PagoSnapshotsTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void checkpoint_DeberiaRecuperarDesdeSnapshotYJournalPosterior() throws IOException {
+        // Given
+        PagoJournal journal = nuevoJournal();
+        PagoSnapshots snapshots = nuevosSnapshots(1L << 30);
+        PagoRepository repositorio = abrir(journal, snapshots);
+        for (int i = 0; i < 300; i++) {
+            repositorio.save(crearPago("pago-" + i, "ORD-" + (i % 10), Pago.EstadoPago.PENDING));
+        }
+        repositorio.checkpoint();
+        Pago modificado = crearPago("pago-5", "ORD-77", Pago.EstadoPago.COMPLETED);
+        repositorio.save(modificado);
+        repositorio.deleteById("pago-6");
+        repositorio.save(crearPago("pago-nuevo", "ORD-1", Pago.EstadoPago.FAILED));
+        journal.close();
+
+        // When
+        PagoJournal reabierto = nuevoJournal();
+        PagoRepository recuperado = abrir(reabierto, nuevosSnapshots(1L << 30));
+
+        // Then
+        assertThat(recuperado.count()).isEqualTo(300);
+        assertThat(recuperado.findById("pago-5")).contains(modificado);
+        assertThat(recuperado.findById("pago-6")).isEmpty();
+        assertThat(recuperado.findById("pago-nuevo")).isPresent();
+        assertThat(recuperado.findByOrderId("ORD-77")).extracting(Pago::getId).containsExactly("pago-5");
+        assertThat(recuperado.countByEstado(Pago.EstadoPago.PENDING)).isEqualTo(298);
+        // El segmento anterior al checkpoint se descartó
+        assertThat(archivos()).doesNotContain("pagos.journal.1").contains("pagos.journal.2", "pagos.snapshot");
+        reabierto.close();
+    }
+
+    @Test
+    void cargar_ConVentanaPequena_DeberiaRemapearEntreRegistros() {
+        // Given
+        PagoSnapshots snapshots = nuevosSnapshots(4096);
+        List<Pago> pagos = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Pago pago = crearPago("pago-" + i, "ORD-" + i, Pago.EstadoPago.COMPLETED);
+            pago.setDescripcion("d".repeat(i * 7));
+            pagos.add(pago);
+        }
+        snapshots.escribir(cambios(pagos), 500, 42);
+
+        // When
+        List<CambioPago> cargados = new ArrayList<>();
+        PagoSnapshots.Cargado cargado = snapshots.cargar(cargados::add).orElseThrow();
+
+        // Then
+        assertThat(cargado).isEqualTo(new PagoSnapshots.Cargado(42, 500));
+        assertThat(cargados).containsExactlyElementsOf(cambios(pagos));
+    }
+
+    @Test
+    void escribir_ConPagoMayorQueElBuffer_DeberiaCrecerElBuffer() {
+        // Given
+        PagoSnapshots snapshots = nuevosSnapshots(1L << 30);
+        Pago grande = crearPago("pago-grande", "ORD-1", Pago.EstadoPago.PENDING);
+        grande.setDescripcion("x".repeat(5 * 1024 * 1024));
+
+        // When
+        snapshots.escribir(cambios(List.of(crearPago("pago-1", "ORD-1", Pago.EstadoPago.PENDING), grande)), 2, 3);
+
+        // Then
+        List<CambioPago> cargados = new ArrayList<>();
+        snapshots.cargar(cargados::add);
+        assertThat(cargados).extracting(CambioPago::id).containsExactly("pago-1", "pago-grande");
+        assertThat(cargados.get(1).pago().getDescripcion()).hasSize(5 * 1024 * 1024);
+    }
+
+    @Test
+    void checkpoint_DeberiaConservarSecuenciasYBajasDelRegistroDeCambios() {
+        // Given - una baja antes del checkpoint y cambios después
+        PagoJournal journal = nuevoJournal();
+        PagoRepository repositorio = abrir(journal, nuevosSnapshots(1L << 30));
+        for (int i = 0; i < 10; i++) {
+            repositorio.save(crearPago("pago-" + i, "ORD-1", Pago.EstadoPago.PENDING));
+        }
+        repositorio.deleteById("pago-2");
+        long cursor = repositorio.secuenciaConfirmada();
+        repositorio.save(crearPago("pago-1", "ORD-1", Pago.EstadoPago.COMPLETED));
+        repositorio.checkpoint();
+        repositorio.deleteById("pago-3");
+        List<CambioPago> antes = repositorio.findCambios(0, repositorio.secuenciaConfirmada(), 100);
+        journal.close();
+
+        // When
+        PagoJournal reabierto = nuevoJournal();
+        PagoRepository recuperado = abrir(reabierto, nuevosSnapshots(1L << 30));
+
+        // Then - la réplica que iba por el cursor sigue recibiendo solo lo posterior
+        assertThat(recuperado.findCambios(0, recuperado.secuenciaConfirmada(), 100)).isEqualTo(antes);
+        assertThat(recuperado.findCambios(cursor, recuperado.secuenciaConfirmada(), 100))
+                .extracting(CambioPago::id, CambioPago::eliminado)
+                .containsExactly(tuple("pago-1", false), tuple("pago-3", true));
+        assertThat(antes).filteredOn(CambioPago::eliminado).extracting(CambioPago::id).containsExactly("pago-2", "pago-3");
+        reabierto.close();
+    }
+
+    @Test
+    void cargar_ConSnapshotDeVersionUno_DeberiaEntregarPagosSinSecuencia() throws IOException {
+        // Given - cabecera [magia][1][segmento][pagos] y registros [longitud][pago]
+        Pago pago = crearPago("pago-1", "ORD-1", Pago.EstadoPago.COMPLETED);
+        ByteBuffer archivo = ByteBuffer.allocate(1024).putInt(0x50414753).putInt(1).putLong(7).putLong(1);
+        int inicio = archivo.position();
+        archivo.position(inicio + Integer.BYTES);
+        PagoCodec.escribir(archivo, pago);
+        archivo.putInt(inicio, archivo.position() - inicio - Integer.BYTES);
+        Files.write(directorio.resolve("pagos.snapshot"), Arrays.copyOf(archivo.array(), archivo.position()));
+        PagoSnapshots snapshots = nuevosSnapshots(1L << 30);
+
+        // When
+        List<CambioPago> cargados = new ArrayList<>();
+        PagoSnapshots.Cargado cargado = snapshots.cargar(cargados::add).orElseThrow();
+
+        // Then
+        assertThat(cargado).isEqualTo(new PagoSnapshots.Cargado(7, 0));
+        assertThat(cargados).containsExactly(new CambioPago(0, "pago-1", pago));
+    }
+
+    @Test
+    void cargar_SinSnapshot_DeberiaRetornarVacio() {
+        // Given
+        PagoSnapshots snapshots = nuevosSnapshots(1L << 30);
+
+        // When & Then
+        assertThat(snapshots.cargar(cambio -> fail("No debería cargar pagos"))).isEmpty();
+    }
+
+    @Test
+    void cargar_ConFormatoDesconocido_DeberiaLanzarExcepcion() throws IOException {
+        // Given
+        Files.write(directorio.resolve("pagos.snapshot"), new byte[64]);
+        PagoSnapshots snapshots = nuevosSnapshots(1L << 30);
+
+        // When & Then
+        assertThatThrownBy(() -> snapshots.cargar(cambio -> { }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("formato desconocido");
+    }
+
+    @Test
+    void constructor_SnapshotsSinJournal_DeberiaLanzarExcepcion() {
+        // When & Then
+        assertThatThrownBy(() -> new PagoRepository(Optional.empty(), Optional.of(nuevosSnapshots(1L << 30))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<CambioPago> cambios(List<Pago> pagos) {
+        List<CambioPago> cambios = new ArrayList<>();
+        for (int i = 0; i < pagos.size(); i++) {
+            cambios.add(new CambioPago(i + 1, pagos.get(i).getId(), pagos.get(i)));
+        }
+        return cambios;
+    }
+
+    private PagoJournal nuevoJournal() {
+        return new PagoJournal(directorio.resolve("pagos.journal"), PagoJournal.PoliticaFsync.SISTEMA, 5, 2);
+    }
+
+    private PagoSnapshots nuevosSnapshots(long ventana) {
+        return new PagoSnapshots(directorio.resolve("pagos.snapshot"), 0, ventana);
+    }
+
+    private List<String> archivos() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.map(archivo -> archivo.getFileName().toString()).toList();
+        }
+    }
+
+    private static PagoRepository abrir(PagoJournal journal, PagoSnapshots snapshots) {
+        PagoRepository repositorio = new PagoRepository(Optional.of(journal), Optional.of(snapshots));
+        repositorio.recuperar();
+        return repositorio;
+    }
+
+    private static Pago crearPago(String id, String orderId, Pago.EstadoPago estado) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setOrderId(orderId);
+        pago.setClienteId("CLI-1");
+        pago.setMonto(new BigDecimal("99.90"));
+        pago.setEstado(estado);
+        pago.setFechaCreacion(LocalDateTime.of(2025, 3, 1, 8, 0, 0, 5));
+        pago.setFechaActualizacion(LocalDateTime.of(2025, 3, 1, 8, 0, 1));
+        pago.setMetodoPago("Yape");
+        pago.setMoneda("PEN");
+        pago.setPaymentGateway("Niubiz");
+        return pago;
+    }
+}
@@ -0,0 +1,22 @@
+package pe.edu.vallegrande.ms_pagos.repository;
+
+import java.util.Optional;
+
+/**
+ * Abre un PagoRepository durable y lo recupera como al arrancar, para los benchmarks que
+ * viven fuera de este paquete y no ven {@link PagoRepository#recuperar()}
+ */
+public final class RepositorioRecuperado {
+
+    private RepositorioRecuperado() {
+    }
+
+    /**
+     * Repositorio sobre el journal y el snapshot ya recuperado; sin journal queda en memoria
+     */
+    public static PagoRepository abrir(PagoJournal journal, PagoSnapshots snapshots) {
+        PagoRepository repositorio = new PagoRepository(Optional.ofNullable(journal), Optional.ofNullable(snapshots));
+        repositorio.recuperar();
+        return repositorio;
+    }
+}
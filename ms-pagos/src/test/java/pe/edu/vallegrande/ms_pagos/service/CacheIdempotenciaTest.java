@@ -0,0 +1,157 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
+import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CacheIdempotenciaTest {
+
+    private final AtomicLong reloj = new AtomicLong();
+    private CacheIdempotencia cache;
+    private PagoRequest request;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CacheIdempotencia(Duration.ofMinutes(10), 3, reloj::get);
+        request = new PagoRequest();
+        request.setOrderId("ORD-001");
+        request.setMonto(new BigDecimal("100.00"));
+    }
+
+    @Test
+    void obtenerOCrear_ConClaveRepetida_DeberiaDevolverElResultadoOriginal() {
+        // Given
+        AtomicInteger creaciones = new AtomicInteger();
+
+        // When
+        PagoResponse primero = cache.obtenerOCrear("clave-1", request, () -> respuesta("pago-" + creaciones.incrementAndGet()));
+        PagoResponse segundo = cache.obtenerOCrear("clave-1", copia(request), () -> respuesta("pago-" + creaciones.incrementAndGet()));
+
+        // Then
+        assertThat(segundo).isSameAs(primero);
+        assertThat(creaciones).hasValue(1);
+    }
+
+    @Test
+    void obtenerOCrear_ConOtraRequestParaLaMismaClave_DeberiaLanzarValidacion() {
+        // Given
+        cache.obtenerOCrear("clave-1", request, () -> respuesta("pago-1"));
+        PagoRequest distinta = copia(request);
+        distinta.setMonto(new BigDecimal("200.00"));
+
+        // When & Then
+        assertThatThrownBy(() -> cache.obtenerOCrear("clave-1", distinta, () -> respuesta("pago-2")))
+                .isInstanceOf(PagoValidationException.class)
+                .hasMessageContaining("idempotencia");
+    }
+
+    @Test
+    void obtenerOCrear_TrasVencerElTtl_DeberiaCrearDeNuevo() {
+        // Given
+        cache.obtenerOCrear("clave-1", request, () -> respuesta("pago-1"));
+        reloj.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        // When
+        PagoResponse resultado = cache.obtenerOCrear("clave-1", request, () -> respuesta("pago-2"));
+
+        // Then
+        assertThat(resultado.getId()).isEqualTo("pago-2");
+    }
+
+    @Test
+    void obtenerOCrear_AlSuperarElMaximo_DeberiaOlvidarLasClavesMasAntiguas() {
+        // When
+        for (int i = 0; i < 10; i++) {
+            reloj.incrementAndGet();
+            cache.obtenerOCrear("clave-" + i, request, () -> respuesta("pago"));
+        }
+
+        // Then
+        assertThat(cache.tamano()).isEqualTo(3);
+        PagoResponse antigua = cache.obtenerOCrear("clave-0", request, () -> respuesta("pago-nuevo"));
+        assertThat(antigua.getId()).isEqualTo("pago-nuevo");
+    }
+
+    @Test
+    void obtenerOCrear_SiLaCreacionFalla_DeberiaLiberarLaClave() {
+        // Given
+        assertThatThrownBy(() -> cache.obtenerOCrear("clave-1", request, () -> {
+            throw new PagoValidationException("monto", null, "El monto es obligatorio");
+        })).isInstanceOf(PagoValidationException.class);
+
+        // When
+        PagoResponse reintento = cache.obtenerOCrear("clave-1", request, () -> respuesta("pago-1"));
+
+        // Then
+        assertThat(reintento.getId()).isEqualTo("pago-1");
+    }
+
+    @Test
+    void obtenerOCrear_ConDuplicadosConcurrentes_DeberiaCrearUnaSolaVez() throws Exception {
+        // Given - la primera creación queda en curso hasta que llegan las demás
+        cache = new CacheIdempotencia(Duration.ofMinutes(10), 100);
+        AtomicInteger creaciones = new AtomicInteger();
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<PagoResponse>> resultados = new ArrayList<>();
+        resultados.add(executor.submit(() -> cache.obtenerOCrear("clave-1", request, () -> {
+            enCurso.countDown();
+            esperar(liberar);
+            return respuesta("pago-" + creaciones.incrementAndGet());
+        })));
+        assertThat(enCurso.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 7; i++) {
+            resultados.add(executor.submit(() -> cache.obtenerOCrear("clave-1", copia(request),
+                    () -> respuesta("pago-" + creaciones.incrementAndGet()))));
+        }
+
+        // When
+        Thread.sleep(100);
+        liberar.countDown();
+
+        // Then
+        for (Future<PagoResponse> resultado : resultados) {
+            assertThat(resultado.get(5, TimeUnit.SECONDS).getId()).isEqualTo("pago-1");
+        }
+        assertThat(creaciones).hasValue(1);
+        executor.shutdown();
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static PagoRequest copia(PagoRequest original) {
+        PagoRequest copia = new PagoRequest();
+        copia.setOrderId(original.getOrderId());
+        copia.setMonto(original.getMonto());
+        return copia;
+    }
+
+    private static PagoResponse respuesta(String id) {
+        PagoResponse respuesta = new PagoResponse();
+        respuesta.setId(id);
+        return respuesta;
+    }
+}
@@ -0,0 +1,111 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DetectorDuplicadosTest {
+
+    private final AtomicLong reloj = new AtomicLong();
+    private DetectorDuplicados detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new DetectorDuplicados(DetectorDuplicados.Modo.RECHAZAR, Duration.ofSeconds(8), 1_000, reloj::get);
+    }
+
+    @Test
+    void registrar_ConHuellaRepetidaDentroDeLaVentana_DeberiaIndicarQueSeVio() {
+        // Given
+        long huella = DetectorDuplicados.huella("CLI-1", "ORD-1", new BigDecimal("100.00"), "Tarjeta");
+
+        // When
+        boolean primera = detector.registrar(huella);
+        reloj.addAndGet(Duration.ofSeconds(5).toNanos());
+        boolean segunda = detector.registrar(huella);
+
+        // Then
+        assertThat(primera).isFalse();
+        assertThat(segunda).isTrue();
+    }
+
+    @Test
+    void registrar_TrasSalirDeLaVentana_NoDeberiaRecordarLaHuella() {
+        // Given
+        long huella = DetectorDuplicados.huella("CLI-1", "ORD-1", new BigDecimal("100.00"), "Tarjeta");
+        detector.registrar(huella);
+
+        // When
+        reloj.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        // Then
+        assertThat(detector.registrar(huella)).isFalse();
+    }
+
+    @Test
+    void huella_DeberiaNormalizarElMontoYDistinguirLosCampos() {
+        // Then
+        assertThat(DetectorDuplicados.huella("CLI-1", "ORD-1", new BigDecimal("100"), "Tarjeta"))
+                .isEqualTo(DetectorDuplicados.huella("CLI-1", "ORD-1", new BigDecimal("100.00"), "Tarjeta"));
+        assertThat(DetectorDuplicados.huella("CLI-1", "ORD-1", new BigDecimal("100"), "Tarjeta"))
+                .isNotEqualTo(DetectorDuplicados.huella("CLI-1", "ORD-1", new BigDecimal("100"), "Yape"));
+        assertThat(DetectorDuplicados.huella("CLI-1", "ORD-12", BigDecimal.ONE, "Tarjeta"))
+                .isNotEqualTo(DetectorDuplicados.huella("CLI-1O", "RD-12", BigDecimal.ONE, "Tarjeta"));
+    }
+
+    @Test
+    void registrar_ConHuellasDistintas_DeberiaMantenerPocosFalsosPositivos() {
+        // Given - la capacidad prevista del tramo
+        int falsosPositivos = 0;
+
+        // When
+        for (int i = 0; i < 1_000; i++) {
+            if (detector.registrar(DetectorDuplicados.huella("CLI-" + i, "ORD-" + i, BigDecimal.TEN, "Tarjeta"))) {
+                falsosPositivos++;
+            }
+        }
+
+        // Then - ~1% esperado
+        assertThat(falsosPositivos).isLessThan(40);
+    }
+
+    @Test
+    void registrar_DesdeVariosHilos_NoDeberiaPerderMarcas() throws Exception {
+        // Given
+        detector = new DetectorDuplicados(DetectorDuplicados.Modo.RECHAZAR, Duration.ofMinutes(1), 10_000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < 4; h++) {
+            int hilo = h;
+            tareas.add(executor.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    detector.registrar(DetectorDuplicados.huella("CLI", "ORD-" + hilo + "-" + i, BigDecimal.ONE, "Tarjeta"));
+                }
+            }));
+        }
+
+        // When
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        executor.shutdown();
+
+        // Then - las marcas concurrentes sobre una misma palabra no se pisan
+        for (int h = 0; h < 4; h++) {
+            for (int i = 0; i < 2_000; i++) {
+                assertThat(detector.registrar(DetectorDuplicados.huella("CLI", "ORD-" + h + "-" + i, BigDecimal.ONE, "Tarjeta")))
+                        .isTrue();
+            }
+        }
+    }
+}
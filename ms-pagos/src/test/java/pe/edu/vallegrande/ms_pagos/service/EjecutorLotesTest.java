@@ -0,0 +1,107 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class EjecutorLotesTest {
+
+    private EjecutorLotes ejecutor;
+
+    @AfterEach
+    void tearDown() {
+        ejecutor.close();
+    }
+
+    @Test
+    void procesar_DeberiaAplicarLaAccionUnaVezPorElementoEnVariosHilos() {
+        // Given
+        ejecutor = new EjecutorLotes(3, 8);
+        List<Integer> elementos = IntStream.range(0, 1000).boxed().toList();
+        Set<Integer> procesados = ConcurrentHashMap.newKeySet();
+        Set<String> hilos = ConcurrentHashMap.newKeySet();
+
+        // When
+        ejecutor.procesar(elementos, 10, elemento -> {
+            assertThat(procesados.add(elemento)).isTrue();
+            hilos.add(Thread.currentThread().getName());
+        });
+
+        // Then
+        assertThat(procesados).hasSize(1000);
+        assertThat(hilos).contains(Thread.currentThread().getName()).hasSizeGreaterThan(1);
+    }
+
+    @Test
+    void procesar_ConLoteChico_DeberiaProcesarEnElLlamador() {
+        // Given
+        ejecutor = new EjecutorLotes(4, 8);
+        Set<String> hilos = ConcurrentHashMap.newKeySet();
+
+        // When
+        ejecutor.procesar(List.of(1, 2, 3), 64, elemento -> hilos.add(Thread.currentThread().getName()));
+
+        // Then
+        assertThat(hilos).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    void procesar_ConPoolSaturado_DeberiaProcesarLosTramosRechazadosEnElLlamador() throws Exception {
+        // Given - dos lotes ocupan el único hilo del pool y el único lugar de la cola
+        ejecutor = new EjecutorLotes(1, 1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        List<Thread> ocupantes = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            CountDownLatch enviado = new CountDownLatch(1);
+            Thread ocupante = new Thread(() -> ejecutor.procesar(List.of(1, 2), 1, elemento -> {
+                if (elemento == 1) {
+                    // El llamador procesa su tramo después de enviar el otro al pool
+                    enviado.countDown();
+                    return;
+                }
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            ocupante.start();
+            ocupantes.add(ocupante);
+            assertThat(enviado.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+        Set<String> hilos = ConcurrentHashMap.newKeySet();
+
+        // When
+        ejecutor.procesar(List.of(1, 2, 3, 4), 1, elemento -> hilos.add(Thread.currentThread().getName()));
+
+        // Then
+        liberar.countDown();
+        for (Thread ocupante : ocupantes) {
+            ocupante.join();
+        }
+        assertThat(hilos).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    void procesar_SiLaAccionFalla_DeberiaPropagarLaExcepcion() {
+        // Given
+        ejecutor = new EjecutorLotes(2, 4);
+        List<Integer> elementos = IntStream.range(0, 100).boxed().toList();
+
+        // When & Then
+        assertThatThrownBy(() -> ejecutor.procesar(elementos, 10, elemento -> {
+            if (elemento == 99) {
+                throw new IllegalStateException("falla en " + elemento);
+            }
+        })).isInstanceOf(IllegalStateException.class).hasMessage("falla en 99");
+    }
+}
@@ -0,0 +1,81 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import static org.assertj.core.api.Assertions.*;
+
+class EsperasEstadoTest {
+
+    private EsperasEstado esperas;
+
+    @BeforeEach
+    void setUp() {
+        esperas = new EsperasEstado(2);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "PENDING, COMPLETED, false",
+            "COMPLETED, COMPLETED, true",
+            "FAILED, COMPLETED, true",
+            "COMPLETED, REFUNDED, false",
+            "CANCELLED, REFUNDED, true",
+            "PENDING, , false",
+            "FAILED, , true"
+    })
+    void resuelve_DeberiaSeguirLasTransicionesDePago(Pago.EstadoPago estado, Pago.EstadoPago objetivo, boolean esperado) {
+        // Then
+        assertThat(EsperasEstado.resuelve(estado, objetivo)).isEqualTo(esperado);
+    }
+
+    @Test
+    void estadoCambiado_DeberiaCompletarSoloLasEsperasResueltasYQuitarlas() {
+        // Given
+        EsperasEstado.Espera completado = esperas.esperar("p-1", Pago.EstadoPago.COMPLETED);
+        EsperasEstado.Espera reembolsado = esperas.esperar("p-1", Pago.EstadoPago.REFUNDED);
+
+        // When
+        esperas.estadoCambiado(pago("p-1", Pago.EstadoPago.COMPLETED), Pago.EstadoPago.PENDING);
+
+        // Then
+        assertThat(completado.resultado()).isCompletedWithValue(Pago.EstadoPago.COMPLETED);
+        assertThat(reembolsado.resultado()).isNotDone();
+        assertThat(esperas.esperasActivas()).isEqualTo(1);
+
+        // When - otro pago no la afecta; el reembolso la resuelve
+        esperas.estadoCambiado(pago("p-2", Pago.EstadoPago.REFUNDED), Pago.EstadoPago.COMPLETED);
+        esperas.estadoCambiado(pago("p-1", Pago.EstadoPago.REFUNDED), Pago.EstadoPago.COMPLETED);
+
+        // Then
+        assertThat(reembolsado.resultado()).isCompletedWithValue(Pago.EstadoPago.REFUNDED);
+        assertThat(esperas.esperasActivas()).isZero();
+    }
+
+    @Test
+    void esperar_SobreElMaximo_DeberiaRechazarHastaQueSeCanceleUna() {
+        // Given
+        EsperasEstado.Espera primera = esperas.esperar("p-1", null);
+        esperas.esperar("p-2", null);
+
+        // When & Then
+        assertThatThrownBy(() -> esperas.esperar("p-3", null)).isInstanceOf(PagoCapacidadException.class);
+        primera.cancelar();
+        primera.cancelar();
+        esperas.estadoCambiado(pago("p-1", Pago.EstadoPago.FAILED), Pago.EstadoPago.PENDING);
+        assertThat(primera.resultado()).isNotDone();
+        assertThat(esperas.esperar("p-3", null)).isNotNull();
+        assertThat(esperas.esperasActivas()).isEqualTo(2);
+    }
+
+    private static Pago pago(String id, Pago.EstadoPago estado) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setEstado(estado);
+        return pago;
+    }
+}
@@ -0,0 +1,238 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.dto.request.CambioEstadoLoteRequest;
+import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
+import pe.edu.vallegrande.ms_pagos.dto.request.RefundRequest;
+import pe.edu.vallegrande.ms_pagos.dto.response.EstadisticasResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoConcurrencyException;
+import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+class EstadisticasPagosTest {
+
+    private EstadisticasPagos estadisticasPagos;
+    private PagoRepository pagoRepository;
+    private PagoService pagoService;
+
+    @BeforeEach
+    void setUp() {
+        estadisticasPagos = new EstadisticasPagos();
+        pagoRepository = new PagoRepository();
+        pagoService = new PagoService(pagoRepository, estadisticasPagos, List.of(estadisticasPagos), new GeneradorIdOrdenado(1),
+                new EjecutorLotes(1, 1), new CacheIdempotencia(Duration.ofHours(1), 1_000), DetectorDuplicados.deshabilitado(), new ResumenesClientes(),
+                new ProcesadorPagos(1, 1, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void obtener_SinPagos_DeberiaRetornarCeros() {
+        // When
+        EstadisticasResponse resultado = estadisticasPagos.obtener();
+
+        // Then
+        assertThat(resultado.getTotalPagos()).isZero();
+        assertThat(resultado.getMontoTotalCompletado()).isEqualByComparingTo("0");
+        assertThat(resultado.getTasaExito()).isZero();
+    }
+
+    @Test
+    void eventos_DeberianActualizarContadoresYMontos() {
+        // Given
+        pagoService.crearPago(crearRequest("ORD-1", "1500.50"));  // COMPLETED
+        pagoService.crearPago(crearRequest("ORD-2", "15000.00")); // PENDING
+        pagoService.crearPago(crearRequest("ORD-3", "0.50"));     // FAILED
+        PagoResponse completado = pagoService.crearPago(crearRequest("ORD-4", "99.5"));
+
+        // When
+        pagoService.refundPago(completado.getId(), new BigDecimal("99.5"));
+
+        // Then
+        EstadisticasResponse resultado = estadisticasPagos.obtener();
+        assertThat(resultado.getTotalPagos()).isEqualTo(4);
+        assertThat(resultado.getPagosCompletados()).isEqualTo(1);
+        assertThat(resultado.getPagosPendientes()).isEqualTo(1);
+        assertThat(resultado.getPagosFallidos()).isEqualTo(1);
+        assertThat(resultado.getMontoTotalCompletado()).isEqualByComparingTo("1500.50");
+        assertThat(resultado.getTasaExito()).isEqualTo(25.0);
+    }
+
+    @Test
+    void refundParcial_DeberiaDescontarseDelMontoCompletado() {
+        // Given
+        PagoResponse completado = pagoService.crearPago(crearRequest("ORD-1", "100.00"));
+        pagoService.crearPago(crearRequest("ORD-2", "50.00"));
+
+        // When - el pago sigue COMPLETED con 30 reembolsados
+        pagoService.refundPago(completado.getId(), new BigDecimal("30.00"));
+        pagoService.restrictRefund(new RefundRequest("ORD-2", new BigDecimal("20.00"), null, null));
+
+        // Then
+        EstadisticasResponse resultado = pagoService.obtenerEstadisticas();
+        assertThat(resultado.getPagosCompletados()).isEqualTo(2);
+        assertThat(resultado.getMontoTotalCompletado()).isEqualByComparingTo("100.00");
+        assertThat(estadisticasPagos.esConsistenteCon(pagoRepository.findAll())).isTrue();
+
+        // When - el resto del primero lo deja REFUNDED
+        pagoService.refundPago(completado.getId(), new BigDecimal("70.00"));
+
+        // Then
+        resultado = pagoService.obtenerEstadisticas();
+        assertThat(resultado.getPagosCompletados()).isEqualTo(1);
+        assertThat(resultado.getMontoTotalCompletado()).isEqualByComparingTo("30.00");
+        assertThat(estadisticasPagos.esConsistenteCon(pagoRepository.findAll())).isTrue();
+    }
+
+    @Test
+    void estadosCambiados_EnLote_DeberiaCoincidirConRecalculoCompleto() {
+        // Given - pendientes por monto alto, más un completado y un fallido que no pueden pasar a COMPLETED
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ids.add(pagoService.crearPago(crearRequest("ORD-" + i, i % 2 == 0 ? "12000.50" : "15000.125")).getId());
+        }
+        ids.add(pagoService.crearPago(crearRequest("ORD-C", "100")).getId());
+        ids.add(pagoService.crearPago(crearRequest("ORD-F", "0.50")).getId());
+
+        // When
+        pagoService.actualizarEstadoPagos(new CambioEstadoLoteRequest(ids, Pago.EstadoPago.COMPLETED));
+
+        // Then
+        assertThat(estadisticasPagos.esConsistenteCon(pagoRepository.findAll())).isTrue();
+        EstadisticasResponse resultado = estadisticasPagos.obtener();
+        assertThat(resultado.getPagosCompletados()).isEqualTo(301);
+        assertThat(resultado.getPagosPendientes()).isZero();
+        assertThat(resultado.getMontoTotalCompletado()).isEqualByComparingTo("4050193.75");
+    }
+
+    @Test
+    void estadisticasIncrementales_BajoCargaConcurrente_DeberianCoincidirConRecalculoCompleto() throws Exception {
+        // Given - hilos que crean pagos y mueven los pendientes de estado
+        int hilos = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String monto = switch (i % 4) {
+                        case 0 -> "12000.00";
+                        case 1 -> "0.75";
+                        case 2 -> "250.125";
+                        default -> "42";
+                    };
+                    PagoResponse pago = pagoService.crearPago(crearRequest("ORD-" + hilo + "-" + i, monto));
+                    try {
+                        if (pago.getEstado() == Pago.EstadoPago.PENDING) {
+                            pagoService.actualizarEstadoPago(pago.getId(),
+                                    i % 8 == 0 ? Pago.EstadoPago.COMPLETED : Pago.EstadoPago.CANCELLED);
+                        } else if (pago.getEstado() == Pago.EstadoPago.COMPLETED && i % 3 == 0) {
+                            pagoService.refundPago(pago.getId(), BigDecimal.ONE);
+                        }
+                    } catch (PagoValidationException ignored) {
+                        // Las transiciones inválidas no deben alterar los contadores
+                    }
+                }
+            }));
+        }
+
+        // When
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(estadisticasPagos.esConsistenteCon(pagoRepository.findAll())).isTrue();
+        EstadisticasResponse incremental = estadisticasPagos.obtener();
+        EstadisticasResponse completo = EstadisticasPagos.recalcular(pagoRepository.findAll());
+        assertThat(incremental.getTotalPagos()).isEqualTo(4_000);
+        assertThat(incremental.getTasaExito()).isEqualTo(completo.getTasaExito());
+    }
+
+    @Test
+    void refundPago_Concurrente_DeberiaAplicarseUnaSolaVez() throws Exception {
+        // Given - varios hilos intentan el refund total del mismo pago completado
+        PagoResponse completado = pagoService.crearPago(crearRequest("ORD-REFUND", "99.5"));
+        int hilos = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<Boolean>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(executor.submit(() -> {
+                try {
+                    pagoService.refundPago(completado.getId(), new BigDecimal("99.5"));
+                    return true;
+                } catch (PagoValidationException e) {
+                    return false;
+                }
+            }));
+        }
+
+        // When
+        int exitosos = 0;
+        for (Future<Boolean> tarea : tareas) {
+            exitosos += tarea.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(exitosos).isEqualTo(1);
+        assertThat(pagoRepository.findById(completado.getId()).get().getVersion()).isEqualTo(2);
+        assertThat(estadisticasPagos.esConsistenteCon(pagoRepository.findAll())).isTrue();
+    }
+
+    @Test
+    void restrictRefund_Concurrente_NoDeberiaReembolsarMasDeLoCapturado() throws Exception {
+        // Given - refunds parciales que juntos superan el pago
+        PagoResponse completado = pagoService.crearPago(crearRequest("ORD-PARCIAL", "100.00"));
+        int hilos = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<Boolean>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(executor.submit(() -> {
+                try {
+                    pagoService.restrictRefund(new RefundRequest("ORD-PARCIAL", new BigDecimal("30.00"), null, null));
+                    return true;
+                } catch (PagoValidationException | PagoConcurrencyException e) {
+                    return false;
+                }
+            }));
+        }
+
+        // When
+        int exitosos = 0;
+        for (Future<Boolean> tarea : tareas) {
+            exitosos += tarea.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Then
+        Pago pago = pagoRepository.findById(completado.getId()).get();
+        assertThat(exitosos).isBetween(1, 3);
+        assertThat(pago.getMontoReembolsado()).isEqualByComparingTo(new BigDecimal(30 * exitosos));
+        assertThat(pagoRepository.saldoOrden("ORD-PARCIAL").get().reembolsable())
+                .isEqualByComparingTo(new BigDecimal(100 - 30 * exitosos));
+    }
+
+    private PagoRequest crearRequest(String orderId, String monto) {
+        PagoRequest request = new PagoRequest();
+        request.setOrderId(orderId);
+        request.setMonto(new BigDecimal(monto));
+        request.setMetodoPago("Tarjeta");
+        request.setMoneda("PEN");
+        request.setClienteId("CLI-STATS");
+        return request;
+    }
+}
@@ -0,0 +1,110 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+class GeneradorIdOrdenadoTest {
+
+    @Test
+    void nuevoId_DeberiaSerUuidVersion7ConNodo() {
+        // Given
+        GeneradorIdOrdenado generador = new GeneradorIdOrdenado(513);
+        Instant antes = Instant.ofEpochMilli(System.currentTimeMillis());
+
+        // When
+        String id = generador.nuevoId();
+
+        // Then
+        UUID uuid = UUID.fromString(id);
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(GeneradorIdOrdenado.nodo(id)).isEqualTo(513);
+        assertThat(GeneradorIdOrdenado.instante(id)).isBetween(antes, Instant.now());
+    }
+
+    @Test
+    void nuevoId_DeberiaSerCrecienteComoTexto() {
+        // Given
+        GeneradorIdOrdenado generador = new GeneradorIdOrdenado(0);
+
+        // When
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(generador.nuevoId());
+        }
+
+        // Then
+        assertThat(ids).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void nuevoId_DesdeVariosHilos_NoDeberiaRepetirse() throws Exception {
+        // Given
+        GeneradorIdOrdenado generador = new GeneradorIdOrdenado(7);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<String>>> tareas = new ArrayList<>();
+
+        // When
+        for (int h = 0; h < 8; h++) {
+            tareas.add(executor.submit(() -> {
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < 20_000; i++) {
+                    ids.add(generador.nuevoId());
+                }
+                return ids;
+            }));
+        }
+        Set<String> todos = new HashSet<>();
+        for (Future<List<String>> tarea : tareas) {
+            List<String> ids = tarea.get();
+            // Dentro de cada hilo los IDs salen en orden
+            assertThat(ids).isSorted();
+            todos.addAll(ids);
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(todos).hasSize(8 * 20_000);
+    }
+
+    @Test
+    void idMinimoYMaximo_DeberianAcotarLosIdsDelInstante() {
+        // Given
+        GeneradorIdOrdenado generador = new GeneradorIdOrdenado(1023);
+        String id = generador.nuevoId();
+        Instant instante = GeneradorIdOrdenado.instante(id);
+
+        // When & Then
+        assertThat(id).isBetween(GeneradorIdOrdenado.idMinimo(instante), GeneradorIdOrdenado.idMaximo(instante));
+        assertThat(GeneradorIdOrdenado.idMaximo(instante.minusMillis(1))).isLessThan(id);
+        assertThat(GeneradorIdOrdenado.idMinimo(instante.plusMillis(1))).isGreaterThan(id);
+    }
+
+    @Test
+    void nuevoTransactionId_DeberiaTenerFormatoFijo() {
+        // Given
+        GeneradorId generador = new GeneradorIdUuid();
+
+        // When & Then
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(generador.nuevoTransactionId()).matches("TXN_[0-9A-F]{8}");
+        }
+    }
+
+    @Test
+    void constructor_ConNodoFueraDeRango_DeberiaLanzarExcepcion() {
+        assertThatThrownBy(() -> new GeneradorIdOrdenado(1024)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GeneradorIdOrdenado(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
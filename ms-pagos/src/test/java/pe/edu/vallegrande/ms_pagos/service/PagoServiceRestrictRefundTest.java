@@ -7,6 +7,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import pe.edu.vallegrande.ms_pagos.dto.request.RefundRequest;
 import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
@@ -14,12 +15,15 @@ import pe.edu.vallegrande.ms_pagos.exception.PagoNotFoundException;
 import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
 import pe.edu.vallegrande.ms_pagos.model.Pago;
 import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
+import pe.edu.vallegrande.ms_pagos.repository.SaldoOrden;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +35,15 @@ class PagoServiceRestrictRefundTest {
     @Mock
     private PagoRepository pagoRepository;
 
+    @Mock
+    private EstadisticasPagos estadisticasPagos;
+
+    @Spy
+    private List<PagoObservador> observadores = new ArrayList<>();
+
+    @Spy
+    private GeneradorId generadorId = new GeneradorIdOrdenado(1);
+
     @InjectMocks
     private PagoService pagoService;
 
@@ -72,26 +85,29 @@ class PagoServiceRestrictRefundTest {
     }
 
     @Test
-    void restrictRefund_ConDatosValidos_DeberiaRetornarPagoRefunded() {
+    void restrictRefund_ConDatosValidos_DeberiaRegistrarRefundParcial() {
         // Given
-        List<Pago> pagosOrden = Arrays.asList(pagoCompletado, pagoPendiente);
-        when(pagoRepository.findByOrderId("ORD-RESTRICT-001")).thenReturn(pagosOrden);
-        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoCompletado);
+        when(pagoRepository.saldoOrden("ORD-RESTRICT-001"))
+                .thenReturn(saldo(2, "1000.00", "0", Map.of("pago-completed-123", new BigDecimal("1000.00"))));
+        when(pagoRepository.findById("pago-completed-123")).thenReturn(Optional.of(pagoCompletado));
+        when(pagoRepository.actualizar(eq("pago-completed-123"), anyLong(), any()))
+                .thenAnswer(invocacion -> invocacion.<UnaryOperator<Pago>>getArgument(2).apply(pagoCompletado));
 
         // When
         PagoResponse resultado = pagoService.restrictRefund(refundRequestValido);
 
         // Then
         assertThat(resultado).isNotNull();
-        assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.REFUNDED);
+        assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED); // Refund parcial
+        assertThat(resultado.getMontoReembolsado()).isEqualByComparingTo("100.00");
         assertThat(resultado.getCodigoRespuesta()).isEqualTo("RESTRICTED_REFUND_SUCCESS");
         assertThat(resultado.getMensajeRespuesta()).contains("Refund restringido procesado exitosamente");
         assertThat(resultado.getMensajeRespuesta()).contains("100.00");
         assertThat(resultado.getMensajeRespuesta()).contains("500.00");
         assertThat(resultado.getMensajeRespuesta()).contains("400.00"); // remaining
 
-        verify(pagoRepository).findByOrderId("ORD-RESTRICT-001");
-        verify(pagoRepository).save(any(Pago.class));
+        verify(pagoRepository, never()).findByOrderId(any());
+        verify(pagoRepository).actualizar(eq("pago-completed-123"), anyLong(), any());
     }
 
     @Test
@@ -107,14 +123,15 @@ class PagoServiceRestrictRefundTest {
                 .isInstanceOf(PagoValidationException.class)
                 .hasMessageContaining("El monto del refund (600.00) excede el límite máximo permitido (500.00)");
 
+        verify(pagoRepository, never()).saldoOrden(any());
         verify(pagoRepository, never()).findByOrderId(any());
-        verify(pagoRepository, never()).save(any());
+        verify(pagoRepository, never()).actualizar(any(), anyLong(), any());
     }
 
     @Test
     void restrictRefund_ConOrdenInexistente_DeberiaLanzarExcepcion() {
         // Given
-        when(pagoRepository.findByOrderId("ORD-INEXISTENTE")).thenReturn(Collections.emptyList());
+        when(pagoRepository.saldoOrden("ORD-INEXISTENTE")).thenReturn(Optional.empty());
 
         RefundRequest requestInexistente = new RefundRequest();
         requestInexistente.setOrderId("ORD-INEXISTENTE");
@@ -126,44 +143,75 @@ class PagoServiceRestrictRefundTest {
                 .isInstanceOf(PagoNotFoundException.class)
                 .hasMessageContaining("No se encontraron pagos para la orden: ORD-INEXISTENTE");
 
-        verify(pagoRepository).findByOrderId("ORD-INEXISTENTE");
-        verify(pagoRepository, never()).save(any());
+        verify(pagoRepository).saldoOrden("ORD-INEXISTENTE");
+        verify(pagoRepository, never()).findByOrderId(any());
+        verify(pagoRepository, never()).actualizar(any(), anyLong(), any());
     }
 
     @Test
     void restrictRefund_SinPagosCompletados_DeberiaLanzarExcepcion() {
-        // Given
-        List<Pago> solopagosPendientes = Arrays.asList(pagoPendiente);
-        when(pagoRepository.findByOrderId("ORD-RESTRICT-001")).thenReturn(solopagosPendientes);
+        // Given - el saldo de una orden con solo pagos pendientes no tiene nada capturado
+        when(pagoRepository.saldoOrden("ORD-RESTRICT-001")).thenReturn(saldo(1, "0", "0", Map.of()));
 
         // When & Then
         assertThatThrownBy(() -> pagoService.restrictRefund(refundRequestValido))
                 .isInstanceOf(PagoValidationException.class)
                 .hasMessageContaining("No hay pagos completados disponibles para refund en la orden: ORD-RESTRICT-001");
 
-        verify(pagoRepository).findByOrderId("ORD-RESTRICT-001");
-        verify(pagoRepository, never()).save(any());
+        verify(pagoRepository, never()).findByOrderId(any());
+        verify(pagoRepository, never()).actualizar(any(), anyLong(), any());
     }
 
     @Test
-    void restrictRefund_ConMontoMayorAlPagoOriginal_DeberiaLanzarExcepcion() {
-        // Given
-        Pago pagoMenor = new Pago();
-        pagoMenor.setId("pago-menor-789");
-        pagoMenor.setOrderId("ORD-RESTRICT-001");
-        pagoMenor.setMonto(new BigDecimal("50.00")); // Menor al refund solicitado de 100
-        pagoMenor.setEstado(Pago.EstadoPago.COMPLETED);
+    void restrictRefund_ConMontoMayorAlSaldoDeLaOrden_DeberiaLanzarExcepcion() {
+        // Given - la orden capturó 50.00, menos que el refund solicitado de 100
+        when(pagoRepository.saldoOrden("ORD-RESTRICT-001")).thenReturn(saldo(1, "50.00", "0", Map.of("pago-completed-123", new BigDecimal("50.00"))));
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.restrictRefund(refundRequestValido))
+                .isInstanceOf(PagoValidationException.class)
+                .hasMessageContaining("El monto del refund (100.00) excede el saldo reembolsable de la orden (50.00)");
 
-        List<Pago> pagosOrden = Arrays.asList(pagoMenor);
-        when(pagoRepository.findByOrderId("ORD-RESTRICT-001")).thenReturn(pagosOrden);
+        verify(pagoRepository, never()).findByOrderId(any());
+        verify(pagoRepository, never()).actualizar(any(), anyLong(), any());
+    }
+
+    @Test
+    void restrictRefund_SinPagoConSaldoSuficiente_DeberiaLanzarExcepcion() {
+        // Given - la orden alcanza en total (100 + 600) pero ningún pago por sí solo
+        refundRequestValido.setAmount(new BigDecimal("650.00"));
+        refundRequestValido.setMaxRefundable(null);
+        when(pagoRepository.saldoOrden("ORD-RESTRICT-001")).thenReturn(saldo(2, "1600.00", "900.00",
+                Map.of("pago-completed-123", new BigDecimal("100.00"), "pago-completed-otro", new BigDecimal("600.00"))));
 
         // When & Then
         assertThatThrownBy(() -> pagoService.restrictRefund(refundRequestValido))
                 .isInstanceOf(PagoValidationException.class)
-                .hasMessageContaining("El monto del refund (100.00) no puede ser mayor al monto del pago original (50.00)");
+                .hasMessageContaining("no puede ser mayor al saldo reembolsable de un pago de la orden (600.00)");
 
-        verify(pagoRepository).findByOrderId("ORD-RESTRICT-001");
-        verify(pagoRepository, never()).save(any());
+        verify(pagoRepository, never()).findById(any());
+        verify(pagoRepository, never()).actualizar(any(), anyLong(), any());
+    }
+
+    @Test
+    void restrictRefund_SinMaxRefundable_DeberiaCalcularElLimiteConElSaldoDeLaOrden() {
+        // Given - ya se reembolsaron 300.00 de los 1000.00 capturados
+        pagoCompletado.setMontoReembolsado(new BigDecimal("300.00"));
+        refundRequestValido.setAmount(new BigDecimal("700.00"));
+        refundRequestValido.setMaxRefundable(null);
+        when(pagoRepository.saldoOrden("ORD-RESTRICT-001"))
+                .thenReturn(saldo(1, "1000.00", "300.00", Map.of("pago-completed-123", new BigDecimal("700.00"))));
+        when(pagoRepository.findById("pago-completed-123")).thenReturn(Optional.of(pagoCompletado));
+        when(pagoRepository.actualizar(eq("pago-completed-123"), anyLong(), any()))
+                .thenAnswer(invocacion -> invocacion.<UnaryOperator<Pago>>getArgument(2).apply(pagoCompletado));
+
+        // When
+        PagoResponse resultado = pagoService.restrictRefund(refundRequestValido);
+
+        // Then - completa el reembolso del pago
+        assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.REFUNDED);
+        assertThat(resultado.getMontoReembolsado()).isEqualByComparingTo("1000.00");
+        assertThat(resultado.getMensajeRespuesta()).contains("Límite: 700.00", "Restante: 0.00");
     }
 
     @ParameterizedTest(name = "OrderId inválido: ''{0}''")
@@ -185,7 +233,7 @@ class PagoServiceRestrictRefundTest {
                 .hasMessageContaining(mensajeEsperado);
 
         verify(pagoRepository, never()).findByOrderId(any());
-        verify(pagoRepository, never()).save(any());
+        verify(pagoRepository, never()).actualizar(any(), anyLong(), any());
     }
 
     @ParameterizedTest(name = "Amount inválido: {0}")
@@ -207,12 +255,11 @@ class PagoServiceRestrictRefundTest {
                 .hasMessageContaining(mensajeEsperado);
 
         verify(pagoRepository, never()).findByOrderId(any());
-        verify(pagoRepository, never()).save(any());
+        verify(pagoRepository, never()).actualizar(any(), anyLong(), any());
     }
 
     @ParameterizedTest(name = "MaxRefundable inválido: {0}")
     @CsvSource({
-        "null, El maxRefundable es obligatorio",
         "0, El maxRefundable debe ser mayor a 0",
         "-100.00, El maxRefundable debe ser mayor a 0"
     })
@@ -221,7 +268,7 @@ class PagoServiceRestrictRefundTest {
         RefundRequest requestInvalido = new RefundRequest();
         requestInvalido.setOrderId("ORD-RESTRICT-001");
         requestInvalido.setAmount(new BigDecimal("100.00"));
-        requestInvalido.setMaxRefundable("null".equals(maxRefundableStr) ? null : new BigDecimal(maxRefundableStr));
+        requestInvalido.setMaxRefundable(new BigDecimal(maxRefundableStr));
 
         // When & Then
         assertThatThrownBy(() -> pagoService.restrictRefund(requestInvalido))
@@ -229,11 +276,11 @@ class PagoServiceRestrictRefundTest {
                 .hasMessageContaining(mensajeEsperado);
 
         verify(pagoRepository, never()).findByOrderId(any());
-        verify(pagoRepository, never()).save(any());
+        verify(pagoRepository, never()).actualizar(any(), anyLong(), any());
     }
 
     @Test
-    void restrictRefund_ConMultiplesPagosCompletados_DeberiaUsarPrimero() {
+    void restrictRefund_ConMultiplesPagosCompletados_DeberiaUsarElDeMayorSaldo() {
         // Given
         Pago segundoPagoCompletado = new Pago();
         segundoPagoCompletado.setId("pago-completed-second");
@@ -241,19 +288,21 @@ class PagoServiceRestrictRefundTest {
         segundoPagoCompletado.setMonto(new BigDecimal("2000.00"));
         segundoPagoCompletado.setEstado(Pago.EstadoPago.COMPLETED);
 
-        List<Pago> pagosOrden = Arrays.asList(pagoCompletado, segundoPagoCompletado, pagoPendiente);
-        when(pagoRepository.findByOrderId("ORD-RESTRICT-001")).thenReturn(pagosOrden);
-        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoCompletado);
+        when(pagoRepository.saldoOrden("ORD-RESTRICT-001")).thenReturn(saldo(3, "3000.00", "0",
+                Map.of("pago-completed-123", new BigDecimal("1000.00"), "pago-completed-second", new BigDecimal("2000.00"))));
+        when(pagoRepository.findById("pago-completed-second")).thenReturn(Optional.of(segundoPagoCompletado));
+        when(pagoRepository.actualizar(eq("pago-completed-second"), anyLong(), any()))
+                .thenAnswer(invocacion -> invocacion.<UnaryOperator<Pago>>getArgument(2).apply(segundoPagoCompletado));
 
         // When
         PagoResponse resultado = pagoService.restrictRefund(refundRequestValido);
 
         // Then
         assertThat(resultado).isNotNull();
-        assertThat(resultado.getId()).isEqualTo("pago-completed-123"); // Primer pago completado
+        assertThat(resultado.getId()).isEqualTo("pago-completed-second"); // Pago con mayor saldo
 
-        verify(pagoRepository).findByOrderId("ORD-RESTRICT-001");
-        verify(pagoRepository).save(any(Pago.class));
+        verify(pagoRepository, never()).findByOrderId(any());
+        verify(pagoRepository).actualizar(eq("pago-completed-second"), anyLong(), any());
     }
 
     @Test
@@ -264,20 +313,28 @@ class PagoServiceRestrictRefundTest {
         requestLimiteExacto.setAmount(new BigDecimal("500.00")); // Exacto al límite
         requestLimiteExacto.setMaxRefundable(new BigDecimal("500.00"));
 
-        List<Pago> pagosOrden = Arrays.asList(pagoCompletado);
-        when(pagoRepository.findByOrderId("ORD-RESTRICT-001")).thenReturn(pagosOrden);
-        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoCompletado);
+        when(pagoRepository.saldoOrden("ORD-RESTRICT-001"))
+                .thenReturn(saldo(1, "1000.00", "0", Map.of("pago-completed-123", new BigDecimal("1000.00"))));
+        when(pagoRepository.findById("pago-completed-123")).thenReturn(Optional.of(pagoCompletado));
+        when(pagoRepository.actualizar(eq("pago-completed-123"), anyLong(), any()))
+                .thenAnswer(invocacion -> invocacion.<UnaryOperator<Pago>>getArgument(2).apply(pagoCompletado));
 
         // When
         PagoResponse resultado = pagoService.restrictRefund(requestLimiteExacto);
 
         // Then
         assertThat(resultado).isNotNull();
-        assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.REFUNDED);
+        assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED); // Quedan 500.00 del pago
         assertThat(resultado.getMensajeRespuesta()).contains("500.00");
         assertThat(resultado.getMensajeRespuesta()).contains("0.00"); // remaining = 0
 
-        verify(pagoRepository).findByOrderId("ORD-RESTRICT-001");
-        verify(pagoRepository).save(any(Pago.class));
+        verify(pagoRepository, never()).findByOrderId(any());
+        verify(pagoRepository).actualizar(eq("pago-completed-123"), anyLong(), any());
+    }
+
+    private static Optional<SaldoOrden> saldo(int pagos, String capturado, String reembolsado,
+                                              Map<String, BigDecimal> reembolsablePorPago) {
+        return Optional.of(new SaldoOrden(pagos, new BigDecimal(capturado), new BigDecimal(reembolsado),
+                reembolsablePorPago));
     }
-}
\ No newline at end of file
+}
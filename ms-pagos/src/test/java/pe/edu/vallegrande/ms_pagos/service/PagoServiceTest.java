@@ -3,21 +3,50 @@ package pe.edu.vallegrande.ms_pagos.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import pe.edu.vallegrande.ms_pagos.dto.request.CambioEstadoLoteRequest;
+import pe.edu.vallegrande.ms_pagos.dto.request.ConsultaPagosRequest;
 import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
+import pe.edu.vallegrande.ms_pagos.dto.request.RefundRequest;
+import pe.edu.vallegrande.ms_pagos.dto.response.CambiosResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ConsultaPagosResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.EstadisticasResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.LotePagosResponse;
 import pe.edu.vallegrande.ms_pagos.dto.response.PagoResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.PaginaResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResultadoLoteResponse;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResumenClienteResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+import pe.edu.vallegrande.ms_pagos.exception.PagoConcurrencyException;
+import pe.edu.vallegrande.ms_pagos.exception.PagoDuplicadoException;
 import pe.edu.vallegrande.ms_pagos.exception.PagoNotFoundException;
 import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
 import pe.edu.vallegrande.ms_pagos.model.Pago;
+import pe.edu.vallegrande.ms_pagos.repository.CambioPago;
+import pe.edu.vallegrande.ms_pagos.repository.ClaveCronologica;
 import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -30,6 +59,30 @@ class PagoServiceTest {
     @Mock
     private PagoRepository pagoRepository;
 
+    @Mock
+    private EstadisticasPagos estadisticasPagos;
+
+    @Spy
+    private List<PagoObservador> observadores = new ArrayList<>();
+
+    @Spy
+    private GeneradorId generadorId = new GeneradorIdOrdenado(1);
+
+    @Spy
+    private EjecutorLotes ejecutorLotes = new EjecutorLotes(2, 4);
+
+    @Spy
+    private CacheIdempotencia cacheIdempotencia = new CacheIdempotencia(Duration.ofMinutes(5), 100);
+
+    @Spy
+    private DetectorDuplicados detectorDuplicados = DetectorDuplicados.deshabilitado();
+
+    @Spy
+    private ResumenesClientes resumenesClientes = new ResumenesClientes();
+
+    @Mock
+    private ProcesadorPagos procesadorPagos;
+
     @InjectMocks
     private PagoService pagoService;
 
@@ -82,6 +135,21 @@ class PagoServiceTest {
         verify(pagoRepository, times(1)).save(any(Pago.class));
     }
 
+    @Test
+    void crearPago_DeberiaUsarElGeneradorDeIds() {
+        // Given
+        when(pagoRepository.save(any(Pago.class))).thenAnswer(invocacion -> invocacion.getArgument(0));
+
+        // When
+        PagoResponse resultado = pagoService.crearPago(pagoRequestValido);
+
+        // Then
+        verify(generadorId).nuevoId();
+        verify(generadorId).nuevoTransactionId();
+        assertThat(GeneradorIdOrdenado.nodo(resultado.getId())).isEqualTo(1);
+        assertThat(resultado.getTransactionId()).matches("TXN_[0-9A-F]{8}");
+    }
+
     @Test
     void crearPago_ConMontoAlto_DeberiaQuedarPendiente() {
         // Given
@@ -120,6 +188,105 @@ class PagoServiceTest {
         assertThat(resultado.getCodigoRespuesta()).isEqualTo("AMOUNT_TOO_LOW");
     }
 
+    @Test
+    void crearPagoAsincrono_DeberiaGuardarPendingYProcesarDespues() {
+        // Given
+        List<Runnable> tareas = encolarEnLista();
+        when(pagoRepository.save(any(Pago.class))).thenAnswer(invocacion -> invocacion.getArgument(0));
+        PagoObservador observador = mock(PagoObservador.class);
+        observadores.add(observador);
+
+        // When
+        PagoResponse aceptado = pagoService.crearPagoAsincrono(pagoRequestValido, null);
+
+        // Then
+        assertThat(aceptado.getEstado()).isEqualTo(Pago.EstadoPago.PENDING);
+        assertThat(aceptado.getTransactionId()).isNull();
+        verify(observador).pagoCreado(any(Pago.class));
+        verify(pagoRepository, never()).actualizar(anyString(), anyLong(), any());
+        assertThat(tareas).hasSize(1);
+
+        // When: el worker procesa el pago
+        Pago guardado = pagoConEstado(aceptado.getId(), Pago.EstadoPago.PENDING);
+        guardado.setMonto(aceptado.getMonto());
+        when(pagoRepository.findById(aceptado.getId())).thenReturn(Optional.of(guardado));
+        when(pagoRepository.actualizar(eq(aceptado.getId()), anyLong(), any()))
+                .thenAnswer(invocacion -> invocacion.<UnaryOperator<Pago>>getArgument(2).apply(guardado));
+        tareas.get(0).run();
+
+        // Then
+        assertThat(guardado.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        assertThat(guardado.getTransactionId()).isNotNull();
+        verify(observador).estadoCambiado(guardado, Pago.EstadoPago.PENDING);
+    }
+
+    @Test
+    void crearPagoAsincrono_SiElPagoDejoPendingAntesDeProcesarse_NoDeberiaModificarlo() {
+        // Given
+        List<Runnable> tareas = encolarEnLista();
+        when(pagoRepository.save(any(Pago.class))).thenAnswer(invocacion -> invocacion.getArgument(0));
+        PagoResponse aceptado = pagoService.crearPagoAsincrono(pagoRequestValido);
+        when(pagoRepository.findById(aceptado.getId()))
+                .thenReturn(Optional.of(pagoConEstado(aceptado.getId(), Pago.EstadoPago.CANCELLED)));
+
+        // When
+        tareas.get(0).run();
+
+        // Then
+        verify(pagoRepository, never()).actualizar(anyString(), anyLong(), any());
+    }
+
+    @Test
+    void crearPagoAsincrono_ConColaLlena_NoDeberiaGuardarElPago() {
+        // Given
+        doThrow(new PagoCapacidadException("pagos en procesamiento", 4))
+                .when(procesadorPagos).ejecutar(any(), any());
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.crearPagoAsincrono(pagoRequestValido))
+                .isInstanceOf(PagoCapacidadException.class);
+        verify(pagoRepository, never()).save(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void inicializarObservadores_DeberiaReencolarLosPagosAsincronosQueSeguianEnCola() {
+        // Given - uno en cola y otro PENDING por monto alto
+        Pago enCola = pagoConEstado("PAY-COLA", Pago.EstadoPago.PENDING);
+        enCola.setMensajeRespuesta(PagoService.MENSAJE_EN_COLA);
+        enCola.setMonto(new BigDecimal("150.00"));
+        Pago enValidacion = pagoConEstado("PAY-ALTO", Pago.EstadoPago.PENDING);
+        enValidacion.setMensajeRespuesta("Pago en validación por monto alto");
+        when(pagoRepository.count()).thenReturn(2L);
+        when(pagoRepository.findAll()).thenReturn(List.of(enCola, enValidacion));
+        when(pagoRepository.findByEstado(Pago.EstadoPago.PENDING)).thenReturn(List.of(enCola, enValidacion));
+        when(pagoRepository.findById("PAY-COLA")).thenReturn(Optional.of(enCola));
+        when(pagoRepository.actualizar(eq("PAY-COLA"), anyLong(), any()))
+                .thenAnswer(invocacion -> invocacion.<UnaryOperator<Pago>>getArgument(2).apply(enCola));
+
+        // When
+        pagoService.inicializarObservadores();
+
+        // Then
+        ArgumentCaptor<List<Runnable>> tareas = ArgumentCaptor.forClass(List.class);
+        verify(procesadorPagos).recuperar(tareas.capture());
+        assertThat(tareas.getValue()).hasSize(1);
+        tareas.getValue().get(0).run();
+        assertThat(enCola.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        verify(pagoRepository, never()).findById("PAY-ALTO");
+    }
+
+    @Test
+    void crearPagoAsincrono_ConRequestInvalida_NoDeberiaEncolar() {
+        // Given
+        pagoRequestValido.setMonto(null);
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.crearPagoAsincrono(pagoRequestValido))
+                .isInstanceOf(PagoValidationException.class);
+        verifyNoInteractions(procesadorPagos);
+    }
+
     @Test
     void obtenerPagoPorId_ConIdExistente_DeberiaRetornarPago() {
         // Given
@@ -185,6 +352,23 @@ class PagoServiceTest {
         verify(pagoRepository, times(1)).findByClienteId(clienteId);
     }
 
+    @Test
+    void obtenerResumenCliente_DeberiaLeerElResumenSinConsultarElRepositorio() {
+        // Given
+        resumenesClientes.pagoCreado(pagoMock);
+
+        // When
+        ResumenClienteResponse resultado = pagoService.obtenerResumenCliente(pagoMock.getClienteId());
+
+        // Then
+        assertThat(resultado.getTotalPagos()).isEqualTo(1);
+        assertThat(resultado.getMontoCompletadoPorMoneda()).containsEntry("PEN", pagoMock.getMonto());
+        assertThatThrownBy(() -> pagoService.obtenerResumenCliente("CLI-SIN-PAGOS"))
+                .isInstanceOf(PagoNotFoundException.class)
+                .hasMessageContaining("CLI-SIN-PAGOS");
+        verifyNoInteractions(pagoRepository);
+    }
+
     @Test
     void actualizarEstadoPago_ConTransicionValida_DeberiaActualizarEstado() {
         // Given
@@ -195,7 +379,7 @@ class PagoServiceTest {
         pagoActualizado.setEstado(Pago.EstadoPago.COMPLETED);
 
         when(pagoRepository.findById(pagoId)).thenReturn(Optional.of(pagoMock));
-        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoActualizado);
+        when(pagoRepository.actualizar(eq(pagoId), anyLong(), any())).thenReturn(pagoActualizado);
 
         // When
         PagoResponse resultado = pagoService.actualizarEstadoPago(pagoId, Pago.EstadoPago.COMPLETED);
@@ -204,7 +388,8 @@ class PagoServiceTest {
         assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
 
         verify(pagoRepository, times(1)).findById(pagoId);
-        verify(pagoRepository, times(1)).save(any(Pago.class));
+        verify(pagoRepository, times(1)).actualizar(eq(pagoId), anyLong(), any());
+        verify(pagoRepository, never()).save(any(Pago.class));
     }
 
     @Test
@@ -220,7 +405,7 @@ class PagoServiceTest {
                 .hasMessageContaining("No se puede cambiar el estado");
 
         verify(pagoRepository, times(1)).findById(pagoId);
-        verify(pagoRepository, never()).save(any(Pago.class));
+        verify(pagoRepository, never()).actualizar(anyString(), anyLong(), any());
     }
 
     @Test
@@ -235,7 +420,7 @@ class PagoServiceTest {
         pagoRefund.setEstado(Pago.EstadoPago.REFUNDED);
         
         when(pagoRepository.findById(pagoId)).thenReturn(Optional.of(pagoMock));
-        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoRefund);
+        when(pagoRepository.actualizar(eq(pagoId), anyLong(), any())).thenReturn(pagoRefund);
 
         // When
         PagoResponse resultado = pagoService.refundPago(pagoId, montoRefund);
@@ -244,7 +429,7 @@ class PagoServiceTest {
         assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.REFUNDED);
 
         verify(pagoRepository, times(1)).findById(pagoId);
-        verify(pagoRepository, times(1)).save(any(Pago.class));
+        verify(pagoRepository, times(1)).actualizar(eq(pagoId), anyLong(), any());
     }
 
     @Test
@@ -262,7 +447,7 @@ class PagoServiceTest {
                 .hasMessageContaining("Solo se pueden hacer refunds a pagos completados");
 
         verify(pagoRepository, times(1)).findById(pagoId);
-        verify(pagoRepository, never()).save(any(Pago.class));
+        verify(pagoRepository, never()).actualizar(anyString(), anyLong(), any());
     }
 
     @Test
@@ -277,9 +462,582 @@ class PagoServiceTest {
         // When & Then
         assertThatThrownBy(() -> pagoService.refundPago(pagoId, montoRefund))
                 .isInstanceOf(PagoValidationException.class)
-                .hasMessageContaining("El monto del refund no puede ser mayor al monto del pago");
+                .hasMessageContaining("El monto del refund no puede ser mayor al saldo reembolsable del pago");
 
         verify(pagoRepository, times(1)).findById(pagoId);
-        verify(pagoRepository, never()).save(any(Pago.class));
+        verify(pagoRepository, never()).actualizar(anyString(), anyLong(), any());
+    }
+
+    @Test
+    void obtenerEstadisticas_DeberiaDelegarEnEstadisticasIncrementales() {
+        // Given
+        EstadisticasResponse estadisticas = new EstadisticasResponse(4, 2, 1, 1, new BigDecimal("2000.00"), 50.0);
+        when(estadisticasPagos.obtener()).thenReturn(estadisticas);
+
+        // When
+        EstadisticasResponse resultado = pagoService.obtenerEstadisticas();
+
+        // Then
+        assertThat(resultado).isSameAs(estadisticas);
+        verifyNoInteractions(pagoRepository);
+    }
+
+    @Test
+    void crearPago_DeberiaNotificarAObservadores() {
+        // Given
+        PagoObservador observador = mock(PagoObservador.class);
+        observadores.add(observador);
+        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoMock);
+
+        // When
+        pagoService.crearPago(pagoRequestValido);
+
+        // Then
+        verify(observador).pagoCreado(pagoMock);
+    }
+
+    @Test
+    void actualizarEstadoPago_DeberiaNotificarEstadoAnterior() {
+        // Given
+        PagoObservador observador = mock(PagoObservador.class);
+        observadores.add(observador);
+        pagoMock.setEstado(Pago.EstadoPago.PENDING);
+        when(pagoRepository.findById("test-id-123")).thenReturn(Optional.of(pagoMock));
+        aplicarCambiosSobre(pagoMock);
+
+        // When
+        pagoService.actualizarEstadoPago("test-id-123", Pago.EstadoPago.COMPLETED);
+
+        // Then
+        verify(observador).estadoCambiado(pagoMock, Pago.EstadoPago.PENDING);
+    }
+
+    @Test
+    void actualizarEstadoPago_DeberiaEnviarLaVersionLeida() {
+        // Given
+        pagoMock.setEstado(Pago.EstadoPago.PENDING);
+        pagoMock.setVersion(7);
+        when(pagoRepository.findById("test-id-123")).thenReturn(Optional.of(pagoMock));
+        aplicarCambiosSobre(pagoMock);
+
+        // When
+        pagoService.actualizarEstadoPago("test-id-123", Pago.EstadoPago.CANCELLED);
+
+        // Then
+        verify(pagoRepository).actualizar(eq("test-id-123"), eq(7L), any());
+        assertThat(pagoMock.getEstado()).isEqualTo(Pago.EstadoPago.CANCELLED);
+    }
+
+    @Test
+    void refundPago_TrasUnRefundRestringidoParcial_SoloDeberiaAceptarElSaldoRestante() {
+        // Given - pago de 100 con un refund restringido de 30
+        PagoRepository repositorio = new PagoRepository();
+        PagoService servicio = new PagoService(repositorio, estadisticasPagos, observadores, generadorId, ejecutorLotes,
+                cacheIdempotencia, detectorDuplicados, resumenesClientes, procesadorPagos);
+        Pago pago = pagoConEstado("pago-100", Pago.EstadoPago.COMPLETED);
+        pago.setMonto(new BigDecimal("100.00"));
+        repositorio.save(pago);
+        RefundRequest parcial = new RefundRequest();
+        parcial.setOrderId(pago.getOrderId());
+        parcial.setAmount(new BigDecimal("30.00"));
+        servicio.restrictRefund(parcial);
+
+        // When & Then - el refund completo del monto original excede el saldo
+        assertThatThrownBy(() -> servicio.refundPago("pago-100", new BigDecimal("100.00")))
+                .isInstanceOf(PagoValidationException.class)
+                .hasMessageContaining("saldo reembolsable del pago (70.00)");
+
+        // When - un refund parcial deja el pago COMPLETED y el resto lo cierra
+        PagoResponse intermedio = servicio.refundPago("pago-100", new BigDecimal("20.00"));
+        PagoResponse resultado = servicio.refundPago("pago-100", new BigDecimal("50.00"));
+
+        // Then
+        assertThat(intermedio.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        assertThat(intermedio.getMontoReembolsado()).isEqualByComparingTo("50.00");
+        assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.REFUNDED);
+        assertThat(resultado.getMontoReembolsado()).isEqualByComparingTo("100.00");
+        assertThat(repositorio.saldoOrden(pago.getOrderId()).orElseThrow().reembolsable()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void refundPago_ConConflictoDeVersion_DeberiaReintentarConUnaNuevaLectura() {
+        // Given
+        pagoMock.setEstado(Pago.EstadoPago.COMPLETED);
+        when(pagoRepository.findById("test-id-123")).thenReturn(Optional.of(pagoMock));
+        when(pagoRepository.actualizar(eq("test-id-123"), anyLong(), any()))
+                .thenThrow(new PagoConcurrencyException("test-id-123", 1, 2))
+                .thenAnswer(invocacion -> invocacion.<UnaryOperator<Pago>>getArgument(2).apply(pagoMock));
+
+        // When
+        PagoResponse resultado = pagoService.refundPago("test-id-123", new BigDecimal("1500.50"));
+
+        // Then
+        assertThat(resultado.getEstado()).isEqualTo(Pago.EstadoPago.REFUNDED);
+        verify(pagoRepository, times(2)).findById("test-id-123");
+    }
+
+    @Test
+    void refundPago_ConConflictosPersistentes_DeberiaPropagarLaExcepcion() {
+        // Given
+        pagoMock.setEstado(Pago.EstadoPago.COMPLETED);
+        when(pagoRepository.findById("test-id-123")).thenReturn(Optional.of(pagoMock));
+        when(pagoRepository.actualizar(eq("test-id-123"), anyLong(), any()))
+                .thenThrow(new PagoConcurrencyException("test-id-123", 1, 2));
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.refundPago("test-id-123", new BigDecimal("100.00")))
+                .isInstanceOf(PagoConcurrencyException.class);
+        verify(pagoRepository, times(3)).actualizar(eq("test-id-123"), anyLong(), any());
+    }
+
+    @Test
+    void crearPago_ConClaveDeIdempotenciaRepetida_DeberiaGuardarUnaSolaVez() {
+        // Given
+        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoMock);
+
+        // When
+        PagoResponse primero = pagoService.crearPago(pagoRequestValido, "clave-123");
+        PagoResponse reintento = pagoService.crearPago(pagoRequestValido, "clave-123");
+
+        // Then
+        assertThat(reintento.getId()).isEqualTo(primero.getId());
+        verify(pagoRepository, times(1)).save(any(Pago.class));
+    }
+
+    @Test
+    void crearPago_ConClaveDeIdempotenciaInvalida_DeberiaLanzarValidacion() {
+        // When & Then
+        assertThatThrownBy(() -> pagoService.crearPago(pagoRequestValido, " "))
+                .isInstanceOf(PagoValidationException.class);
+        assertThatThrownBy(() -> pagoService.crearPago(pagoRequestValido,
+                "x".repeat(PagoService.MAX_LONGITUD_CLAVE_IDEMPOTENCIA + 1)))
+                .isInstanceOf(PagoValidationException.class);
+        verifyNoInteractions(pagoRepository);
+    }
+
+    @Test
+    void crearPago_ConDobleEnvioYModoRechazar_DeberiaLanzarDuplicado() {
+        // Given
+        PagoService servicio = servicioConDetector(DetectorDuplicados.Modo.RECHAZAR);
+        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoMock);
+        when(pagoRepository.findByOrderId("ORD-001")).thenReturn(List.of(pagoMock));
+        servicio.crearPago(pagoRequestValido);
+
+        // When & Then
+        assertThatThrownBy(() -> servicio.crearPago(pagoRequestValido))
+                .isInstanceOf(PagoDuplicadoException.class)
+                .hasMessageContaining("test-id-123");
+        verify(pagoRepository, times(1)).save(any(Pago.class));
+    }
+
+    @Test
+    void crearPago_ConDobleEnvioYModoDevolverOriginal_DeberiaDevolverElPagoExistente() {
+        // Given
+        PagoService servicio = servicioConDetector(DetectorDuplicados.Modo.DEVOLVER_ORIGINAL);
+        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoMock);
+        when(pagoRepository.findByOrderId("ORD-001")).thenReturn(List.of(pagoMock));
+        servicio.crearPago(pagoRequestValido);
+        pagoRequestValido.setMonto(new BigDecimal("1500.5000"));
+
+        // When
+        PagoResponse repetido = servicio.crearPago(pagoRequestValido);
+
+        // Then
+        assertThat(repetido.getId()).isEqualTo("test-id-123");
+        verify(pagoRepository, times(1)).save(any(Pago.class));
+    }
+
+    @Test
+    void crearPago_ConHuellaVistaPeroSinPagoIgual_DeberiaCrearlo() {
+        // Given - mismo pedido, pero el guardado tiene otro método de pago (falso positivo o pago antiguo)
+        PagoService servicio = servicioConDetector(DetectorDuplicados.Modo.RECHAZAR);
+        when(pagoRepository.save(any(Pago.class))).thenReturn(pagoMock);
+        servicio.crearPago(pagoRequestValido);
+        pagoMock.setMetodoPago("Yape");
+        when(pagoRepository.findByOrderId("ORD-001")).thenReturn(List.of(pagoMock));
+
+        // When
+        servicio.crearPago(pagoRequestValido);
+
+        // Then
+        verify(pagoRepository, times(2)).save(any(Pago.class));
+    }
+
+    @Test
+    void crearPago_ConDobleEnvioConcurrente_DeberiaCrearUnSoloPago() throws Exception {
+        // Given - el primer envío queda detenido al guardar, antes de que el pago sea visible
+        PagoService servicio = servicioConDetector(DetectorDuplicados.Modo.DEVOLVER_ORIGINAL);
+        CountDownLatch guardando = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        when(pagoRepository.save(any(Pago.class))).thenAnswer(invocacion -> {
+            guardando.countDown();
+            continuar.await();
+            return invocacion.getArgument(0);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // When - el segundo envío llega mientras el primero sigue en curso
+            Future<PagoResponse> primero = executor.submit(() -> servicio.crearPago(pagoRequestValido));
+            assertThat(guardando.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<PagoResponse> segundo = executor.submit(() -> servicio.crearPago(pagoRequestValido));
+            Thread.sleep(100);
+            continuar.countDown();
+
+            // Then
+            assertThat(segundo.get(5, TimeUnit.SECONDS).getId()).isEqualTo(primero.get(5, TimeUnit.SECONDS).getId());
+            verify(pagoRepository, times(1)).save(any(Pago.class));
+        } finally {
+            continuar.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void crearPagos_ConRequestsInvalidas_DeberiaCrearLasValidasEInformarErroresPorPosicion() {
+        // Given
+        PagoRequest sinMonto = new PagoRequest();
+        sinMonto.setOrderId("ORD-002");
+        List<PagoRequest> requests = new ArrayList<>(Arrays.asList(pagoRequestValido, sinMonto, null, pagoRequestValido));
+        when(pagoRepository.insertarTodos(anyList())).thenAnswer(invocacion -> invocacion.getArgument(0));
+
+        // When
+        LotePagosResponse lote = pagoService.crearPagos(requests);
+
+        // Then
+        assertThat(lote.getTotal()).isEqualTo(4);
+        assertThat(lote.getExitosos()).isEqualTo(2);
+        assertThat(lote.getFallidos()).isEqualTo(2);
+        assertThat(lote.getResultados()).extracting(ResultadoLoteResponse::getIndice).containsExactly(0, 1, 2, 3);
+        assertThat(lote.getResultados()).extracting(ResultadoLoteResponse::isExitoso).containsExactly(true, false, false, true);
+        assertThat(lote.getResultados().get(1).getCampo()).isEqualTo("monto");
+        assertThat(lote.getResultados().get(0).getPago().getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        assertThat(lote.getResultados().get(0).getPago().getId()).isNotEqualTo(lote.getResultados().get(3).getPago().getId());
+        verify(pagoRepository).insertarTodos(argThat(pagos -> pagos.size() == 2));
+        verify(pagoRepository, never()).save(any());
+    }
+
+    @Test
+    void crearPagos_ConLoteVacioOExcedido_DeberiaLanzarValidacion() {
+        // Given
+        List<PagoRequest> excedido = new ArrayList<>();
+        for (int i = 0; i <= PagoService.MAX_PAGOS_POR_LOTE; i++) {
+            excedido.add(pagoRequestValido);
+        }
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.crearPagos(List.of()))
+                .isInstanceOf(PagoValidationException.class);
+        assertThatThrownBy(() -> pagoService.crearPagos(excedido))
+                .isInstanceOf(PagoValidationException.class)
+                .hasMessageContaining(String.valueOf(PagoService.MAX_PAGOS_POR_LOTE));
+        verifyNoInteractions(pagoRepository);
+    }
+
+    @Test
+    void actualizarEstadoPagos_ConErroresMezclados_DeberiaInformarCadaPosicion() {
+        // Given
+        Pago pendiente = pagoConEstado("pago-1", Pago.EstadoPago.PENDING);
+        Pago fallido = pagoConEstado("pago-2", Pago.EstadoPago.FAILED);
+        when(pagoRepository.findById("pago-1")).thenReturn(Optional.of(pendiente));
+        when(pagoRepository.findById("pago-2")).thenReturn(Optional.of(fallido));
+        when(pagoRepository.findById("no-existe")).thenReturn(Optional.empty());
+        aplicarCambiosSobre(pendiente);
+        CambioEstadoLoteRequest request = new CambioEstadoLoteRequest(
+                Arrays.asList("pago-1", "pago-2", "no-existe", "pago-1", " "), Pago.EstadoPago.COMPLETED);
+
+        // When
+        LotePagosResponse lote = pagoService.actualizarEstadoPagos(request);
+
+        // Then
+        assertThat(lote.getTotal()).isEqualTo(5);
+        assertThat(lote.getExitosos()).isEqualTo(1);
+        assertThat(lote.getFallidos()).isEqualTo(4);
+        assertThat(lote.getResultados()).extracting(ResultadoLoteResponse::getErrorCode)
+                .containsExactly(null, "VALIDATION_ERROR", "PAGO_NOT_FOUND", "VALIDATION_ERROR", "VALIDATION_ERROR");
+        PagoResponse completado = lote.getResultados().get(0).getPago();
+        assertThat(completado.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        assertThat(completado.getTransactionId()).isNotNull();
+        verify(pagoRepository).findById("pago-1");
+        verify(pagoRepository, never()).actualizar(eq("pago-2"), anyLong(), any());
+    }
+
+    @Test
+    void actualizarEstadoPagos_DeberiaNotificarUnaSolaVezConFechaComun() {
+        // Given
+        PagoObservador observador = mock(PagoObservador.class);
+        observadores.add(observador);
+        List<String> ids = new ArrayList<>();
+        List<Pago> pagos = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Pago pago = pagoConEstado("pago-" + i, Pago.EstadoPago.PENDING);
+            when(pagoRepository.findById(pago.getId())).thenReturn(Optional.of(pago));
+            aplicarCambiosSobre(pago);
+            ids.add(pago.getId());
+            pagos.add(pago);
+        }
+
+        // When
+        LotePagosResponse lote = pagoService.actualizarEstadoPagos(new CambioEstadoLoteRequest(ids, Pago.EstadoPago.FAILED));
+
+        // Then
+        assertThat(lote.getExitosos()).isEqualTo(200);
+        assertThat(pagos).extracting(Pago::getFechaActualizacion).containsOnly(pagos.get(0).getFechaActualizacion());
+        verify(observador).estadosCambiados(pagos, Collections.nCopies(200, Pago.EstadoPago.PENDING));
+        verify(observador, never()).estadoCambiado(any(), any());
+    }
+
+    @Test
+    void actualizarEstadoPagos_SinEstadoOConLoteVacioOExcedido_DeberiaLanzarValidacion() {
+        // Given
+        List<String> excedido = Collections.nCopies(PagoService.MAX_CAMBIOS_POR_LOTE + 1, "pago-1");
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.actualizarEstadoPagos(new CambioEstadoLoteRequest(List.of("pago-1"), null)))
+                .isInstanceOf(PagoValidationException.class);
+        assertThatThrownBy(() -> pagoService.actualizarEstadoPagos(new CambioEstadoLoteRequest(List.of(), Pago.EstadoPago.FAILED)))
+                .isInstanceOf(PagoValidationException.class);
+        assertThatThrownBy(() -> pagoService.actualizarEstadoPagos(new CambioEstadoLoteRequest(excedido, Pago.EstadoPago.FAILED)))
+                .isInstanceOf(PagoValidationException.class)
+                .hasMessageContaining(String.valueOf(PagoService.MAX_CAMBIOS_POR_LOTE));
+        verifyNoInteractions(pagoRepository);
+    }
+
+    @Test
+    void consultarPagos_DeberiaResolverPorIdYOrdenEInformarFaltantes() {
+        // Given
+        ConsultaPagosRequest request = new ConsultaPagosRequest(
+                Arrays.asList("test-id-123", "no-existe", "test-id-123", null, " "), List.of("ORD-001", "ORD-404"));
+        when(pagoRepository.findAllById(List.of("test-id-123", "no-existe"))).thenReturn(Map.of("test-id-123", pagoMock));
+        when(pagoRepository.findByOrderIds(List.of("ORD-001", "ORD-404"))).thenReturn(Map.of("ORD-001", List.of(pagoMock)));
+
+        // When
+        ConsultaPagosResponse consulta = pagoService.consultarPagos(request);
+
+        // Then
+        assertThat(consulta.getPorId()).containsOnlyKeys("test-id-123");
+        assertThat(consulta.getPorOrden().get("ORD-001")).extracting(PagoResponse::getId).containsExactly("test-id-123");
+        assertThat(consulta.getIdsNoEncontrados()).containsExactly("no-existe");
+        assertThat(consulta.getOrdenesNoEncontradas()).containsExactly("ORD-404");
+    }
+
+    @Test
+    void consultarPagos_SinClavesOConDemasiadas_DeberiaLanzarValidacion() {
+        // Given
+        List<String> demasiados = new ArrayList<>();
+        for (int i = 0; i <= PagoService.MAX_CLAVES_CONSULTA; i++) {
+            demasiados.add("id-" + i);
+        }
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.consultarPagos(new ConsultaPagosRequest(null, List.of())))
+                .isInstanceOf(PagoValidationException.class);
+        assertThatThrownBy(() -> pagoService.consultarPagos(new ConsultaPagosRequest(demasiados, null)))
+                .isInstanceOf(PagoValidationException.class)
+                .hasMessageContaining(String.valueOf(PagoService.MAX_CLAVES_CONSULTA));
+        verifyNoInteractions(pagoRepository);
+    }
+
+    @Test
+    void exportarPagos_DeberiaRecorrerPorPaginasSinAbrirInstantaneas() {
+        // Given - una página llena y una final incompleta
+        List<Pago> primera = new ArrayList<>();
+        for (int i = 0; i < PagoService.MAX_LIMITE_PAGINA; i++) {
+            primera.add(Pago.builder().id("pago-" + i).fechaCreacion(LocalDateTime.of(2025, 1, 1, 0, 0).plusSeconds(i))
+                    .build());
+        }
+        ClaveCronologica ultima = ClaveCronologica.de(primera.get(primera.size() - 1));
+        when(pagoRepository.findPagina(null, PagoService.MAX_LIMITE_PAGINA)).thenReturn(primera);
+        when(pagoRepository.findPagina(ultima, PagoService.MAX_LIMITE_PAGINA)).thenReturn(List.of(pagoMock));
+        List<PagoResponse> exportados = new ArrayList<>();
+
+        // When
+        long total = pagoService.exportarPagos(exportados::add);
+
+        // Then
+        assertThat(total).isEqualTo(PagoService.MAX_LIMITE_PAGINA + 1);
+        assertThat(exportados).extracting(PagoResponse::getId).startsWith("pago-0").endsWith("test-id-123");
+        verify(pagoRepository, times(2)).findPagina(any(), anyInt());
+        verify(pagoRepository, never()).abrirInstantanea();
+    }
+
+    @Test
+    void exportarPagos_SiElDestinoFalla_DeberiaDejarDeLeerPaginas() {
+        // Given - el cliente se desconecta a mitad de la exportación
+        when(pagoRepository.findPagina(null, PagoService.MAX_LIMITE_PAGINA)).thenReturn(List.of(pagoMock));
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.exportarPagos(pago -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        })).isInstanceOf(UncheckedIOException.class);
+        verify(pagoRepository).findPagina(null, PagoService.MAX_LIMITE_PAGINA);
+        verifyNoMoreInteractions(pagoRepository);
+    }
+
+    @Test
+    void obtenerPaginaDePagos_ConMasResultados_DeberiaDevolverCursorDelUltimo() {
+        // Given
+        Pago otro = new Pago();
+        otro.setId("test-id-456");
+        otro.setFechaCreacion(pagoMock.getFechaCreacion().plusSeconds(1));
+        Pago tercero = new Pago();
+        tercero.setId("test-id-789");
+        when(pagoRepository.findPagina(null, 3)).thenReturn(Arrays.asList(pagoMock, otro, tercero));
+
+        // When
+        PaginaResponse<PagoResponse> pagina = pagoService.obtenerPaginaDePagos(null, 2);
+
+        // Then
+        assertThat(pagina.getElementos()).extracting(PagoResponse::getId).containsExactly("test-id-123", "test-id-456");
+        assertThat(pagina.isHayMas()).isTrue();
+        assertThat(ClaveCronologica.decodificar(pagina.getSiguienteCursor())).isEqualTo(ClaveCronologica.de(otro));
+    }
+
+    @Test
+    void obtenerPaginaPorCliente_EnUltimaPagina_NoDeberiaDevolverCursor() {
+        // Given
+        ClaveCronologica cursor = ClaveCronologica.de(pagoMock);
+        when(pagoRepository.findPaginaPorCliente("CLI-123", cursor, 11)).thenReturn(List.of(pagoMock));
+
+        // When
+        PaginaResponse<PagoResponse> pagina = pagoService.obtenerPaginaPorCliente("CLI-123", cursor.codificar(), 10);
+
+        // Then
+        assertThat(pagina.getElementos()).hasSize(1);
+        assertThat(pagina.isHayMas()).isFalse();
+        assertThat(pagina.getSiguienteCursor()).isNull();
+    }
+
+    @Test
+    void obtenerPaginaPorFechas_ConRangoValido_DeberiaConsultarElRepositorioConLosFiltros() {
+        // Given
+        LocalDateTime desde = LocalDateTime.of(2025, 1, 1, 10, 0);
+        when(pagoRepository.findPaginaPorFechas(desde, desde.plusHours(1), Pago.EstadoPago.COMPLETED, null, null, 11))
+                .thenReturn(List.of(pagoMock));
+
+        // When
+        PaginaResponse<PagoResponse> pagina = pagoService.obtenerPaginaPorFechas(desde, desde.plusHours(1),
+                Pago.EstadoPago.COMPLETED, " ", null, 10);
+
+        // Then
+        assertThat(pagina.getElementos()).extracting(PagoResponse::getId).containsExactly("test-id-123");
+        assertThat(pagina.isHayMas()).isFalse();
+    }
+
+    @Test
+    void obtenerPaginaPorFechas_ConRangoInvertidoOIncompleto_DeberiaLanzarValidacion() {
+        // Given
+        LocalDateTime desde = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.obtenerPaginaPorFechas(desde, desde, null, null, null, 10))
+                .isInstanceOf(PagoValidationException.class)
+                .extracting("field").isEqualTo("hasta");
+        assertThatThrownBy(() -> pagoService.obtenerPaginaPorFechas(null, desde, null, null, null, 10))
+                .isInstanceOf(PagoValidationException.class)
+                .extracting("field").isEqualTo("desde");
+        verifyNoInteractions(pagoRepository);
+    }
+
+    @Test
+    void obtenerCambios_ConMasCambios_DeberiaContinuarDesdeElUltimoDevuelto() {
+        // Given
+        when(pagoRepository.secuenciaConfirmada()).thenReturn(40L);
+        when(pagoRepository.findCambios(10, 40, 2)).thenReturn(List.of(
+                new CambioPago(12, "test-id-123", pagoMock), new CambioPago(15, "test-id-456", null)));
+
+        // When
+        CambiosResponse cambios = pagoService.obtenerCambios(10, 1);
+
+        // Then
+        assertThat(cambios.getCambios()).singleElement().satisfies(cambio -> {
+            assertThat(cambio.getSecuencia()).isEqualTo(12);
+            assertThat(cambio.getPago().getId()).isEqualTo("test-id-123");
+        });
+        assertThat(cambios.isHayMas()).isTrue();
+        assertThat(cambios.getSiguienteSecuencia()).isEqualTo(12);
+    }
+
+    @Test
+    void obtenerCambios_AlDia_DeberiaDevolverBajasYLaSecuenciaConfirmada() {
+        // Given - las entradas reemplazadas se omitieron, así que se avanza hasta la confirmada
+        when(pagoRepository.secuenciaConfirmada()).thenReturn(40L);
+        when(pagoRepository.findCambios(10, 40, 101)).thenReturn(List.of(new CambioPago(15, "test-id-456", null)));
+
+        // When
+        CambiosResponse cambios = pagoService.obtenerCambios(10, 100);
+
+        // Then
+        assertThat(cambios.getCambios()).singleElement().satisfies(cambio -> {
+            assertThat(cambio.isEliminado()).isTrue();
+            assertThat(cambio.getPagoId()).isEqualTo("test-id-456");
+            assertThat(cambio.getPago()).isNull();
+        });
+        assertThat(cambios.isHayMas()).isFalse();
+        assertThat(cambios.getSiguienteSecuencia()).isEqualTo(40);
+    }
+
+    @Test
+    void obtenerCambios_ConSecuenciaPosteriorALaConfirmada_DeberiaLanzarValidacion() {
+        // Given - p. ej. una réplica que sincronizó antes de un reinicio
+        when(pagoRepository.secuenciaConfirmada()).thenReturn(5L);
+
+        // When & Then
+        assertThatThrownBy(() -> pagoService.obtenerCambios(40, 100))
+                .isInstanceOf(PagoValidationException.class)
+                .extracting("field").isEqualTo("desde");
+        verify(pagoRepository, never()).findCambios(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    void obtenerPaginaPorOrden_ConCursorOLimiteInvalido_DeberiaLanzarValidacion() {
+        // When & Then
+        assertThatThrownBy(() -> pagoService.obtenerPaginaPorOrden("ORD-001", "no-es-un-cursor", 10))
+                .isInstanceOf(PagoValidationException.class)
+                .extracting("field").isEqualTo("cursor");
+        assertThatThrownBy(() -> pagoService.obtenerPaginaPorOrden("ORD-001", null, 0))
+                .isInstanceOf(PagoValidationException.class)
+                .extracting("field").isEqualTo("limit");
+        assertThatThrownBy(() -> pagoService.obtenerPaginaPorOrden("ORD-001", null, PagoService.MAX_LIMITE_PAGINA + 1))
+                .isInstanceOf(PagoValidationException.class);
+        verifyNoInteractions(pagoRepository);
+    }
+
+    /**
+     * Simula el procesador: ejecuta el registro y guarda la tarea para correrla en el test
+     */
+    private List<Runnable> encolarEnLista() {
+        List<Runnable> tareas = new ArrayList<>();
+        doAnswer(invocacion -> {
+            invocacion.<Runnable>getArgument(0).run();
+            tareas.add(invocacion.getArgument(1));
+            return null;
+        }).when(procesadorPagos).ejecutar(any(), any());
+        return tareas;
+    }
+
+    private PagoService servicioConDetector(DetectorDuplicados.Modo modo) {
+        return new PagoService(pagoRepository, estadisticasPagos, observadores, generadorId, ejecutorLotes,
+                cacheIdempotencia, new DetectorDuplicados(modo, Duration.ofSeconds(30), 100), resumenesClientes,
+                procesadorPagos);
+    }
+
+    private Pago pagoConEstado(String id, Pago.EstadoPago estado) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setOrderId("ORD-" + id);
+        pago.setMonto(new BigDecimal("25000.00"));
+        pago.setEstado(estado);
+        pago.setFechaCreacion(LocalDateTime.now());
+        pago.setClienteId("CLI-123");
+        return pago;
+    }
+
+    /**
+     * Simula PagoRepository.actualizar aplicando el cambio sobre el pago dado
+     */
+    private void aplicarCambiosSobre(Pago pago) {
+        when(pagoRepository.actualizar(eq(pago.getId()), anyLong(), any()))
+                .thenAnswer(invocacion -> invocacion.<UnaryOperator<Pago>>getArgument(2).apply(pago));
     }
-}
\ No newline at end of file
+}
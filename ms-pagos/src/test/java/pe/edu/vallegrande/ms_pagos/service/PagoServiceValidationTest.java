@@ -7,6 +7,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.*;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import pe.edu.vallegrande.ms_pagos.dto.request.PagoRequest;
 import pe.edu.vallegrande.ms_pagos.exception.PagoValidationException;
@@ -14,6 +15,8 @@ import pe.edu.vallegrande.ms_pagos.model.Pago;
 import pe.edu.vallegrande.ms_pagos.repository.PagoRepository;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -25,6 +28,15 @@ class PagoServiceValidationTest {
     @Mock
     private PagoRepository pagoRepository;
 
+    @Mock
+    private EstadisticasPagos estadisticasPagos;
+
+    @Spy
+    private List<PagoObservador> observadores = new ArrayList<>();
+
+    @Spy
+    private GeneradorId generadorId = new GeneradorIdOrdenado(1);
+
     @InjectMocks
     private PagoService pagoService;
 
@@ -0,0 +1,133 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ProcesadorPagosTest {
+
+    private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+    private ProcesadorPagos procesador;
+
+    @AfterEach
+    void tearDown() {
+        procesador.close();
+    }
+
+    @Test
+    void ejecutar_ConColaLlena_DeberiaRechazarSinEjecutarElRegistro() throws Exception {
+        // Given - un hilo ocupado y un pago en cola
+        procesador = new ProcesadorPagos(1, 1, registro);
+        CountDownLatch liberar = new CountDownLatch(1);
+        CountDownLatch empezo = new CountDownLatch(1);
+        procesador.ejecutar(() -> { }, () -> {
+            empezo.countDown();
+            esperar(liberar);
+        });
+        assertThat(empezo.await(5, TimeUnit.SECONDS)).isTrue();
+        procesador.ejecutar(() -> { }, () -> { });
+        AtomicBoolean registrado = new AtomicBoolean();
+
+        // When & Then
+        assertThatThrownBy(() -> procesador.ejecutar(() -> registrado.set(true), () -> { }))
+                .isInstanceOf(PagoCapacidadException.class)
+                .extracting("limite").isEqualTo(2);
+        assertThat(registrado).isFalse();
+        assertThat(procesador.enCurso()).isEqualTo(1);
+        assertThat(procesador.enCola()).isEqualTo(1);
+        assertThat(registro.get("pagos.procesamiento.en-curso").gauge().value()).isEqualTo(1);
+        assertThat(registro.get("pagos.procesamiento.cola").gauge().value()).isEqualTo(1);
+        liberar.countDown();
+    }
+
+    @Test
+    void ejecutar_SiElRegistroFalla_DeberiaLiberarElLugar() throws Exception {
+        // Given
+        procesador = new ProcesadorPagos(1, 1, registro);
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> procesador.ejecutar(() -> {
+                throw new IllegalStateException("sin guardar");
+            }, () -> fail("No debería encolarse")))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+
+        // When
+        CountDownLatch procesado = new CountDownLatch(1);
+        procesador.ejecutar(() -> { }, procesado::countDown);
+
+        // Then
+        assertThat(procesado.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void ejecutar_DeberiaRegistrarEsperaYDuracionAunqueLaTareaFalle() throws Exception {
+        // Given
+        procesador = new ProcesadorPagos(2, 4, registro);
+        CountDownLatch procesados = new CountDownLatch(1);
+
+        // When
+        procesador.ejecutar(() -> { }, () -> {
+            throw new IllegalStateException("fallo del gateway");
+        });
+        procesador.ejecutar(() -> { }, procesados::countDown);
+        assertThat(procesados.await(5, TimeUnit.SECONDS)).isTrue();
+        procesador.close();
+
+        // Then
+        assertThat(registro.get("pagos.procesamiento.duracion").timer().count()).isEqualTo(2);
+        assertThat(registro.get("pagos.procesamiento.espera").timer().count()).isEqualTo(2);
+        assertThat(procesador.enCurso()).isZero();
+    }
+
+    @Test
+    void ejecutar_ConElPoolCerrado_NoDeberiaRechazarUnPagoYaRegistrado() {
+        // Given
+        procesador = new ProcesadorPagos(1, 1, registro);
+        procesador.close();
+        AtomicBoolean registrado = new AtomicBoolean();
+        AtomicBoolean procesado = new AtomicBoolean();
+
+        // When
+        procesador.ejecutar(() -> registrado.set(true), () -> procesado.set(true));
+
+        // Then - queda PENDING para recuperarse al reiniciar
+        assertThat(registrado).isTrue();
+        assertThat(procesado).isFalse();
+    }
+
+    @Test
+    void recuperar_ConMasPagosQueCapacidad_DeberiaProcesarlosTodos() throws Exception {
+        // Given
+        procesador = new ProcesadorPagos(1, 1, registro);
+        int pagos = 10;
+        CountDownLatch procesados = new CountDownLatch(pagos);
+        List<Runnable> tareas = new ArrayList<>();
+        for (int i = 0; i < pagos; i++) {
+            tareas.add(procesados::countDown);
+        }
+
+        // When
+        procesador.recuperar(tareas);
+
+        // Then
+        assertThat(procesados.await(5, TimeUnit.SECONDS)).isTrue();
+        procesador.ejecutar(() -> { }, () -> { });
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
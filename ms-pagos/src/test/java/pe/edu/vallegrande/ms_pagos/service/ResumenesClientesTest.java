@@ -0,0 +1,145 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.dto.response.ResumenClienteResponse;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ResumenesClientesTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+    private ResumenesClientes resumenes;
+
+    @BeforeEach
+    void setUp() {
+        resumenes = new ResumenesClientes();
+    }
+
+    @Test
+    void obtener_SinPagos_DeberiaRetornarVacio() {
+        // Then
+        assertThat(resumenes.obtener("CLI-1")).isEmpty();
+    }
+
+    @Test
+    void eventos_DeberianActualizarTotalesPorMonedaYFallidos() {
+        // Given
+        resumenes.pagoCreado(pago("p-1", "CLI-1", "100.00", "PEN", Pago.EstadoPago.COMPLETED, INICIO));
+        resumenes.pagoCreado(pago("p-2", "CLI-1", "50.50", "USD", Pago.EstadoPago.COMPLETED, INICIO.plusDays(2)));
+        resumenes.pagoCreado(pago("p-3", "CLI-1", "0.50", "PEN", Pago.EstadoPago.FAILED, INICIO.plusDays(1)));
+        resumenes.pagoCreado(pago("p-4", "CLI-2", "10.00", "PEN", Pago.EstadoPago.COMPLETED, INICIO));
+
+        // When - el pago en USD se reembolsa
+        resumenes.estadoCambiado(pago("p-2", "CLI-1", "50.50", "USD", Pago.EstadoPago.REFUNDED, INICIO.plusDays(2)),
+                Pago.EstadoPago.COMPLETED);
+
+        // Then
+        ResumenClienteResponse resumen = resumenes.obtener("CLI-1").orElseThrow();
+        assertThat(resumen.getTotalPagos()).isEqualTo(3);
+        assertThat(resumen.getPagosFallidos()).isEqualTo(1);
+        assertThat(resumen.getMontoCompletadoPorMoneda()).containsOnlyKeys("PEN");
+        assertThat(resumen.getMontoCompletadoPorMoneda().get("PEN")).isEqualByComparingTo("100.00");
+        assertThat(resumen.getUltimoPago()).isEqualTo(INICIO.plusDays(2));
+    }
+
+    @Test
+    void refundAplicado_DeberiaDescontarLoReembolsadoDelCompletado() {
+        // Given
+        Pago pago = pago("p-1", "CLI-1", "100.00", "PEN", Pago.EstadoPago.COMPLETED, INICIO);
+        resumenes.pagoCreado(pago);
+
+        // When - refund parcial de 40, el pago sigue COMPLETED
+        pago.setMontoReembolsado(new BigDecimal("40.00"));
+        resumenes.refundAplicado(pago, Pago.EstadoPago.COMPLETED, new BigDecimal("40.00"));
+
+        // Then
+        assertThat(resumenes.obtener("CLI-1")).contains(ResumenesClientes.recalcular("CLI-1", List.of(pago)));
+        assertThat(resumenes.obtener("CLI-1").orElseThrow().getMontoCompletadoPorMoneda().get("PEN"))
+                .isEqualByComparingTo("60.00");
+
+        // When - el resto lo deja REFUNDED
+        pago.setMontoReembolsado(new BigDecimal("100.00"));
+        pago.setEstado(Pago.EstadoPago.REFUNDED);
+        resumenes.refundAplicado(pago, Pago.EstadoPago.COMPLETED, new BigDecimal("60.00"));
+
+        // Then
+        assertThat(resumenes.obtener("CLI-1").orElseThrow().getMontoCompletadoPorMoneda()).isEmpty();
+    }
+
+    @Test
+    void pagosRecuperados_DeberiaReconstruirIgualQueElRecalculo() {
+        // Given
+        List<Pago> pagos = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Pago.EstadoPago estado = Pago.EstadoPago.values()[i % Pago.EstadoPago.values().length];
+            pagos.add(pago("p-" + i, "CLI-1", i + ".25", i % 2 == 0 ? "PEN" : "USD", estado, INICIO.plusHours(i)));
+        }
+        resumenes.pagoCreado(pago("previo", "CLI-1", "1.00", "PEN", Pago.EstadoPago.COMPLETED, INICIO));
+
+        // When
+        resumenes.pagosRecuperados(pagos);
+
+        // Then
+        assertThat(resumenes.obtener("CLI-1")).contains(ResumenesClientes.recalcular("CLI-1", pagos));
+    }
+
+    @Test
+    void eventosConcurrentes_DelMismoCliente_DeberianCoincidirConElRecalculo() throws Exception {
+        // Given - cada hilo crea pagos completados y falla la mitad
+        int hilos = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<List<Pago>>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(executor.submit(() -> {
+                List<Pago> finales = new ArrayList<>();
+                for (int i = 0; i < 500; i++) {
+                    Pago pago = pago("p-" + hilo + "-" + i, "CLI-1", "10.00", "PEN", Pago.EstadoPago.COMPLETED, INICIO);
+                    resumenes.pagoCreado(pago);
+                    if (i % 2 == 0) {
+                        pago.setEstado(Pago.EstadoPago.FAILED);
+                        resumenes.estadoCambiado(pago, Pago.EstadoPago.COMPLETED);
+                    }
+                    finales.add(pago);
+                }
+                return finales;
+            }));
+        }
+
+        // When
+        List<Pago> todos = new ArrayList<>();
+        for (Future<List<Pago>> tarea : tareas) {
+            todos.addAll(tarea.get());
+        }
+        executor.shutdown();
+
+        // Then
+        ResumenClienteResponse resumen = resumenes.obtener("CLI-1").orElseThrow();
+        assertThat(resumen).isEqualTo(ResumenesClientes.recalcular("CLI-1", todos));
+        assertThat(resumen.getPagosFallidos()).isEqualTo(1_000);
+        assertThat(resumen.getMontoCompletadoPorMoneda().get("PEN")).isEqualByComparingTo("10000.00");
+    }
+
+    private static Pago pago(String id, String clienteId, String monto, String moneda, Pago.EstadoPago estado,
+                             LocalDateTime fechaCreacion) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setClienteId(clienteId);
+        pago.setMonto(new BigDecimal(monto));
+        pago.setMoneda(moneda);
+        pago.setEstado(estado);
+        pago.setFechaCreacion(fechaCreacion);
+        return pago;
+    }
+}
@@ -0,0 +1,212 @@
+package pe.edu.vallegrande.ms_pagos.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pe.edu.vallegrande.ms_pagos.dto.response.EventoEstadoResponse;
+import pe.edu.vallegrande.ms_pagos.exception.PagoCapacidadException;
+import pe.edu.vallegrande.ms_pagos.model.Pago;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SuscripcionesEstadoTest {
+
+    private SuscripcionesEstado suscripciones;
+
+    @BeforeEach
+    void setUp() {
+        suscripciones = new SuscripcionesEstado(2, 4, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        suscripciones.close();
+    }
+
+    @Test
+    void estadoCambiado_DeberiaEntregarSoloALasSuscripcionesQueCoinciden() throws Exception {
+        // Given
+        Destino porOrden = new Destino();
+        Destino porClienteYOrden = new Destino();
+        Destino general = new Destino();
+        suscripciones.suscribir(null, "ORD-1", porOrden);
+        suscripciones.suscribir("CLI-2", "ORD-1", porClienteYOrden);
+        suscripciones.suscribir(null, null, general);
+
+        // When
+        suscripciones.estadoCambiado(pago("p-1", "CLI-1", "ORD-1", Pago.EstadoPago.COMPLETED), Pago.EstadoPago.PENDING);
+        suscripciones.estadoCambiado(pago("p-2", "CLI-2", "ORD-2", Pago.EstadoPago.FAILED), Pago.EstadoPago.PENDING);
+
+        // Then
+        EventoEstadoResponse evento = porOrden.siguiente();
+        assertThat(evento.getPagoId()).isEqualTo("p-1");
+        assertThat(evento.getEstadoAnterior()).isEqualTo(Pago.EstadoPago.PENDING);
+        assertThat(evento.getEstado()).isEqualTo(Pago.EstadoPago.COMPLETED);
+        assertThat(general.siguiente().getPagoId()).isEqualTo("p-1");
+        assertThat(general.siguiente().getPagoId()).isEqualTo("p-2");
+        assertThat(porOrden.eventos.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(porClienteYOrden.eventos).isEmpty();
+    }
+
+    @Test
+    void estadoCambiado_ConSuscriptorLento_NoDeberiaBloquearYDeberiaDarloDeBaja() throws Exception {
+        // Given - el destino lento se queda bloqueado en el primer envío
+        CountDownLatch liberar = new CountDownLatch(1);
+        Destino lento = new Destino() {
+            @Override
+            public void enviar(EventoEstadoResponse evento) throws IOException {
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.enviar(evento);
+            }
+        };
+        Destino rapido = new Destino();
+        suscripciones.suscribir("CLI-1", null, lento);
+        suscripciones.suscribir("CLI-1", null, rapido);
+
+        // When - más eventos que la cola del lento
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            suscripciones.estadoCambiado(pago("p-" + i, "CLI-1", "ORD-" + i, Pago.EstadoPago.COMPLETED),
+                    Pago.EstadoPago.PENDING);
+            rapido.siguiente();
+        }
+        long transcurrido = System.nanoTime() - inicio;
+        liberar.countDown();
+
+        // Then
+        assertThat(lento.desbordado.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(transcurrido).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        assertThat(suscripciones.suscripcionesActivas()).isEqualTo(1);
+        assertThat(rapido.desbordado.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void estadoCambiado_ConTantosSuscriptoresDetenidosComoHilos_DeberiaSeguirEntregandoAlResto() throws Exception {
+        // Given - dos hilos de entrega y dos destinos que nunca terminan su envío
+        SuscripcionesEstado conPlazo = new SuscripcionesEstado(2, 4, 3, Duration.ofMillis(100));
+        CountDownLatch liberar = new CountDownLatch(1);
+        CountDownLatch bloqueados = new CountDownLatch(2);
+        Destino rapido = new Destino();
+        try {
+            for (int i = 0; i < 2; i++) {
+                conPlazo.suscribir("CLI-1", null, new Destino() {
+                    @Override
+                    public void enviar(EventoEstadoResponse evento) throws IOException {
+                        bloqueados.countDown();
+                        try {
+                            liberar.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new IOException("Connection reset");
+                    }
+                });
+            }
+            conPlazo.suscribir("CLI-1", null, rapido);
+            conPlazo.estadoCambiado(pago("p-0", "CLI-1", "ORD-0", Pago.EstadoPago.COMPLETED), Pago.EstadoPago.PENDING);
+            assertThat(bloqueados.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // When - más eventos que la cola del rápido mientras los dos hilos siguen bloqueados
+            for (int i = 0; i < 10; i++) {
+                rapido.siguiente();
+                conPlazo.estadoCambiado(pago("p-" + (i + 1), "CLI-1", "ORD-" + i, Pago.EstadoPago.COMPLETED),
+                        Pago.EstadoPago.PENDING);
+            }
+
+            // Then - los detenidos se dan de baja por el plazo, sin aviso de desborde
+            assertThat(rapido.siguiente().getPagoId()).isEqualTo("p-10");
+            assertThat(rapido.desbordado.getCount()).isEqualTo(1);
+            assertThat(conPlazo.suscripcionesActivas()).isEqualTo(1);
+        } finally {
+            liberar.countDown();
+            conPlazo.close();
+        }
+    }
+
+    @Test
+    void suscribir_SobreElMaximo_DeberiaRechazarHastaQueSeCanceleUna() {
+        // Given
+        SuscripcionesEstado.Suscripcion primera = suscripciones.suscribir(null, null, new Destino());
+        suscripciones.suscribir(null, null, new Destino());
+        suscripciones.suscribir(null, null, new Destino());
+
+        // When & Then
+        assertThatThrownBy(() -> suscripciones.suscribir(null, null, new Destino()))
+                .isInstanceOf(PagoCapacidadException.class);
+        primera.cancelar();
+        primera.cancelar();
+        assertThat(suscripciones.suscribir(null, null, new Destino())).isNotNull();
+        assertThat(suscripciones.suscripcionesActivas()).isEqualTo(3);
+    }
+
+    @Test
+    void entregar_ConDestinoCerrado_DeberiaCancelarLaSuscripcion() throws Exception {
+        // Given
+        CountDownLatch fallo = new CountDownLatch(1);
+        suscripciones.suscribir(null, "ORD-1", new Destino() {
+            @Override
+            public void enviar(EventoEstadoResponse evento) throws IOException {
+                fallo.countDown();
+                throw new IOException("Broken pipe");
+            }
+        });
+
+        // When
+        suscripciones.estadoCambiado(pago("p-1", "CLI-1", "ORD-1", Pago.EstadoPago.COMPLETED), Pago.EstadoPago.PENDING);
+
+        // Then
+        assertThat(fallo.await(5, TimeUnit.SECONDS)).isTrue();
+        await(() -> suscripciones.suscripcionesActivas() == 0);
+        assertThat(suscripciones.suscripcionesActivas()).isZero();
+    }
+
+    private static void await(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean() && System.nanoTime() < limite) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static Pago pago(String id, String clienteId, String orderId, Pago.EstadoPago estado) {
+        Pago pago = new Pago();
+        pago.setId(id);
+        pago.setClienteId(clienteId);
+        pago.setOrderId(orderId);
+        pago.setEstado(estado);
+        return pago;
+    }
+
+    private static class Destino implements SuscripcionesEstado.Destino {
+
+        final BlockingQueue<EventoEstadoResponse> eventos = new LinkedBlockingQueue<>();
+        final CountDownLatch desbordado = new CountDownLatch(1);
+
+        @Override
+        public void enviar(EventoEstadoResponse evento) throws IOException {
+            eventos.add(evento);
+        }
+
+        @Override
+        public void desbordado() {
+            desbordado.countDown();
+        }
+
+        EventoEstadoResponse siguiente() throws InterruptedException {
+            EventoEstadoResponse evento = eventos.poll(5, TimeUnit.SECONDS);
+            assertThat(evento).as("evento entregado").isNotNull();
+            return evento;
+        }
+    }
+}